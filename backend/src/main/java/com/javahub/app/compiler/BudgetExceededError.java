@@ -0,0 +1,12 @@
+package com.javahub.app.compiler;
+
+// Thrown into in-process programs when their budget runs out or the run is stopped from outside.
+// An Error so ordinary catch (Exception e) blocks in student code do not swallow it.
+public class BudgetExceededError extends Error {
+
+    private static final long serialVersionUID = 1L;
+
+    public BudgetExceededError(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,314 @@
+package com.javahub.app.compiler;
+
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.ConstantDynamic;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.Handle;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Checks program bytecode against SandboxPolicy and rewrites it for the in-process engine:
+// every loop back-edge and method entry is charged to ExecutionBudget, allocations are counted,
+// exception handlers rethrow budget stops, and System.out/err/in go to the run's own streams.
+final class BudgetInstrumenter {
+
+    private static final String BUDGET = Type.getInternalName(ExecutionBudget.class);
+
+    private BudgetInstrumenter() {
+    }
+
+    static Map<String, byte[]> instrument(Map<String, byte[]> classes) throws SandboxViolationException {
+        Set<String> programClasses = new HashSet<>();
+        for (String name : classes.keySet()) {
+            programClasses.add(name.replace('.', '/'));
+        }
+        Map<String, byte[]> instrumented = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            ClassReader reader = new ClassReader(entry.getValue());
+            ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+            PolicyClassVisitor visitor = new PolicyClassVisitor(writer, programClasses);
+            reader.accept(visitor, 0);
+            if (visitor.violation != null) {
+                throw new SandboxViolationException(visitor.violation);
+            }
+            instrumented.put(entry.getKey(), writer.toByteArray());
+        }
+        return instrumented;
+    }
+
+    private static class PolicyClassVisitor extends ClassVisitor {
+
+        private final Set<String> programClasses;
+        private String violation;
+
+        PolicyClassVisitor(ClassVisitor next, Set<String> programClasses) {
+            super(SpringAsmInfo.ASM_VERSION, next);
+            this.programClasses = programClasses;
+        }
+
+        void deny(String what) {
+            if (violation == null) {
+                violation = what;
+            }
+        }
+
+        void checkClass(String internalName) {
+            if (internalName == null) {
+                return;
+            }
+            if (internalName.startsWith("[")) {
+                checkType(Type.getType(internalName));
+                return;
+            }
+            if (!programClasses.contains(internalName) && !SandboxPolicy.isClassAllowed(internalName)) {
+                deny("Use of " + internalName.replace('/', '.') + " is not allowed in-process");
+            }
+        }
+
+        void checkType(Type type) {
+            switch (type.getSort()) {
+                case Type.ARRAY:
+                    checkType(type.getElementType());
+                    break;
+                case Type.OBJECT:
+                    checkClass(type.getInternalName());
+                    break;
+                case Type.METHOD:
+                    checkType(type.getReturnType());
+                    for (Type argument : type.getArgumentTypes()) {
+                        checkType(argument);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        void checkMethod(String owner, String name, String descriptor) {
+            checkClass(owner);
+            checkType(Type.getMethodType(descriptor));
+            if (!programClasses.contains(owner) && !SandboxPolicy.isMethodAllowed(owner, name, descriptor)) {
+                deny("Call to " + owner.replace('/', '.') + "." + name + " is not allowed in-process");
+            }
+        }
+
+        void checkConstant(Object value) {
+            if (value instanceof Type) {
+                checkType((Type) value);
+            } else if (value instanceof Handle) {
+                Handle handle = (Handle) value;
+                checkMethod(handle.getOwner(), handle.getName(), handle.getDesc().startsWith("(")
+                        ? handle.getDesc() : "()" + handle.getDesc());
+            } else if (value instanceof ConstantDynamic) {
+                deny("Dynamic constants are not allowed in-process");
+            }
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            checkClass(superName);
+            if (interfaces != null) {
+                for (String anInterface : interfaces) {
+                    checkClass(anInterface);
+                }
+            }
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            checkType(Type.getType(descriptor));
+            return super.visitField(access, name, descriptor, signature, value);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            checkType(Type.getMethodType(descriptor));
+            if ((access & Opcodes.ACC_NATIVE) != 0) {
+                deny("Native methods are not allowed in-process");
+            }
+            return new BudgetMethodVisitor(super.visitMethod(access, name, descriptor, signature, exceptions), this);
+        }
+    }
+
+    private static class BudgetMethodVisitor extends MethodVisitor {
+
+        private final PolicyClassVisitor policy;
+        private final Set<Label> visitedLabels = new HashSet<>();
+        private final Set<Label> handlers = new HashSet<>();
+        private boolean handlerEntry;
+
+        BudgetMethodVisitor(MethodVisitor next, PolicyClassVisitor policy) {
+            super(SpringAsmInfo.ASM_VERSION, next);
+            this.policy = policy;
+        }
+
+        private void charge(String hook, String descriptor) {
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, BUDGET, hook, descriptor, false);
+        }
+
+        // Handler code has to come after the label's stack map frame, so the check is emitted lazily
+        private void beforeInstruction() {
+            if (handlerEntry) {
+                handlerEntry = false;
+                super.visitInsn(Opcodes.DUP);
+                charge("checkCaught", "(Ljava/lang/Throwable;)V");
+            }
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            charge("tick", "()V");
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+            policy.checkClass(type);
+            handlers.add(handler);
+            super.visitTryCatchBlock(start, end, handler, type);
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            super.visitLabel(label);
+            visitedLabels.add(label);
+            if (handlers.contains(label)) {
+                handlerEntry = true;
+            }
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            beforeInstruction();
+            if (visitedLabels.contains(label)) {
+                charge("tick", "()V");
+            }
+            super.visitJumpInsn(opcode, label);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            beforeInstruction();
+            super.visitTableSwitchInsn(min, max, dflt, labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            beforeInstruction();
+            super.visitLookupSwitchInsn(dflt, keys, labels);
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            beforeInstruction();
+            super.visitInsn(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            beforeInstruction();
+            if (opcode == Opcodes.NEWARRAY) {
+                super.visitInsn(Opcodes.DUP);
+                charge("allocateArray", "(I)V");
+            }
+            super.visitIntInsn(opcode, operand);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            beforeInstruction();
+            super.visitVarInsn(opcode, var);
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            beforeInstruction();
+            super.visitIincInsn(var, increment);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            beforeInstruction();
+            policy.checkClass(type);
+            if (opcode == Opcodes.NEW) {
+                charge("allocate", "()V");
+            } else if (opcode == Opcodes.ANEWARRAY) {
+                super.visitInsn(Opcodes.DUP);
+                charge("allocateArray", "(I)V");
+            }
+            super.visitTypeInsn(opcode, type);
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+            beforeInstruction();
+            policy.checkType(Type.getType(descriptor));
+            if (numDimensions == 2) {
+                super.visitInsn(Opcodes.DUP2);
+                charge("allocateArray", "(II)V");
+            } else {
+                policy.deny("Arrays with more than two dimensions are not allowed in-process");
+            }
+            super.visitMultiANewArrayInsn(descriptor, numDimensions);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            beforeInstruction();
+            policy.checkClass(owner);
+            policy.checkType(Type.getType(descriptor));
+            if (!SandboxPolicy.isFieldAllowed(owner, name)) {
+                policy.deny("Use of " + owner.replace('/', '.') + "." + name + " is not allowed in-process");
+            }
+            if (opcode == Opcodes.GETSTATIC && owner.equals("java/lang/System")) {
+                // System.out/err/in belong to the whole backend; hand out the run's own streams instead
+                charge(name, "()" + descriptor);
+                return;
+            }
+            if (opcode == Opcodes.PUTSTATIC && owner.equals("java/lang/System")) {
+                policy.deny("Assigning System." + name + " is not allowed in-process");
+            }
+            super.visitFieldInsn(opcode, owner, name, descriptor);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            beforeInstruction();
+            policy.checkMethod(owner, name, descriptor);
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrap, Object... arguments) {
+            beforeInstruction();
+            if (!SandboxPolicy.isBootstrapAllowed(bootstrap.getOwner())) {
+                policy.deny("invokedynamic via " + bootstrap.getOwner().replace('/', '.') + " is not allowed in-process");
+            }
+            policy.checkType(Type.getMethodType(descriptor));
+            for (Object argument : arguments) {
+                policy.checkConstant(argument);
+            }
+            // Lambdas and string concatenation allocate behind the scenes
+            charge("allocate", "()V");
+            super.visitInvokeDynamicInsn(name, descriptor, bootstrap, arguments);
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            beforeInstruction();
+            policy.checkConstant(value);
+            super.visitLdcInsn(value);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.javahub.app.compiler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compiled bytecode (or the compile errors) keyed by a hash of the compiler options and source text
+@Component
+public class CompilationCache {
+
+    @Value("${compiler.cache.max-bytes:33554432}")
+    private long maxBytes = 32L * 1024 * 1024;
+
+    private final LinkedHashMap<String, CompiledProgram> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public static String key(String code, List<String> options) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String option : options) {
+                digest.update(option.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            digest.update((byte) 0);
+            digest.update(code.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public synchronized CompiledProgram get(String key) {
+        CompiledProgram program = entries.get(key);
+        if (program == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return program;
+    }
+
+    public synchronized void put(String key, CompiledProgram program) {
+        long weight = weigh(program);
+        if (weight > maxBytes) {
+            return;
+        }
+        CompiledProgram previous = entries.put(key, program);
+        if (previous != null) {
+            currentBytes -= weigh(previous);
+        }
+        currentBytes += weight;
+
+        Iterator<CompiledProgram> eldest = entries.values().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            currentBytes -= weigh(eldest.next());
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("bytes", currentBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+
+    private static long weigh(CompiledProgram program) {
+        long weight = 64 + program.getMainClass().length() * 2L + program.getErrors().length() * 2L;
+        for (Map.Entry<String, byte[]> entry : program.getClasses().entrySet()) {
+            weight += entry.getKey().length() * 2L + entry.getValue().length;
+        }
+        return weight;
+    }
+}
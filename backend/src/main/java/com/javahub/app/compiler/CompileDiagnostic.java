@@ -0,0 +1,67 @@
+package com.javahub.app.compiler;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+// One javac message in the shape the editor needs to underline it. Lines and columns are 1-based,
+// offsets are 0-based character positions in the submitted source; -1 when javac has no position.
+public class CompileDiagnostic {
+    private final String severity;
+    private final long line;
+    private final long column;
+    private final long startOffset;
+    private final long endOffset;
+    private final String message;
+
+    public CompileDiagnostic(String severity, long line, long column, long startOffset, long endOffset,
+                             String message) {
+        this.severity = severity;
+        this.line = line;
+        this.column = column;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.message = message;
+    }
+
+    static CompileDiagnostic of(Diagnostic<? extends JavaFileObject> diagnostic) {
+        return new CompileDiagnostic(severity(diagnostic.getKind()), diagnostic.getLineNumber(),
+                diagnostic.getColumnNumber(), diagnostic.getStartPosition(), diagnostic.getEndPosition(),
+                diagnostic.getMessage(null));
+    }
+
+    private static String severity(Diagnostic.Kind kind) {
+        switch (kind) {
+            case ERROR:
+                return "error";
+            case WARNING:
+            case MANDATORY_WARNING:
+                return "warning";
+            default:
+                return "info";
+        }
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public long getColumn() {
+        return column;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public long getEndOffset() {
+        return endOffset;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,120 @@
+package com.javahub.app.compiler;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class CompileJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        CANCELLED
+    }
+
+    private final String id;
+    private final int userId;
+    private final Instant submittedAt = Instant.now();
+    private final ExecutionContext context;
+    private volatile Status status = Status.QUEUED;
+    private volatile JavaCompilerService.CompilationResult result;
+    private volatile Instant finishedAt;
+    private volatile CompletableFuture<?> future;
+
+    public CompileJob(String id, int userId) {
+        this.id = id;
+        this.userId = userId;
+        this.context = ExecutionContext.none().withUser(userId);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    ExecutionContext getContext() {
+        return context;
+    }
+
+    void setFuture(CompletableFuture<?> future) {
+        this.future = future;
+    }
+
+    synchronized boolean markRunning() {
+        if (status != Status.QUEUED) {
+            return false;
+        }
+        status = Status.RUNNING;
+        return true;
+    }
+
+    synchronized void complete(JavaCompilerService.CompilationResult result) {
+        this.result = result;
+        if (status != Status.CANCELLED) {
+            status = Status.COMPLETED;
+        }
+        finishedAt = Instant.now();
+    }
+
+    synchronized boolean cancel() {
+        if (isFinished()) {
+            return false;
+        }
+        Status previous = status;
+        status = Status.CANCELLED;
+        if (previous == Status.QUEUED) {
+            // Never started: the scheduler skips futures that are already done
+            if (future != null) {
+                future.cancel(false);
+            }
+            finishedAt = Instant.now();
+        } else {
+            context.cancel();
+        }
+        return true;
+    }
+
+    public Map<String, Object> toResponse() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", id);
+        response.put("status", status.name());
+        response.put("submittedAt", submittedAt.toString());
+        JavaCompilerService.CompilationResult current = result;
+        if (current != null) {
+            response.put("output", current.getOutput());
+            response.put("errors", current.getErrors());
+            response.put("compileMs", current.getCompileTimeMs());
+            ExecutionResult execution = current.getExecution();
+            if (execution != null) {
+                response.put("exitCode", execution.getExitCode());
+                response.put("timedOut", execution.isTimedOut());
+                response.put("truncated", execution.isTruncated());
+                response.put("runMs", execution.getWallTimeMs());
+                if (execution.getUsage() != null) {
+                    response.putAll(execution.getUsage().toMap());
+                }
+            }
+        }
+        if (finishedAt != null) {
+            response.put("finishedAt", finishedAt.toString());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,75 @@
+package com.javahub.app.compiler;
+
+import com.javahub.app.model.User;
+import com.javahub.app.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/compiler/jobs")
+public class CompileJobController {
+
+    @Autowired
+    private CompileJobService compileJobService;
+
+    @Autowired
+    private UserService userService;
+
+    private int getUserIdFromRequest(HttpServletRequest request) {
+        String username = (String) request.getAttribute("username");
+        if (username == null) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.getPrincipal() instanceof String) {
+                username = (String) authentication.getPrincipal();
+            }
+        }
+        if (username != null) {
+            Optional<User> userOpt = userService.findByUsername(username);
+            if (userOpt.isPresent()) {
+                return userOpt.get().getId();
+            }
+        }
+        return -1; // Return -1 if user not found (shouldn't happen with auth)
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> submitJob(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
+        String code = request.get("code");
+
+        if (code == null || code.trim().isEmpty()) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("errors", "Error: Code cannot be empty.");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        CompileJob job = compileJobService.submit(getUserIdFromRequest(httpRequest), code);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toResponse());
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String jobId, HttpServletRequest httpRequest) {
+        CompileJob job = compileJobService.getJob(getUserIdFromRequest(httpRequest), jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job.toResponse());
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable String jobId, HttpServletRequest httpRequest) {
+        CompileJob job = compileJobService.cancel(getUserIdFromRequest(httpRequest), jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job.toResponse());
+    }
+}
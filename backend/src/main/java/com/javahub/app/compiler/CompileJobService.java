@@ -0,0 +1,143 @@
+package com.javahub.app.compiler;
+
+import com.javahub.app.history.model.Submission;
+import com.javahub.app.history.service.SubmissionHistoryService;
+import com.javahub.app.service.DashboardService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Asynchronous compile-and-run jobs: submitted through the scheduler, polled by id, cancellable,
+// and kept around for a short while after they finish.
+@Service
+public class CompileJobService {
+
+    @Autowired
+    private JavaCompilerService compilerService;
+
+    @Autowired
+    private CompilerScheduler compilerScheduler;
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    @Autowired
+    private SubmissionHistoryService submissionHistoryService;
+
+    @Value("${compiler.jobs.result-ttl-seconds:300}")
+    private long resultTtlSeconds = 300;
+
+    @Value("${compiler.jobs.max-retained:200}")
+    private int maxRetained = 200;
+
+    private final Map<String, CompileJob> jobs = new ConcurrentHashMap<>();
+    private ScheduledExecutorService cleaner;
+
+    @PostConstruct
+    public void start() {
+        cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "compile-job-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::evictExpired, 30, 30, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        cleaner.shutdownNow();
+    }
+
+    public CompileJob submit(int userId, String code) {
+        CompileJob job = new CompileJob(UUID.randomUUID().toString(), userId);
+        job.setFuture(compilerScheduler.submitCompileThenRun(userId,
+                () -> job.markRunning() ? compilerService.prepare(code) : null,
+                prepared -> prepared != null ? run(job, code, prepared) : null));
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    public CompileJob getJob(int userId, String jobId) {
+        CompileJob job = jobs.get(jobId);
+        if (job == null || job.getUserId() != userId) {
+            return null;
+        }
+        return job;
+    }
+
+    public CompileJob cancel(int userId, String jobId) {
+        CompileJob job = getJob(userId, jobId);
+        if (job != null && job.cancel()) {
+            evictOverflow();
+        }
+        return job;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<CompileJob.Status, Long> byStatus = jobs.values().stream()
+                .collect(Collectors.groupingBy(CompileJob::getStatus, Collectors.counting()));
+        for (CompileJob.Status status : CompileJob.Status.values()) {
+            stats.put(status.name().toLowerCase(), byStatus.getOrDefault(status, 0L));
+        }
+        return stats;
+    }
+
+    private JavaCompilerService.CompilationResult run(CompileJob job, String code,
+                                                      JavaCompilerService.PreparedRun prepared) {
+        JavaCompilerService.CompilationResult result;
+        try {
+            result = compilerService.run(prepared, job.getContext());
+        } catch (RuntimeException e) {
+            // The job still has to finish, or pollers would see it running until it is evicted
+            result = new JavaCompilerService.CompilationResult("", "Error: " + e.getMessage());
+        }
+        job.complete(result);
+        evictOverflow();
+
+        if (job.getStatus() == CompileJob.Status.COMPLETED && job.getUserId() > 0
+                && result.getOutput() != null && !result.getOutput().trim().isEmpty()) {
+            dashboardService.updateLastCompiledOutput(job.getUserId(), result.getOutput());
+        }
+        // Same history as a synchronous /run; a job the user cancelled is left out
+        if (job.getStatus() == CompileJob.Status.COMPLETED) {
+            submissionHistoryService.recordRun(job.getUserId(), Submission.Kind.RUN, code,
+                    result.getOutput(), result.getErrors());
+        }
+        return result;
+    }
+
+    private void evictExpired() {
+        Instant cutoff = Instant.now().minusSeconds(resultTtlSeconds);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    // Keeps at most maxRetained finished jobs, dropping the oldest results first
+    private void evictOverflow() {
+        List<CompileJob> finished = jobs.values().stream()
+                .filter(CompileJob::isFinished)
+                .collect(Collectors.toList());
+        int excess = finished.size() - maxRetained;
+        if (excess <= 0) {
+            return;
+        }
+        finished.sort(Comparator.comparing(CompileJob::getFinishedAt));
+        for (int i = 0; i < excess; i++) {
+            jobs.remove(finished.get(i).getId());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.javahub.app.compiler;
+
+import java.util.Collections;
+import java.util.Map;
+
+public class CompiledProgram {
+    private final String mainClass;
+    private final Map<String, byte[]> classes;
+    private final String errors;
+    private final boolean cacheable;
+    private volatile Boolean deterministic;
+
+    private CompiledProgram(String mainClass, Map<String, byte[]> classes, String errors, boolean cacheable) {
+        this.mainClass = mainClass;
+        this.classes = classes;
+        this.errors = errors;
+        this.cacheable = cacheable;
+    }
+
+    public static CompiledProgram success(String mainClass, Map<String, byte[]> classes) {
+        return new CompiledProgram(mainClass, Collections.unmodifiableMap(classes), "", true);
+    }
+
+    // Compile errors reported by javac for this source
+    public static CompiledProgram failure(String mainClass, String errors) {
+        return new CompiledProgram(mainClass, Collections.emptyMap(), errors, true);
+    }
+
+    // Problems with the compiler environment rather than the source, never cached
+    public static CompiledProgram error(String mainClass, String message) {
+        return new CompiledProgram(mainClass, Collections.emptyMap(), message, false);
+    }
+
+    public boolean isSuccess() {
+        return errors.isEmpty();
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    // Computed on first use and kept with the cached program
+    public boolean isDeterministic() {
+        Boolean result = deterministic;
+        if (result == null) {
+            result = isSuccess() && DeterminismCheck.isDeterministic(classes);
+            deterministic = result;
+        }
+        return result;
+    }
+
+    public String getMainClass() {
+        return mainClass;
+    }
+
+    public Map<String, byte[]> getClasses() {
+        return classes;
+    }
+
+    public String getErrors() {
+        return errors;
+    }
+}
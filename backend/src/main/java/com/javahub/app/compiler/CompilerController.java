@@ -1,23 +1,40 @@
 package com.javahub.app.compiler;
 
+import com.javahub.app.history.model.Submission;
+import com.javahub.app.history.service.SubmissionHistoryService;
 import com.javahub.app.model.User;
 import com.javahub.app.service.DashboardService;
 import com.javahub.app.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @RestController
 @RequestMapping("/compiler")
 public class CompilerController {
 
+    private static final long STREAM_TIMEOUT_MS = 60_000;
+    private static final long DIAGNOSTICS_TIMEOUT_SECONDS = 10;
+
     @Autowired
     private JavaCompilerService compilerService;
 
@@ -27,6 +44,69 @@ public class CompilerController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private CompilationCache compilationCache;
+
+    @Autowired
+    private CompilerScheduler compilerScheduler;
+
+    @Autowired
+    private CompileJobService compileJobService;
+
+    @Autowired
+    private InProcessExecutor inProcessExecutor;
+
+    @Autowired
+    private SandboxCdsArchive sandboxCdsArchive;
+
+    @Autowired
+    private RunCoalescer runCoalescer;
+
+    @Autowired
+    private WorkspacePool workspacePool;
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private DiagnosticsService diagnosticsService;
+
+    @Autowired
+    private ResourceMonitor resourceMonitor;
+
+    @Autowired
+    private UsageAccounting usageAccounting;
+
+    @Autowired
+    private ProcessReaper processReaper;
+
+    @Autowired
+    private ReplService replService;
+
+    @Autowired
+    private InteractiveRunService interactiveRunService;
+
+    @Autowired
+    private CompletionService completionService;
+
+    @Autowired
+    private CourseSampleService courseSampleService;
+
+    @Autowired
+    private JudgeService judgeService;
+
+    @Autowired
+    private TestDataStore testDataStore;
+
+    @Autowired
+    private SubmissionHistoryService submissionHistoryService;
+
+    @Autowired
+    private SimilarityIndex similarityIndex;
+
+    @Autowired
+    private ComplexityJudge complexityJudge;
+
     private int getUserIdFromRequest(HttpServletRequest request) {
         String username = (String) request.getAttribute("username");
         if (username == null) {
@@ -55,21 +135,313 @@ public class CompilerController {
             return ResponseEntity.badRequest().body(error);
         }
 
-        JavaCompilerService.CompilationResult result = compilerService.compileAndRun(code);
+        int userId = getUserIdFromRequest(httpRequest);
+        ExecutionContext.Engine engine = ExecutionContext.Engine.parse(request.get("engine"));
+        ExecutionContext context = ExecutionContext.none().withEngine(engine).withUser(userId);
+        // Course examples pasted unchanged were already run by CourseSampleService
+        JavaCompilerService.CompilationResult result = engine == null ? courseSampleService.cachedResult(code) : null;
+        try {
+            if (result == null) {
+                result = runCoalescer.run(code, engine, () -> compilerScheduler.submitCompileThenRun(userId,
+                        () -> compilerService.prepare(code), prepared -> compilerService.run(prepared, context)).get());
+            }
+        } catch (SchedulerRejectedException e) {
+            // Answered by SchedulerRejectedHandler
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = new JavaCompilerService.CompilationResult("", "Error: Request interrupted");
+        } catch (ExecutionException e) {
+            result = new JavaCompilerService.CompilationResult("", "Error: " + e.getCause().getMessage());
+        } catch (Exception e) {
+            result = new JavaCompilerService.CompilationResult("", "Error: " + e.getMessage());
+        }
         
         // Track compiler output in dashboard (only save output, not code)
-        int userId = getUserIdFromRequest(httpRequest);
         if (userId > 0 && result.getOutput() != null && !result.getOutput().trim().isEmpty()) {
             dashboardService.updateLastCompiledOutput(userId, result.getOutput());
         }
+        submissionHistoryService.recordRun(userId, Submission.Kind.RUN, code, result.getOutput(), result.getErrors());
         
+        return ResponseEntity.ok(runResponse(result));
+    }
+
+    private static Map<String, String> runResponse(JavaCompilerService.CompilationResult result) {
         Map<String, String> response = new HashMap<>();
         response.put("output", result.getOutput());
         response.put("errors", result.getErrors());
-        
+        if (result.getExecution() != null && result.getExecution().getEngine() != null) {
+            response.put("engine", result.getExecution().getEngine().label());
+        }
+        if (result.getExecution() != null && result.getExecution().getUsage() != null) {
+            response.put("runMs", String.valueOf(result.getExecution().getWallTimeMs()));
+            result.getExecution().getUsage().toMap().forEach((key, value) -> response.put(key, String.valueOf(value)));
+        }
+        return response;
+    }
+
+    // Java examples in a course content page (source=content) or topic (source=topic)
+    @GetMapping("/samples")
+    public ResponseEntity<List<Map<String, Object>>> samples(@RequestParam String source, @RequestParam int id) {
+        List<Map<String, Object>> samples = new ArrayList<>();
+        for (CourseSampleService.Sample sample : courseSampleService.samplesFor(source, id)) {
+            samples.add(sample.toMap());
+        }
+        return ResponseEntity.ok(samples);
+    }
+
+    // "Run example": the stored result when there is one, otherwise a normal scheduled run
+    @PostMapping("/samples/{id}/run")
+    public ResponseEntity<Map<String, String>> runSample(@PathVariable String id, HttpServletRequest httpRequest) {
+        CourseSampleService.Sample sample = courseSampleService.get(id);
+        if (sample == null) {
+            return ResponseEntity.notFound().build();
+        }
+        JavaCompilerService.CompilationResult result = courseSampleService.cachedResult(sample);
+        boolean cached = result != null;
+        if (!cached) {
+            int userId = getUserIdFromRequest(httpRequest);
+            try {
+                result = compilerScheduler.submitCompileThenRun(userId, () -> compilerService.prepare(sample.getProgram()),
+                        prepared -> compilerService.run(prepared, ExecutionContext.none().withUser(userId))).get();
+                courseSampleService.completed(sample, result);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result = new JavaCompilerService.CompilationResult("", "Error: Request interrupted");
+            } catch (ExecutionException e) {
+                result = new JavaCompilerService.CompilationResult("", "Error: " + e.getCause().getMessage());
+            }
+        }
+        Map<String, String> response = runResponse(result);
+        response.put("cached", String.valueOf(cached));
+        return ResponseEntity.ok(response);
+    }
+
+    // Compile-only check for the editor: structured diagnostics, no JVM is started
+    @PostMapping("/diagnostics")
+    public ResponseEntity<Map<String, Object>> diagnostics(@RequestBody Map<String, String> request,
+                                                           HttpServletRequest httpRequest) {
+        String code = request.get("code");
+        Map<String, Object> response = new HashMap<>();
+        if (code == null) {
+            response.put("errors", "Error: Code cannot be empty.");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        int userId = getUserIdFromRequest(httpRequest);
+        long start = System.currentTimeMillis();
+        List<CompileDiagnostic> diagnostics;
+        Future<List<CompileDiagnostic>> check = null;
+        try {
+            check = diagnosticsService.submit(userId, code);
+            diagnostics = check.get(DIAGNOSTICS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            response.put("errors", "Error: Too many diagnostics requests, try again shortly.");
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(response);
+        } catch (CancellationException e) {
+            diagnostics = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            check.cancel(true);
+            diagnostics = null;
+        } catch (TimeoutException e) {
+            // Nobody is waiting for it any more
+            check.cancel(true);
+            response.put("errors", "Error: Diagnostics timed out");
+            return ResponseEntity.ok(response);
+        } catch (ExecutionException e) {
+            response.put("errors", "Error: " + e.getCause().getMessage());
+            return ResponseEntity.ok(response);
+        }
+
+        // A newer request from the same user took over; the editor only uses the latest answer
+        response.put("cancelled", diagnostics == null);
+        response.put("diagnostics", diagnostics != null ? diagnostics : List.of());
+        response.put("timeMs", System.currentTimeMillis() - start);
+        return ResponseEntity.ok(response);
+    }
+
+    // Body: {"code": "...", "offset": 42}. Runs on the request thread: it only parses, in about a millisecond
+    @PostMapping("/completions")
+    public ResponseEntity<Map<String, Object>> completions(@RequestBody Map<String, Object> request) {
+        String code = request.get("code") instanceof String ? (String) request.get("code") : null;
+        int offset = request.get("offset") instanceof Number ? ((Number) request.get("offset")).intValue() : -1;
+        String invalid = completionService.validate(code, offset);
+        if (invalid != null) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("errors", invalid);
+            return ResponseEntity.badRequest().body(error);
+        }
+        return ResponseEntity.ok(completionService.complete(code, offset));
+    }
+
+    // Body: {"projectId": optional, "files": {"com/example/Main.java": "..."}, "mainClass": "com.example.Main"}.
+    // Reusing the returned projectId recompiles only changed files and their dependents.
+    @PostMapping("/project/run")
+    public ResponseEntity<Map<String, Object>> runProject(@RequestBody Map<String, Object> request,
+                                                          HttpServletRequest httpRequest) {
+        Map<String, String> files = new HashMap<>();
+        if (request.get("files") instanceof Map) {
+            ((Map<?, ?>) request.get("files")).forEach((path, content) ->
+                    files.put(String.valueOf(path), content instanceof String ? (String) content : null));
+        }
+        String mainClass = request.get("mainClass") instanceof String ? (String) request.get("mainClass") : null;
+        String invalid = projectService.validate(files, mainClass);
+        if (invalid != null) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("output", "");
+            error.put("errors", invalid);
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        int userId = getUserIdFromRequest(httpRequest);
+        ProjectSession session = projectService.session(userId,
+                request.get("projectId") instanceof String ? (String) request.get("projectId") : null);
+        ExecutionContext context = ExecutionContext.none()
+                .withEngine(ExecutionContext.Engine.parse(
+                        request.get("engine") instanceof String ? (String) request.get("engine") : null))
+                .withUser(userId);
+        JavaCompilerService.CompilationResult result;
+        try {
+            result = compilerScheduler.submit(userId, CompilerScheduler.Lane.RUN,
+                    () -> compilerService.compileAndRunProject(session, files, mainClass, context)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = new JavaCompilerService.CompilationResult("", "Error: Request interrupted");
+        } catch (ExecutionException e) {
+            result = new JavaCompilerService.CompilationResult("", "Error: " + e.getCause().getMessage());
+        }
+
+        if (userId > 0 && result.getOutput() != null && !result.getOutput().trim().isEmpty()) {
+            dashboardService.updateLastCompiledOutput(userId, result.getOutput());
+        }
+        submissionHistoryService.recordRun(userId, Submission.Kind.PROJECT,
+                SubmissionHistoryService.projectSource(files, mainClass), result.getOutput(), result.getErrors());
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("output", result.getOutput());
+        response.put("errors", result.getErrors());
+        response.put("projectId", session.getId());
+        response.put("recompiled", session.getLastRecompiled());
+        response.put("compileTimeMs", result.getCompileTimeMs());
+        if (result.getExecution() != null && result.getExecution().getEngine() != null) {
+            response.put("engine", result.getExecution().getEngine().label());
+        }
+        if (result.getExecution() != null && result.getExecution().getUsage() != null) {
+            response.put("runMs", result.getExecution().getWallTimeMs());
+            response.putAll(result.getExecution().getUsage().toMap());
+        }
         return ResponseEntity.ok(response);
     }
-}
 
+    // Body: {"code": "int x = 2; x * 21"}. Declarations stay in the user's session for later snippets.
+    @PostMapping("/repl/eval")
+    public ResponseEntity<Map<String, Object>> replEval(@RequestBody Map<String, String> request,
+                                                        HttpServletRequest httpRequest) {
+        String code = request.get("code");
+        String invalid = replService.validate(code);
+        if (invalid != null) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("errors", invalid);
+            return ResponseEntity.status(replService.isAvailable() ? HttpStatus.BAD_REQUEST : HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(error);
+        }
+        int userId = getUserIdFromRequest(httpRequest);
+        if (userId <= 0) {
+            // Sessions are per user; anonymous callers would share one another's state
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("errors", "Error: Sign in to use the REPL."));
+        }
+
+        try {
+            return ResponseEntity.ok(compilerScheduler.submit(userId, CompilerScheduler.Lane.RUN,
+                    () -> replService.eval(userId, code)).get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.ok(Map.of("errors", "Error: Request interrupted"));
+        } catch (ExecutionException e) {
+            return ResponseEntity.ok(Map.of("errors", "Error: " + e.getCause().getMessage()));
+        }
+    }
 
+    @PostMapping("/repl/reset")
+    public ResponseEntity<Map<String, Object>> replReset(HttpServletRequest httpRequest) {
+        return ResponseEntity.ok(Map.of("reset", replService.reset(getUserIdFromRequest(httpRequest))));
+    }
+
+    @PostMapping("/run/stream")
+    public ResponseEntity<SseEmitter> streamCode(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
+        String code = request.get("code");
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
 
+        if (code == null || code.trim().isEmpty()) {
+            sendAndComplete(emitter, Map.of("errors", "Error: Code cannot be empty."));
+            return ResponseEntity.badRequest().body(emitter);
+        }
+
+        int userId = getUserIdFromRequest(httpRequest);
+        SseOutputStreamer streamer = new SseOutputStreamer(emitter, SandboxRuntime.OUTPUT_CHARSET);
+        ExecutionContext context = new ExecutionContext(streamer)
+                .withEngine(ExecutionContext.Engine.parse(request.get("engine")))
+                .withUser(userId);
+        try {
+            compilerScheduler.submitCompileThenRun(userId, () -> compilerService.prepare(code), prepared -> {
+                JavaCompilerService.CompilationResult result = compilerService.run(prepared, context);
+                streamer.finish(result);
+                if (userId > 0 && result.getOutput() != null && !result.getOutput().trim().isEmpty()) {
+                    dashboardService.updateLastCompiledOutput(userId, result.getOutput());
+                }
+                submissionHistoryService.recordRun(userId, Submission.Kind.RUN, code, result.getOutput(), result.getErrors());
+                return result;
+            });
+        } catch (SchedulerRejectedException e) {
+            sendAndComplete(emitter, e.toBody());
+            return SchedulerRejectedHandler.busy(e, emitter);
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    private void sendAndComplete(SseEmitter emitter, Map<String, Object> exit) {
+        try {
+            emitter.send(SseEmitter.event().name("exit").data(exit));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    // CPU, memory and wall time the current user's programs have used since the backend started
+    @GetMapping("/usage")
+    public ResponseEntity<Map<String, Object>> getUsage(HttpServletRequest httpRequest) {
+        return ResponseEntity.ok(usageAccounting.getUserStats(getUserIdFromRequest(httpRequest)));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("compilationCache", compilationCache.getStats());
+        stats.put("javac", compilerService.getJavacStats());
+        stats.put("scheduler", compilerScheduler.getStats());
+        stats.put("jobs", compileJobService.getStats());
+        stats.put("inProcess", inProcessExecutor.getStats());
+        stats.put("cds", sandboxCdsArchive.getStats());
+        stats.put("coalescing", runCoalescer.getStats());
+        stats.put("workspaces", workspacePool.getStats());
+        stats.put("projects", projectService.getStats());
+        stats.put("diagnostics", diagnosticsService.getStats());
+        stats.put("resources", resourceMonitor.getStats());
+        stats.put("usage", usageAccounting.getStats());
+        stats.put("reaper", processReaper.getStats());
+        stats.put("repl", replService.getStats());
+        stats.put("interactive", interactiveRunService.getStats());
+        stats.put("completion", completionService.getStats());
+        stats.put("samples", courseSampleService.getStats());
+        stats.put("judge", judgeService.getStats());
+        stats.put("testData", testDataStore.getStats());
+        stats.put("history", submissionHistoryService.getStats());
+        stats.put("similarity", similarityIndex.getStats());
+        stats.put("complexity", complexityJudge.getStats());
+        return ResponseEntity.ok(stats);
+    }
+}
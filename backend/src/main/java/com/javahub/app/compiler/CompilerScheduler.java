@@ -0,0 +1,238 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Admission control in front of JavaCompilerService: a global concurrency limit, round-robin
+// between users inside each lane, and compile-only work ahead of compile-and-run.
+@Component
+public class CompilerScheduler {
+
+    public enum Lane {
+        COMPILE,
+        RUN
+    }
+
+    @Value("${compiler.scheduler.max-concurrent:0}")
+    private int maxConcurrent = 0;
+
+    @Value("${compiler.scheduler.max-queued:50}")
+    private int maxQueued = 50;
+
+    @Value("${compiler.scheduler.max-queued-per-user:3}")
+    private int maxQueuedPerUser = 3;
+
+    // How many compile-only jobs may go ahead of a waiting run before the run lane gets a turn
+    @Value("${compiler.scheduler.compile-lane-burst:3}")
+    private int compileLaneBurst = 3;
+
+    private final Map<Lane, LaneQueue> lanes = new EnumMap<>(Lane.class);
+    private ExecutorService workers;
+    private int running;
+    private int queued;
+    private int compileBurst;
+    private long rejected;
+    private long completed;
+    private double averageServiceMs = 500;
+
+    public CompilerScheduler() {
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new LaneQueue());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (maxConcurrent <= 0) {
+            maxConcurrent = Runtime.getRuntime().availableProcessors();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(maxConcurrent, r -> {
+            Thread thread = new Thread(r, "compiler-scheduler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    public <T> CompletableFuture<T> submit(int userId, Lane lane, Callable<T> work) {
+        ScheduledTask<T> task = new ScheduledTask<>(userId, work);
+        synchronized (this) {
+            if (running < maxConcurrent && queued == 0) {
+                running++;
+                workers.execute(task);
+                return task.future;
+            }
+
+            LaneQueue laneQueue = lanes.get(lane);
+            int position = queued + 1;
+            if (queued >= maxQueued || laneQueue.queuedFor(userId) >= maxQueuedPerUser) {
+                rejected++;
+                throw new SchedulerRejectedException("Compiler is busy, please retry shortly.",
+                        position, retryAfterSeconds(position));
+            }
+            laneQueue.add(task);
+            queued++;
+        }
+        return task.future;
+    }
+
+    // Compile-and-run as two steps, the compile waiting in the compile lane and the run in the run
+    // lane. Admission is decided once, for the compile; a compiled program's run is queued however
+    // long the queue has become meanwhile. Cancelling the returned future skips whichever steps
+    // have not started yet.
+    public <C, T> CompletableFuture<T> submitCompileThenRun(int userId, Callable<C> compile, Function<C, T> run) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        submit(userId, Lane.COMPILE, () -> result.isDone() ? null : compile.call()).whenComplete((compiled, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else if (!result.isDone()) {
+                enqueue(Lane.RUN, new ScheduledTask<>(userId, () -> run.apply(compiled), result));
+            }
+        });
+        return result;
+    }
+
+    private synchronized void enqueue(Lane lane, ScheduledTask<?> task) {
+        if (running < maxConcurrent && queued == 0) {
+            running++;
+            workers.execute(task);
+            return;
+        }
+        lanes.get(lane).add(task);
+        queued++;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("running", running);
+        stats.put("queued", queued);
+        stats.put("queuedCompile", lanes.get(Lane.COMPILE).size());
+        stats.put("queuedRun", lanes.get(Lane.RUN).size());
+        stats.put("rejected", rejected);
+        stats.put("completed", completed);
+        stats.put("averageServiceMs", Math.round(averageServiceMs));
+        return stats;
+    }
+
+    private synchronized void finished(long serviceMs) {
+        running--;
+        completed++;
+        averageServiceMs = averageServiceMs * 0.9 + serviceMs * 0.1;
+        while (running < maxConcurrent && queued > 0) {
+            ScheduledTask<?> next = pollNext();
+            queued--;
+            running++;
+            workers.execute(next);
+        }
+    }
+
+    private ScheduledTask<?> pollNext() {
+        LaneQueue compile = lanes.get(Lane.COMPILE);
+        LaneQueue run = lanes.get(Lane.RUN);
+        if (!compile.isEmpty() && (run.isEmpty() || compileBurst < compileLaneBurst)) {
+            compileBurst++;
+            return compile.poll();
+        }
+        compileBurst = 0;
+        return run.poll();
+    }
+
+    private long retryAfterSeconds(int position) {
+        double waitMs = averageServiceMs * position / maxConcurrent;
+        return Math.max(1, (long) Math.ceil(waitMs / 1000));
+    }
+
+    // Per-user FIFO queues served round-robin, so one user's backlog cannot starve everyone else
+    private static class LaneQueue {
+        private final Map<Integer, ArrayDeque<ScheduledTask<?>>> perUser = new HashMap<>();
+        private final ArrayDeque<Integer> rotation = new ArrayDeque<>();
+        private int size;
+
+        void add(ScheduledTask<?> task) {
+            ArrayDeque<ScheduledTask<?>> userQueue = perUser.get(task.userId);
+            if (userQueue == null) {
+                userQueue = new ArrayDeque<>();
+                perUser.put(task.userId, userQueue);
+                rotation.addLast(task.userId);
+            }
+            userQueue.addLast(task);
+            size++;
+        }
+
+        ScheduledTask<?> poll() {
+            Integer userId = rotation.pollFirst();
+            ArrayDeque<ScheduledTask<?>> userQueue = perUser.get(userId);
+            ScheduledTask<?> task = userQueue.pollFirst();
+            if (userQueue.isEmpty()) {
+                perUser.remove(userId);
+            } else {
+                rotation.addLast(userId);
+            }
+            size--;
+            return task;
+        }
+
+        int queuedFor(int userId) {
+            ArrayDeque<ScheduledTask<?>> userQueue = perUser.get(userId);
+            return userQueue == null ? 0 : userQueue.size();
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    private class ScheduledTask<T> implements Runnable {
+        private final int userId;
+        private final Callable<T> work;
+        private final CompletableFuture<T> future;
+
+        ScheduledTask(int userId, Callable<T> work) {
+            this(userId, work, new CompletableFuture<>());
+        }
+
+        ScheduledTask(int userId, Callable<T> work, CompletableFuture<T> future) {
+            this.userId = userId;
+            this.work = work;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            try {
+                // Cancelled while it was waiting in the queue
+                if (!future.isDone()) {
+                    future.complete(work.call());
+                }
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                finished(System.currentTimeMillis() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,1016 @@
+package com.javahub.app.compiler;
+
+import com.sun.source.tree.ArrayAccessTree;
+import com.sun.source.tree.ArrayTypeTree;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.CatchTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ConditionalExpressionTree;
+import com.sun.source.tree.EnhancedForLoopTree;
+import com.sun.source.tree.ErroneousTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.ForLoopTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.ParameterizedTypeTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.PrimitiveTypeTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TryTree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.tree.WildcardTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.lang.model.element.Modifier;
+import javax.tools.JavaCompiler;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// Code completion for the editor. Each request parses the buffer (parse only: no attribution, no
+// class path lookups) with a marker identifier spliced in at the cursor, so javac's error recovery
+// leaves a MemberSelect or Identifier node there however unfinished the surrounding code is. The
+// expression left of the dot is then typed by hand from the declarations in the buffer and the
+// shared JdkSymbolIndex. That is far from javac's attribution, but it costs about a millisecond
+// where attributing the buffer on every keystroke costs a hundred.
+@Service
+public class CompletionService {
+
+    private static final Logger log = LoggerFactory.getLogger(CompletionService.class);
+
+    private static final String MARKER = "__jlhCursor";
+    private static final Pattern IMPORT_LINE = Pattern.compile("^\\s*import\\s+(static\\s+)?([\\w.]*)$");
+    private static final List<String> KEYWORDS = List.of(
+            "abstract", "boolean", "break", "byte", "case", "catch", "char", "class", "continue", "default",
+            "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "if", "implements",
+            "import", "instanceof", "int", "interface", "long", "new", "null", "private", "protected", "public",
+            "record", "return", "short", "static", "super", "switch", "this", "throw", "throws", "try", "var",
+            "void", "while", "true", "false");
+    private static final Set<String> PRIMITIVES = Set.of(
+            "boolean", "byte", "char", "short", "int", "long", "float", "double", "void", "var");
+    // Packages students use most, ranked above the rest of the JDK when a type is not imported
+    private static final List<String> COMMON_PACKAGES = List.of(
+            "java.lang", "java.util", "java.util.function", "java.util.stream", "java.io", "java.math",
+            "java.time", "java.nio.file", "java.util.concurrent", "java.text");
+    private static final int LATENCY_SAMPLES = 1024;
+    private static final String WARM_UP_CODE = "import java.util.*;\n"
+            + "public class Main {\n"
+            + "    public static void main(String[] args) {\n"
+            + "        List<String> names = new ArrayList<>();\n"
+            + "        names.\n"
+            + "    }\n"
+            + "}\n";
+
+    private enum Category { LOCAL, MEMBER, TYPE, PACKAGE, KEYWORD }
+
+    @Autowired
+    private JavaCompilerService compilerService;
+
+    @Autowired
+    private JdkSymbolIndex symbolIndex;
+
+    @Value("${compiler.completion.max-results:50}")
+    private int maxResults = 50;
+
+    @Value("${compiler.completion.max-code-bytes:262144}")
+    private int maxCodeBytes = 262144;
+
+    @Value("${compiler.completion.warm-up-runs:200}")
+    private int warmUpRuns = 200;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong withoutIndex = new AtomicLong();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long latencyCount;
+
+    // Returns an error message, or null when completion can run on the buffer
+    public String validate(String code, int offset) {
+        if (code == null) {
+            return "Error: Code cannot be empty.";
+        }
+        if (code.length() > maxCodeBytes) {
+            return "Error: Code exceeds " + maxCodeBytes + " characters.";
+        }
+        if (offset < 0 || offset > code.length()) {
+            return "Error: Offset is outside the code.";
+        }
+        return null;
+    }
+
+    // The first completions load javac's parser and run cold; doing a few while the server
+    // starts keeps that second off the first student's keystroke
+    @PostConstruct
+    public void warmUp() {
+        if (warmUpRuns <= 0) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                symbolIndex.awaitReady(60_000);
+                int offset = WARM_UP_CODE.indexOf("names.") + "names.".length();
+                for (int i = 0; i < warmUpRuns; i++) {
+                    compute(WARM_UP_CODE, offset);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.warn("Completion warm-up failed", e);
+            }
+        }, "completion-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Map<String, Object> complete(String code, int offset) {
+        long start = System.nanoTime();
+        if (!symbolIndex.isReady()) {
+            withoutIndex.incrementAndGet();
+        }
+        Map<String, Object> response = compute(code, offset);
+        long elapsed = System.nanoTime() - start;
+        response.put("timeMs", elapsed / 1_000_000.0);
+        record(elapsed);
+        return response;
+    }
+
+    private Map<String, Object> compute(String code, int offset) {
+        int replaceStart = offset;
+        while (replaceStart > 0 && Character.isJavaIdentifierPart(code.charAt(replaceStart - 1))) {
+            replaceStart--;
+        }
+        String prefix = code.substring(replaceStart, offset);
+
+        List<Candidate> candidates;
+        int lineStart = code.lastIndexOf('\n', replaceStart - 1) + 1;
+        Matcher importLine = IMPORT_LINE.matcher(code.substring(lineStart, replaceStart));
+        if (importLine.matches()) {
+            candidates = importCandidates(importLine.group(2), importLine.group(1) != null);
+        } else {
+            String patched = code.substring(0, offset) + MARKER + code.substring(offset);
+            candidates = treeCandidates(patched);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("prefix", prefix);
+        response.put("replaceStart", replaceStart);
+        response.put("replaceEnd", offset);
+        response.put("completions", rank(candidates, prefix));
+        response.put("indexReady", symbolIndex.isReady());
+        return response;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("requests", requests.get());
+        stats.put("withoutIndex", withoutIndex.get());
+        long[] recent;
+        synchronized (latencies) {
+            recent = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_SAMPLES));
+        }
+        Arrays.sort(recent);
+        stats.put("p50Ms", percentile(recent, 0.50));
+        stats.put("p99Ms", percentile(recent, 0.99));
+        stats.put("index", symbolIndex.getStats());
+        return stats;
+    }
+
+    private void record(long nanos) {
+        requests.incrementAndGet();
+        synchronized (latencies) {
+            latencies[(int) (latencyCount % LATENCY_SAMPLES)] = nanos;
+            latencyCount++;
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1);
+        return Math.round(sorted[Math.max(index, 0)] / 10_000.0) / 100.0;
+    }
+
+    // "import java.ut" or "import static java.lang.Math.ma": packages, types and static members
+    private List<Candidate> importCandidates(String written, boolean isStatic) {
+        int dot = written.lastIndexOf('.');
+        String qualifier = dot < 0 ? "" : written.substring(0, dot);
+        List<Candidate> candidates = new ArrayList<>();
+        for (String subpackage : symbolIndex.subpackages(qualifier)) {
+            String name = subpackage.substring(subpackage.lastIndexOf('.') + 1);
+            candidates.add(new Candidate(name, name, "package", subpackage, Category.PACKAGE));
+        }
+        for (JdkSymbolIndex.TypeInfo type : symbolIndex.typesInPackage(qualifier)) {
+            if (type.getQualifiedName().equals(qualifier + "." + type.getSimpleName())) {
+                candidates.add(Candidate.of(type, Category.TYPE));
+            }
+        }
+        JdkSymbolIndex.TypeInfo outer = symbolIndex.type(qualifier);
+        if (outer != null) {
+            candidates.addAll(nestedTypes(outer));
+            if (isStatic) {
+                for (JdkSymbolIndex.Member member : symbolIndex.members(outer)) {
+                    if (member.isStatic()) {
+                        candidates.add(Candidate.of(member, Category.MEMBER));
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private List<Candidate> treeCandidates(String patched) {
+        CompilationUnitTree unit = parse(patched);
+        if (unit == null) {
+            return List.of();
+        }
+        TreePath[] found = new TreePath[1];
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitIdentifier(IdentifierTree node, Void unused) {
+                if (found[0] == null && node.getName().toString().endsWith(MARKER)) {
+                    found[0] = getCurrentPath();
+                }
+                return null;
+            }
+
+            @Override
+            public Void visitMemberSelect(MemberSelectTree node, Void unused) {
+                if (found[0] == null && node.getIdentifier().toString().endsWith(MARKER)) {
+                    found[0] = getCurrentPath();
+                    return null;
+                }
+                return super.visitMemberSelect(node, unused);
+            }
+
+            // Half-typed statements end up in erroneous nodes, which the default scanner skips
+            @Override
+            public Void visitErroneous(ErroneousTree node, Void unused) {
+                return scan(node.getErrorTrees(), unused);
+            }
+        }.scan(unit, null);
+        if (found[0] == null) {
+            // Cursor in a comment, a literal or somewhere javac could not make sense of
+            return List.of();
+        }
+
+        Scope scope = new Scope(unit, found[0]);
+        Tree leaf = found[0].getLeaf();
+        if (leaf instanceof MemberSelectTree) {
+            Resolved receiver = scope.typeOf(((MemberSelectTree) leaf).getExpression());
+            return receiver != null ? scope.membersOf(receiver) : List.of();
+        }
+        return scope.inScope(isTypePosition(found[0]));
+    }
+
+    private CompilationUnitTree parse(String code) {
+        JavacService javac = compilerService.javac();
+        JavaCompiler compiler = javac.getCompiler();
+        if (compiler == null) {
+            return null;
+        }
+        JavacService.PooledFileManager pooled = javac.acquire();
+        boolean reusable = false;
+        try {
+            JavacTask task = (JavacTask) compiler.getTask(new PrintWriter(Writer.nullWriter()), pooled.get(),
+                    diagnostic -> { }, List.of("-proc:none"), null,
+                    Collections.singletonList(new MemorySourceFile("Main", code)));
+            CompilationUnitTree unit = task.parse().iterator().next();
+            reusable = true;
+            return unit;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            javac.release(pooled, reusable);
+        }
+    }
+
+    // Where only a type can go: a declaration's type, after new, in extends/implements or a cast
+    private static boolean isTypePosition(TreePath path) {
+        Tree leaf = path.getLeaf();
+        Tree parent = path.getParentPath() != null ? path.getParentPath().getLeaf() : null;
+        if (parent instanceof VariableTree) {
+            return ((VariableTree) parent).getType() == leaf;
+        }
+        if (parent instanceof NewClassTree) {
+            return ((NewClassTree) parent).getIdentifier() == leaf;
+        }
+        if (parent instanceof MethodTree) {
+            return ((MethodTree) parent).getReturnType() == leaf;
+        }
+        if (parent instanceof TypeCastTree) {
+            return ((TypeCastTree) parent).getType() == leaf;
+        }
+        return parent instanceof ClassTree || parent instanceof ParameterizedTypeTree || parent instanceof ArrayTypeTree;
+    }
+
+    private List<Map<String, Object>> rank(List<Candidate> candidates, String prefix) {
+        String lowerPrefix = prefix.toLowerCase();
+        Set<String> seen = new HashSet<>();
+        return candidates.stream()
+                .filter(candidate -> candidate.name.toLowerCase().startsWith(lowerPrefix))
+                .sorted(Comparator.comparing((Candidate candidate) -> !candidate.name.startsWith(prefix))
+                        .thenComparing(candidate -> candidate.deprecated)
+                        .thenComparing(candidate -> candidate.category)
+                        .thenComparingInt(candidate -> candidate.rank)
+                        .thenComparing(candidate -> candidate.label, String.CASE_INSENSITIVE_ORDER))
+                .filter(candidate -> seen.add(candidate.kind + " " + candidate.label))
+                .limit(maxResults)
+                .map(Candidate::toMap)
+                .collect(Collectors.toList());
+    }
+
+    private List<Candidate> nestedTypes(JdkSymbolIndex.TypeInfo outer) {
+        String prefix = outer.getQualifiedName() + ".";
+        List<Candidate> nested = new ArrayList<>();
+        for (JdkSymbolIndex.TypeInfo type : symbolIndex.typesInPackage(outer.getPackageName())) {
+            if (type.getQualifiedName().startsWith(prefix)
+                    && type.getQualifiedName().indexOf('.', prefix.length()) < 0) {
+                nested.add(Candidate.of(type, Category.TYPE));
+            }
+        }
+        return nested;
+    }
+
+    // The static type of an expression as far as it can be worked out without attribution: a JDK
+    // type, a class declared in the buffer, or a package when the expression is part of a name
+    private static final class Resolved {
+
+        private final JdkSymbolIndex.TypeInfo jdk;
+        private final ClassTree source;
+        private final String primitive;
+        private final List<Resolved> arguments;
+        private final int dimensions;
+        private final boolean isStatic;
+        private final String packageName;
+
+        private Resolved(JdkSymbolIndex.TypeInfo jdk, ClassTree source, String primitive, List<Resolved> arguments,
+                         int dimensions, boolean isStatic, String packageName) {
+            this.jdk = jdk;
+            this.source = source;
+            this.primitive = primitive;
+            this.arguments = arguments;
+            this.dimensions = dimensions;
+            this.isStatic = isStatic;
+            this.packageName = packageName;
+        }
+
+        static Resolved packageNamed(String name) {
+            return new Resolved(null, null, null, List.of(), 0, true, name);
+        }
+
+        Resolved instance() {
+            return new Resolved(jdk, source, primitive, arguments, dimensions, false, null);
+        }
+
+        Resolved withArguments(List<Resolved> typeArguments) {
+            return new Resolved(jdk, source, primitive, typeArguments, dimensions, isStatic, null);
+        }
+
+        Resolved withDimensions(int count) {
+            if (count < 0) {
+                return null;
+            }
+            return new Resolved(jdk, source, primitive, arguments, count, isStatic, null);
+        }
+    }
+
+    // Everything visible at the cursor: declarations of the enclosing blocks, methods and classes,
+    // the buffer's imports and the JDK index
+    private final class Scope {
+
+        private final TreePath path;
+        private final Map<String, VariableTree> locals = new LinkedHashMap<>();
+        private final List<ClassTree> enclosing = new ArrayList<>();
+        private final Map<String, ClassTree> sourceClasses = new HashMap<>();
+        private final Map<String, String> singleImports = new HashMap<>();
+        private final List<String> starImports = new ArrayList<>();
+
+        Scope(CompilationUnitTree unit, TreePath path) {
+            this.path = path;
+            for (ImportTree importTree : unit.getImports()) {
+                String name = importTree.getQualifiedIdentifier().toString();
+                if (importTree.isStatic()) {
+                    continue;
+                }
+                if (name.endsWith(".*")) {
+                    starImports.add(name.substring(0, name.length() - 2));
+                } else {
+                    singleImports.put(name.substring(name.lastIndexOf('.') + 1), name);
+                }
+            }
+            new TreePathScanner<Void, Void>() {
+                @Override
+                public Void visitClass(ClassTree node, Void unused) {
+                    sourceClasses.putIfAbsent(node.getSimpleName().toString(), node);
+                    return super.visitClass(node, unused);
+                }
+            }.scan(unit, null);
+            collectLocals();
+        }
+
+        // Innermost declarations win, so walk outwards and keep the first of each name
+        private void collectLocals() {
+            Tree child = path.getLeaf();
+            for (TreePath current = path.getParentPath(); current != null; current = current.getParentPath()) {
+                Tree node = current.getLeaf();
+                if (node instanceof BlockTree) {
+                    for (StatementTree statement : ((BlockTree) node).getStatements()) {
+                        if (statement == child) {
+                            break;
+                        }
+                        if (statement instanceof VariableTree) {
+                            declare((VariableTree) statement);
+                        }
+                    }
+                } else if (node instanceof MethodTree) {
+                    ((MethodTree) node).getParameters().forEach(this::declare);
+                } else if (node instanceof LambdaExpressionTree) {
+                    ((LambdaExpressionTree) node).getParameters().forEach(this::declare);
+                } else if (node instanceof ForLoopTree) {
+                    for (StatementTree statement : ((ForLoopTree) node).getInitializer()) {
+                        if (statement instanceof VariableTree) {
+                            declare((VariableTree) statement);
+                        }
+                    }
+                } else if (node instanceof EnhancedForLoopTree) {
+                    declare(((EnhancedForLoopTree) node).getVariable());
+                } else if (node instanceof CatchTree) {
+                    declare(((CatchTree) node).getParameter());
+                } else if (node instanceof TryTree) {
+                    for (Tree resource : ((TryTree) node).getResources()) {
+                        if (resource instanceof VariableTree) {
+                            declare((VariableTree) resource);
+                        }
+                    }
+                } else if (node instanceof ClassTree) {
+                    enclosing.add((ClassTree) node);
+                }
+                child = node;
+            }
+        }
+
+        private void declare(VariableTree variable) {
+            String name = variable.getName().toString();
+            if (!name.contains(MARKER)) {
+                locals.putIfAbsent(name, variable);
+            }
+        }
+
+        // Identifier at the cursor: locals, members of the enclosing classes, types and keywords
+        List<Candidate> inScope(boolean typesOnly) {
+            List<Candidate> candidates = new ArrayList<>();
+            if (!typesOnly) {
+                for (VariableTree variable : locals.values()) {
+                    candidates.add(new Candidate(variable.getName().toString(), variable.getName().toString(),
+                            "variable", display(variable.getType()), Category.LOCAL));
+                }
+                for (ClassTree owner : enclosing) {
+                    for (Candidate member : sourceMembers(owner, null, new HashSet<>())) {
+                        if (member.category != Category.TYPE) {
+                            candidates.add(member);
+                        }
+                    }
+                }
+                for (String keyword : KEYWORDS) {
+                    candidates.add(new Candidate(keyword, keyword, "keyword", null, Category.KEYWORD));
+                }
+            } else {
+                // A class member being declared may still turn out to start with a modifier
+                Tree parent = path.getParentPath().getLeaf();
+                boolean member = parent instanceof VariableTree && path.getParentPath().getParentPath() != null
+                        && path.getParentPath().getParentPath().getLeaf() instanceof ClassTree;
+                for (String keyword : member ? KEYWORDS : PRIMITIVES) {
+                    candidates.add(new Candidate(keyword, keyword, "keyword", null, Category.KEYWORD));
+                }
+            }
+            for (ClassTree type : sourceClasses.values()) {
+                String name = type.getSimpleName().toString();
+                candidates.add(new Candidate(name, name, kindOf(type), "this file", Category.TYPE));
+            }
+            String prefix = identifierPrefix();
+            if (!prefix.isEmpty()) {
+                // All of them: ranking, not index order, decides which few are shown
+                for (JdkSymbolIndex.TypeInfo type : symbolIndex.typesByPrefix(prefix, Integer.MAX_VALUE)) {
+                    candidates.add(typeCandidate(type));
+                }
+            }
+            return candidates;
+        }
+
+        private String identifierPrefix() {
+            String name = path.getLeaf() instanceof IdentifierTree
+                    ? ((IdentifierTree) path.getLeaf()).getName().toString() : "";
+            return name.endsWith(MARKER) ? name.substring(0, name.length() - MARKER.length()) : "";
+        }
+
+        // Types that are not imported yet say what import they need
+        private Candidate typeCandidate(JdkSymbolIndex.TypeInfo type) {
+            Candidate candidate = Candidate.of(type, Category.TYPE);
+            boolean imported = type.getQualifiedName().equals(singleImports.get(type.getSimpleName()))
+                    || starImports.contains(type.getPackageName())
+                    || type.getQualifiedName().equals("java.lang." + type.getSimpleName());
+            int common = COMMON_PACKAGES.indexOf(type.getPackageName());
+            candidate.rank = imported ? 0 : common >= 0 ? 1 + common : 1 + COMMON_PACKAGES.size();
+            if (!imported) {
+                candidate.importName = type.getQualifiedName();
+            }
+            return candidate;
+        }
+
+        // After a dot: what the receiver offers
+        List<Candidate> membersOf(Resolved receiver) {
+            List<Candidate> candidates = new ArrayList<>();
+            if (receiver.packageName != null) {
+                for (String subpackage : symbolIndex.subpackages(receiver.packageName)) {
+                    String name = subpackage.substring(subpackage.lastIndexOf('.') + 1);
+                    candidates.add(new Candidate(name, name, "package", subpackage, Category.PACKAGE));
+                }
+                for (JdkSymbolIndex.TypeInfo type : symbolIndex.typesInPackage(receiver.packageName)) {
+                    if (type.getQualifiedName().equals(receiver.packageName + "." + type.getSimpleName())) {
+                        candidates.add(Candidate.of(type, Category.TYPE));
+                    }
+                }
+                return candidates;
+            }
+            if (receiver.dimensions > 0) {
+                if (!receiver.isStatic) {
+                    candidates.add(new Candidate("length", "length", "field", "int", Category.MEMBER));
+                    candidates.addAll(jdkMembers(symbolIndex.type("java.lang.Object"), false, false));
+                }
+                return candidates;
+            }
+            if (receiver.isStatic) {
+                candidates.add(new Candidate("class", "class", "keyword", null, Category.KEYWORD));
+            }
+            if (receiver.source != null) {
+                for (Candidate member : sourceMembers(receiver.source, receiver.isStatic, new HashSet<>())) {
+                    candidates.add(member);
+                }
+            } else if (receiver.jdk != null) {
+                candidates.addAll(jdkMembers(receiver.jdk, receiver.isStatic, false));
+                if (receiver.isStatic) {
+                    candidates.addAll(nestedTypes(receiver.jdk));
+                }
+            }
+            return candidates;
+        }
+
+        // Protected members only count when a class in the buffer inherits them; what every
+        // object has (wait, notify, ...) goes below the type's own members
+        private List<Candidate> jdkMembers(JdkSymbolIndex.TypeInfo type, boolean statics, boolean inherited) {
+            List<Candidate> candidates = new ArrayList<>();
+            if (type == null) {
+                return candidates;
+            }
+            for (JdkSymbolIndex.Member member : symbolIndex.members(type)) {
+                if (member.isStatic() == statics && (inherited || !member.isProtected())) {
+                    Candidate candidate = Candidate.of(member, Category.MEMBER);
+                    candidate.rank = member.getDeclaringType().equals("java.lang.Object") ? 1 : 0;
+                    candidates.add(candidate);
+                }
+            }
+            return candidates;
+        }
+
+        // Members of a class in the buffer plus what it inherits; statics null means both kinds
+        private List<Candidate> sourceMembers(ClassTree type, Boolean statics, Set<ClassTree> seen) {
+            List<Candidate> candidates = new ArrayList<>();
+            if (!seen.add(type)) {
+                return candidates;
+            }
+            for (Tree member : type.getMembers()) {
+                if (member instanceof VariableTree) {
+                    VariableTree field = (VariableTree) member;
+                    if (matches(statics, isStatic(field.getModifiers().getFlags(), type, true))) {
+                        candidates.add(new Candidate(field.getName().toString(), field.getName().toString(),
+                                "field", display(field.getType()), Category.MEMBER));
+                    }
+                } else if (member instanceof MethodTree) {
+                    MethodTree method = (MethodTree) member;
+                    String name = method.getName().toString();
+                    if (name.equals("<init>") || !matches(statics, isStatic(method.getModifiers().getFlags(), type, false))) {
+                        continue;
+                    }
+                    String parameters = method.getParameters().stream()
+                            .map(parameter -> display(parameter.getType()))
+                            .collect(Collectors.joining(", "));
+                    candidates.add(new Candidate(name, name + "(" + parameters + ")", "method",
+                            display(method.getReturnType()), Category.MEMBER));
+                } else if (member instanceof ClassTree && !Boolean.FALSE.equals(statics)) {
+                    String name = ((ClassTree) member).getSimpleName().toString();
+                    candidates.add(new Candidate(name, name, kindOf((ClassTree) member), "this file", Category.TYPE));
+                }
+            }
+            List<Tree> supertypes = new ArrayList<>(type.getImplementsClause());
+            if (type.getExtendsClause() != null) {
+                supertypes.add(0, type.getExtendsClause());
+            }
+            boolean extendsSomething = false;
+            for (Tree supertype : supertypes) {
+                Resolved resolved = resolveType(supertype);
+                if (resolved == null) {
+                    continue;
+                }
+                extendsSomething |= supertype == type.getExtendsClause();
+                if (resolved.source != null) {
+                    candidates.addAll(sourceMembers(resolved.source, statics, seen));
+                } else if (resolved.jdk != null) {
+                    if (statics == null || statics) {
+                        candidates.addAll(jdkMembers(resolved.jdk, true, true));
+                    }
+                    if (statics == null || !statics) {
+                        candidates.addAll(jdkMembers(resolved.jdk, false, true));
+                    }
+                }
+            }
+            if (!extendsSomething && (statics == null || !statics)) {
+                candidates.addAll(jdkMembers(symbolIndex.type("java.lang.Object"), false, true));
+            }
+            return candidates;
+        }
+
+        private boolean matches(Boolean statics, boolean isStatic) {
+            return statics == null || statics == isStatic;
+        }
+
+        // Interface fields are implicitly static, interface methods are not
+        private boolean isStatic(Set<Modifier> flags, ClassTree owner, boolean field) {
+            return flags.contains(Modifier.STATIC) || field && owner.getKind() == Tree.Kind.INTERFACE;
+        }
+
+        Resolved typeOf(ExpressionTree expression) {
+            if (expression instanceof ParenthesizedTree) {
+                return typeOf(((ParenthesizedTree) expression).getExpression());
+            }
+            if (expression instanceof LiteralTree) {
+                return ((LiteralTree) expression).getValue() instanceof String ? jdkType("java.lang.String", false) : null;
+            }
+            if (expression instanceof NewClassTree) {
+                Resolved created = resolveType(((NewClassTree) expression).getIdentifier());
+                return created != null ? created.instance() : null;
+            }
+            if (expression instanceof NewArrayTree) {
+                NewArrayTree array = (NewArrayTree) expression;
+                Resolved element = array.getType() != null ? resolveType(array.getType()) : null;
+                int dimensions = Math.max(array.getDimensions().size(), 1);
+                return element != null ? element.instance().withDimensions(element.dimensions + dimensions) : null;
+            }
+            if (expression instanceof TypeCastTree) {
+                Resolved cast = resolveType(((TypeCastTree) expression).getType());
+                return cast != null ? cast.instance() : null;
+            }
+            if (expression instanceof ArrayAccessTree) {
+                Resolved array = typeOf(((ArrayAccessTree) expression).getExpression());
+                return array != null ? array.withDimensions(array.dimensions - 1) : null;
+            }
+            if (expression instanceof ConditionalExpressionTree) {
+                return typeOf(((ConditionalExpressionTree) expression).getTrueExpression());
+            }
+            if (expression instanceof IdentifierTree) {
+                return identifierType(((IdentifierTree) expression).getName().toString());
+            }
+            if (expression instanceof MemberSelectTree) {
+                MemberSelectTree select = (MemberSelectTree) expression;
+                Resolved owner = typeOf(select.getExpression());
+                return owner != null ? memberType(owner, select.getIdentifier().toString(), false, -1) : null;
+            }
+            if (expression instanceof MethodInvocationTree) {
+                MethodInvocationTree invocation = (MethodInvocationTree) expression;
+                ExpressionTree select = invocation.getMethodSelect();
+                int arguments = invocation.getArguments().size();
+                if (select instanceof MemberSelectTree) {
+                    Resolved owner = typeOf(((MemberSelectTree) select).getExpression());
+                    return owner != null
+                            ? memberType(owner, ((MemberSelectTree) select).getIdentifier().toString(), true, arguments)
+                            : null;
+                }
+                if (select instanceof IdentifierTree) {
+                    String name = ((IdentifierTree) select).getName().toString();
+                    for (ClassTree owner : enclosing) {
+                        Resolved result = memberType(new Resolved(null, owner, null, List.of(), 0, false, null),
+                                name, true, arguments);
+                        if (result != null) {
+                            return result;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        private Resolved identifierType(String name) {
+            if (name.equals("this") || name.equals("super")) {
+                if (enclosing.isEmpty()) {
+                    return null;
+                }
+                ClassTree owner = enclosing.get(0);
+                if (name.equals("super")) {
+                    Resolved superclass = owner.getExtendsClause() != null ? resolveType(owner.getExtendsClause())
+                            : jdkType("java.lang.Object", true);
+                    return superclass != null ? superclass.instance() : null;
+                }
+                return new Resolved(null, owner, null, List.of(), 0, false, null);
+            }
+            VariableTree local = locals.get(name);
+            if (local != null) {
+                return variableType(local);
+            }
+            for (ClassTree owner : enclosing) {
+                Resolved field = memberType(new Resolved(null, owner, null, List.of(), 0, false, null), name, false, -1);
+                if (field != null) {
+                    return field;
+                }
+            }
+            Resolved type = resolveSimpleType(name);
+            if (type != null) {
+                return type;
+            }
+            return symbolIndex.isPackage(name) ? Resolved.packageNamed(name) : null;
+        }
+
+        private Resolved variableType(VariableTree variable) {
+            if (variable.getType() != null) {
+                Resolved declared = resolveType(variable.getType());
+                return declared != null ? declared.instance() : null;
+            }
+            // var: the initializer's type, or the element type of the loop's collection
+            if (variable.getInitializer() != null) {
+                return typeOf(variable.getInitializer());
+            }
+            for (Tree node : path) {
+                if (node instanceof EnhancedForLoopTree && ((EnhancedForLoopTree) node).getVariable() == variable) {
+                    Resolved iterated = typeOf(((EnhancedForLoopTree) node).getExpression());
+                    if (iterated == null) {
+                        return null;
+                    }
+                    if (iterated.dimensions > 0) {
+                        return iterated.withDimensions(iterated.dimensions - 1);
+                    }
+                    return iterated.arguments.isEmpty() ? null : iterated.arguments.get(0);
+                }
+            }
+            return null;
+        }
+
+        // Type of a field (method false) or of a call's result, looked up on the owner
+        private Resolved memberType(Resolved owner, String name, boolean method, int arguments) {
+            if (owner.packageName != null) {
+                if (method) {
+                    return null;
+                }
+                String qualified = owner.packageName + "." + name;
+                Resolved type = jdkType(qualified, true);
+                return type != null ? type : symbolIndex.isPackage(qualified) ? Resolved.packageNamed(qualified) : null;
+            }
+            if (owner.dimensions > 0) {
+                return null;
+            }
+            if (owner.source != null) {
+                return sourceMemberType(owner.source, owner.isStatic, name, method, arguments, new HashSet<>());
+            }
+            if (owner.jdk == null) {
+                return null;
+            }
+            if (!method && owner.isStatic) {
+                Resolved nested = jdkType(owner.jdk.getQualifiedName() + "." + name, true);
+                if (nested != null) {
+                    return nested;
+                }
+            }
+            JdkSymbolIndex.Member best = null;
+            for (JdkSymbolIndex.Member member : symbolIndex.members(owner.jdk)) {
+                if (!member.getName().equals(name) || (member.getKind() == JdkSymbolIndex.Member.Kind.METHOD) != method) {
+                    continue;
+                }
+                if (best == null || (arguments >= 0 && member.getParameters() != null
+                        && member.getParameters().size() == arguments)) {
+                    best = member;
+                }
+            }
+            return best != null ? jdkMemberType(owner, best) : null;
+        }
+
+        // A bare type variable such as E in List<E>.get is replaced by the receiver's type argument
+        // of that name; supertypes that rename their variables are not followed
+        private Resolved jdkMemberType(Resolved owner, JdkSymbolIndex.Member member) {
+            if (member.getTypeVariable() != null) {
+                int index = owner.jdk.getTypeParameters().indexOf(member.getTypeVariable());
+                if (index >= 0 && index < owner.arguments.size()) {
+                    return owner.arguments.get(index);
+                }
+            }
+            String type = member.getType();
+            int dimensions = 0;
+            while (type.endsWith("[]")) {
+                type = type.substring(0, type.length() - 2);
+                dimensions++;
+            }
+            if (PRIMITIVES.contains(type)) {
+                return dimensions > 0 ? new Resolved(null, null, type, List.of(), dimensions, false, null) : null;
+            }
+            Resolved resolved = jdkType(type, false);
+            return resolved != null ? resolved.withDimensions(dimensions) : null;
+        }
+
+        private Resolved sourceMemberType(ClassTree type, boolean statics, String name, boolean method, int arguments,
+                                          Set<ClassTree> seen) {
+            if (!seen.add(type)) {
+                return null;
+            }
+            for (Tree member : type.getMembers()) {
+                if (!method && member instanceof VariableTree && ((VariableTree) member).getName().contentEquals(name)) {
+                    return variableType((VariableTree) member);
+                }
+                if (method && member instanceof MethodTree && ((MethodTree) member).getName().contentEquals(name)
+                        && (arguments < 0 || ((MethodTree) member).getParameters().size() == arguments)) {
+                    Tree returnType = ((MethodTree) member).getReturnType();
+                    Resolved resolved = returnType != null ? resolveType(returnType) : null;
+                    return resolved != null ? resolved.instance() : null;
+                }
+                if (!method && statics && member instanceof ClassTree
+                        && ((ClassTree) member).getSimpleName().contentEquals(name)) {
+                    return new Resolved(null, (ClassTree) member, null, List.of(), 0, true, null);
+                }
+            }
+            Tree extendsClause = type.getExtendsClause();
+            Resolved superclass = extendsClause != null ? resolveType(extendsClause) : jdkType("java.lang.Object", true);
+            if (superclass == null) {
+                return null;
+            }
+            Resolved owner = statics ? superclass : superclass.instance();
+            if (owner.source != null) {
+                return sourceMemberType(owner.source, statics, name, method, arguments, seen);
+            }
+            return memberType(owner, name, method, arguments);
+        }
+
+        // A type as written in a declaration; always the static form, callers take instance()
+        Resolved resolveType(Tree type) {
+            if (type instanceof PrimitiveTypeTree) {
+                return new Resolved(null, null, type.toString(), List.of(), 0, true, null);
+            }
+            if (type instanceof ArrayTypeTree) {
+                Resolved element = resolveType(((ArrayTypeTree) type).getType());
+                return element != null ? element.withDimensions(element.dimensions + 1) : null;
+            }
+            if (type instanceof ParameterizedTypeTree) {
+                ParameterizedTypeTree parameterized = (ParameterizedTypeTree) type;
+                Resolved base = resolveType(parameterized.getType());
+                if (base == null) {
+                    return null;
+                }
+                List<Resolved> arguments = new ArrayList<>();
+                for (Tree argument : parameterized.getTypeArguments()) {
+                    Resolved resolved = resolveType(argument);
+                    arguments.add(resolved != null ? resolved.instance() : jdkType("java.lang.Object", false));
+                }
+                return base.withArguments(arguments);
+            }
+            if (type instanceof WildcardTree) {
+                Tree bound = ((WildcardTree) type).getBound();
+                return bound != null && type.getKind() == Tree.Kind.EXTENDS_WILDCARD ? resolveType(bound)
+                        : jdkType("java.lang.Object", true);
+            }
+            if (type instanceof IdentifierTree) {
+                return resolveSimpleType(((IdentifierTree) type).getName().toString());
+            }
+            if (type instanceof MemberSelectTree) {
+                Resolved qualified = jdkType(type.toString(), true);
+                if (qualified != null) {
+                    return qualified;
+                }
+                Resolved owner = resolveType(((MemberSelectTree) type).getExpression());
+                return owner != null ? memberType(owner, ((MemberSelectTree) type).getIdentifier().toString(), false, -1)
+                        : null;
+            }
+            return null;
+        }
+
+        // Same order as javac: the file's own classes, single-type imports, java.lang, on-demand imports
+        private Resolved resolveSimpleType(String name) {
+            ClassTree source = sourceClasses.get(name);
+            if (source != null) {
+                return new Resolved(null, source, null, List.of(), 0, true, null);
+            }
+            String imported = singleImports.get(name);
+            if (imported != null) {
+                return jdkType(imported, true);
+            }
+            Resolved lang = jdkType("java.lang." + name, true);
+            if (lang != null) {
+                return lang;
+            }
+            for (String starImport : starImports) {
+                Resolved type = jdkType(starImport + "." + name, true);
+                if (type != null) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+        private Resolved jdkType(String qualifiedName, boolean isStatic) {
+            JdkSymbolIndex.TypeInfo type = symbolIndex.type(qualifiedName);
+            return type != null ? new Resolved(type, null, null, List.of(), 0, isStatic, null) : null;
+        }
+
+        private String display(Tree type) {
+            return type != null ? type.toString() : "var";
+        }
+
+        private String kindOf(ClassTree type) {
+            switch (type.getKind()) {
+                case INTERFACE: return "interface";
+                case ENUM: return "enum";
+                case ANNOTATION_TYPE: return "annotation";
+                case RECORD: return "record";
+                default: return "class";
+            }
+        }
+    }
+
+    private static final class Candidate {
+
+        private final String name;
+        private final String label;
+        private final String kind;
+        private final String detail;
+        private final Category category;
+        private boolean deprecated;
+        private int rank;
+        private String importName;
+
+        Candidate(String name, String label, String kind, String detail, Category category) {
+            this.name = name;
+            this.label = label;
+            this.kind = kind;
+            this.detail = detail;
+            this.category = category;
+        }
+
+        static Candidate of(JdkSymbolIndex.TypeInfo type, Category category) {
+            Candidate candidate = new Candidate(type.getSimpleName(), type.getSimpleName(),
+                    type.getKind().name().toLowerCase(), type.getQualifiedName(), category);
+            candidate.deprecated = type.isDeprecated();
+            return candidate;
+        }
+
+        static Candidate of(JdkSymbolIndex.Member member, Category category) {
+            boolean method = member.getKind() == JdkSymbolIndex.Member.Kind.METHOD;
+            Candidate candidate = new Candidate(member.getName(),
+                    method ? member.getName() + "(" + String.join(", ", member.getParameters()) + ")" : member.getName(),
+                    method ? "method" : "field", member.getTypeDisplay(), category);
+            candidate.deprecated = member.isDeprecated();
+            return candidate;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("label", label);
+            map.put("insertText", name);
+            map.put("kind", kind);
+            if (detail != null) {
+                map.put("detail", detail);
+            }
+            if (deprecated) {
+                map.put("deprecated", true);
+            }
+            if (importName != null) {
+                map.put("import", importName);
+            }
+            return map;
+        }
+    }
+}
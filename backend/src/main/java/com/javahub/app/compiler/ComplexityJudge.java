@@ -0,0 +1,326 @@
+package com.javahub.app.compiler;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+// Estimates how a correct solution's running time grows. Generated inputs of increasing size run in
+// one sandbox JVM that keeps the program's classes loaded between cases (SandboxJudge's
+// REUSE_CLASSES), each size a few times unmeasured so the JIT has compiled the hot loops before the
+// measured runs. The fastest measured run per size is fitted against the usual complexity classes,
+// and the slope of log(time) over log(size) at the large end decides whether the solution grows
+// faster than the question allows. Both have to say so before a solution is rejected; either one
+// alone is too easily fooled by noise at these run times.
+//
+// What a reused class remembers from an earlier case can change what it prints, so a timing run
+// never decides whether the solution is correct. Every size that was timed also runs once in a fresh
+// classloader, as JudgeService.judge runs cases, and only those runs fail a solution. A program that
+// passes fresh but not with its classes reused is timed again without reuse.
+@Service
+public class ComplexityJudge {
+
+    public enum Complexity {
+        CONSTANT("O(1)", 0),
+        LOGARITHMIC("O(log n)", 0.15),
+        SQUARE_ROOT("O(sqrt n)", 0.5),
+        LINEAR("O(n)", 1),
+        LINEARITHMIC("O(n log n)", 1.1),
+        QUADRATIC("O(n^2)", 2),
+        CUBIC("O(n^3)", 3),
+        EXPONENTIAL("O(2^n)", Double.POSITIVE_INFINITY);
+
+        private final String label;
+        // Slope of log(time) over log(size) expected for the class at the sizes judged
+        private final double exponent;
+
+        Complexity(String label, double exponent) {
+            this.label = label;
+            this.exponent = exponent;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        double grow(double n) {
+            switch (this) {
+                case CONSTANT:
+                    return 1;
+                case LOGARITHMIC:
+                    return Math.log(n);
+                case SQUARE_ROOT:
+                    return Math.sqrt(n);
+                case LINEAR:
+                    return n;
+                case LINEARITHMIC:
+                    return n * Math.log(n);
+                case QUADRATIC:
+                    return n * n;
+                case CUBIC:
+                    return n * n * n;
+                default:
+                    return Math.pow(2, Math.min(n, 1000));
+            }
+        }
+
+        // Accepts the labels above written loosely: "O(N log N)", "n^2", "O(n²)"
+        public static Complexity parse(String text) {
+            if (text == null) {
+                return null;
+            }
+            String wanted = normalize(text);
+            for (Complexity complexity : values()) {
+                if (normalize(complexity.label).equals(wanted)) {
+                    return complexity;
+                }
+            }
+            return null;
+        }
+
+        private static String normalize(String text) {
+            String normalized = text.toLowerCase(Locale.ROOT).replace(" ", "").replace("²", "^2").replace("³", "^3")
+                    .replace("√n", "sqrtn").replace("sqrt(n)", "sqrtn");
+            if (normalized.startsWith("o(") && normalized.endsWith(")")) {
+                normalized = normalized.substring(2, normalized.length() - 1);
+            }
+            return normalized;
+        }
+    }
+
+    // Timings under this are mostly the cost of calling main; below it all sizes look the same
+    private static final long NOISE_FLOOR_NANOS = 20_000;
+    private static final int MIN_POINTS = 4;
+
+    @Autowired
+    private JavaCompilerService compilerService;
+
+    @Autowired
+    private JudgeService judgeService;
+
+    @Value("${compiler.complexity.case-millis:1000}")
+    private long caseMillis = 1000;
+
+    @Value("${compiler.complexity.total-seconds:30}")
+    private long totalSeconds = 30;
+
+    @Value("${compiler.complexity.warmup-runs:3}")
+    private int warmupRuns = 3;
+
+    @Value("${compiler.complexity.measured-runs:5}")
+    private int measuredRuns = 5;
+
+    // Sizes above the first one slower than this are not tried; they would only burn the budget
+    @Value("${compiler.complexity.slow-millis:250}")
+    private long slowMillis = 250;
+
+    // How far above the allowed class's exponent the measured slope may go
+    @Value("${compiler.complexity.tolerance:0.4}")
+    private double tolerance = 0.4;
+
+    private final AtomicLong judged = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public Map<String, Object> judge(int userId, String code, int[] sizes, IntFunction<JudgeService.TestCase> generator,
+                                     Complexity bound) {
+        judged.incrementAndGet();
+        long start = System.currentTimeMillis();
+        Map<String, Object> response = new HashMap<>();
+        response.put("expectedComplexity", bound.label());
+        String className = compilerService.extractClassName(code);
+        if (className == null) {
+            response.put("verdict", JudgeService.Verdict.COMPILE_ERROR);
+            response.put("compileErrors", "Error: Could not find a public class in the code.");
+            return response;
+        }
+        CompiledProgram program = compilerService.compileInMemory(className, code);
+        long compileTimeMs = System.currentTimeMillis() - start;
+        response.put("compileTimeMs", compileTimeMs);
+        if (!program.isSuccess()) {
+            response.put("verdict", JudgeService.Verdict.COMPILE_ERROR);
+            response.put("compileErrors", program.getErrors());
+            return response;
+        }
+
+        long deadline = start + totalSeconds * 1000;
+        int runsPerSize = warmupRuns + measuredRuns;
+        List<JudgeService.TestCase> generated = new ArrayList<>();
+        List<JudgeService.TestCase> cases = new ArrayList<>();
+        for (int size : sizes) {
+            JudgeService.TestCase testCase = generator.apply(size);
+            generated.add(testCase);
+            for (int i = 0; i < runsPerSize; i++) {
+                cases.add(testCase);
+            }
+        }
+        boolean reuseClasses = true;
+        JudgeService.Judging timing = judgeService.run(program, cases, true, caseMillis, deadline,
+                reuseClasses, slowMillis * 1_000_000);
+        int launches = timing.launches();
+
+        // One fresh run of each size the timing run got to, including the one it stopped on. When it
+        // failed, the sizes after that are checked too, up to the first slow one, since they may have
+        // to be timed again.
+        int reached = 0;
+        long stopAboveNanos = Long.MAX_VALUE;
+        if (timedSizes(timing, sizes.length, runsPerSize, true) < sizes.length) {
+            reached = sizes.length;
+            stopAboveNanos = slowMillis * 1_000_000;
+        } else {
+            while (reached < sizes.length && timing.verdict(reached * runsPerSize) != null) {
+                reached++;
+            }
+        }
+        JudgeService.Judging check = judgeService.run(program, generated.subList(0, reached), true, caseMillis,
+                deadline, false, stopAboveNanos);
+        launches += check.launches();
+        int checked = 0;
+        for (; checked < reached; checked++) {
+            JudgeService.Verdict verdict = check.verdict(checked);
+            if (verdict == null) {
+                break;
+            }
+            if (verdict != JudgeService.Verdict.ACCEPTED) {
+                // Wrong, crashed or over the limit on some size: no point in timing it
+                response.put("verdict", verdict);
+                response.put("failedSize", sizes[checked]);
+                String errors = check.errors(checked);
+                if (!errors.isEmpty()) {
+                    response.put("errors", errors);
+                }
+                response.put("launches", launches);
+                response.put("runMs", System.currentTimeMillis() - start - compileTimeMs);
+                return response;
+            }
+        }
+
+        if (timedSizes(timing, checked, runsPerSize, true) < checked) {
+            // Correct on its own but not with its classes reused: time it the way it was checked
+            reuseClasses = false;
+            timing = judgeService.run(program, cases.subList(0, checked * runsPerSize), true, caseMillis, deadline,
+                    reuseClasses, slowMillis * 1_000_000);
+            launches += timing.launches();
+        }
+        response.put("classesReused", reuseClasses);
+        response.put("launches", launches);
+        response.put("runMs", System.currentTimeMillis() - start - compileTimeMs);
+
+        List<double[]> points = new ArrayList<>();
+        List<Map<String, Object>> measured = new ArrayList<>();
+        int timed = timedSizes(timing, checked, runsPerSize, false);
+        for (int s = 0; s < timed; s++) {
+            long[] times = new long[measuredRuns];
+            for (int i = 0; i < measuredRuns; i++) {
+                times[i] = timing.elapsedNanos(s * runsPerSize + warmupRuns + i);
+            }
+            // Noise (GC, the JIT compiling on another thread, other processes) only ever adds time
+            long fastest = Arrays.stream(times).min().getAsLong();
+            points.add(new double[] {sizes[s], Math.max(fastest, NOISE_FLOOR_NANOS)});
+            Map<String, Object> point = new HashMap<>();
+            point.put("size", sizes[s]);
+            point.put("ms", Math.round(fastest / 10_000.0) / 100.0);
+            measured.add(point);
+        }
+        response.put("points", measured);
+
+        if (points.size() < MIN_POINTS) {
+            // Already slow on the smallest inputs, or the budget ran out before there was a curve
+            response.put("verdict", JudgeService.Verdict.TIME_LIMIT);
+            return response;
+        }
+        Complexity estimated = bestFit(points);
+        double slope = slope(points.subList(Math.max(points.size() - MIN_POINTS, 0), points.size()));
+        response.put("estimatedComplexity", estimated.label());
+        response.put("exponent", Math.round(slope * 100) / 100.0);
+        if (estimated.ordinal() > bound.ordinal() && slope > bound.exponent + tolerance) {
+            rejected.incrementAndGet();
+            response.put("verdict", JudgeService.Verdict.COMPLEXITY_LIMIT);
+        } else {
+            response.put("verdict", JudgeService.Verdict.ACCEPTED);
+        }
+        return response;
+    }
+
+    // How many of the first sizes have every run accepted. With failedOnly, sizes that merely did
+    // not run (the run stopped on a slow size or the deadline) count as timed too.
+    private int timedSizes(JudgeService.Judging timing, int sizes, int runsPerSize, boolean failedOnly) {
+        for (int s = 0; s < sizes; s++) {
+            for (int i = 0; i < runsPerSize; i++) {
+                JudgeService.Verdict verdict = timing.verdict(s * runsPerSize + i);
+                if (verdict == null ? !failedOnly : verdict != JudgeService.Verdict.ACCEPTED) {
+                    return s;
+                }
+            }
+        }
+        return sizes;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("judged", judged.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    // The class whose curve a + b * f(n) fits the points best, errors relative to each time
+    static Complexity bestFit(List<double[]> points) {
+        Complexity best = Complexity.CONSTANT;
+        double bestError = Double.MAX_VALUE;
+        for (Complexity complexity : Complexity.values()) {
+            double error = fitError(points, complexity);
+            // A simpler class within a few percent explains the points as well
+            if (error < bestError * 0.95) {
+                best = complexity;
+                bestError = error;
+            }
+        }
+        return best;
+    }
+
+    // Weighted least squares for a + b * f(n), b >= 0, weights 1 / t^2
+    private static double fitError(List<double[]> points, Complexity complexity) {
+        double sw = 0, sx = 0, sy = 0, sxx = 0, sxy = 0;
+        double scale = complexity.grow(points.get(points.size() - 1)[0]);
+        for (double[] point : points) {
+            double w = 1 / (point[1] * point[1]);
+            double x = complexity.grow(point[0]) / scale;
+            sw += w;
+            sx += w * x;
+            sy += w * point[1];
+            sxx += w * x * x;
+            sxy += w * x * point[1];
+        }
+        double denominator = sw * sxx - sx * sx;
+        double b = denominator > 1e-300 ? Math.max((sw * sxy - sx * sy) / denominator, 0) : 0;
+        double a = (sy - b * sx) / sw;
+        double error = 0;
+        for (double[] point : points) {
+            double relative = (a + b * complexity.grow(point[0]) / scale - point[1]) / point[1];
+            error += relative * relative;
+        }
+        return error;
+    }
+
+    // Least-squares slope of log(time) over log(size)
+    static double slope(List<double[]> points) {
+        double n = points.size(), sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (double[] point : points) {
+            double x = Math.log(point[0]);
+            double y = Math.log(point[1]);
+            sx += x;
+            sy += y;
+            sxx += x * x;
+            sxy += x * y;
+        }
+        double denominator = n * sxx - sx * sx;
+        return denominator != 0 ? (n * sxy - sx * sy) / denominator : 0;
+    }
+}
@@ -0,0 +1,306 @@
+package com.javahub.app.compiler;
+
+import com.javahub.app.model.CourseContent;
+import com.javahub.app.model.Topic;
+import com.javahub.app.repository.CourseContentRepository;
+import com.javahub.app.repository.TopicRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs the Java examples found in course content and topics ahead of time. Each sample is compiled
+// and run once on a small pool of its own; deterministic results are kept by source hash, so the
+// "run example" action and a student pasting a sample into /compiler/run get the stored output
+// without a JVM. Content is rescanned after DataInitializer seeds it and every rescan-seconds;
+// a sample whose text changed gets a new hash and runs again, one that disappeared is dropped.
+@Service
+public class CourseSampleService {
+
+    private static final Logger log = LoggerFactory.getLogger(CourseSampleService.class);
+
+    public enum State { PENDING, CACHED, LIVE }
+
+    @Autowired
+    private CourseContentRepository courseContentRepository;
+
+    @Autowired
+    private TopicRepository topicRepository;
+
+    @Autowired
+    private JavaCompilerService compilerService;
+
+    @Value("${compiler.samples.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${compiler.samples.threads:2}")
+    private int threads = 2;
+
+    @Value("${compiler.samples.rescan-seconds:300}")
+    private long rescanSeconds = 300;
+
+    private final Map<String, Sample> samples = new ConcurrentHashMap<>();
+    private final Map<String, Sample> byKey = new ConcurrentHashMap<>();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong scans = new AtomicLong();
+    private volatile long lastScanMs;
+    private ExecutorService runners;
+    private ScheduledExecutorService scanner;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        runners = Executors.newFixedThreadPool(Math.max(threads, 1), r -> {
+            Thread thread = new Thread(r, "course-sample-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scanner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "course-sample-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (rescanSeconds > 0) {
+            scanner.scheduleWithFixedDelay(this::scan, rescanSeconds, rescanSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scanner != null) {
+            scanner.shutdownNow();
+            runners.shutdownNow();
+        }
+    }
+
+    // Called once content has been written; the scan itself runs off the caller's thread
+    public void refresh() {
+        if (scanner != null) {
+            scanner.execute(this::scan);
+        }
+    }
+
+    public Sample get(String id) {
+        return samples.get(id);
+    }
+
+    // Samples of one course content page or topic, in the order they appear in its text
+    public List<Sample> samplesFor(String source, int contentId) {
+        List<Sample> found = new ArrayList<>();
+        for (Sample sample : samples.values()) {
+            if (sample.source.equals(source) && sample.contentId == contentId) {
+                found.add(sample);
+            }
+        }
+        found.sort((a, b) -> Integer.compare(a.index, b.index));
+        return found;
+    }
+
+    // The stored result for a sample, or null when it has to run (not done yet or not deterministic)
+    public JavaCompilerService.CompilationResult cachedResult(Sample sample) {
+        JavaCompilerService.CompilationResult result = sample.state == State.CACHED ? sample.result : null;
+        if (result != null) {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    // For /compiler/run: the stored result when the submitted code is exactly a sample's program
+    public JavaCompilerService.CompilationResult cachedResult(String code) {
+        if (!enabled || code == null || byKey.isEmpty()) {
+            return null;
+        }
+        Sample sample = byKey.get(key(code));
+        return sample != null ? cachedResult(sample) : null;
+    }
+
+    // A live run of a sample can fill in its result when the pool has not got to it yet
+    public void completed(Sample sample, JavaCompilerService.CompilationResult result) {
+        if (sample.state == State.PENDING) {
+            store(sample, result);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        Map<State, Integer> byState = new HashMap<>();
+        for (Sample sample : samples.values()) {
+            byState.merge(sample.state, 1, Integer::sum);
+        }
+        stats.put("samples", samples.size());
+        stats.put("cached", byState.getOrDefault(State.CACHED, 0));
+        stats.put("live", byState.getOrDefault(State.LIVE, 0));
+        stats.put("pending", byState.getOrDefault(State.PENDING, 0));
+        stats.put("runs", runs.get());
+        stats.put("hits", hits.get());
+        stats.put("scans", scans.get());
+        stats.put("lastScanMs", lastScanMs);
+        return stats;
+    }
+
+    private void scan() {
+        long start = System.currentTimeMillis();
+        try {
+            Map<String, Sample> found = new LinkedHashMap<>();
+            for (CourseContent content : courseContentRepository.findAll()) {
+                collect(found, "content", content.getId(), content.getTitle(), content.getContent());
+            }
+            for (Topic topic : topicRepository.findAll()) {
+                collect(found, "topic", topic.getId(), topic.getTitle(), topic.getContent());
+            }
+            Set<String> removed = new HashSet<>(samples.keySet());
+            removed.removeAll(found.keySet());
+            for (String id : removed) {
+                forget(samples.remove(id));
+            }
+            int queued = 0;
+            for (Sample sample : found.values()) {
+                Sample existing = samples.get(sample.id);
+                if (existing != null && existing.key.equals(sample.key)) {
+                    continue;
+                }
+                forget(existing);
+                samples.put(sample.id, sample);
+                runners.execute(() -> run(sample));
+                queued++;
+            }
+            scans.incrementAndGet();
+            lastScanMs = System.currentTimeMillis() - start;
+            if (queued > 0 || !removed.isEmpty()) {
+                log.info("Course samples: {} found, {} to run, {} removed", found.size(), queued, removed.size());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not scan course samples: {}", e.getMessage());
+        }
+    }
+
+    private void collect(Map<String, Sample> found, String source, int contentId, String title, String text) {
+        List<String> blocks = SampleExtractor.extract(text);
+        for (int i = 0; i < blocks.size(); i++) {
+            Sample sample = new Sample(source, contentId, i + 1, title, blocks.get(i));
+            found.put(sample.id, sample);
+        }
+    }
+
+    private void run(Sample sample) {
+        if (samples.get(sample.id) != sample || sample.state != State.PENDING) {
+            return;
+        }
+        runs.incrementAndGet();
+        JavaCompilerService.CompilationResult result;
+        try {
+            result = compilerService.compileAndRun(sample.program, ExecutionContext.none());
+        } catch (RuntimeException e) {
+            result = new JavaCompilerService.CompilationResult("", "Error: " + e.getMessage());
+        }
+        store(sample, result);
+    }
+
+    // Compile errors are as repeatable as output; programs that read time, input or randomness are not
+    private synchronized void store(Sample sample, JavaCompilerService.CompilationResult result) {
+        if (sample.state != State.PENDING) {
+            return;
+        }
+        sample.result = result;
+        sample.state = result.isShareable() ? State.CACHED : State.LIVE;
+        if (sample.state == State.CACHED && samples.get(sample.id) == sample) {
+            byKey.put(sample.key, sample);
+        }
+    }
+
+    private synchronized void forget(Sample sample) {
+        if (sample != null) {
+            byKey.remove(sample.key, sample);
+        }
+    }
+
+    private static String key(String program) {
+        return JavaCompilerService.runKey(program.strip(), null);
+    }
+
+    public static final class Sample {
+
+        private final String id;
+        private final String source;
+        private final int contentId;
+        private final int index;
+        private final String title;
+        private final String code;
+        private final String program;
+        private final SampleExtractor.Kind kind;
+        private final String key;
+        private volatile State state = State.PENDING;
+        private volatile JavaCompilerService.CompilationResult result;
+
+        Sample(String source, int contentId, int index, String title, String code) {
+            this.id = source + "-" + contentId + "-" + index;
+            this.source = source;
+            this.contentId = contentId;
+            this.index = index;
+            this.title = title;
+            this.code = code;
+            this.program = SampleExtractor.program(code);
+            this.kind = SampleExtractor.kindOf(code);
+            this.key = key(program);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        // What the lesson shows
+        public String getCode() {
+            return code;
+        }
+
+        // What is compiled: the code as written, or wrapped in a Main class when it is a fragment
+        public String getProgram() {
+            return program;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", id);
+            map.put("source", source);
+            map.put("contentId", contentId);
+            map.put("title", title);
+            map.put("code", code);
+            map.put("program", program);
+            map.put("kind", kind.name().toLowerCase());
+            map.put("state", state.name().toLowerCase());
+            JavaCompilerService.CompilationResult current = result;
+            if (current != null) {
+                // Fragments that refer to classes the lesson does not show never compile
+                map.put("compiles", current.getExecution() != null);
+            }
+            return map;
+        }
+    }
+}
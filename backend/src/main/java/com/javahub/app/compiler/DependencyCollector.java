@@ -0,0 +1,96 @@
+package com.javahub.app.compiler;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Records, per source file, which top-level classes it declares and which it refers to. Works on
+// the attributed trees rather than the bytecode because javac inlines constants, so a file using
+// another file's static final field has no trace of that class in its class file.
+final class DependencyCollector implements TaskListener {
+
+    private final Trees trees;
+    private final Elements elements;
+    private final Map<URI, Set<String>> declared = new HashMap<>();
+    private final Map<URI, Set<String>> references = new HashMap<>();
+
+    DependencyCollector(JavacTask task) {
+        this.trees = Trees.instance(task);
+        this.elements = task.getElements();
+    }
+
+    // Each top-level class is reported once it is attributed; only its own subtree is complete then
+    @Override
+    public void finished(TaskEvent event) {
+        if (event.getKind() != TaskEvent.Kind.ANALYZE || event.getTypeElement() == null) {
+            return;
+        }
+        URI source = event.getSourceFile().toUri();
+        TreePath path = trees.getPath(event.getTypeElement());
+        if (path == null) {
+            return;
+        }
+        declared.computeIfAbsent(source, k -> new HashSet<>()).add(binaryName(event.getTypeElement()));
+        Set<String> referenced = references.computeIfAbsent(source, k -> new HashSet<>());
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitIdentifier(IdentifierTree node, Void unused) {
+                record(referenced, trees.getElement(getCurrentPath()));
+                return super.visitIdentifier(node, unused);
+            }
+
+            @Override
+            public Void visitMemberSelect(MemberSelectTree node, Void unused) {
+                record(referenced, trees.getElement(getCurrentPath()));
+                return super.visitMemberSelect(node, unused);
+            }
+
+            @Override
+            public Void visitClass(ClassTree node, Void unused) {
+                record(referenced, trees.getElement(getCurrentPath()));
+                return super.visitClass(node, unused);
+            }
+        }.scan(path, null);
+    }
+
+    Set<String> getDeclared(URI source) {
+        return declared.getOrDefault(source, new HashSet<>());
+    }
+
+    Set<String> getReferences(URI source) {
+        return references.getOrDefault(source, new HashSet<>());
+    }
+
+    private void record(Set<String> referenced, Element element) {
+        TypeElement outermost = null;
+        for (Element current = element; current != null && current.getKind() != ElementKind.PACKAGE
+                && current.getKind() != ElementKind.MODULE; current = current.getEnclosingElement()) {
+            if (current instanceof TypeElement) {
+                outermost = (TypeElement) current;
+            }
+        }
+        if (outermost != null) {
+            referenced.add(binaryName(outermost));
+        }
+    }
+
+    private String binaryName(TypeElement type) {
+        return elements.getBinaryName(type).toString();
+    }
+}
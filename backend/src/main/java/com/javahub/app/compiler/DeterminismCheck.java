@@ -0,0 +1,259 @@
+package com.javahub.app.compiler;
+
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.Handle;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Conservative test for programs whose output depends only on their bytecode: anything that can
+// observe time, randomness, input, the environment, identity hashes or thread scheduling makes
+// the program non-deterministic, so concurrent runs of it are never shared. False negatives only
+// cost a separate run.
+//
+// Identity hashes also leak without a direct call: printing or concatenating an object whose class
+// keeps Object.toString shows one. The static type is lost at println(Object), so a program that
+// turns an object of unknown type into text is treated as non-deterministic once it creates anything
+// printed that way: arrays, lambdas, or instances of classes that never define toString.
+//
+// Iteration order leaks hashes too. Set.of and Map.of shuffle with a per-JVM salt, and a HashMap or
+// HashSet orders its keys by hashCode, which for enums, lambdas and classes that never define it is
+// the identity hash. Those programs are treated the same way.
+final class DeterminismCheck {
+
+    private static final String[] DENIED_PACKAGES = {
+        "java/time/", "java/security/", "java/lang/reflect/", "java/lang/invoke/MethodHandles",
+        "java/lang/management/", "java/util/logging/",
+        "java/io/File", "java/io/Console", "java/nio/file/", "java/net/", "java/util/concurrent/Executor",
+        "java/util/concurrent/ForkJoin", "java/util/concurrent/ThreadLocalRandom", "java/util/concurrent/CompletableFuture"
+    };
+
+    private static final Set<String> DENIED_CLASSES = Set.of(
+        "java/util/Random", "java/util/SplittableRandom", "java/util/UUID", "java/util/Date",
+        "java/util/Calendar", "java/util/GregorianCalendar", "java/util/TimeZone", "java/util/Scanner",
+        "java/util/Timer", "java/lang/Thread", "java/lang/ThreadLocal", "java/lang/Runtime",
+        "java/lang/ProcessHandle", "java/lang/ProcessBuilder", "java/io/InputStreamReader"
+    );
+
+    private static final Set<String> DENIED_MEMBERS = Set.of(
+        "java/lang/System.currentTimeMillis", "java/lang/System.nanoTime", "java/lang/System.in",
+        "java/lang/System.getenv", "java/lang/System.getProperty", "java/lang/System.getProperties",
+        "java/lang/System.identityHashCode", "java/lang/Math.random", "java/lang/StrictMath.random",
+        "java/lang/Object.hashCode", "java/lang/Object.toString", "java/lang/Class.forName",
+        "java/util/Set.of", "java/util/Set.copyOf", "java/util/Map.of", "java/util/Map.ofEntries",
+        "java/util/Map.copyOf", "java/util/stream/Collectors.toSet", "java/util/stream/Collectors.toMap",
+        "java/util/stream/Collectors.toUnmodifiableSet", "java/util/stream/Collectors.toUnmodifiableMap",
+        "java/util/stream/Collectors.groupingBy", "java/util/stream/Collectors.groupingByConcurrent"
+    );
+
+    // Collections whose iteration order follows their keys' hashCode
+    private static final Set<String> HASHED_COLLECTIONS = Set.of(
+        "java/util/HashMap", "java/util/HashSet", "java/util/Hashtable", "java/util/concurrent/ConcurrentHashMap"
+    );
+
+    // Calls that turn an Object parameter into text through its toString
+    private static final Set<String> STRING_SINKS = Set.of(
+        "print", "println", "printf", "format", "valueOf", "append", "insert", "toString", "deepToString"
+    );
+
+    // Types whose toString never shows an identity hash, allowed in string concatenation
+    private static final Set<String> PLAIN_TYPES = Set.of(
+        "java/lang/String", "java/lang/Integer", "java/lang/Long", "java/lang/Short", "java/lang/Byte",
+        "java/lang/Character", "java/lang/Boolean", "java/lang/Double", "java/lang/Float",
+        "java/lang/StringBuilder", "java/lang/StringBuffer", "java/math/BigInteger", "java/math/BigDecimal"
+    );
+
+    private DeterminismCheck() {
+    }
+
+    static boolean isDeterministic(Map<String, byte[]> classes) {
+        CheckClassVisitor visitor = new CheckClassVisitor();
+        for (byte[] bytes : classes.values()) {
+            new ClassReader(bytes).accept(visitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            if (!visitor.deterministic) {
+                return false;
+            }
+        }
+        if (visitor.stringifiesObjects && visitor.createsIdentityObjects()) {
+            return false;
+        }
+        return !visitor.createsHashedCollections || !visitor.createsIdentityHashed();
+    }
+
+    private static boolean isDenied(String owner, String name) {
+        if (DENIED_CLASSES.contains(owner) || DENIED_MEMBERS.contains(owner + "." + name)) {
+            return true;
+        }
+        // Parallel streams interleave output in scheduling order
+        if (name.equals("parallel") || name.equals("parallelStream")) {
+            return true;
+        }
+        for (String prefix : DENIED_PACKAGES) {
+            if (owner.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isStringSink(String name, String descriptor) {
+        if (!STRING_SINKS.contains(name)) {
+            return false;
+        }
+        for (Type argument : Type.getArgumentTypes(descriptor)) {
+            String type = argument.getDescriptor();
+            if (type.equals("Ljava/lang/Object;") || type.equals("[Ljava/lang/Object;")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Compiled string concatenation passes each operand with its static type
+    private static boolean concatenatesObjects(String descriptor) {
+        for (Type argument : Type.getArgumentTypes(descriptor)) {
+            if ((argument.getSort() == Type.OBJECT && !PLAIN_TYPES.contains(argument.getInternalName()))
+                    || argument.getSort() == Type.ARRAY) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class CheckClassVisitor extends ClassVisitor {
+
+        private boolean deterministic = true;
+        private boolean stringifiesObjects;
+        private boolean createsArrays;
+        private boolean createsLambdas;
+        private boolean createsHashedCollections;
+        private final Set<String> instantiated = new HashSet<>();
+        private final Map<String, String> superclasses = new HashMap<>();
+        private final Set<String> definesToString = new HashSet<>();
+        private final Set<String> definesHashCode = new HashSet<>();
+        private String className;
+
+        CheckClassVisitor() {
+            super(SpringAsmInfo.ASM_VERSION);
+        }
+
+        // Whether something the program creates would print as Type@hash. A superclass outside the
+        // program other than Object is assumed to define toString (records, enums, exceptions).
+        boolean createsIdentityObjects() {
+            return createsArrays || createsLambdas || instantiatesInheriting(definesToString, false);
+        }
+
+        // Whether something the program creates hashes by identity, enums included: Enum.hashCode is final
+        boolean createsIdentityHashed() {
+            return createsLambdas || instantiatesInheriting(definesHashCode, true);
+        }
+
+        // Whether the program creates an instance of a class that gets the method from Object (or Enum)
+        private boolean instantiatesInheriting(Set<String> defining, boolean enumsToo) {
+            for (String type : instantiated) {
+                String current = type;
+                while (current != null && !defining.contains(current)) {
+                    if (current.equals("java/lang/Object") || (enumsToo && current.equals("java/lang/Enum"))) {
+                        return true;
+                    }
+                    current = superclasses.get(current);
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces) {
+            className = name;
+            superclasses.put(name, superName);
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                         String[] exceptions) {
+            if (name.equals("toString") && descriptor.equals("()Ljava/lang/String;")) {
+                definesToString.add(className);
+            }
+            if (name.equals("hashCode") && descriptor.equals("()I")) {
+                definesHashCode.add(className);
+            }
+            // Enums copy their constants into an array in a synthetic method
+            boolean synthetic = (access & Opcodes.ACC_SYNTHETIC) != 0;
+            return new MethodVisitor(SpringAsmInfo.ASM_VERSION) {
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String name, String descriptor,
+                                            boolean isInterface) {
+                    check(owner, name);
+                    if (isStringSink(name, descriptor)) {
+                        stringifiesObjects = true;
+                    }
+                }
+
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+                    check(owner, name);
+                }
+
+                @Override
+                public void visitTypeInsn(int opcode, String type) {
+                    check(type, "<init>");
+                    if (opcode == Opcodes.NEW) {
+                        instantiated.add(type);
+                        if (HASHED_COLLECTIONS.contains(type)) {
+                            createsHashedCollections = true;
+                        }
+                    } else if (opcode == Opcodes.ANEWARRAY && !synthetic && !type.equals("java/lang/Object")) {
+                        // Object[] is what varargs calls such as printf build
+                        createsArrays = true;
+                    }
+                }
+
+                @Override
+                public void visitIntInsn(int opcode, int operand) {
+                    if (opcode == Opcodes.NEWARRAY && !synthetic) {
+                        createsArrays = true;
+                    }
+                }
+
+                @Override
+                public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+                    createsArrays = true;
+                }
+
+                // Method references such as System::nanoTime arrive as bootstrap arguments
+                @Override
+                public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle,
+                                                   Object... bootstrapMethodArguments) {
+                    String bootstrap = bootstrapMethodHandle.getName();
+                    if (bootstrap.equals("makeConcatWithConstants") || bootstrap.equals("makeConcat")) {
+                        if (concatenatesObjects(descriptor)) {
+                            stringifiesObjects = true;
+                        }
+                    } else if (bootstrapMethodHandle.getOwner().equals("java/lang/invoke/LambdaMetafactory")) {
+                        createsLambdas = true;
+                    }
+                    for (Object argument : bootstrapMethodArguments) {
+                        if (argument instanceof Handle) {
+                            Handle handle = (Handle) argument;
+                            check(handle.getOwner(), handle.getName());
+                        }
+                    }
+                }
+            };
+        }
+
+        private void check(String owner, String name) {
+            if (deterministic && isDenied(owner, name)) {
+                deterministic = false;
+            }
+        }
+    }
+}
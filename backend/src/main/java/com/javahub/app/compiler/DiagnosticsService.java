@@ -0,0 +1,137 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compile-only checks for the editor. They run on their own small pool of low-priority threads,
+// away from the run scheduler, and each user has at most one check in flight: a newer request
+// cancels the older one, which is stale by the time the user has typed further.
+@Service
+public class DiagnosticsService {
+
+    @Autowired
+    private JavaCompilerService compilerService;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<Integer, Check> latest = new ConcurrentHashMap<>();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public DiagnosticsService(@Value("${compiler.diagnostics.threads:0}") int threads,
+                              @Value("${compiler.diagnostics.max-queued:100}") int maxQueued) {
+        int size = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueued),
+                r -> {
+                    Thread thread = new Thread(r, "compile-diagnostics-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    // Resolves to null when a newer request from the same user replaced this one. Cancelling the
+    // returned future stops the check the same way a newer request does.
+    public Future<List<CompileDiagnostic>> submit(int userId, String code) {
+        Check check = new Check();
+        Check previous = latest.put(userId, check);
+        if (previous != null && previous.cancel()) {
+            superseded.incrementAndGet();
+        }
+        try {
+            check.future = executor.submit(() -> {
+                try {
+                    List<CompileDiagnostic> result = check.cancelled ? null : compilerService.diagnose(code, () -> check.cancelled);
+                    if (result != null) {
+                        completed.incrementAndGet();
+                    }
+                    return result;
+                } finally {
+                    latest.remove(userId, check);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            latest.remove(userId, check);
+            rejected.incrementAndGet();
+            throw e;
+        }
+        return check;
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "threads", executor.getPoolSize(),
+            "queued", executor.getQueue().size(),
+            "completed", completed.get(),
+            "superseded", superseded.get(),
+            "rejected", rejected.get()
+        );
+    }
+
+    private class Check implements Future<List<CompileDiagnostic>> {
+        private volatile boolean cancelled;
+        private volatile Future<List<CompileDiagnostic>> future;
+
+        // A queued check is taken out of the executor's queue, so it stops counting against
+        // max-queued; a running one stops at javac's next phase
+        boolean cancel() {
+            if (cancelled) {
+                return false;
+            }
+            cancelled = true;
+            Future<List<CompileDiagnostic>> pending = future;
+            if (pending != null) {
+                pending.cancel(false);
+                executor.remove((Runnable) pending);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return cancel();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return future.isDone();
+        }
+
+        @Override
+        public List<CompileDiagnostic> get() throws InterruptedException, ExecutionException {
+            return future.get();
+        }
+
+        @Override
+        public List<CompileDiagnostic> get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            return future.get(timeout, unit);
+        }
+    }
+}
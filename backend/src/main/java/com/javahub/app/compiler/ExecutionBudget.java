@@ -0,0 +1,120 @@
+package com.javahub.app.compiler;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+
+// Runtime side of BudgetInstrumenter: instrumented program classes call these static hooks.
+// The budget for the current run is bound to the thread executing it.
+public final class ExecutionBudget {
+
+    private static final ThreadLocal<ExecutionBudget> CURRENT = new ThreadLocal<>();
+
+    private final long maxBackEdges;
+    private final long maxAllocations;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final InputStream in;
+    private long backEdges;
+    private long allocations;
+    private volatile String stopReason;
+
+    ExecutionBudget(long maxBackEdges, long maxAllocations, PrintStream out, PrintStream err, InputStream in) {
+        this.maxBackEdges = maxBackEdges;
+        this.maxAllocations = maxAllocations;
+        this.out = out;
+        this.err = err;
+        this.in = in;
+    }
+
+    void bind() {
+        CURRENT.set(this);
+    }
+
+    void unbind() {
+        CURRENT.remove();
+    }
+
+    // Called from other threads: timeout, cancellation, output cap
+    void stop(String reason) {
+        if (stopReason == null) {
+            stopReason = reason;
+        }
+    }
+
+    String getStopReason() {
+        return stopReason;
+    }
+
+    long getBackEdges() {
+        return backEdges;
+    }
+
+    long getAllocations() {
+        return allocations;
+    }
+
+    public static void tick() {
+        ExecutionBudget budget = current();
+        if (++budget.backEdges > budget.maxBackEdges) {
+            budget.stop("Instruction budget exceeded (" + budget.maxBackEdges + " loop iterations/calls)");
+        }
+        budget.checkStopped();
+    }
+
+    public static void allocate() {
+        charge(1);
+    }
+
+    public static void allocateArray(int length) {
+        charge(Math.max(length, 0) + 1L);
+    }
+
+    public static void allocateArray(int outer, int inner) {
+        charge((long) Math.max(outer, 0) * Math.max(inner, 0) + Math.max(outer, 0) + 1L);
+    }
+
+    // Inserted at the start of every exception handler so catch (Throwable t) cannot swallow a stop
+    public static void checkCaught(Throwable caught) {
+        ExecutionBudget budget = current();
+        if (caught instanceof BudgetExceededError) {
+            throw (BudgetExceededError) caught;
+        }
+        budget.checkStopped();
+    }
+
+    public static PrintStream out() {
+        return current().out;
+    }
+
+    public static PrintStream err() {
+        return current().err;
+    }
+
+    public static InputStream in() {
+        return current().in;
+    }
+
+    private static void charge(long units) {
+        ExecutionBudget budget = current();
+        budget.allocations += units;
+        if (budget.allocations > budget.maxAllocations) {
+            budget.stop("Allocation budget exceeded (" + budget.maxAllocations + " objects/array elements)");
+        }
+        budget.checkStopped();
+    }
+
+    private void checkStopped() {
+        String reason = stopReason;
+        if (reason != null) {
+            throw new BudgetExceededError(reason);
+        }
+    }
+
+    private static ExecutionBudget current() {
+        ExecutionBudget budget = CURRENT.get();
+        if (budget == null) {
+            throw new BudgetExceededError("Sandboxed code ran outside of its execution");
+        }
+        return budget;
+    }
+}
@@ -0,0 +1,98 @@
+package com.javahub.app.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Per-run options passed down to the executor: where live output goes, which engine should run the
+// program, whom to bill it to and how to stop the run early
+public class ExecutionContext {
+
+    public enum Engine {
+        PROCESS, IN_PROCESS;
+
+        public String label() {
+            return this == PROCESS ? "process" : "inprocess";
+        }
+
+        // Accepts the request values "process" and "inprocess"; anything else means no preference
+        public static Engine parse(String value) {
+            if (value == null) {
+                return null;
+            }
+            switch (value.trim().toLowerCase().replace("-", "").replace("_", "")) {
+                case "process": return PROCESS;
+                case "inprocess": return IN_PROCESS;
+                default: return null;
+            }
+        }
+    }
+
+    private final OutputListener listener;
+    private Engine engine;
+    private int userId = -1;
+    private final List<Runnable> cancelActions = new ArrayList<>();
+    private boolean cancelled;
+
+    public ExecutionContext(OutputListener listener) {
+        this.listener = listener;
+    }
+
+    public static ExecutionContext none() {
+        return new ExecutionContext(null);
+    }
+
+    public OutputListener getListener() {
+        return listener;
+    }
+
+    // Null means the service's configured default
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public ExecutionContext withEngine(Engine engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    // Whose usage totals the run counts towards; -1 for none
+    public int getUserId() {
+        return userId;
+    }
+
+    public ExecutionContext withUser(int userId) {
+        this.userId = userId;
+        return this;
+    }
+
+    public void cancel() {
+        List<Runnable> actions;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            actions = new ArrayList<>(cancelActions);
+        }
+        actions.forEach(Runnable::run);
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    // Runs the action straight away if the run has already been cancelled
+    public void onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                cancelActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    public synchronized void removeOnCancel(Runnable action) {
+        cancelActions.remove(action);
+    }
+}
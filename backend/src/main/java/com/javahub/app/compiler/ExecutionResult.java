@@ -0,0 +1,97 @@
+package com.javahub.app.compiler;
+
+public class ExecutionResult {
+    private final String output;
+    private final int exitCode;
+    private final boolean timedOut;
+    private final String error;
+    private final long wallTimeMs;
+    private final boolean truncated;
+    private ExecutionContext.Engine engine;
+    private ResourceUsage usage;
+
+    public ExecutionResult(String output, int exitCode, boolean timedOut, String error, long wallTimeMs) {
+        this(output, exitCode, timedOut, error, wallTimeMs, false);
+    }
+
+    public ExecutionResult(String output, int exitCode, boolean timedOut, String error, long wallTimeMs,
+                           boolean truncated) {
+        this.output = output;
+        this.exitCode = exitCode;
+        this.timedOut = timedOut;
+        this.error = error;
+        this.wallTimeMs = wallTimeMs;
+        this.truncated = truncated;
+    }
+
+    public static ExecutionResult failed(String error) {
+        return new ExecutionResult("", -1, false, error, 0);
+    }
+
+    public boolean isSuccess() {
+        return error == null && !timedOut && !truncated && exitCode == 0;
+    }
+
+    // The single string /compiler/run has always returned as "output"
+    public String describe() {
+        if (error != null) {
+            return "Error: " + error;
+        }
+        if (truncated) {
+            // The program was stopped for writing too much, its exit code says nothing useful
+            return output + "\nError: Output limit exceeded (" + JavaCompilerService.MAX_OUTPUT_BYTES
+                    + " bytes), program stopped.";
+        }
+        if (timedOut) {
+            return "Error: Execution timeout (exceeded " + JavaCompilerService.MAX_EXECUTION_TIME + " seconds)";
+        }
+        if (exitCode != 0 && usage != null && usage.isMemoryLimitHit()) {
+            return output + "\nError: Memory limit exceeded, program killed.";
+        }
+        if (exitCode != 0) {
+            return "Error: Process exited with code " + exitCode;
+        }
+        return output;
+    }
+
+    public String getOutput() {
+        return output;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getWallTimeMs() {
+        return wallTimeMs;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public ExecutionContext.Engine getEngine() {
+        return engine;
+    }
+
+    void setEngine(ExecutionContext.Engine engine) {
+        this.engine = engine;
+    }
+
+    // Null when the run never started
+    public ResourceUsage getUsage() {
+        return usage;
+    }
+
+    void setUsage(ResourceUsage usage) {
+        this.usage = usage;
+    }
+}
@@ -0,0 +1,236 @@
+package com.javahub.app.compiler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs small programs inside the backend JVM: each run gets its own classloader, budget and
+// output streams, and is stopped by BudgetInstrumenter's checks rather than by killing a process.
+// Time spent inside JDK methods never reaches those checks, so the engine is off unless the server
+// turns it on, and it takes no work while a thread it could not stop is still running.
+@Component
+public class InProcessExecutor {
+
+    private static final long STOP_GRACE_MS = 1000;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Value("${compiler.in-process.enabled:false}")
+    private boolean enabled = false;
+
+    @Value("${compiler.in-process.max-back-edges:200000000}")
+    private long maxBackEdges = 200_000_000L;
+
+    @Value("${compiler.in-process.max-allocations:20000000}")
+    private long maxAllocations = 20_000_000L;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final Set<Thread> stuckThreads = ConcurrentHashMap.newKeySet();
+
+    public InProcessExecutor() {
+    }
+
+    InProcessExecutor(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // Returns null when the engine is off or busy, or the program is not eligible; the caller then
+    // runs it in a separate JVM
+    public ExecutionResult execute(CompiledProgram program, long timeoutSeconds, ExecutionContext context) {
+        if (!enabled) {
+            return null;
+        }
+        stuckThreads.removeIf(thread -> !thread.isAlive());
+        if (!stuckThreads.isEmpty()) {
+            // A stuck run is still burning a backend core; no more until it ends
+            refused.incrementAndGet();
+            return null;
+        }
+        Map<String, byte[]> instrumented;
+        try {
+            instrumented = BudgetInstrumenter.instrument(program.getClasses());
+        } catch (SandboxViolationException e) {
+            rejected.incrementAndGet();
+            return null;
+        }
+        if (context.isCancelled()) {
+            return ExecutionResult.failed(JavaCompilerService.CANCELLED_MESSAGE);
+        }
+        runs.incrementAndGet();
+
+        OutputCapture capture = JavaCompilerService.newOutputCapture();
+        ExecutionBudget[] budgetHolder = new ExecutionBudget[1];
+        PrintStream out = new PrintStream(new CaptureStream(capture, context.getListener(), false, budgetHolder),
+                true, SandboxRuntime.OUTPUT_CHARSET);
+        PrintStream err = new PrintStream(new CaptureStream(capture, context.getListener(), true, budgetHolder),
+                true, SandboxRuntime.OUTPUT_CHARSET);
+        ExecutionBudget budget = new ExecutionBudget(maxBackEdges, maxAllocations, out, err,
+                new ByteArrayInputStream(new byte[0]));
+        budgetHolder[0] = budget;
+
+        InProcessClassLoader loader = new InProcessClassLoader(instrumented, InProcessExecutor.class.getClassLoader());
+        int[] exitCode = {0};
+        long[] cpuNanos = {-1};
+        Thread runner = new Thread(() -> {
+            budget.bind();
+            try {
+                Method main = loader.loadClass(program.getMainClass()).getMethod("main", String[].class);
+                main.invoke(null, (Object) new String[0]);
+            } catch (InvocationTargetException e) {
+                exitCode[0] = 1;
+                if (!(e.getCause() instanceof BudgetExceededError)) {
+                    err.print("Exception in thread \"main\" ");
+                    e.getCause().printStackTrace(err);
+                }
+            } catch (Throwable e) {
+                exitCode[0] = 1;
+                err.println("Error: " + e);
+            } finally {
+                out.flush();
+                err.flush();
+                budget.unbind();
+                cpuNanos[0] = THREADS.getCurrentThreadCpuTime();
+            }
+        }, "in-process-run-" + THREAD_COUNTER.incrementAndGet());
+        runner.setDaemon(true);
+
+        Runnable stop = () -> {
+            budget.stop(JavaCompilerService.CANCELLED_MESSAGE);
+            runner.interrupt();
+        };
+        context.onCancel(stop);
+        long start = System.currentTimeMillis();
+        try {
+            runner.start();
+            runner.join(timeoutSeconds * 1000);
+            boolean timedOut = runner.isAlive();
+            if (timedOut) {
+                budget.stop("Execution timeout");
+                runner.interrupt();
+                runner.join(STOP_GRACE_MS);
+                if (runner.isAlive()) {
+                    // Blocked somewhere that never reaches a budget check; nothing more we can do safely
+                    stuckThreads.add(runner);
+                }
+            }
+            long wallTimeMs = System.currentTimeMillis() - start;
+            String output = capture.decode(SandboxRuntime.OUTPUT_CHARSET);
+
+            if (context.isCancelled()) {
+                return ExecutionResult.failed(JavaCompilerService.CANCELLED_MESSAGE);
+            }
+            ExecutionResult execution;
+            if (timedOut) {
+                execution = new ExecutionResult(output, -1, true, null, wallTimeMs, capture.isTruncated());
+            } else if (capture.isTruncated()) {
+                execution = new ExecutionResult(output, exitCode[0], false, null, wallTimeMs, true);
+            } else if (budget.getStopReason() != null) {
+                execution = new ExecutionResult(output, exitCode[0], false, budget.getStopReason(), wallTimeMs);
+            } else {
+                execution = new ExecutionResult(output, exitCode[0], false, null, wallTimeMs);
+            }
+            // Only the runner thread is measured; heap use cannot be told apart from the backend's own
+            long cpu = runner.isAlive() ? THREADS.getThreadCpuTime(runner.getId()) : cpuNanos[0];
+            execution.setUsage(new ResourceUsage(cpu < 0 ? -1 : cpu / 1_000_000, -1, wallTimeMs, "thread", false));
+            return execution;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop.run();
+            return ExecutionResult.failed("Execution interrupted");
+        } finally {
+            context.removeOnCancel(stop);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        stuckThreads.removeIf(thread -> !thread.isAlive());
+        return Map.of(
+            "enabled", enabled,
+            "runs", runs.get(),
+            "rejectedPrograms", rejected.get(),
+            "refusedWhileStuck", refused.get(),
+            "stuckThreads", stuckThreads.size()
+        );
+    }
+
+    private static class CaptureStream extends OutputStream {
+
+        private final OutputCapture capture;
+        private final OutputListener listener;
+        private final boolean stderr;
+        private final ExecutionBudget[] budget;
+
+        CaptureStream(OutputCapture capture, OutputListener listener, boolean stderr, ExecutionBudget[] budget) {
+            this.capture = capture;
+            this.listener = listener;
+            this.stderr = stderr;
+            this.budget = budget;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (listener != null) {
+                listener.onOutput(stderr, b, off, len);
+            }
+            if (!capture.write(b, off, len)) {
+                budget[0].stop("Output limit exceeded");
+            }
+        }
+    }
+
+    // Program classes are defined from the instrumented bytes; everything else must pass SandboxPolicy
+    private static class InProcessClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        InProcessClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    byte[] bytes = classes.get(name);
+                    if (bytes != null) {
+                        loaded = defineClass(name, bytes, 0, bytes.length);
+                    } else if (isRuntimeHook(name) || SandboxPolicy.isLoadable(name.replace('.', '/'))) {
+                        loaded = getParent().loadClass(name);
+                    } else {
+                        throw new ClassNotFoundException(name + " is not available in-process");
+                    }
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+
+        private static boolean isRuntimeHook(String name) {
+            return name.equals(ExecutionBudget.class.getName()) || name.equals(BudgetExceededError.class.getName());
+        }
+    }
+}
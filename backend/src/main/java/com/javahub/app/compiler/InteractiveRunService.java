@@ -0,0 +1,684 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs programs with a live terminal: what the user types goes to the program's System.in while it
+// runs and its output comes back as it is written. The sandbox JVM connects back to a loopback
+// socket of ours (process pipes cannot be put in non-blocking mode), and one selector thread moves
+// the bytes of every session in both directions. All session state is changed on that thread;
+// other threads hand it work through execute().
+@Service
+public class InteractiveRunService {
+
+    private static final Logger log = LoggerFactory.getLogger(InteractiveRunService.class);
+
+    private static final int TOKEN_BYTES = 16;
+    private static final int TOKEN_LENGTH = TOKEN_BYTES * 2;
+    private static final int READ_BUFFER_BYTES = 8192;
+    private static final long CONNECT_TIMEOUT_MS = 10_000;
+    private static final long SWEEP_INTERVAL_MS = 1000;
+
+    @Autowired
+    private JavaCompilerService compilerService;
+
+    @Autowired
+    private CompilerScheduler compilerScheduler;
+
+    @Autowired(required = false)
+    private ProcessReaper processReaper;
+
+    @Autowired(required = false)
+    private ResourceMonitor resourceMonitor;
+
+    @Autowired(required = false)
+    private UsageAccounting usageAccounting;
+
+    @Value("${compiler.interactive.max-sessions:50}")
+    private int maxSessions = 50;
+
+    @Value("${compiler.interactive.max-per-user:3}")
+    private int maxPerUser = 3;
+
+    @Value("${compiler.interactive.idle-seconds:60}")
+    private long idleSeconds = 60;
+
+    @Value("${compiler.interactive.max-seconds:300}")
+    private long maxSeconds = 300;
+
+    @Value("${compiler.interactive.stdin-buffer-bytes:65536}")
+    private int stdinBufferBytes = 65536;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Sessions whose JVM has been started but has not connected yet, by token
+    private final Map<String, Session> awaiting = new ConcurrentHashMap<>();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private final AtomicLong evictedIdle = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong outputLimited = new AtomicLong();
+    private final AtomicLong stdinBytes = new AtomicLong();
+    private final AtomicLong stdoutBytes = new AtomicLong();
+    private final AtomicLong pausedReads = new AtomicLong();
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread ioThread;
+    private volatile boolean running;
+    private long lastSweep;
+
+    // The browser side of a session. send() must not block: messages are queued and written
+    // asynchronously, and isBacklogged() tells the selector to stop reading until resume().
+    public interface Client {
+        void send(Map<String, Object> message);
+
+        boolean isBacklogged();
+
+        void close();
+    }
+
+    @PostConstruct
+    public void start() {
+        try {
+            selector = Selector.open();
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the interactive run socket", e);
+        }
+        running = true;
+        ioThread = new Thread(this::loop, "interactive-io");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sessions.values().forEach(Session::release);
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException e) {
+            // Going away anyway
+        }
+    }
+
+    // Returns an error message, or null when the program can be started for this user
+    public String validate(int userId, String code) {
+        if (code == null || code.trim().isEmpty()) {
+            return "Error: Code cannot be empty.";
+        }
+        if (sessions.size() >= maxSessions) {
+            return "Error: Too many interactive programs are running, please retry shortly.";
+        }
+        if (sessions.values().stream().filter(session -> session.userId == userId).count() >= maxPerUser) {
+            return "Error: You already have " + maxPerUser + " interactive programs running.";
+        }
+        return null;
+    }
+
+    // Compiles on the scheduler's compile lane and starts the program once it compiled. Messages
+    // about it go to the client from then on; the last one is always "exit".
+    public Session start(int userId, String code, Client client) {
+        Session session = new Session(userId, client);
+        String className = compilerService.extractClassName(code);
+        if (className == null) {
+            session.done = true;
+            session.client.send(message("exit", "error", "Error: Could not find a public class in the code."));
+            session.client.close();
+            return session;
+        }
+        sessions.put(session.id, session);
+        try {
+            compilerScheduler.submit(userId, CompilerScheduler.Lane.COMPILE, () -> {
+                long compileStart = System.currentTimeMillis();
+                CompiledProgram program = compilerService.compileInMemory(className, code);
+                launch(session, program, System.currentTimeMillis() - compileStart);
+                return null;
+            }).whenComplete((result, e) -> {
+                if (e != null) {
+                    // Compiling threw or the task never ran: free the slot and tell the client
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    execute(() -> {
+                        if (session.process == null) {
+                            session.compileErrors = "Error: " + cause.getMessage();
+                            session.finish();
+                        }
+                    });
+                }
+            });
+        } catch (RuntimeException e) {
+            sessions.remove(session.id);
+            throw e;
+        }
+        return session;
+    }
+
+    public void input(Session session, String data) {
+        byte[] bytes = data.getBytes(SandboxRuntime.OUTPUT_CHARSET);
+        execute(() -> {
+            if (session.inputClosed || session.done) {
+                return;
+            }
+            if (session.stdin.remaining() < bytes.length) {
+                session.client.send(message("error", "error",
+                        "Error: Input is arriving faster than the program reads it; " + bytes.length + " bytes dropped."));
+                return;
+            }
+            session.stdin.put(bytes);
+            session.lastActivity = System.currentTimeMillis();
+            stdinBytes.addAndGet(bytes.length);
+            session.updateInterest();
+        });
+    }
+
+    // End of input: the program's System.in reports end of stream once everything typed is read
+    public void endInput(Session session) {
+        execute(() -> {
+            session.inputClosed = true;
+            session.updateInterest();
+        });
+    }
+
+    public void kill(Session session) {
+        execute(() -> session.kill("killed"));
+    }
+
+    // The client went away; nobody is left to read the output
+    public void disconnected(Session session) {
+        execute(() -> session.kill("disconnected"));
+    }
+
+    // The client's send queue drained; start reading the program's output again
+    public void resume(Session session) {
+        execute(session::updateInterest);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("maxSessions", maxSessions);
+        stats.put("started", started.get());
+        stats.put("finished", finished.get());
+        stats.put("evictedIdle", evictedIdle.get());
+        stats.put("timedOut", timedOut.get());
+        stats.put("outputLimited", outputLimited.get());
+        stats.put("stdinBytes", stdinBytes.get());
+        stats.put("stdoutBytes", stdoutBytes.get());
+        stats.put("pausedReads", pausedReads.get());
+        return stats;
+    }
+
+    // Runs on a scheduler thread: starting the JVM and piping the program to it block
+    private void launch(Session session, CompiledProgram program, long compileTimeMs) {
+        if (session.cancelled) {
+            execute(session::finish);
+            return;
+        }
+        if (!program.isSuccess()) {
+            execute(() -> {
+                session.compileErrors = program.getErrors();
+                session.finish();
+            });
+            return;
+        }
+
+        ProcessBuilder processBuilder = new ProcessBuilder(SandboxRuntime.javaCommand(
+                SandboxRuntime.launcherClasspath().toString(), SandboxRuntime.terminalMainClass()));
+        processBuilder.directory(SandboxRuntime.launcherDirectory().toFile());
+        // Everything the program prints goes over the socket; the pipes only carry the launch
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        random.nextBytes(tokenBytes);
+        String token = HexFormat.of().formatHex(tokenBytes);
+        try {
+            ProcessReaper.Tree tree = processReaper != null ? processReaper.start(processBuilder) : null;
+            Process process = tree != null ? tree.getProcess() : processBuilder.start();
+            ResourceMonitor.Slot slot = resourceMonitor != null ? resourceMonitor.attach(process) : null;
+            if (slot != null) {
+                slot.begin();
+            }
+            session.token = token;
+            awaiting.put(token, session);
+            execute(() -> session.launched(tree, process, slot, compileTimeMs));
+            process.onExit().thenRun(() -> execute(session::exited));
+
+            try (DataOutputStream out = new DataOutputStream(process.getOutputStream())) {
+                out.writeUTF(token);
+                out.writeInt(server.socket().getLocalPort());
+                SandboxRuntime.writeProgram(out, program);
+            }
+        } catch (IOException | RuntimeException e) {
+            // A JVM that died before reading its program shows up through exited() as well
+            awaiting.remove(token);
+            execute(() -> {
+                if (session.process == null) {
+                    session.compileErrors = "Error: " + e.getMessage();
+                    session.finish();
+                }
+            });
+        }
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                selector.select(SWEEP_INTERVAL_MS);
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.attachment() instanceof Handshake) {
+                        ((Handshake) key.attachment()).read(key);
+                    } else {
+                        Session session = (Session) key.attachment();
+                        if (key.isWritable()) {
+                            session.write();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            session.read();
+                        }
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= SWEEP_INTERVAL_MS) {
+                    lastSweep = now;
+                    sweep(now);
+                }
+            } catch (IOException | RuntimeException e) {
+                // One bad session must not take the terminal down for everybody
+                log.warn("Interactive run loop error", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.register(selector, SelectionKey.OP_READ, new Handshake(channel));
+        }
+    }
+
+    private void sweep(long now) {
+        for (Session session : sessions.values()) {
+            if (session.process == null || session.reason != null) {
+                continue;
+            }
+            if (session.channel == null && now - session.startedAt > CONNECT_TIMEOUT_MS) {
+                session.kill("failed");
+            } else if (now - session.startedAt > maxSeconds * 1000) {
+                timedOut.incrementAndGet();
+                session.kill("timeout");
+            } else if (now - session.lastActivity > idleSeconds * 1000 && !session.client.isBacklogged()) {
+                evictedIdle.incrementAndGet();
+                session.kill("idle");
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Handshake && now - ((Handshake) key.attachment()).acceptedAt > CONNECT_TIMEOUT_MS) {
+                ((Handshake) key.attachment()).close(key);
+            }
+        }
+    }
+
+    private static Map<String, Object> message(String type, String key, Object value) {
+        Map<String, Object> message = new HashMap<>();
+        message.put("type", type);
+        message.put(key, value);
+        return message;
+    }
+
+    // A connection that has not said which session it belongs to yet. Anyone on the host can
+    // connect to the port, so a connection only gets a session by naming its random token.
+    private class Handshake {
+
+        private final SocketChannel channel;
+        private final ByteBuffer token = ByteBuffer.allocate(TOKEN_LENGTH);
+        private final long acceptedAt = System.currentTimeMillis();
+
+        Handshake(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read(SelectionKey key) {
+            try {
+                if (channel.read(token) < 0) {
+                    close(key);
+                    return;
+                }
+            } catch (IOException e) {
+                close(key);
+                return;
+            }
+            if (token.hasRemaining()) {
+                return;
+            }
+            Session session = awaiting.remove(new String(token.array(), StandardCharsets.US_ASCII));
+            if (session == null || session.done) {
+                close(key);
+                return;
+            }
+            key.attach(session);
+            session.connected(channel, key);
+        }
+
+        void close(SelectionKey key) {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Nothing to do
+            }
+        }
+    }
+
+    // One interactive run, from compilation to exit
+    public class Session {
+
+        private final String id = UUID.randomUUID().toString();
+        private final int userId;
+        private final Client client;
+        private final long startedAt = System.currentTimeMillis();
+        private final ByteBuffer stdin = ByteBuffer.allocate(stdinBufferBytes);
+        private final OutputDecoder decoder = new OutputDecoder(SandboxRuntime.OUTPUT_CHARSET);
+        private volatile boolean cancelled;
+        private volatile String token;
+        private ProcessReaper.Tree tree;
+        private Process process;
+        private ResourceMonitor.Slot slot;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private long runStartedAt;
+        private long lastActivity = System.currentTimeMillis();
+        private long outputBytes;
+        private boolean inputClosed;
+        private boolean outputShut;
+        private boolean socketClosed;
+        private boolean exited;
+        private boolean done;
+        private String reason;
+        private String compileErrors;
+
+        Session(int userId, Client client) {
+            this.userId = userId;
+            this.client = client;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        void launched(ProcessReaper.Tree tree, Process process, ResourceMonitor.Slot slot, long compileTimeMs) {
+            this.tree = tree;
+            this.process = process;
+            this.slot = slot;
+            runStartedAt = System.currentTimeMillis();
+            lastActivity = runStartedAt;
+            started.incrementAndGet();
+            Map<String, Object> compiled = message("compiled", "compileTimeMs", compileTimeMs);
+            compiled.put("sessionId", id);
+            client.send(compiled);
+            if (cancelled) {
+                kill("disconnected");
+            }
+        }
+
+        void connected(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            lastActivity = System.currentTimeMillis();
+            updateInterest();
+        }
+
+        // Reads only while the client keeps up, writes only while there is typed input to deliver
+        void updateInterest() {
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            int ops = 0;
+            if (!client.isBacklogged()) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (stdin.position() > 0) {
+                ops |= SelectionKey.OP_WRITE;
+            } else if (inputClosed && !outputShut) {
+                outputShut = true;
+                try {
+                    channel.shutdownOutput();
+                } catch (IOException e) {
+                    // The program is gone; the read side will see it
+                }
+            }
+            key.interestOps(ops);
+        }
+
+        void write() {
+            stdin.flip();
+            try {
+                channel.write(stdin);
+            } catch (IOException e) {
+                // The program closed its input or exited; what it did not read is lost
+                stdin.clear();
+                inputClosed = true;
+                updateInterest();
+                return;
+            }
+            stdin.compact();
+            updateInterest();
+        }
+
+        void read() {
+            readBuffer.clear();
+            int read;
+            try {
+                read = channel.read(readBuffer);
+            } catch (IOException e) {
+                read = -1;
+            }
+            if (read < 0) {
+                closeSocket();
+                if (exited) {
+                    finish();
+                }
+                return;
+            }
+            if (read == 0) {
+                return;
+            }
+            long allowed = Math.max(JavaCompilerService.MAX_OUTPUT_BYTES - outputBytes, 0);
+            int length = (int) Math.min(read, allowed);
+            outputBytes += read;
+            stdoutBytes.addAndGet(length);
+            lastActivity = System.currentTimeMillis();
+            byte[] bytes = new byte[length];
+            readBuffer.flip();
+            readBuffer.get(bytes);
+            StringBuilder text = new StringBuilder();
+            decoder.decode(bytes, 0, length, text);
+            if (text.length() > 0) {
+                client.send(message("stdout", "data", text.toString()));
+            }
+            if (read > allowed && reason == null) {
+                outputLimited.incrementAndGet();
+                kill("output");
+                return;
+            }
+            if (client.isBacklogged()) {
+                pausedReads.incrementAndGet();
+                updateInterest();
+            }
+        }
+
+        void exited() {
+            exited = true;
+            if (channel == null || socketClosed) {
+                finish();
+            } else if (tree != null) {
+                // Anything the program started could hold the socket open past its exit
+                tree.killDescendants();
+            }
+        }
+
+        void kill(String why) {
+            if (done) {
+                return;
+            }
+            if (reason == null) {
+                reason = why;
+            }
+            cancelled = true;
+            if (process == null) {
+                // Still compiling; launch() sees the flag
+                return;
+            }
+            if (slot != null) {
+                slot.kill();
+            }
+            if (tree != null) {
+                tree.kill();
+            } else {
+                process.destroyForcibly();
+            }
+            // Output still unread is of no use now, and reads may be paused for a slow client;
+            // the exit is reported as soon as the process is gone
+            closeSocket();
+        }
+
+        void finish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            sessions.remove(id);
+            if (token != null) {
+                awaiting.remove(token);
+            }
+            Map<String, Object> exit = message("exit", "sessionId", id);
+            if (compileErrors != null) {
+                exit.put("error", compileErrors);
+            } else if (process != null) {
+                StringBuilder rest = new StringBuilder();
+                decoder.finish(rest);
+                if (rest.length() > 0) {
+                    client.send(message("stdout", "data", rest.toString()));
+                }
+                long wallTimeMs = System.currentTimeMillis() - runStartedAt;
+                exit.put("exitCode", process.isAlive() ? -1 : process.exitValue());
+                exit.put("runMs", wallTimeMs);
+                if (slot != null) {
+                    ResourceUsage usage = slot.finish(wallTimeMs);
+                    exit.putAll(usage.toMap());
+                    if (usageAccounting != null) {
+                        usageAccounting.record(userId, usage);
+                    }
+                }
+                if (reason != null) {
+                    exit.put("reason", reason);
+                    exit.put("error", describe(reason));
+                }
+                finished.incrementAndGet();
+            }
+            release();
+            client.send(exit);
+            client.close();
+        }
+
+        void release() {
+            closeSocket();
+            if (tree != null) {
+                tree.close();
+            } else if (process != null) {
+                process.destroyForcibly();
+            }
+            if (slot != null) {
+                slot.close();
+            }
+        }
+
+        private void closeSocket() {
+            socketClosed = true;
+            if (key != null) {
+                key.cancel();
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Nothing to do
+                }
+            }
+        }
+
+        private String describe(String why) {
+            switch (why) {
+                case "timeout":
+                    return "Error: Execution timeout (exceeded " + maxSeconds + " seconds).";
+                case "idle":
+                    return "Error: Stopped after " + idleSeconds + " seconds without input or output.";
+                case "output":
+                    return "Error: Output limit exceeded (" + JavaCompilerService.MAX_OUTPUT_BYTES + " bytes).";
+                case "failed":
+                    return "Error: The program did not start.";
+                default:
+                    return "Stopped.";
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.javahub.app.compiler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javahub.app.model.User;
+import com.javahub.app.service.UserService;
+import com.javahub.app.util.JwtUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.ServletContext;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+// WebSocket endpoint for interactive runs (/compiler/ws/run). Browsers cannot put a JWT in the
+// upgrade request's headers, so the first message carries it:
+//   client: {"type":"start","token":...,"code":...}, then {"type":"stdin","data":...}, {"type":"eof"}, {"type":"kill"}
+//   server: {"type":"compiled"}, {"type":"stdout","data":...}, {"type":"error"}, and finally {"type":"exit"}
+@Component
+public class InteractiveRunSocket extends Endpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(InteractiveRunSocket.class);
+
+    public static final String PATH = "/compiler/ws/run";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final long START_TIMEOUT_MS = 10_000;
+    private static final int MAX_MESSAGE_CHARS = 256 * 1024;
+    // Output waiting for a slow browser beyond this stops reading from the program until it drains
+    private static final long BACKLOG_BYTES = 256 * 1024;
+
+    @Autowired
+    private InteractiveRunService interactiveRunService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired(required = false)
+    private ServletContext servletContext;
+
+    // The embedded Tomcat has set up its WebSocket container by the time beans are created
+    @PostConstruct
+    public void register() throws DeploymentException {
+        ServerContainer container = servletContext == null ? null
+                : (ServerContainer) servletContext.getAttribute(ServerContainer.class.getName());
+        if (container == null) {
+            log.warn("No WebSocket container, interactive runs are disabled");
+            return;
+        }
+        InteractiveRunSocket endpoint = this;
+        container.addEndpoint(ServerEndpointConfig.Builder.create(InteractiveRunSocket.class, PATH)
+                .configurator(new ServerEndpointConfig.Configurator() {
+                    @Override
+                    public <T> T getEndpointInstance(Class<T> endpointClass) {
+                        return endpointClass.cast(endpoint);
+                    }
+                })
+                .build());
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        session.setMaxTextMessageBufferSize(MAX_MESSAGE_CHARS);
+        // Until the program starts; after that the run service decides when it is idle
+        session.setMaxIdleTimeout(START_TIMEOUT_MS);
+        session.addMessageHandler(String.class, new Connection(session));
+    }
+
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        connection(session).ifPresent(Connection::disconnected);
+    }
+
+    @Override
+    public void onError(Session session, Throwable error) {
+        connection(session).ifPresent(Connection::disconnected);
+    }
+
+    private static Optional<Connection> connection(Session session) {
+        return session.getMessageHandlers().stream()
+                .filter(handler -> handler instanceof Connection)
+                .map(handler -> (Connection) handler)
+                .findFirst();
+    }
+
+    private int userIdFromToken(String token) {
+        if (token == null || !jwtUtil.validateToken(token)) {
+            return -1;
+        }
+        Optional<User> user = userService.findByUsername(jwtUtil.extractUsername(token));
+        return user.map(User::getId).orElse(-1);
+    }
+
+    // One browser connection; sends are queued and go out one at a time as the last completes
+    private class Connection implements MessageHandler.Whole<String>, InteractiveRunService.Client {
+
+        private final Session socket;
+        private final ArrayDeque<String> queue = new ArrayDeque<>();
+        private long queuedBytes;
+        private boolean sending;
+        private boolean closing;
+        private InteractiveRunService.Session run;
+
+        Connection(Session socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void onMessage(String text) {
+            Map<?, ?> message;
+            try {
+                message = JSON.readValue(text, Map.class);
+            } catch (JsonProcessingException e) {
+                send(error("Error: Messages must be JSON objects."));
+                return;
+            }
+            Object type = message.get("type");
+            Object data = message.get("data");
+            InteractiveRunService.Session current = currentRun();
+            if ("start".equals(type)) {
+                start(message);
+            } else if (current == null) {
+                send(error("Error: Send a start message first."));
+            } else if ("stdin".equals(type) && data instanceof String) {
+                interactiveRunService.input(current, (String) data);
+            } else if ("eof".equals(type)) {
+                interactiveRunService.endInput(current);
+            } else if ("kill".equals(type)) {
+                interactiveRunService.kill(current);
+            } else {
+                send(error("Error: Unknown message type " + type + "."));
+            }
+        }
+
+        private void start(Map<?, ?> message) {
+            if (currentRun() != null) {
+                send(error("Error: A program is already running on this connection."));
+                return;
+            }
+            int userId = userIdFromToken(message.get("token") instanceof String ? (String) message.get("token") : null);
+            if (userId <= 0) {
+                send(error("Error: Authentication required."));
+                close();
+                return;
+            }
+            String code = message.get("code") instanceof String ? (String) message.get("code") : null;
+            String invalid = interactiveRunService.validate(userId, code);
+            if (invalid != null) {
+                send(error(invalid));
+                close();
+                return;
+            }
+            try {
+                InteractiveRunService.Session started = interactiveRunService.start(userId, code, this);
+                synchronized (this) {
+                    run = started;
+                }
+                socket.setMaxIdleTimeout(0);
+            } catch (SchedulerRejectedException e) {
+                Map<String, Object> busy = error("Error: " + e.getMessage());
+                busy.put("retryAfterSeconds", e.getRetryAfterSeconds());
+                send(busy);
+                close();
+            }
+        }
+
+        private synchronized InteractiveRunService.Session currentRun() {
+            return run;
+        }
+
+        void disconnected() {
+            InteractiveRunService.Session current = currentRun();
+            if (current != null) {
+                interactiveRunService.disconnected(current);
+            }
+        }
+
+        @Override
+        public void send(Map<String, Object> message) {
+            String text;
+            try {
+                text = JSON.writeValueAsString(message);
+            } catch (JsonProcessingException e) {
+                return;
+            }
+            synchronized (this) {
+                if (closing || !socket.isOpen()) {
+                    return;
+                }
+                queue.add(text);
+                queuedBytes += text.length();
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            sendNext();
+        }
+
+        private void sendNext() {
+            String text;
+            synchronized (this) {
+                text = queue.poll();
+                if (text == null) {
+                    sending = false;
+                    return;
+                }
+            }
+            socket.getAsyncRemote().sendText(text, result -> {
+                boolean drained;
+                boolean resume;
+                synchronized (this) {
+                    boolean wasBacklogged = queuedBytes > BACKLOG_BYTES;
+                    queuedBytes -= text.length();
+                    resume = wasBacklogged && queuedBytes <= BACKLOG_BYTES && run != null;
+                    drained = queue.isEmpty();
+                }
+                if (!result.isOK()) {
+                    closeNow();
+                    return;
+                }
+                if (resume) {
+                    interactiveRunService.resume(currentRun());
+                }
+                if (drained && isClosing()) {
+                    closeNow();
+                }
+                sendNext();
+            });
+        }
+
+        @Override
+        public synchronized boolean isBacklogged() {
+            return queuedBytes > BACKLOG_BYTES;
+        }
+
+        // Closes once everything queued has been sent
+        @Override
+        public void close() {
+            boolean idle;
+            synchronized (this) {
+                closing = true;
+                idle = !sending;
+            }
+            if (idle) {
+                closeNow();
+            }
+        }
+
+        private synchronized boolean isClosing() {
+            return closing;
+        }
+
+        private void closeNow() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+
+        private Map<String, Object> error(String message) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("type", "error");
+            error.put("error", message);
+            return error;
+        }
+    }
+}
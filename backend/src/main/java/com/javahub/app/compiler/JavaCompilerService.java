@@ -1,27 +1,191 @@
 package com.javahub.app.compiler;
 
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.tools.JavaCompiler;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
-import javax.tools.ToolProvider;
 import java.io.*;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
 
 @Service
 public class JavaCompilerService {
 
     private static final String TEMP_DIR = System.getProperty("java.io.tmpdir");
-    private static final long MAX_EXECUTION_TIME = 5; // seconds
-    private static final long MAX_MEMORY_MB = 128; // MB
+    static final long MAX_EXECUTION_TIME = 5; // seconds
+    static final long MAX_MEMORY_MB = 128; // MB
+    static final long MAX_OUTPUT_BYTES = 1024 * 1024; // program is stopped beyond this
+    static final int OUTPUT_HEAD_BYTES = 32 * 1024; // kept from the start of the output
+    static final int OUTPUT_TAIL_BYTES = 32 * 1024; // kept from the end of the output
+    static final String CANCELLED_MESSAGE = "Execution cancelled";
+
+    // Annotation processing is never wanted for user code and its discovery scan costs every compile
+    private static final List<String> COMPILER_OPTIONS = Collections.singletonList("-proc:none");
+
+    private final JavacService javac;
+    private final SingleFlight<CompiledProgram> compileFlights = new SingleFlight<>();
+
+    @Autowired(required = false)
+    private SandboxWorkerPool workerPool;
+
+    @Autowired(required = false)
+    private CompilationCache compilationCache;
+
+    @Autowired(required = false)
+    private InProcessExecutor inProcessExecutor;
+
+    @Autowired(required = false)
+    private WorkspacePool workspacePool;
+
+    @Autowired(required = false)
+    private ResourceMonitor resourceMonitor;
+
+    @Autowired(required = false)
+    private UsageAccounting usageAccounting;
+
+    @Autowired(required = false)
+    private ProcessReaper processReaper;
+
+    @Value("${compiler.engine:process}")
+    private String defaultEngine = "process";
+
+    @Value("${compiler.in-memory:true}")
+    private boolean inMemory = true;
+
+    public JavaCompilerService() {
+        this(new JavacService());
+    }
+
+    JavaCompilerService(JavacService javac) {
+        this.javac = javac;
+    }
+
+    // Other services that run javac borrow file managers from the same pool
+    JavacService javac() {
+        return javac;
+    }
 
     public CompilationResult compileAndRun(String code) {
+        return compileAndRun(code, ExecutionContext.none());
+    }
+
+    public CompilationResult compileAndRun(String code, OutputListener listener) {
+        return compileAndRun(code, new ExecutionContext(listener));
+    }
+
+    public CompilationResult compileAndRun(String code, ExecutionContext context) {
+        return inMemory ? compileAndRunInMemory(code, context) : compileAndRunOnDisk(code, context);
+    }
+
+    public CompilationResult compileAndRunInMemory(String code) {
+        return compileAndRunInMemory(code, ExecutionContext.none());
+    }
+
+    public CompilationResult compileAndRunInMemory(String code, ExecutionContext context) {
+        return run(prepareInMemory(code), context);
+    }
+
+    // The compile half of compileAndRun, for callers that schedule compiling and running as separate
+    // steps. The on-disk path compiles next to the class files it runs, so there both happen in run.
+    public PreparedRun prepare(String code) {
+        return inMemory ? prepareInMemory(code) : new PreparedRun(code, null, 0, null);
+    }
+
+    public CompilationResult run(PreparedRun prepared, ExecutionContext context) {
+        if (prepared.failure != null) {
+            return prepared.failure;
+        }
+        if (prepared.program == null) {
+            return compileAndRunOnDisk(prepared.code, context);
+        }
+        try {
+            // Bytecode is piped to the sandbox launcher, nothing is written to disk
+            ExecutionResult execution = runInMemory(prepared.program, context);
+            CompilationResult result = new CompilationResult(execution, prepared.compileTimeMs);
+            // A run that was cancelled, killed, timed out or cut short says nothing about the program's output
+            result.setShareable(prepared.program.isDeterministic() && execution.getError() == null
+                    && !execution.isTimedOut() && !execution.isTruncated());
+            return result;
+        } catch (Exception e) {
+            return new CompilationResult("", "Error: " + e.getMessage());
+        }
+    }
+
+    private PreparedRun prepareInMemory(String code) {
+        String className = extractClassName(code);
+        if (className == null) {
+            return new PreparedRun(code, null, 0,
+                    new CompilationResult("", "Error: Could not find a public class in the code."));
+        }
+        try {
+            long compileStart = System.currentTimeMillis();
+            CompiledProgram program = compileInMemory(className, code);
+            long compileTimeMs = System.currentTimeMillis() - compileStart;
+            if (!program.isSuccess()) {
+                CompilationResult failure = new CompilationResult("", program.getErrors());
+                failure.setShareable(program.isCacheable());
+                return new PreparedRun(code, null, compileTimeMs, failure);
+            }
+            return new PreparedRun(code, program, compileTimeMs, null);
+        } catch (Exception e) {
+            return new PreparedRun(code, null, 0, new CompilationResult("", "Error: " + e.getMessage()));
+        }
+    }
+
+    // Builds a multi-file project incrementally against the session's previous build, then runs it
+    public CompilationResult compileAndRunProject(ProjectSession session, Map<String, String> files, String mainClass,
+                                                  ExecutionContext context) {
+        CompiledProgram program;
+        long compileTimeMs;
+        synchronized (session) {
+            long compileStart = System.currentTimeMillis();
+            ProjectSession.Plan plan = session.plan(files);
+            if (!plan.sources.isEmpty()) {
+                String errors = compileProject(plan);
+                if (!errors.isEmpty()) {
+                    session.touch();
+                    return new CompilationResult("", errors);
+                }
+            }
+            session.commit(plan);
+            compileTimeMs = System.currentTimeMillis() - compileStart;
+            program = CompiledProgram.success(mainClass, session.getClasses());
+        }
+        if (!program.getClasses().containsKey(mainClass)) {
+            return new CompilationResult("", "Error: Main class " + mainClass + " was not found in the project.");
+        }
+
+        try {
+            ExecutionResult execution = runInMemory(program, context);
+            return new CompilationResult(execution, compileTimeMs);
+        } catch (Exception e) {
+            return new CompilationResult("", "Error: " + e.getMessage());
+        }
+    }
+
+    public CompilationResult compileAndRunOnDisk(String code) {
+        return compileAndRunOnDisk(code, ExecutionContext.none());
+    }
+
+    public CompilationResult compileAndRunOnDisk(String code, ExecutionContext context) {
         String className = extractClassName(code);
         if (className == null) {
             return new CompilationResult("", "Error: Could not find a public class in the code.");
@@ -29,36 +193,41 @@ public class JavaCompilerService {
 
         Path tempDir = null;
         try {
-            // Create temporary directory
-            tempDir = Files.createTempDirectory(Paths.get(TEMP_DIR), "java_compile_");
+            // Take a clean workspace from the pool, or a one-off temporary directory without it
+            tempDir = workspacePool != null
+                    ? workspacePool.acquire()
+                    : Files.createTempDirectory(Paths.get(TEMP_DIR), WorkspacePool.PREFIX);
             Path javaFile = tempDir.resolve(className + ".java");
             
             // Write code to file
             Files.write(javaFile, code.getBytes());
 
             // Compile
+            long compileStart = System.currentTimeMillis();
             String compileErrors = compileJavaFile(javaFile);
+            long compileTimeMs = System.currentTimeMillis() - compileStart;
             if (!compileErrors.isEmpty()) {
                 return new CompilationResult("", compileErrors);
             }
 
             // Run with sandbox restrictions
-            String output = runJavaClass(tempDir, className);
-            String errors = "";
-
-            return new CompilationResult(output, errors);
+            ExecutionResult execution = runJavaClass(tempDir, className, context);
+            account(execution, context);
+            return new CompilationResult(execution, compileTimeMs);
 
         } catch (Exception e) {
             return new CompilationResult("", "Error: " + e.getMessage());
         } finally {
             // Cleanup
-            if (tempDir != null) {
+            if (tempDir != null && workspacePool != null) {
+                workspacePool.release(tempDir);
+            } else if (tempDir != null) {
                 deleteDirectory(tempDir.toFile());
             }
         }
     }
 
-    private String extractClassName(String code) {
+    String extractClassName(String code) {
         // Simple extraction: look for "public class ClassName"
         String[] lines = code.split("\n");
         for (String line : lines) {
@@ -78,8 +247,64 @@ public class JavaCompilerService {
         return null;
     }
 
+    public CompiledProgram compileInMemory(String className, String code) {
+        if (compilationCache == null) {
+            return compileSource(className, code);
+        }
+        String cacheKey = CompilationCache.key(code, COMPILER_OPTIONS);
+        CompiledProgram program = compilationCache.get(cacheKey);
+        if (program != null) {
+            return program;
+        }
+        try {
+            // Identical sources submitted together compile once; the others wait for that result
+            return compileFlights.run(cacheKey, () -> {
+                CompiledProgram compiled = compileSource(className, code);
+                if (compiled.isCacheable()) {
+                    compilationCache.put(cacheKey, compiled);
+                }
+                return compiled;
+            }, CompiledProgram::isCacheable);
+        } catch (Exception e) {
+            return CompiledProgram.error(className, "Error: " + e.getMessage());
+        }
+    }
+
+    private CompiledProgram compileSource(String className, String code) {
+        JavaCompiler compiler = javac.getCompiler();
+        if (compiler == null) {
+            return CompiledProgram.error(className, "Error: Java compiler not available. Make sure JDK is installed, not just JRE.");
+        }
+
+        ByteArrayOutputStream compilerOut = new ByteArrayOutputStream();
+        PrintWriter writer = new PrintWriter(compilerOut);
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavacService.PooledFileManager pooled = javac.acquire();
+        boolean reusable = false;
+        try {
+            MemoryJavaFileManager fileManager = new MemoryJavaFileManager(pooled.get());
+            JavaCompiler.CompilationTask task = compiler.getTask(writer, fileManager, diagnostics, COMPILER_OPTIONS, null,
+                    Collections.singletonList(new MemorySourceFile(className, code)));
+
+            boolean success = task.call();
+            writer.flush();
+            reusable = true;
+
+            if (!success) {
+                return CompiledProgram.failure(className, formatDiagnostics(diagnostics, compilerOut));
+            }
+            return CompiledProgram.success(className, fileManager.getClassBytes());
+        } catch (RuntimeException e) {
+            return CompiledProgram.error(className, "Error: " + e.getMessage());
+        } finally {
+            javac.release(pooled, reusable);
+            writer.close();
+        }
+    }
+
     private String compileJavaFile(Path javaFile) {
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaCompiler compiler = javac.getCompiler();
         if (compiler == null) {
             return "Error: Java compiler not available. Make sure JDK is installed, not just JRE.";
         }
@@ -87,96 +312,343 @@ public class JavaCompilerService {
         ByteArrayOutputStream compilerOut = new ByteArrayOutputStream();
         PrintWriter writer = new PrintWriter(compilerOut);
 
-        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+        JavacService.PooledFileManager pooled = javac.acquire();
+        boolean reusable = false;
+        try {
+            StandardJavaFileManager fileManager = pooled.get();
             DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
             Iterable<? extends JavaFileObject> sourceFile = fileManager.getJavaFileObjects(javaFile.toFile());
-            Iterable<String> options = Arrays.asList("-d", javaFile.getParent().toString());
+            List<String> options = new ArrayList<>(COMPILER_OPTIONS);
+            options.addAll(Arrays.asList("-d", javaFile.getParent().toString()));
 
             JavaCompiler.CompilationTask task =
                     compiler.getTask(writer, fileManager, diagnostics, options, null, sourceFile);
 
             boolean success = task.call();
             writer.flush();
-            String compileOutput = compilerOut.toString();
+            reusable = true;
 
             if (!success) {
-                StringBuilder errorBuilder = new StringBuilder();
-                for (javax.tools.Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
-                    errorBuilder.append(diagnostic.getMessage(null)).append("\n");
+                return formatDiagnostics(diagnostics, compilerOut);
+            }
+            return "";
+        } catch (RuntimeException e) {
+            return "Error: " + e.getMessage();
+        } finally {
+            javac.release(pooled, reusable);
+            writer.close();
+        }
+    }
+
+    // Parses and attributes the source without generating code. Returns null if cancelled says so
+    // before javac is done; the check runs between javac phases and classes.
+    public List<CompileDiagnostic> diagnose(String code, BooleanSupplier cancelled) {
+        JavaCompiler compiler = javac.getCompiler();
+        if (compiler == null) {
+            return Collections.singletonList(new CompileDiagnostic("error", -1, -1, -1, -1,
+                    "Java compiler not available. Make sure JDK is installed, not just JRE."));
+        }
+        String className = extractClassName(code);
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavacService.PooledFileManager pooled = javac.acquire();
+        boolean reusable = false;
+        try {
+            MemoryJavaFileManager fileManager = new MemoryJavaFileManager(pooled.get());
+            JavacTask task = (JavacTask) compiler.getTask(new PrintWriter(Writer.nullWriter()), fileManager,
+                    diagnostics, COMPILER_OPTIONS, null,
+                    Collections.singletonList(new MemorySourceFile(className != null ? className : "Main", code)));
+            task.addTaskListener(new TaskListener() {
+                @Override
+                public void started(TaskEvent event) {
+                    if (cancelled.getAsBoolean()) {
+                        throw new CancellationException();
+                    }
                 }
-                if (errorBuilder.length() > 0) {
-                    return errorBuilder.toString();
+            });
+            task.analyze();
+            reusable = true;
+        } catch (RuntimeException e) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            return Collections.singletonList(new CompileDiagnostic("error", -1, -1, -1, -1, "Error: " + e.getMessage()));
+        } catch (IOException e) {
+            return Collections.singletonList(new CompileDiagnostic("error", -1, -1, -1, -1, "Error: " + e.getMessage()));
+        } finally {
+            javac.release(pooled, reusable);
+        }
+
+        List<CompileDiagnostic> result = new ArrayList<>();
+        for (javax.tools.Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            result.add(CompileDiagnostic.of(diagnostic));
+        }
+        return result;
+    }
+
+    // Compiles plan.sources with the untouched classes of the previous build as class path input
+    private String compileProject(ProjectSession.Plan plan) {
+        JavaCompiler compiler = javac.getCompiler();
+        if (compiler == null) {
+            return "Error: Java compiler not available. Make sure JDK is installed, not just JRE.";
+        }
+
+        Map<URI, String> paths = new HashMap<>();
+        List<JavaFileObject> sources = new ArrayList<>();
+        for (Map.Entry<String, String> source : plan.sources.entrySet()) {
+            String path = source.getKey();
+            MemorySourceFile file = new MemorySourceFile(
+                    path.substring(0, path.length() - ".java".length()).replace('/', '.'), source.getValue());
+            paths.put(file.toUri(), path);
+            sources.add(file);
+        }
+
+        ByteArrayOutputStream compilerOut = new ByteArrayOutputStream();
+        PrintWriter writer = new PrintWriter(compilerOut);
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavacService.PooledFileManager pooled = javac.acquire();
+        boolean reusable = false;
+        try {
+            ProjectFileManager fileManager = new ProjectFileManager(pooled.get(), plan.classpath);
+            JavacTask task = (JavacTask) compiler.getTask(writer, fileManager, diagnostics, COMPILER_OPTIONS, null,
+                    sources);
+            DependencyCollector dependencies = new DependencyCollector(task);
+            task.addTaskListener(dependencies);
+
+            boolean success = task.call();
+            writer.flush();
+            reusable = true;
+
+            if (!success) {
+                return formatProjectDiagnostics(diagnostics, paths, compilerOut);
+            }
+            for (Map.Entry<String, byte[]> output : fileManager.getClassBytes().entrySet()) {
+                String className = output.getKey();
+                String owner = plan.classpathOwners.get(className);
+                if (owner != null) {
+                    return "Error: duplicate class " + className + " (also declared in " + owner + ")";
                 }
-                return compileOutput;
+                String path = paths.get(fileManager.getOrigins().get(className));
+                plan.compiled.put(className, output.getValue());
+                plan.outputs.computeIfAbsent(path, k -> new HashSet<>()).add(className);
+            }
+            for (Map.Entry<URI, String> source : paths.entrySet()) {
+                plan.declared.put(source.getValue(), dependencies.getDeclared(source.getKey()));
+                plan.references.put(source.getValue(), dependencies.getReferences(source.getKey()));
             }
             return "";
-        } catch (IOException e) {
+        } catch (RuntimeException e) {
             return "Error: " + e.getMessage();
         } finally {
+            javac.release(pooled, reusable);
             writer.close();
         }
     }
 
-    private String runJavaClass(Path classDir, String className) {
+    private String formatProjectDiagnostics(DiagnosticCollector<JavaFileObject> diagnostics, Map<URI, String> paths,
+                                            ByteArrayOutputStream compilerOut) {
+        StringBuilder errorBuilder = new StringBuilder();
+        for (javax.tools.Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() != javax.tools.Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            if (diagnostic.getSource() != null) {
+                errorBuilder.append(paths.getOrDefault(diagnostic.getSource().toUri(), diagnostic.getSource().getName()))
+                        .append(':').append(diagnostic.getLineNumber()).append(": ");
+            }
+            errorBuilder.append(diagnostic.getMessage(null)).append("\n");
+        }
+        if (errorBuilder.length() > 0) {
+            return errorBuilder.toString();
+        }
+        return compilerOut.toString();
+    }
+
+    public Map<String, Object> getJavacStats() {
+        Map<String, Object> stats = new HashMap<>(javac.getStats());
+        stats.put("coalescedCompiles", compileFlights.getShared());
+        return stats;
+    }
+
+    // Key under which identical submissions may share one run
+    public static String runKey(String code, ExecutionContext.Engine engine) {
+        return CompilationCache.key(code, COMPILER_OPTIONS) + (engine != null ? ":" + engine.label() : "");
+    }
+
+    private String formatDiagnostics(DiagnosticCollector<JavaFileObject> diagnostics, ByteArrayOutputStream compilerOut) {
+        StringBuilder errorBuilder = new StringBuilder();
+        for (javax.tools.Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            errorBuilder.append(diagnostic.getMessage(null)).append("\n");
+        }
+        if (errorBuilder.length() > 0) {
+            return errorBuilder.toString();
+        }
+        return compilerOut.toString();
+    }
+
+    private ExecutionResult runInMemory(CompiledProgram program, ExecutionContext context) {
+        ExecutionContext.Engine engine = context.getEngine() != null
+                ? context.getEngine() : ExecutionContext.Engine.parse(defaultEngine);
+        if (engine == ExecutionContext.Engine.IN_PROCESS && inProcessExecutor != null) {
+            // Programs touching anything outside SandboxPolicy come back as null and take the JVM path
+            ExecutionResult execution = inProcessExecutor.execute(program, MAX_EXECUTION_TIME, context);
+            if (execution != null) {
+                execution.setEngine(ExecutionContext.Engine.IN_PROCESS);
+                account(execution, context);
+                return execution;
+            }
+        }
+
+        ExecutionResult execution = runInChildJvm(program, context);
+        execution.setEngine(ExecutionContext.Engine.PROCESS);
+        account(execution, context);
+        return execution;
+    }
+
+    private void account(ExecutionResult execution, ExecutionContext context) {
+        if (usageAccounting != null) {
+            usageAccounting.record(context.getUserId(), execution.getUsage());
+        }
+    }
+
+    private ExecutionResult runInChildJvm(CompiledProgram program, ExecutionContext context) {
+        if (workerPool != null) {
+            ExecutionResult execution = workerPool.execute(program, MAX_EXECUTION_TIME, context);
+            if (execution != null) {
+                return execution;
+            }
+        }
+
+        Path launcherClasspath = SandboxRuntime.launcherClasspath();
+        ProcessBuilder processBuilder = new ProcessBuilder(
+            SandboxRuntime.javaCommand(launcherClasspath.toString(), SandboxRuntime.launcherMainClass()));
+        processBuilder.directory(SandboxRuntime.launcherDirectory().toFile());
+        return runProcess(processBuilder, SandboxRuntime.encodeProgram(program), context);
+    }
+
+    private ExecutionResult runJavaClass(Path classDir, String className, ExecutionContext context) {
+        // The launcher jar leads the classpath so the sandbox CDS archive, which records it, still applies
+        String classpath = SandboxRuntime.launcherClasspath() + File.pathSeparator + classDir;
+        ProcessBuilder processBuilder = new ProcessBuilder(SandboxRuntime.javaCommand(classpath, className));
+
+        // Set working directory
+        processBuilder.directory(classDir.toFile());
+        return runProcess(processBuilder, null, context);
+    }
+
+    private ExecutionResult runProcess(ProcessBuilder processBuilder, byte[] stdin, ExecutionContext context) {
+        if (context.isCancelled()) {
+            return ExecutionResult.failed(CANCELLED_MESSAGE);
+        }
         ExecutorService executor = Executors.newSingleThreadExecutor();
-        StringBuilder output = new StringBuilder();
-        StringBuilder errors = new StringBuilder();
+        long start = System.currentTimeMillis();
+        Runnable kill = null;
+        ResourceMonitor.Slot slot = null;
+        ProcessReaper.Tree tree = null;
 
         try {
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                "java",
-                "-Xmx" + MAX_MEMORY_MB + "m",
-                "-cp", classDir.toString(),
-                className
-            );
-
-            // Set working directory
-            processBuilder.directory(classDir.toFile());
-            
             // Redirect error stream
             processBuilder.redirectErrorStream(true);
 
-            Process process = processBuilder.start();
-
-            // Read output in separate thread
-            Future<String> outputFuture = executor.submit(() -> {
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(process.getInputStream()))) {
-                    StringBuilder sb = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        sb.append(line).append("\n");
+            tree = processReaper != null ? processReaper.start(processBuilder) : null;
+            Process process = tree != null ? tree.getProcess() : processBuilder.start();
+            // Before the program goes down stdin, so everything it runs is limited and counted
+            slot = resourceMonitor != null ? resourceMonitor.attach(process) : null;
+            if (slot != null) {
+                slot.begin();
+            }
+            kill = killAction(process, tree, slot);
+            Runnable stop = kill;
+            context.onCancel(kill);
+            OutputListener listener = context.getListener();
+
+            // Read output in separate thread, handing each chunk to the listener as it arrives
+            OutputCapture capture = newOutputCapture();
+            Future<?> outputFuture = executor.submit(() -> {
+                try (InputStream in = process.getInputStream()) {
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        if (listener != null) {
+                            listener.onOutput(false, buffer, 0, read);
+                        }
+                        if (!capture.write(buffer, 0, read)) {
+                            // Output cap reached, no point letting the program run any longer
+                            stop.run();
+                            break;
+                        }
                     }
-                    return sb.toString();
-                } catch (IOException e) {
-                    return "Error reading output: " + e.getMessage();
                 }
+                return null;
             });
 
+            if (stdin != null) {
+                try (OutputStream processIn = process.getOutputStream()) {
+                    processIn.write(stdin);
+                }
+            }
+
             // Wait for process with timeout
             boolean finished = process.waitFor(MAX_EXECUTION_TIME, TimeUnit.SECONDS);
-            
-            if (!finished) {
-                process.destroyForcibly();
-                return "Error: Execution timeout (exceeded " + MAX_EXECUTION_TIME + " seconds)";
-            }
 
-            if (process.exitValue() != 0) {
-                return "Error: Process exited with code " + process.exitValue();
+            if (context.isCancelled()) {
+                kill.run();
+                return ExecutionResult.failed(CANCELLED_MESSAGE);
+            }
+            if (!finished) {
+                kill.run();
+                return withUsage(new ExecutionResult(capture.decode(SandboxRuntime.OUTPUT_CHARSET), -1, true, null,
+                        System.currentTimeMillis() - start, capture.isTruncated()), slot);
             }
 
-            String result = outputFuture.get(1, TimeUnit.SECONDS);
-            return result;
+            outputFuture.get(1, TimeUnit.SECONDS);
+            return withUsage(new ExecutionResult(capture.decode(SandboxRuntime.OUTPUT_CHARSET), process.exitValue(),
+                    false, null, System.currentTimeMillis() - start, capture.isTruncated()), slot);
 
         } catch (TimeoutException e) {
-            return "Error: Execution timeout";
+            return new ExecutionResult("", -1, true, null, System.currentTimeMillis() - start);
         } catch (Exception e) {
-            return "Error: " + e.getMessage();
+            return ExecutionResult.failed(e.getMessage());
         } finally {
+            if (kill != null) {
+                context.removeOnCancel(kill);
+            }
+            if (tree != null) {
+                tree.close();
+            }
+            if (slot != null) {
+                slot.close();
+            }
             executor.shutdownNow();
         }
     }
 
+    // Takes down everything the program started, not just the JVM; a cgroup, where there is one,
+    // does it in a single step
+    static Runnable killAction(Process process, ProcessReaper.Tree tree, ResourceMonitor.Slot slot) {
+        return () -> {
+            if (slot != null) {
+                slot.kill();
+            }
+            if (tree != null) {
+                tree.kill();
+            } else {
+                process.destroyForcibly();
+            }
+        };
+    }
+
+    private static ExecutionResult withUsage(ExecutionResult execution, ResourceMonitor.Slot slot) {
+        if (slot != null) {
+            execution.setUsage(slot.finish(execution.getWallTimeMs()));
+        }
+        return execution;
+    }
+
+    static OutputCapture newOutputCapture() {
+        return new OutputCapture(MAX_OUTPUT_BYTES, OUTPUT_HEAD_BYTES, OUTPUT_TAIL_BYTES);
+    }
+
     private void deleteDirectory(File directory) {
         if (directory.exists()) {
             File[] files = directory.listFiles();
@@ -193,15 +665,57 @@ public class JavaCompilerService {
         }
     }
 
+    // A compiled program waiting for its run step, or the result it already has when compiling failed
+    public static class PreparedRun {
+        private final String code;
+        private final CompiledProgram program;
+        private final long compileTimeMs;
+        private final CompilationResult failure;
+
+        PreparedRun(String code, CompiledProgram program, long compileTimeMs, CompilationResult failure) {
+            this.code = code;
+            this.program = program;
+            this.compileTimeMs = compileTimeMs;
+            this.failure = failure;
+        }
+    }
+
     public static class CompilationResult {
         private String output;
         private String errors;
+        private ExecutionResult execution;
+        private long compileTimeMs;
+        private boolean shareable;
 
         public CompilationResult(String output, String errors) {
             this.output = output;
             this.errors = errors;
         }
 
+        public CompilationResult(ExecutionResult execution, long compileTimeMs) {
+            this(execution.describe(), "");
+            this.execution = execution;
+            this.compileTimeMs = compileTimeMs;
+        }
+
+        // Null when the program never ran, e.g. on compile errors
+        public ExecutionResult getExecution() {
+            return execution;
+        }
+
+        public long getCompileTimeMs() {
+            return compileTimeMs;
+        }
+
+        // True when any identical submission would get the same result, see DeterminismCheck
+        public boolean isShareable() {
+            return shareable;
+        }
+
+        void setShareable(boolean shareable) {
+            this.shareable = shareable;
+        }
+
         public String getOutput() {
             return output;
         }
@@ -211,6 +725,3 @@ public class JavaCompilerService {
         }
     }
 }
-
-
-
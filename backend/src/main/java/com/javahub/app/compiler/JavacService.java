@@ -0,0 +1,109 @@
+package com.javahub.app.compiler;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps javac's file managers warm between compilations. A StandardJavaFileManager caches the
+// opened JDK image and archive listings, so reusing one skips re-scanning them on every request.
+// File managers are not thread-safe: each compilation borrows one and hands it back afterwards.
+public class JavacService {
+
+    // Recycled after this many compilations so caches of deleted temp directories cannot pile up
+    private static final int MAX_USES = 500;
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    private final ConcurrentLinkedDeque<PooledFileManager> idle = new ConcurrentLinkedDeque<>();
+    private final int maxIdle;
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+
+    public JavacService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    // maxIdle 0 gives every compilation a fresh file manager, which is what the benchmark compares against
+    public JavacService(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    // Null when running on a JRE
+    public JavaCompiler getCompiler() {
+        return compiler;
+    }
+
+    public PooledFileManager acquire() {
+        PooledFileManager fileManager = idle.pollFirst();
+        if (fileManager != null) {
+            idleCount.decrementAndGet();
+            reused.incrementAndGet();
+        } else {
+            fileManager = new PooledFileManager(newFileManager());
+            created.incrementAndGet();
+        }
+        fileManager.uses++;
+        return fileManager;
+    }
+
+    // A manager that went through a failed compilation may hold half-updated state, so it is dropped
+    public void release(PooledFileManager fileManager, boolean reusable) {
+        if (reusable && fileManager.uses < MAX_USES) {
+            if (idleCount.incrementAndGet() <= maxIdle) {
+                idle.offerFirst(fileManager);
+                return;
+            }
+            idleCount.decrementAndGet();
+        }
+        closeQuietly(fileManager.get());
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "fileManagersCreated", created.get(),
+            "fileManagersReused", reused.get(),
+            "idle", idleCount.get()
+        );
+    }
+
+    private StandardJavaFileManager newFileManager() {
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            // Programs run in a child JVM that only has the JDK, so the backend's own jars are
+            // neither needed nor usable at compile time; leaving them out also keeps lookups cheap
+            fileManager.setLocation(StandardLocation.CLASS_PATH, Collections.emptyList());
+        } catch (IOException e) {
+            closeQuietly(fileManager);
+            throw new IllegalStateException("Could not configure javac file manager", e);
+        }
+        return fileManager;
+    }
+
+    private static void closeQuietly(StandardJavaFileManager fileManager) {
+        try {
+            fileManager.close();
+        } catch (IOException e) {
+            // Nothing left to release
+        }
+    }
+
+    public static class PooledFileManager {
+        private final StandardJavaFileManager fileManager;
+        private int uses;
+
+        PooledFileManager(StandardJavaFileManager fileManager) {
+            this.fileManager = fileManager;
+        }
+
+        public StandardJavaFileManager get() {
+            return fileManager;
+        }
+    }
+}
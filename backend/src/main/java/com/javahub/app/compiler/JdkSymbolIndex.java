@@ -0,0 +1,607 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Public types and members of the JDK's java.* modules, read once from the runtime image at
+// startup and shared by every completion request. Class files are read with ASM rather than
+// loaded, so building the index defines no classes. Lookups after that are map reads and a binary
+// search over the sorted simple names; inherited member lists are assembled on first use.
+@Component
+public class JdkSymbolIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(JdkSymbolIndex.class);
+
+    @Value("${compiler.completion.index-enabled:true}")
+    private boolean enabled = true;
+
+    private final CountDownLatch built = new CountDownLatch(1);
+    private final Map<String, List<Member>> allMembers = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Set.of());
+    private volatile long buildMs = -1;
+    private volatile String buildError;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            built.countDown();
+            return;
+        }
+        Thread thread = new Thread(this::build, "symbol-index");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    public boolean isReady() {
+        return built.getCount() == 0;
+    }
+
+    // For callers that would rather wait briefly than answer without JDK symbols
+    public boolean awaitReady(long timeoutMs) throws InterruptedException {
+        return built.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    // By qualified name with dots, nested types included (java.util.Map.Entry)
+    public TypeInfo type(String qualifiedName) {
+        TypeInfo type = snapshot.types.get(qualifiedName);
+        return type != null && type.accessible ? type : null;
+    }
+
+    // A package, or a prefix of one: "java" has no types of its own but java.util. must resolve
+    public boolean isPackage(String name) {
+        String next = snapshot.packages.ceiling(name);
+        return next != null && (next.equals(name) || next.startsWith(name + "."));
+    }
+
+    // Types whose simple name starts with the prefix, ignoring case; at most limit of them
+    public List<TypeInfo> typesByPrefix(String prefix, int limit) {
+        Snapshot current = snapshot;
+        String key = prefix.toLowerCase();
+        int index = Arrays.binarySearch(current.lowerSimpleNames, key);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        List<TypeInfo> result = new ArrayList<>();
+        for (int i = index; i < current.lowerSimpleNames.length && result.size() < limit; i++) {
+            if (!current.lowerSimpleNames[i].startsWith(key)) {
+                break;
+            }
+            result.add(current.bySimpleName[i]);
+        }
+        return result;
+    }
+
+    public List<TypeInfo> typesInPackage(String packageName) {
+        List<TypeInfo> result = snapshot.byPackage.get(packageName);
+        return result != null ? result : List.of();
+    }
+
+    // Direct subpackages of the given package ("" for top level), as full names
+    public List<String> subpackages(String packageName) {
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        List<String> result = new ArrayList<>();
+        for (String candidate : snapshot.packages.tailSet(prefix)) {
+            if (!candidate.startsWith(prefix)) {
+                break;
+            }
+            String rest = candidate.substring(prefix.length());
+            int dot = rest.indexOf('.');
+            String child = prefix + (dot < 0 ? rest : rest.substring(0, dot));
+            if (!rest.isEmpty() && (result.isEmpty() || !result.get(result.size() - 1).equals(child))) {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+
+    // Own and inherited members, nearest declaration first; an override hides what it overrides
+    public List<Member> members(TypeInfo type) {
+        List<Member> cached = allMembers.get(type.qualifiedName);
+        if (cached != null) {
+            return cached;
+        }
+        Map<String, Member> collected = new LinkedHashMap<>();
+        collect(type, collected, new HashSet<>());
+        if (type.isInterface) {
+            TypeInfo object = type("java.lang.Object");
+            if (object != null) {
+                collect(object, collected, new HashSet<>());
+            }
+        }
+        List<Member> members = Collections.unmodifiableList(new ArrayList<>(collected.values()));
+        allMembers.put(type.qualifiedName, members);
+        return members;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("ready", isReady());
+        stats.put("types", snapshot.bySimpleName.length);
+        stats.put("packages", snapshot.packages.size());
+        stats.put("members", snapshot.memberCount);
+        stats.put("buildMs", buildMs);
+        stats.put("resolvedTypes", allMembers.size());
+        if (buildError != null) {
+            stats.put("error", buildError);
+        }
+        return stats;
+    }
+
+    private void collect(TypeInfo type, Map<String, Member> collected, Set<String> seen) {
+        if (!seen.add(type.qualifiedName)) {
+            return;
+        }
+        for (Member member : type.members) {
+            collected.putIfAbsent(member.key(), member);
+        }
+        if (type.superName != null) {
+            TypeInfo superType = snapshot.types.get(type.superName);
+            if (superType != null) {
+                collect(superType, collected, seen);
+            }
+        }
+        for (String interfaceName : type.interfaces) {
+            TypeInfo superInterface = snapshot.types.get(interfaceName);
+            if (superInterface != null) {
+                collect(superInterface, collected, seen);
+            }
+        }
+    }
+
+    private void build() {
+        long start = System.currentTimeMillis();
+        try {
+            FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            Map<String, TypeInfo> types = new HashMap<>();
+            Set<String> packages = new TreeSet<>();
+            for (Module module : ModuleLayer.boot().modules()) {
+                if (!module.getName().startsWith("java.")) {
+                    continue;
+                }
+                for (ModuleDescriptor.Exports exports : module.getDescriptor().exports()) {
+                    if (exports.isQualified()) {
+                        continue;
+                    }
+                    packages.add(exports.source());
+                    Path directory = jrt.getPath("/modules", module.getName(), exports.source().replace('.', '/'));
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.class")) {
+                        for (Path file : files) {
+                            TypeInfo type = read(Files.readAllBytes(file));
+                            if (type != null) {
+                                types.put(type.qualifiedName, type);
+                            }
+                        }
+                    }
+                }
+            }
+            snapshot = new Snapshot(types, packages);
+            buildMs = System.currentTimeMillis() - start;
+            log.info("JDK symbol index: {} types, {} members in {}ms", types.size(), snapshot.memberCount, buildMs);
+        } catch (IOException | RuntimeException e) {
+            buildError = e.getMessage();
+            log.warn("Could not build the JDK symbol index: {}", e.getMessage());
+        } finally {
+            built.countDown();
+        }
+    }
+
+    // Null for anonymous, local and synthetic types. Package-private ones are kept, hidden from
+    // lookups, because public types inherit public members from them (AbstractStringBuilder)
+    private static TypeInfo read(byte[] classFile) {
+        TypeReader reader = new TypeReader();
+        new ClassReader(classFile).accept(reader, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return reader.result();
+    }
+
+    private static boolean visible(int access) {
+        return (access & (Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED)) != 0 && (access & Opcodes.ACC_SYNTHETIC) == 0;
+    }
+
+    private static class TypeReader extends ClassVisitor {
+
+        private String internalName;
+        private int access;
+        private boolean named = true;
+        private String superName;
+        private String[] interfaces;
+        private List<String> typeParameters = List.of();
+        private final List<Member> members = new ArrayList<>();
+
+        TypeReader() {
+            super(SpringAsmInfo.ASM_VERSION);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.internalName = name;
+            this.access = access;
+            this.superName = superName;
+            this.interfaces = interfaces;
+            if (signature != null) {
+                typeParameters = Signatures.typeParameters(signature);
+            }
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            // A nested type's own InnerClasses entry has its real modifiers; local and anonymous
+            // ones have no outer name
+            if (name.equals(internalName)) {
+                if (outerName == null || innerName == null) {
+                    named = false;
+                }
+                this.access = access | (this.access & Opcodes.ACC_DEPRECATED);
+            }
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            if (visible(access)) {
+                members.add(new Member(declaringType(), name, Member.Kind.FIELD, access, null,
+                        Type.getType(descriptor).getClassName(), null,
+                        signature != null ? Signatures.display(signature) : Signatures.display(descriptor),
+                        signature != null ? Signatures.typeVariable(signature) : null));
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            if (!visible(access) || (access & Opcodes.ACC_BRIDGE) != 0 || name.startsWith("<")) {
+                return null;
+            }
+            Type methodType = Type.getMethodType(descriptor);
+            String source = signature != null ? signature : descriptor;
+            members.add(new Member(declaringType(), name, Member.Kind.METHOD, access, Signatures.parameters(source),
+                    methodType.getReturnType().getClassName(), erasedParameters(methodType),
+                    Signatures.display(Signatures.returnType(source)),
+                    Signatures.typeVariable(Signatures.returnType(source))));
+            return null;
+        }
+
+        private String declaringType() {
+            return internalName.replace('/', '.').replace('$', '.');
+        }
+
+        TypeInfo result() {
+            if (!named || (access & (Opcodes.ACC_MODULE | Opcodes.ACC_SYNTHETIC)) != 0
+                    || internalName.endsWith("package-info")) {
+                return null;
+            }
+            String qualifiedName = internalName.replace('/', '.').replace('$', '.');
+            int slash = internalName.lastIndexOf('/');
+            String packageName = slash < 0 ? "" : internalName.substring(0, slash).replace('/', '.');
+            return new TypeInfo(qualifiedName, packageName, access, superName != null ? superName.replace('/', '.') : null,
+                    Arrays.stream(interfaces).map(name -> name.replace('/', '.').replace('$', '.')).toArray(String[]::new),
+                    typeParameters, members);
+        }
+
+        private static String erasedParameters(Type methodType) {
+            StringBuilder key = new StringBuilder();
+            for (Type argument : methodType.getArgumentTypes()) {
+                key.append(argument.getDescriptor());
+            }
+            return key.toString();
+        }
+    }
+
+    public static class TypeInfo {
+
+        public enum Kind { CLASS, INTERFACE, ENUM, RECORD, ANNOTATION }
+
+        private final String qualifiedName;
+        private final String simpleName;
+        private final String packageName;
+        private final Kind kind;
+        private final boolean isInterface;
+        private final boolean accessible;
+        private final boolean deprecated;
+        private final String superName;
+        private final String[] interfaces;
+        private final List<String> typeParameters;
+        private final List<Member> members;
+
+        TypeInfo(String qualifiedName, String packageName, int access, String superName, String[] interfaces,
+                 List<String> typeParameters, List<Member> members) {
+            this.qualifiedName = qualifiedName;
+            this.simpleName = qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+            this.packageName = packageName;
+            this.isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+            this.kind = (access & Opcodes.ACC_ANNOTATION) != 0 ? Kind.ANNOTATION
+                    : isInterface ? Kind.INTERFACE
+                    : (access & Opcodes.ACC_ENUM) != 0 ? Kind.ENUM
+                    : "java.lang.Record".equals(superName) ? Kind.RECORD
+                    : Kind.CLASS;
+            this.accessible = visible(access);
+            this.deprecated = (access & Opcodes.ACC_DEPRECATED) != 0;
+            this.superName = superName != null ? superName.replace('$', '.') : null;
+            this.interfaces = interfaces;
+            this.typeParameters = typeParameters;
+            this.members = members;
+        }
+
+        public String getQualifiedName() {
+            return qualifiedName;
+        }
+
+        public String getSimpleName() {
+            return simpleName;
+        }
+
+        public String getPackageName() {
+            return packageName;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public boolean isDeprecated() {
+            return deprecated;
+        }
+
+        public List<String> getTypeParameters() {
+            return typeParameters;
+        }
+
+        // Declared in this type only; see JdkSymbolIndex.members for inherited ones
+        public List<Member> getDeclaredMembers() {
+            return members;
+        }
+    }
+
+    public static class Member {
+
+        public enum Kind { FIELD, METHOD }
+
+        private final String declaringType;
+        private final String name;
+        private final Kind kind;
+        private final boolean isStatic;
+        private final boolean isProtected;
+        private final boolean deprecated;
+        private final List<String> parameters;
+        private final String type;
+        private final String erasedParameters;
+        private final String typeDisplay;
+        private final String typeVariable;
+
+        Member(String declaringType, String name, Kind kind, int access, List<String> parameters, String type,
+               String erasedParameters, String typeDisplay, String typeVariable) {
+            this.declaringType = declaringType;
+            this.name = name;
+            this.kind = kind;
+            this.isStatic = (access & Opcodes.ACC_STATIC) != 0;
+            this.isProtected = (access & Opcodes.ACC_PROTECTED) != 0;
+            this.deprecated = (access & Opcodes.ACC_DEPRECATED) != 0;
+            this.parameters = parameters;
+            this.type = type.replace('$', '.');
+            this.erasedParameters = erasedParameters;
+            this.typeDisplay = typeDisplay;
+            this.typeVariable = typeVariable;
+        }
+
+        String key() {
+            return kind == Kind.FIELD ? name : name + "(" + erasedParameters;
+        }
+
+        // Where it is declared, such as java.lang.Object for an inherited toString()
+        public String getDeclaringType() {
+            return declaringType;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public boolean isStatic() {
+            return isStatic;
+        }
+
+        // Only reachable from a subclass
+        public boolean isProtected() {
+            return isProtected;
+        }
+
+        public boolean isDeprecated() {
+            return deprecated;
+        }
+
+        // Parameter types as written in the declaration (generic), null for fields
+        public List<String> getParameters() {
+            return parameters;
+        }
+
+        // Erased field or return type, qualified with dots, with [] for arrays
+        public String getType() {
+            return type;
+        }
+
+        public String getTypeDisplay() {
+            return typeDisplay;
+        }
+
+        // Set when the field or return type is a bare type variable such as E
+        public String getTypeVariable() {
+            return typeVariable;
+        }
+    }
+
+    private static class Snapshot {
+
+        private final Map<String, TypeInfo> types;
+        private final TreeSet<String> packages;
+        private final Map<String, List<TypeInfo>> byPackage = new HashMap<>();
+        private final String[] lowerSimpleNames;
+        private final TypeInfo[] bySimpleName;
+        private final int memberCount;
+
+        Snapshot(Map<String, TypeInfo> types, Set<String> packages) {
+            this.types = types;
+            this.packages = new TreeSet<>(packages);
+            List<TypeInfo> sorted = new ArrayList<>();
+            for (TypeInfo type : types.values()) {
+                if (type.accessible) {
+                    sorted.add(type);
+                }
+            }
+            sorted.sort((a, b) -> {
+                int bySimple = a.simpleName.compareToIgnoreCase(b.simpleName);
+                return bySimple != 0 ? bySimple : a.qualifiedName.compareTo(b.qualifiedName);
+            });
+            lowerSimpleNames = new String[sorted.size()];
+            bySimpleName = new TypeInfo[sorted.size()];
+            int members = 0;
+            for (int i = 0; i < sorted.size(); i++) {
+                TypeInfo type = sorted.get(i);
+                lowerSimpleNames[i] = type.simpleName.toLowerCase();
+                bySimpleName[i] = type;
+                members += type.members.size();
+                byPackage.computeIfAbsent(type.packageName, name -> new ArrayList<>()).add(type);
+            }
+            memberCount = members;
+        }
+    }
+
+    // Just enough of the class file signature grammar (JVMS 4.7.9.1) to show generic types the way
+    // they are written in source and to find type variables
+    static final class Signatures {
+
+        private Signatures() {
+        }
+
+        static List<String> typeParameters(String classSignature) {
+            List<String> names = new ArrayList<>();
+            if (!classSignature.startsWith("<")) {
+                return names;
+            }
+            int[] position = {1};
+            while (classSignature.charAt(position[0]) != '>') {
+                int colon = classSignature.indexOf(':', position[0]);
+                names.add(classSignature.substring(position[0], colon));
+                position[0] = colon;
+                // Class bound (possibly empty), then interface bounds
+                while (classSignature.charAt(position[0]) == ':') {
+                    position[0]++;
+                    char next = classSignature.charAt(position[0]);
+                    if (next != ':' && next != '>') {
+                        render(classSignature, position);
+                    }
+                }
+            }
+            return names;
+        }
+
+        static List<String> parameters(String methodSignature) {
+            int[] position = {methodSignature.indexOf('(') + 1};
+            List<String> parameters = new ArrayList<>();
+            while (methodSignature.charAt(position[0]) != ')') {
+                parameters.add(render(methodSignature, position));
+            }
+            return parameters;
+        }
+
+        static String returnType(String methodSignature) {
+            String rest = methodSignature.substring(methodSignature.indexOf(')') + 1);
+            int exceptions = rest.indexOf('^');
+            return exceptions < 0 ? rest : rest.substring(0, exceptions);
+        }
+
+        static String display(String typeSignature) {
+            return render(typeSignature, new int[]{0});
+        }
+
+        static String typeVariable(String typeSignature) {
+            return typeSignature.startsWith("T") ? typeSignature.substring(1, typeSignature.length() - 1) : null;
+        }
+
+        private static String render(String signature, int[] position) {
+            char c = signature.charAt(position[0]++);
+            switch (c) {
+                case 'B': return "byte";
+                case 'C': return "char";
+                case 'D': return "double";
+                case 'F': return "float";
+                case 'I': return "int";
+                case 'J': return "long";
+                case 'S': return "short";
+                case 'Z': return "boolean";
+                case 'V': return "void";
+                case '[': return render(signature, position) + "[]";
+                case '*': return "?";
+                case '+': return "? extends " + render(signature, position);
+                case '-': return "? super " + render(signature, position);
+                case 'T': {
+                    int end = signature.indexOf(';', position[0]);
+                    String name = signature.substring(position[0], end);
+                    position[0] = end + 1;
+                    return name;
+                }
+                case 'L': {
+                    StringBuilder name = new StringBuilder();
+                    StringBuilder segment = new StringBuilder();
+                    while (true) {
+                        char next = signature.charAt(position[0]++);
+                        if (next == ';') {
+                            break;
+                        } else if (next == '<') {
+                            List<String> arguments = new ArrayList<>();
+                            while (signature.charAt(position[0]) != '>') {
+                                arguments.add(render(signature, position));
+                            }
+                            position[0]++;
+                            segment.append('<').append(String.join(", ", arguments)).append('>');
+                        } else if (next == '/' || next == '$' || next == '.') {
+                            if (next != '/') {
+                                name.append(segment).append('.');
+                            }
+                            segment.setLength(0);
+                        } else {
+                            segment.append(next);
+                        }
+                    }
+                    return name.append(segment).toString();
+                }
+                default:
+                    throw new IllegalArgumentException("Bad signature " + signature);
+            }
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Grades a submission against a list of test cases: one compile, then every case in a single
+// sandbox JVM (SandboxJudge) instead of one launch per case. Output is compared while it streams
+// in (OutputMatcher), so a wrong answer is known at its first wrong token and, when the caller
+// only wants to know whether everything passes, the run stops there. A case that takes the JVM
+// down (System.exit, time limit, a crash) costs one more launch for the cases after it. Inputs
+// and expected outputs are TestDataStore blobs, written to the JVM and compared in place.
+@Service
+public class JudgeService {
+
+    public enum Verdict {
+        ACCEPTED, WRONG_ANSWER, RUNTIME_ERROR, TIME_LIMIT, OUTPUT_LIMIT, MEMORY_LIMIT, NOT_RUN, COMPILE_ERROR,
+        // Correct, but its running time grows faster than the question allows (ComplexityJudge)
+        COMPLEXITY_LIMIT
+    }
+
+    // What is shown of a visible case's output and errors
+    private static final int CASE_OUTPUT_BYTES = 4 * 1024;
+    private static final int CASE_ERROR_BYTES = 2 * 1024;
+    private static final SecureRandom NONCES = new SecureRandom();
+
+    @Autowired
+    private JavaCompilerService compilerService;
+
+    @Autowired(required = false)
+    private ProcessReaper processReaper;
+
+    @Autowired(required = false)
+    private ResourceMonitor resourceMonitor;
+
+    @Autowired(required = false)
+    private UsageAccounting usageAccounting;
+
+    @Value("${compiler.judge.case-millis:2000}")
+    private long caseMillis = 2000;
+
+    @Value("${compiler.judge.total-seconds:20}")
+    private long totalSeconds = 20;
+
+    @Value("${compiler.judge.max-cases:50}")
+    private int maxCases = 50;
+
+    // The sandbox holds a case's input in its heap (MAX_MEMORY_MB) while the program reads it
+    @Value("${compiler.judge.max-input-bytes:33554432}")
+    private int maxInputBytes = 32 * 1024 * 1024;
+
+    private final AtomicLong submissions = new AtomicLong();
+    private final AtomicLong casesRun = new AtomicLong();
+    private final AtomicLong launches = new AtomicLong();
+    private final AtomicLong stoppedEarly = new AtomicLong();
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "judge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    public static final class TestCase {
+
+        private final int id;
+        private final TestDataStore.Blob input;
+        private final TestDataStore.Blob expectedOutput;
+        private final boolean hidden;
+
+        public TestCase(int id, String input, String expectedOutput, boolean hidden) {
+            this(id, TestDataStore.Blob.of(input), TestDataStore.Blob.of(expectedOutput), hidden);
+        }
+
+        public TestCase(int id, TestDataStore.Blob input, TestDataStore.Blob expectedOutput, boolean hidden) {
+            this.id = id;
+            this.input = input;
+            this.expectedOutput = expectedOutput;
+            this.hidden = hidden;
+        }
+    }
+
+    // Returns an error message, or null when the submission can be judged
+    public String validate(String code, List<TestCase> cases) {
+        if (code == null || code.trim().isEmpty()) {
+            return "Error: Code cannot be empty.";
+        }
+        if (cases.isEmpty()) {
+            return "Error: This question has no test cases.";
+        }
+        if (cases.size() > maxCases) {
+            return "Error: At most " + maxCases + " test cases can be judged at once.";
+        }
+        for (TestCase testCase : cases) {
+            if (testCase.input.size() > maxInputBytes) {
+                return "Error: Test case " + testCase.id + " has more than " + maxInputBytes + " bytes of input.";
+            }
+        }
+        return null;
+    }
+
+    public Map<String, Object> judge(int userId, String code, List<TestCase> cases, boolean stopOnFailure) {
+        submissions.incrementAndGet();
+        long start = System.currentTimeMillis();
+        Map<String, Object> response = new HashMap<>();
+        String className = compilerService.extractClassName(code);
+        if (className == null) {
+            response.put("verdict", Verdict.COMPILE_ERROR);
+            response.put("compileErrors", "Error: Could not find a public class in the code.");
+            return response;
+        }
+        CompiledProgram program = compilerService.compileInMemory(className, code);
+        long compileTimeMs = System.currentTimeMillis() - start;
+        response.put("compileTimeMs", compileTimeMs);
+        if (!program.isSuccess()) {
+            response.put("verdict", Verdict.COMPILE_ERROR);
+            response.put("compileErrors", program.getErrors());
+            return response;
+        }
+
+        Judging judging = run(program, cases, stopOnFailure, caseMillis, start + totalSeconds * 1000, false, Long.MAX_VALUE);
+
+        Verdict verdict = Verdict.ACCEPTED;
+        int passed = 0;
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (int i = 0; i < cases.size(); i++) {
+            Judging.CaseRun run = judging.runs[i];
+            Verdict caseVerdict = run != null ? run.verdict : Verdict.NOT_RUN;
+            if (caseVerdict == Verdict.ACCEPTED) {
+                passed++;
+            } else if (verdict == Verdict.ACCEPTED && caseVerdict != Verdict.NOT_RUN) {
+                verdict = caseVerdict;
+            }
+            results.add(caseResult(i, cases.get(i), run, caseVerdict));
+        }
+        if (verdict == Verdict.ACCEPTED && passed < cases.size()) {
+            // Nothing failed, but the time budget ran out before every case ran
+            verdict = Verdict.TIME_LIMIT;
+        }
+        if (judging.stopped && passed < cases.size()) {
+            stoppedEarly.incrementAndGet();
+        }
+
+        long wallTimeMs = System.currentTimeMillis() - start;
+        ResourceUsage usage = judging.usage(wallTimeMs);
+        if (usageAccounting != null && usage != null) {
+            usageAccounting.record(userId, usage);
+        }
+        response.put("verdict", verdict);
+        response.put("passed", passed);
+        response.put("total", cases.size());
+        response.put("cases", results);
+        response.put("launches", judging.launches);
+        response.put("stoppedEarly", judging.stopped && passed < cases.size());
+        response.put("runMs", wallTimeMs - compileTimeMs);
+        if (usage != null) {
+            response.putAll(usage.toMap());
+        }
+        return response;
+    }
+
+    // Runs compiled cases for this class and other judges in the package. A case slower than
+    // stopAboveNanos ends the run like a failure does, whether or not it passed.
+    Judging run(CompiledProgram program, List<TestCase> cases, boolean stopOnFailure, long caseLimitMillis,
+                long deadline, boolean reuseClasses, long stopAboveNanos) {
+        Judging judging = new Judging(program, cases, stopOnFailure, caseLimitMillis, deadline, reuseClasses, stopAboveNanos);
+        while (judging.next < cases.size() && !judging.stopped) {
+            judging.launch();
+        }
+        return judging;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("submissions", submissions.get());
+        stats.put("cases", casesRun.get());
+        stats.put("launches", launches.get());
+        stats.put("stoppedEarly", stoppedEarly.get());
+        return stats;
+    }
+
+    // Hidden cases only say how they went; their input and expected output stay on the server
+    private Map<String, Object> caseResult(int index, TestCase testCase, Judging.CaseRun run, Verdict verdict) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("index", index);
+        result.put("id", testCase.id);
+        result.put("hidden", testCase.hidden);
+        result.put("verdict", verdict);
+        if (run != null) {
+            result.put("timeMs", Math.round(run.elapsedNanos / 10_000.0) / 100.0);
+        }
+        if (!testCase.hidden) {
+            result.put("input", testCase.input.preview(CASE_OUTPUT_BYTES));
+            result.put("expectedOutput", testCase.expectedOutput.preview(CASE_OUTPUT_BYTES));
+            if (run != null) {
+                result.put("output", run.output.decode(SandboxRuntime.OUTPUT_CHARSET));
+                String errors = run.errors.decode(SandboxRuntime.OUTPUT_CHARSET);
+                if (!errors.isEmpty()) {
+                    result.put("errors", errors);
+                }
+            }
+        }
+        return result;
+    }
+
+    // State of one submission across however many JVMs it takes
+    class Judging {
+
+        private final CompiledProgram program;
+        private final List<TestCase> cases;
+        private final boolean stopOnFailure;
+        private final long caseLimitMillis;
+        private final long deadline;
+        private final boolean reuseClasses;
+        private final long stopAboveNanos;
+        private final CaseRun[] runs;
+        private int next;
+        private boolean stopped;
+        private int launches;
+        private long cpuTimeMs;
+        private long peakRssKb = -1;
+        private String accounting;
+        private boolean memoryLimitHit;
+
+        Judging(CompiledProgram program, List<TestCase> cases, boolean stopOnFailure, long caseLimitMillis,
+                long deadline, boolean reuseClasses, long stopAboveNanos) {
+            this.program = program;
+            this.cases = cases;
+            this.stopOnFailure = stopOnFailure;
+            this.caseLimitMillis = caseLimitMillis;
+            this.deadline = deadline;
+            this.reuseClasses = reuseClasses;
+            this.stopAboveNanos = stopAboveNanos;
+            this.runs = new CaseRun[cases.size()];
+        }
+
+        // Runs cases from next on in a fresh JVM until they are done or one ends the JVM
+        void launch() {
+            launches++;
+            JudgeService.this.launches.incrementAndGet();
+            List<String> command = new ArrayList<>(SandboxRuntime.javaCommand(
+                    SandboxRuntime.launcherClasspath().toString(), SandboxRuntime.judgeMainClass()));
+            if (reuseClasses) {
+                command.add(SandboxJudge.REUSE_CLASSES);
+            }
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.directory(SandboxRuntime.launcherDirectory().toFile());
+            // Program output is framed on stdout; stderr would only carry the JVM's own complaints
+            processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+            long started = System.currentTimeMillis();
+            ProcessReaper.Tree tree = null;
+            ResourceMonitor.Slot slot = null;
+            CaseRun current = null;
+            try {
+                tree = processReaper != null ? processReaper.start(processBuilder) : null;
+                Process process = tree != null ? tree.getProcess() : processBuilder.start();
+                slot = resourceMonitor != null ? resourceMonitor.attach(process) : null;
+                if (slot != null) {
+                    slot.begin();
+                }
+                Runnable kill = JavaCompilerService.killAction(process, tree, slot);
+                DataOutputStream toChild = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+                // Inputs go from the mapping to the pipe without a heap copy of the whole payload
+                WritableByteChannel stdin = Channels.newChannel(process.getOutputStream());
+                DataInputStream fromChild = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+                SandboxRuntime.writeProgram(toChild, program);
+
+                while (next < cases.size()) {
+                    if (System.currentTimeMillis() >= deadline) {
+                        stopped = true;
+                        break;
+                    }
+                    current = new CaseRun(cases.get(next));
+                    runs[next++] = current;
+                    casesRun.incrementAndGet();
+                    ByteBuffer input = current.testCase.input.data();
+                    current.sentNanos = System.nanoTime();
+                    toChild.writeByte(SandboxJudge.CASE);
+                    toChild.writeLong(current.nonce);
+                    toChild.writeInt(input.remaining());
+                    toChild.flush();
+                    while (input.hasRemaining()) {
+                        stdin.write(input);
+                    }
+                    toChild.flush();
+
+                    CaseRun timed = current;
+                    long limit = Math.min(caseLimitMillis, Math.max(deadline - System.currentTimeMillis(), 1));
+                    ScheduledFuture<?> timeout = timer.schedule(() -> {
+                        timed.timedOut = true;
+                        kill.run();
+                    }, limit, TimeUnit.MILLISECONDS);
+                    try {
+                        current.read(fromChild, kill);
+                    } finally {
+                        timeout.cancel(false);
+                    }
+                    current.decide();
+                    if ((stopOnFailure && current.verdict != Verdict.ACCEPTED) || current.elapsedNanos > stopAboveNanos) {
+                        stopped = true;
+                        break;
+                    }
+                    if (!current.finished) {
+                        // The JVM is gone; the cases after this one need a new one
+                        break;
+                    }
+                    current = null;
+                }
+                toChild.close();
+            } catch (IOException e) {
+                // Writing to a JVM that already died; the case it was handed counts as crashed
+                if (current != null && current.verdict == null) {
+                    current.died = true;
+                    current.decide();
+                    stopped = stopOnFailure;
+                }
+                if (current == null) {
+                    // Could not even start one; trying again would go the same way
+                    stopped = true;
+                }
+            } finally {
+                if (tree != null) {
+                    tree.kill();
+                    tree.close();
+                }
+                if (slot != null) {
+                    ResourceUsage usage = slot.finish(System.currentTimeMillis() - started);
+                    cpuTimeMs += Math.max(usage.getCpuTimeMs(), 0);
+                    peakRssKb = Math.max(peakRssKb, usage.getPeakRssKb());
+                    accounting = usage.getSource();
+                    if (usage.isMemoryLimitHit()) {
+                        memoryLimitHit = true;
+                        // Whatever was running when the limit hit is what ran out
+                        if (current != null && !current.finished) {
+                            current.verdict = Verdict.MEMORY_LIMIT;
+                        }
+                    }
+                    slot.close();
+                }
+            }
+        }
+
+        // Null for a case that never ran
+        Verdict verdict(int index) {
+            return runs[index] != null ? runs[index].verdict : null;
+        }
+
+        long elapsedNanos(int index) {
+            return runs[index] != null ? runs[index].elapsedNanos : -1;
+        }
+
+        // What a case wrote to stderr, cut to CASE_ERROR_BYTES
+        String errors(int index) {
+            return runs[index] != null ? runs[index].errors.decode(SandboxRuntime.OUTPUT_CHARSET) : "";
+        }
+
+        int launches() {
+            return launches;
+        }
+
+        ResourceUsage usage(long wallTimeMs) {
+            return accounting != null
+                    ? new ResourceUsage(cpuTimeMs, peakRssKb, wallTimeMs, accounting, memoryLimitHit) : null;
+        }
+
+        // One case: frames until its EXIT, or until the JVM goes away
+        private class CaseRun {
+
+            private final TestCase testCase;
+            private final long nonce = NONCES.nextLong();
+            private final OutputMatcher matcher;
+            private final OutputCapture output;
+            private final OutputCapture errors = new OutputCapture(CASE_ERROR_BYTES, CASE_ERROR_BYTES, 0);
+            private volatile boolean timedOut;
+            private boolean outputLimit;
+            private boolean abandoned;
+            // The JVM went away mid-case: a crash, or killed for a limit
+            private boolean died;
+            // An EXIT frame arrived and the JVM is still there for the next case
+            private boolean finished;
+            private int status;
+            // Time in main as the child measured it, within what the parent saw from sending the case to its EXIT
+            private long elapsedNanos;
+            private long sentNanos;
+            private Verdict verdict;
+
+            CaseRun(TestCase testCase) {
+                this.testCase = testCase;
+                this.matcher = new OutputMatcher(testCase.expectedOutput.data());
+                // Hidden outputs are never shown, only compared
+                this.output = testCase.hidden ? new OutputCapture(0, 0, 0)
+                        : new OutputCapture(JavaCompilerService.MAX_OUTPUT_BYTES, CASE_OUTPUT_BYTES, CASE_OUTPUT_BYTES / 4);
+            }
+
+            // A frame that is not what the judge would send (the program wrote to fd 1 itself) ends
+            // the JVM, and the case counts as crashed
+            void read(DataInputStream in, Runnable kill) {
+                byte[] buffer = new byte[SandboxJudge.MAX_CHUNK];
+                long outputBytes = 0;
+                try {
+                    while (true) {
+                        byte type = in.readByte();
+                        if (type == SandboxJudge.EXIT) {
+                            if (in.readLong() != nonce) {
+                                throw new IOException("EXIT frame with the wrong nonce");
+                            }
+                            status = in.readInt();
+                            long wallNanos = System.nanoTime() - sentNanos;
+                            elapsedNanos = Math.min(Math.max(in.readLong(), 0), wallNanos);
+                            finished = status != SandboxJudge.EXITED;
+                            return;
+                        }
+                        if (type != SandboxJudge.STDOUT && type != SandboxJudge.STDERR) {
+                            throw new IOException("unknown frame type " + type);
+                        }
+                        int length = in.readInt();
+                        if (length <= 0 || length > buffer.length) {
+                            throw new IOException("frame length " + length);
+                        }
+                        in.readFully(buffer, 0, length);
+                        if (type == SandboxJudge.STDERR) {
+                            errors.write(buffer, 0, length);
+                            continue;
+                        }
+                        matcher.feed(buffer, 0, length);
+                        output.write(buffer, 0, length);
+                        outputBytes += length;
+                        if (outputBytes > JavaCompilerService.MAX_OUTPUT_BYTES) {
+                            outputLimit = true;
+                            kill.run();
+                        } else if (stopOnFailure && matcher.hasFailed() && !abandoned) {
+                            // Already wrong and nothing after this case will run
+                            abandoned = true;
+                            kill.run();
+                        }
+                    }
+                } catch (IOException e) {
+                    // End of stream, the pipe closed under us when the JVM was killed, or a bad frame
+                    kill.run();
+                    elapsedNanos = System.nanoTime() - sentNanos;
+                    died = true;
+                }
+            }
+
+            void decide() {
+                if (timedOut) {
+                    verdict = Verdict.TIME_LIMIT;
+                } else if (outputLimit) {
+                    verdict = Verdict.OUTPUT_LIMIT;
+                } else if (abandoned) {
+                    verdict = Verdict.WRONG_ANSWER;
+                } else if (died || (status != 0 && status != SandboxJudge.EXITED)) {
+                    verdict = Verdict.RUNTIME_ERROR;
+                } else {
+                    // A program that calls System.exit is judged on what it printed before
+                    verdict = matcher.matches() ? Verdict.ACCEPTED : Verdict.WRONG_ANSWER;
+                }
+            }
+        }
+    }
+}
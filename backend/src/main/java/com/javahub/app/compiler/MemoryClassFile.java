@@ -0,0 +1,31 @@
+package com.javahub.app.compiler;
+
+import javax.tools.SimpleJavaFileObject;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+
+public class MemoryClassFile extends SimpleJavaFileObject {
+
+    private final String className;
+    private final ByteArrayOutputStream bytecode = new ByteArrayOutputStream();
+
+    public MemoryClassFile(String className) {
+        super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        this.className = className;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+        bytecode.reset();
+        return bytecode;
+    }
+
+    public byte[] getBytes() {
+        return bytecode.toByteArray();
+    }
+}
@@ -0,0 +1,39 @@
+package com.javahub.app.compiler;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Keeps javac's class output in memory instead of writing .class files next to the source
+public class MemoryJavaFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    private final Map<String, MemoryClassFile> outputs = new LinkedHashMap<>();
+
+    public MemoryJavaFileManager(StandardJavaFileManager fileManager) {
+        super(fileManager);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                               JavaFileObject.Kind kind, FileObject sibling) {
+        MemoryClassFile classFile = new MemoryClassFile(className);
+        outputs.put(className, classFile);
+        return classFile;
+    }
+
+    // The wrapped manager is pooled by JavacService and outlives this compilation
+    @Override
+    public void close() {
+    }
+
+    public Map<String, byte[]> getClassBytes() {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (Map.Entry<String, MemoryClassFile> entry : outputs.entrySet()) {
+            classes.put(entry.getKey(), entry.getValue().getBytes());
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,19 @@
+package com.javahub.app.compiler;
+
+import javax.tools.SimpleJavaFileObject;
+import java.net.URI;
+
+public class MemorySourceFile extends SimpleJavaFileObject {
+
+    private final String code;
+
+    public MemorySourceFile(String className, String code) {
+        super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+        this.code = code;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return code;
+    }
+}
@@ -0,0 +1,99 @@
+package com.javahub.app.compiler;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// Fixed-size capture of a run's output: the first headBytes are kept as-is, after that only the
+// last tailBytes survive in a ring buffer. Once maxBytes have been written the capture refuses more
+// and the caller is expected to stop the program.
+public class OutputCapture {
+
+    private final byte[] head;
+    private final byte[] tail;
+    private final long maxBytes;
+    private int headSize;
+    private int tailPos;
+    private long tailWritten;
+    private long totalBytes;
+    private boolean truncated;
+
+    public OutputCapture(long maxBytes, int headBytes, int tailBytes) {
+        this.maxBytes = maxBytes;
+        this.head = new byte[headBytes];
+        this.tail = new byte[tailBytes];
+    }
+
+    // Returns false once the byte cap has been reached, anything past it is dropped
+    public synchronized boolean write(byte[] data, int offset, int length) {
+        if (truncated) {
+            return false;
+        }
+        long allowed = maxBytes - totalBytes;
+        if (length > allowed) {
+            length = (int) allowed;
+            truncated = true;
+        }
+        totalBytes += length;
+
+        int toHead = Math.min(length, head.length - headSize);
+        System.arraycopy(data, offset, head, headSize, toHead);
+        headSize += toHead;
+        if (length > toHead) {
+            writeTail(data, offset + toHead, length - toHead);
+        }
+        return !truncated;
+    }
+
+    private void writeTail(byte[] data, int offset, int length) {
+        if (tail.length == 0) {
+            tailWritten += length;
+            return;
+        }
+        if (length > tail.length) {
+            int skipped = length - tail.length;
+            offset += skipped;
+            tailWritten += skipped;
+            length = tail.length;
+        }
+        int first = Math.min(length, tail.length - tailPos);
+        System.arraycopy(data, offset, tail, tailPos, first);
+        System.arraycopy(data, offset + first, tail, 0, length - first);
+        tailPos = (tailPos + length) % tail.length;
+        tailWritten += length;
+    }
+
+    public synchronized boolean isTruncated() {
+        return truncated;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized String decode(Charset charset) {
+        StringBuilder text = new StringBuilder(headSize + (int) Math.min(tailWritten, tail.length) + 64);
+        OutputDecoder decoder = new OutputDecoder(charset);
+        decoder.decode(head, 0, headSize, text);
+
+        long tailKept = Math.min(tailWritten, tail.length);
+        long omitted = tailWritten - tailKept;
+        int start = tailWritten > tail.length ? tailPos : 0;
+        if (omitted > 0) {
+            // Drop the half character at the end of the head and restart decoding inside the tail
+            decoder = new OutputDecoder(charset);
+            text.append("\n... [").append(omitted).append(" bytes omitted] ...\n");
+            int skip = 0;
+            while (StandardCharsets.UTF_8.equals(charset) && skip < 3 && skip < tailKept
+                    && (tail[(start + skip) % tail.length] & 0xC0) == 0x80) {
+                skip++;
+            }
+            start = (start + skip) % tail.length;
+            tailKept -= skip;
+        }
+        int firstPart = (int) Math.min(tailKept, tail.length - start);
+        decoder.decode(tail, start, firstPart, text);
+        decoder.decode(tail, 0, (int) tailKept - firstPart, text);
+        decoder.finish(text);
+        return text.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package com.javahub.app.compiler;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+// Incremental decoder for program output: a multi-byte character split across two reads is
+// held back until the rest of it arrives instead of turning into replacement characters.
+public class OutputDecoder {
+
+    private final CharsetDecoder decoder;
+    private ByteBuffer carry = ByteBuffer.allocate(0);
+
+    public OutputDecoder(Charset charset) {
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    public void decode(byte[] data, int offset, int length, StringBuilder target) {
+        ByteBuffer in;
+        if (carry.hasRemaining()) {
+            in = ByteBuffer.allocate(carry.remaining() + length);
+            in.put(carry).put(data, offset, length).flip();
+        } else {
+            in = ByteBuffer.wrap(data, offset, length);
+        }
+        CharBuffer out = CharBuffer.allocate((int) Math.ceil(in.remaining() * (double) decoder.maxCharsPerByte()) + 1);
+        decoder.decode(in, out, false);
+        out.flip();
+        target.append(out);
+
+        ByteBuffer rest = ByteBuffer.allocate(in.remaining());
+        rest.put(in).flip();
+        carry = rest;
+    }
+
+    public void finish(StringBuilder target) {
+        CharBuffer out = CharBuffer.allocate(carry.remaining() * 2 + 2);
+        decoder.decode(carry, out, true);
+        decoder.flush(out);
+        out.flip();
+        target.append(out);
+        carry = ByteBuffer.allocate(0);
+        decoder.reset();
+    }
+}
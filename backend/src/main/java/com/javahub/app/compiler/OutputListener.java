@@ -0,0 +1,7 @@
+package com.javahub.app.compiler;
+
+// Receives program output as it is read from the sandbox, before the run has finished
+public interface OutputListener {
+
+    void onOutput(boolean stderr, byte[] data, int offset, int length);
+}
@@ -0,0 +1,84 @@
+package com.javahub.app.compiler;
+
+import java.nio.ByteBuffer;
+
+// Compares a program's output with the expected output as it arrives, token by token: any run of
+// whitespace (spaces, tabs, line breaks, a trailing newline or none) matches any other. Works on
+// UTF-8 bytes, where whitespace is always a single ASCII byte, so nothing is decoded or buffered
+// and a mismatch is known at the first wrong byte. The expected side is read in place, usually
+// straight from a TestDataStore mapping.
+final class OutputMatcher {
+
+    private final ByteBuffer expected;
+    private final int length;
+    private int position;
+    private boolean inToken;
+    private boolean failed;
+
+    OutputMatcher(ByteBuffer expected) {
+        this.expected = expected;
+        this.length = expected.limit();
+    }
+
+    void feed(byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length && !failed; i++) {
+            feed(data[i]);
+        }
+    }
+
+    private void feed(byte b) {
+        if (isSpace(b)) {
+            if (inToken) {
+                endToken();
+            }
+            return;
+        }
+        if (!inToken) {
+            skipExpectedSpace();
+            inToken = true;
+        }
+        if (position >= length || expected.get(position) != b) {
+            failed = true;
+            return;
+        }
+        position++;
+    }
+
+    // The output's token ended, so the expected one must end here too
+    private void endToken() {
+        inToken = false;
+        if (position < length && !isSpace(expected.get(position))) {
+            failed = true;
+        }
+    }
+
+    private void skipExpectedSpace() {
+        while (position < length && isSpace(expected.get(position))) {
+            position++;
+        }
+    }
+
+    // True once the output can no longer match, whatever follows
+    boolean hasFailed() {
+        return failed;
+    }
+
+    // Call when the output is complete
+    boolean matches() {
+        if (failed) {
+            return false;
+        }
+        if (inToken) {
+            endToken();
+            if (failed) {
+                return false;
+            }
+        }
+        skipExpectedSpace();
+        return position == length;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+    }
+}
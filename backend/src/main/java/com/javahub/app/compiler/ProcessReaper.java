@@ -0,0 +1,236 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Makes sure nothing a sandboxed program starts outlives its run. Every sandbox JVM is started with
+// a JLH_SANDBOX environment variable naming this backend and the run, which its children inherit.
+// Killing a run takes down its whole process tree, and a watchdog periodically looks through /proc
+// for tagged processes whose run is over, including ones that escaped by being re-parented to init
+// and ones left behind by a backend that died.
+@Component
+public class ProcessReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessReaper.class);
+
+    static final String TAG_VARIABLE = "JLH_SANDBOX";
+
+    private static final Path PROC = Paths.get("/proc");
+    // A tree that keeps forking while it is being killed gets this many passes
+    private static final int KILL_PASSES = 5;
+
+    @Value("${compiler.reaper.watchdog-seconds:5}")
+    private long watchdogSeconds = 5;
+
+    private final String backendPid = String.valueOf(ProcessHandle.current().pid());
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentHashMap<String, Tree> live = new ConcurrentHashMap<>();
+    private final AtomicLong treesStarted = new AtomicLong();
+    private final AtomicLong treesKilled = new AtomicLong();
+    private final AtomicLong descendantsKilled = new AtomicLong();
+    private final AtomicLong orphansKilled = new AtomicLong();
+    private final AtomicLong foreignOrphansKilled = new AtomicLong();
+    private final AtomicLong scans = new AtomicLong();
+    private volatile long lastScanMs = -1;
+    private volatile int lastScanOrphans;
+    private ScheduledExecutorService watchdog;
+
+    @PostConstruct
+    public void start() {
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sandbox-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(this::scan, watchdogSeconds, watchdogSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (watchdog != null) {
+            watchdog.shutdownNow();
+        }
+        live.values().stream().filter(tree -> tree.process != null).forEach(Tree::kill);
+    }
+
+    // Starts the process with a fresh tag; close the tree once the run is over
+    public Tree start(ProcessBuilder processBuilder) throws IOException {
+        String tag = backendPid + "_" + sequence.incrementAndGet();
+        processBuilder.environment().put(TAG_VARIABLE, tag);
+        // Registered first so a watchdog scan never mistakes the new process for a leftover
+        Tree tree = new Tree(tag);
+        live.put(tag, tree);
+        try {
+            tree.process = processBuilder.start();
+        } catch (IOException e) {
+            live.remove(tag);
+            throw e;
+        }
+        treesStarted.incrementAndGet();
+        return tree;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("liveTrees", live.size());
+        stats.put("treesStarted", treesStarted.get());
+        stats.put("treesKilled", treesKilled.get());
+        stats.put("descendantsKilled", descendantsKilled.get());
+        stats.put("orphansKilled", orphansKilled.get());
+        stats.put("foreignOrphansKilled", foreignOrphansKilled.get());
+        stats.put("watchdogScans", scans.get());
+        stats.put("lastScanMs", lastScanMs);
+        stats.put("lastScanOrphans", lastScanOrphans);
+        return stats;
+    }
+
+    private void scan() {
+        long start = System.currentTimeMillis();
+        int found = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(PROC, "[0-9]*")) {
+            for (Path entry : entries) {
+                String tag = tagOf(entry);
+                if (tag == null || live.containsKey(tag)) {
+                    continue;
+                }
+                int separator = tag.indexOf('_');
+                String owner = separator > 0 ? tag.substring(0, separator) : tag;
+                boolean ours = owner.equals(backendPid);
+                if (!ours && isAlive(owner)) {
+                    // Another backend on the same host, still running its own runs
+                    continue;
+                }
+                Optional<ProcessHandle> process = ProcessHandle.of(Long.parseLong(entry.getFileName().toString()));
+                if (process.isPresent() && process.get().destroyForcibly()) {
+                    found++;
+                    (ours ? orphansKilled : foreignOrphansKilled).incrementAndGet();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // /proc not there (not Linux) or a process vanished mid-scan; try again next time
+        }
+        scans.incrementAndGet();
+        lastScanOrphans = found;
+        lastScanMs = System.currentTimeMillis() - start;
+        if (found > 0) {
+            log.warn("Sandbox watchdog killed {} leftover process(es)", found);
+        }
+    }
+
+    // Only our own user's processes are readable, which are the only ones we could have started
+    private static String tagOf(Path process) {
+        byte[] environ;
+        try {
+            environ = Files.readAllBytes(process.resolve("environ"));
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+        String prefix = TAG_VARIABLE + "=";
+        int start = 0;
+        for (int i = 0; i <= environ.length; i++) {
+            if (i == environ.length || environ[i] == 0) {
+                if (i - start > prefix.length()
+                        && new String(environ, start, prefix.length(), StandardCharsets.US_ASCII).equals(prefix)) {
+                    return new String(environ, start + prefix.length(), i - start - prefix.length(),
+                            StandardCharsets.US_ASCII);
+                }
+                start = i + 1;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isAlive(String pid) {
+        try {
+            return ProcessHandle.of(Long.parseLong(pid)).map(ProcessHandle::isAlive).orElse(false);
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    // One sandbox process and everything it starts
+    public class Tree {
+
+        private final String tag;
+        private volatile Process process;
+
+        Tree(String tag) {
+            this.tag = tag;
+        }
+
+        public Process getProcess() {
+            return process;
+        }
+
+        // Timeout or cancel: children are killed before their parents so nothing is re-parented out
+        // of reach, and the root goes last so anything forked meanwhile is still below it
+        public void kill() {
+            if (process.isAlive()) {
+                treesKilled.incrementAndGet();
+            }
+            killDescendants();
+            process.destroyForcibly();
+        }
+
+        // Kills whatever the run left behind while its root keeps going; pooled workers call this
+        // between runs, since a worker has no children of its own
+        public int killDescendants() {
+            int killed = 0;
+            for (int pass = 0; pass < KILL_PASSES; pass++) {
+                List<ProcessHandle> descendants = process.descendants().collect(Collectors.toList());
+                if (descendants.isEmpty()) {
+                    break;
+                }
+                Map<Long, Integer> depths = new HashMap<>();
+                descendants.sort(Comparator.comparingInt((ProcessHandle handle) -> depth(handle, depths)).reversed());
+                for (ProcessHandle descendant : descendants) {
+                    if (descendant.destroyForcibly()) {
+                        killed++;
+                    }
+                }
+            }
+            descendantsKilled.addAndGet(killed);
+            return killed;
+        }
+
+        // The run is over or the worker retired: nothing under the root may stay behind
+        public void close() {
+            killDescendants();
+            process.destroyForcibly();
+            live.remove(tag, this);
+        }
+
+        private int depth(ProcessHandle handle, Map<Long, Integer> depths) {
+            Integer known = depths.get(handle.pid());
+            if (known != null) {
+                return known;
+            }
+            Optional<ProcessHandle> parent = handle.parent();
+            int depth = parent.isEmpty() || parent.get().pid() == process.pid() ? 1 : depth(parent.get(), depths) + 1;
+            depths.put(handle.pid(), depth);
+            return depth;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.javahub.app.compiler;
+
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Memory file manager for incremental project builds: classes kept from the previous build appear
+// on the class path, and every output is traced back to the source file it came from.
+public class ProjectFileManager extends MemoryJavaFileManager {
+
+    private final Map<String, byte[]> classpath;
+    private final Map<String, URI> origins = new HashMap<>();
+
+    public ProjectFileManager(StandardJavaFileManager fileManager, Map<String, byte[]> classpath) {
+        super(fileManager);
+        this.classpath = classpath;
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                               JavaFileObject.Kind kind, FileObject sibling) {
+        if (sibling != null) {
+            origins.put(className, sibling.toUri());
+        }
+        return super.getJavaFileForOutput(location, className, kind, sibling);
+    }
+
+    @Override
+    public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds,
+                                         boolean recurse) throws IOException {
+        Iterable<JavaFileObject> listed = super.list(location, packageName, kinds, recurse);
+        if (location != StandardLocation.CLASS_PATH || !kinds.contains(JavaFileObject.Kind.CLASS)) {
+            return listed;
+        }
+        List<JavaFileObject> files = new ArrayList<>();
+        listed.forEach(files::add);
+        for (Map.Entry<String, byte[]> entry : classpath.entrySet()) {
+            String name = entry.getKey();
+            int dot = name.lastIndexOf('.');
+            String classPackage = dot < 0 ? "" : name.substring(0, dot);
+            if (classPackage.equals(packageName) || (recurse && classPackage.startsWith(packageName + "."))) {
+                files.add(new CompiledClassFile(name, entry.getValue()));
+            }
+        }
+        return files;
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+        if (file instanceof CompiledClassFile) {
+            return ((CompiledClassFile) file).binaryName;
+        }
+        return super.inferBinaryName(location, file);
+    }
+
+    // Source URI each class was generated from
+    public Map<String, URI> getOrigins() {
+        return origins;
+    }
+
+    private static class CompiledClassFile extends SimpleJavaFileObject {
+
+        private final String binaryName;
+        private final byte[] bytes;
+
+        CompiledClassFile(String binaryName, byte[] bytes) {
+            super(URI.create("bytes:///" + binaryName.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.binaryName = binaryName;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return new ByteArrayInputStream(bytes);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// Keeps one ProjectSession per user and project id so repeated runs of the same project compile
+// incrementally. Sessions that sit unused are dropped and simply start from a full build next time.
+@Service
+public class ProjectService {
+
+    private static final Pattern SOURCE_PATH = Pattern.compile("([A-Za-z_$][A-Za-z0-9_$]*/)*[A-Za-z_$][A-Za-z0-9_$]*\\.java");
+    private static final Pattern CLASS_NAME = Pattern.compile("([A-Za-z_$][A-Za-z0-9_$]*\\.)*[A-Za-z_$][A-Za-z0-9_$]*");
+
+    @Value("${compiler.projects.max-files:50}")
+    private int maxFiles = 50;
+
+    @Value("${compiler.projects.max-source-bytes:262144}")
+    private long maxSourceBytes = 262144;
+
+    @Value("${compiler.projects.idle-minutes:30}")
+    private long idleMinutes = 30;
+
+    @Value("${compiler.projects.max-sessions:500}")
+    private int maxSessions = 500;
+
+    private final Map<String, ProjectSession> sessions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService cleaner;
+
+    @PostConstruct
+    public void start() {
+        cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "project-session-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::evictIdle, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        cleaner.shutdownNow();
+    }
+
+    // A missing or unknown project id starts a fresh session under that id
+    public ProjectSession session(int userId, String projectId) {
+        String id = projectId == null || projectId.isBlank() ? UUID.randomUUID().toString() : projectId;
+        ProjectSession session = sessions.computeIfAbsent(userId + ":" + id, k -> new ProjectSession(id, userId));
+        session.touch();
+        evictOverflow();
+        return session;
+    }
+
+    // Returns an error message, or null when the project can be built
+    public String validate(Map<String, String> files, String mainClass) {
+        if (files == null || files.isEmpty()) {
+            return "Error: A project needs at least one source file.";
+        }
+        if (files.size() > maxFiles) {
+            return "Error: A project can have at most " + maxFiles + " files.";
+        }
+        long totalBytes = 0;
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            if (!SOURCE_PATH.matcher(file.getKey()).matches()) {
+                return "Error: Invalid source path " + file.getKey() + " (expected e.g. com/example/Main.java).";
+            }
+            if (file.getValue() == null) {
+                return "Error: Source file " + file.getKey() + " has no content.";
+            }
+            totalBytes += file.getValue().getBytes(StandardCharsets.UTF_8).length;
+        }
+        if (totalBytes > maxSourceBytes) {
+            return "Error: Project sources exceed " + maxSourceBytes + " bytes.";
+        }
+        if (mainClass == null || !CLASS_NAME.matcher(mainClass).matches()) {
+            return "Error: A valid mainClass is required (e.g. com.example.Main).";
+        }
+        return null;
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of("sessions", sessions.size());
+    }
+
+    private void evictIdle() {
+        Instant cutoff = Instant.now().minusSeconds(idleMinutes * 60);
+        sessions.values().removeIf(session -> session.getLastUsed().isBefore(cutoff));
+    }
+
+    private void evictOverflow() {
+        int excess = sessions.size() - maxSessions;
+        if (excess <= 0) {
+            return;
+        }
+        List<Map.Entry<String, ProjectSession>> oldest = sessions.entrySet().stream()
+                .sorted(Comparator.comparing(entry -> entry.getValue().getLastUsed()))
+                .limit(excess)
+                .collect(Collectors.toList());
+        oldest.forEach(entry -> sessions.remove(entry.getKey(), entry.getValue()));
+    }
+}
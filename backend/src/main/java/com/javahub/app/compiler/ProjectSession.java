@@ -0,0 +1,146 @@
+package com.javahub.app.compiler;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Server-side state of a multi-file project: what the last successful build compiled, which
+// classes each file produced, and which project classes each file refers to. The next build only
+// recompiles files that changed plus everything that depends on them, directly or not; all other
+// classes are handed to javac as already-compiled input.
+public class ProjectSession {
+
+    private final String id;
+    private final int userId;
+    private volatile Instant lastUsed = Instant.now();
+
+    private final Map<String, String> sourceHashes = new HashMap<>();
+    private final Map<String, Set<String>> outputs = new HashMap<>();
+    private final Map<String, Set<String>> declared = new HashMap<>();
+    private final Map<String, Set<String>> references = new HashMap<>();
+    private final Map<String, byte[]> classes = new HashMap<>();
+    private List<String> lastRecompiled = Collections.emptyList();
+
+    public ProjectSession(String id, int userId) {
+        this.id = id;
+        this.userId = userId;
+    }
+
+    // Callers hold the session's monitor from plan through commit
+    Plan plan(Map<String, String> files) {
+        Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            String hash = CompilationCache.key(file.getValue(), Collections.emptyList());
+            if (!hash.equals(sourceHashes.get(file.getKey()))) {
+                changed.add(file.getKey());
+            }
+        }
+        Set<String> removed = new HashSet<>(sourceHashes.keySet());
+        removed.removeAll(files.keySet());
+
+        // Walk the reverse dependency graph of the previous build from every changed or removed file
+        Set<String> dirty = new HashSet<>(changed);
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(changed);
+        pending.addAll(removed);
+        while (!pending.isEmpty()) {
+            String path = pending.poll();
+            if (!visited.add(path)) {
+                continue;
+            }
+            Set<String> types = declared.getOrDefault(path, Collections.emptySet());
+            for (Map.Entry<String, Set<String>> dependent : references.entrySet()) {
+                String other = dependent.getKey();
+                if (!visited.contains(other) && files.containsKey(other)
+                        && !Collections.disjoint(dependent.getValue(), types)) {
+                    dirty.add(other);
+                    pending.add(other);
+                }
+            }
+        }
+
+        Plan plan = new Plan();
+        for (String path : dirty) {
+            plan.sources.put(path, files.get(path));
+        }
+        lastRecompiled = new ArrayList<>(new TreeSet<>(dirty));
+        plan.removed.addAll(removed);
+        for (Map.Entry<String, Set<String>> output : outputs.entrySet()) {
+            if (!dirty.contains(output.getKey()) && !removed.contains(output.getKey())) {
+                for (String className : output.getValue()) {
+                    plan.classpath.put(className, classes.get(className));
+                    plan.classpathOwners.put(className, output.getKey());
+                }
+            }
+        }
+        return plan;
+    }
+
+    void commit(Plan plan) {
+        Set<String> stale = new HashSet<>(plan.sources.keySet());
+        stale.addAll(plan.removed);
+        for (String path : stale) {
+            Set<String> previous = outputs.remove(path);
+            if (previous != null) {
+                previous.forEach(classes::remove);
+            }
+            sourceHashes.remove(path);
+            declared.remove(path);
+            references.remove(path);
+        }
+        for (Map.Entry<String, String> source : plan.sources.entrySet()) {
+            String path = source.getKey();
+            sourceHashes.put(path, CompilationCache.key(source.getValue(), Collections.emptyList()));
+            outputs.put(path, plan.outputs.getOrDefault(path, new HashSet<>()));
+            declared.put(path, plan.declared.getOrDefault(path, Collections.emptySet()));
+            references.put(path, plan.references.getOrDefault(path, Collections.emptySet()));
+        }
+        classes.putAll(plan.compiled);
+        lastUsed = Instant.now();
+    }
+
+    Map<String, byte[]> getClasses() {
+        return new HashMap<>(classes);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public Instant getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = Instant.now();
+    }
+
+    // Files the last build compiled (or tried to), empty when nothing had changed
+    public synchronized List<String> getLastRecompiled() {
+        return lastRecompiled;
+    }
+
+    // One incremental build: filled in by plan, then by the compiler, then applied by commit
+    static class Plan {
+        final Map<String, String> sources = new HashMap<>();
+        final Set<String> removed = new HashSet<>();
+        final Map<String, byte[]> classpath = new HashMap<>();
+        final Map<String, String> classpathOwners = new HashMap<>();
+        final Map<String, byte[]> compiled = new HashMap<>();
+        final Map<String, Set<String>> outputs = new HashMap<>();
+        final Map<String, Set<String>> declared = new HashMap<>();
+        final Map<String, Set<String>> references = new HashMap<>();
+    }
+}
@@ -0,0 +1,240 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps one warm ReplSession per user so snippets run without a class wrapper, a javac pass over
+// a whole file or a JVM launch. Each session is a JVM, so their number is capped per node: the
+// least recently used session makes room for a new one, and sessions left idle are closed. A spare
+// session is kept started so a user's first snippet does not wait for a JVM either.
+@Service
+public class ReplService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplService.class);
+
+    @Autowired(required = false)
+    private ProcessReaper processReaper;
+
+    @Autowired(required = false)
+    private ResourceMonitor resourceMonitor;
+
+    @Autowired(required = false)
+    private UsageAccounting usageAccounting;
+
+    @Value("${compiler.repl.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${compiler.repl.max-sessions:20}")
+    private int maxSessions = 20;
+
+    @Value("${compiler.repl.idle-minutes:15}")
+    private long idleMinutes = 15;
+
+    @Value("${compiler.repl.spare:1}")
+    private int spare = 1;
+
+    @Value("${compiler.repl.eval-timeout-seconds:5}")
+    private long evalTimeoutSeconds = 5;
+
+    @Value("${compiler.repl.max-code-bytes:65536}")
+    private int maxCodeBytes = 65536;
+
+    private final Map<Integer, ReplSession> sessions = new ConcurrentHashMap<>();
+    private final BlockingQueue<ReplSession> spares = new LinkedBlockingQueue<>();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong createMsTotal = new AtomicLong();
+    private final AtomicLong evals = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+    private final AtomicLong evictedIdle = new AtomicLong();
+    private final AtomicLong evictedLru = new AtomicLong();
+    private final AtomicLong spareHits = new AtomicLong();
+    private boolean available;
+    private ScheduledExecutorService maintenance;
+    // Separate from maintenance, where starting a spare session can take a second or more
+    private ScheduledExecutorService timeouts;
+
+    @PostConstruct
+    public void start() {
+        // jdk.jshell ships with the JDK but not with every runtime image
+        available = enabled && ModuleLayer.boot().findModule("jdk.jshell").isPresent();
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "repl-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timeouts = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "repl-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (available) {
+            maintenance.execute(this::replenish);
+            maintenance.scheduleWithFixedDelay(this::evictIdle, 30, 30, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        maintenance.shutdownNow();
+        timeouts.shutdownNow();
+        sessions.values().forEach(ReplSession::close);
+        spares.forEach(ReplSession::close);
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    // Returns an error message, or null when the snippet can be evaluated
+    public String validate(String code) {
+        if (!available) {
+            return "Error: The REPL is not available on this server.";
+        }
+        if (code == null || code.isBlank()) {
+            return "Error: Code cannot be empty.";
+        }
+        if (code.getBytes(StandardCharsets.UTF_8).length > maxCodeBytes) {
+            return "Error: Snippet exceeds " + maxCodeBytes + " bytes.";
+        }
+        return null;
+    }
+
+    public Map<String, Object> eval(int userId, String code) {
+        boolean fresh = !sessions.containsKey(userId);
+        ReplSession session = session(userId);
+        Map<String, Object> response = session.eval(code, evalTimeoutSeconds * 1000, timeouts);
+        evals.incrementAndGet();
+        if (usageAccounting != null) {
+            usageAccounting.record(userId, session.getLastUsage());
+        }
+        if (session.isDead()) {
+            // The next snippet starts over in a new session
+            sessions.remove(userId, session);
+            session.close();
+            resets.incrementAndGet();
+        }
+        response.put("newSession", fresh);
+        return response;
+    }
+
+    // Drops the user's declarations; true if there was a session
+    public boolean reset(int userId) {
+        ReplSession session = sessions.remove(userId);
+        if (session == null) {
+            return false;
+        }
+        session.close();
+        resets.incrementAndGet();
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("available", available);
+        stats.put("sessions", sessions.size());
+        stats.put("maxSessions", maxSessions);
+        stats.put("spares", spares.size());
+        stats.put("spareHits", spareHits.get());
+        stats.put("created", created.get());
+        stats.put("avgCreateMs", created.get() == 0 ? 0 : createMsTotal.get() / created.get());
+        stats.put("evals", evals.get());
+        stats.put("resets", resets.get());
+        stats.put("evictedIdle", evictedIdle.get());
+        stats.put("evictedLru", evictedLru.get());
+        return stats;
+    }
+
+    private ReplSession session(int userId) {
+        ReplSession session = sessions.get(userId);
+        if (session != null && !session.isDead()) {
+            return session;
+        }
+        if (session != null) {
+            sessions.remove(userId, session);
+            session.close();
+        }
+
+        // Started outside the map so a slow start never holds up other users
+        ReplSession fresh = spares.poll();
+        if (fresh != null && !fresh.isDead()) {
+            spareHits.incrementAndGet();
+            maintenance.execute(this::replenish);
+        } else {
+            if (fresh != null) {
+                fresh.close();
+            }
+            fresh = create();
+        }
+        evictOverflow();
+        ReplSession existing = sessions.putIfAbsent(userId, fresh);
+        if (existing != null) {
+            // Another request from the same user won the race
+            spares.offer(fresh);
+            return existing;
+        }
+        return fresh;
+    }
+
+    private ReplSession create() {
+        long start = System.currentTimeMillis();
+        ReplSession session = new ReplSession(UUID.randomUUID().toString(), processReaper, resourceMonitor);
+        created.incrementAndGet();
+        createMsTotal.addAndGet(System.currentTimeMillis() - start);
+        return session;
+    }
+
+    private void replenish() {
+        while (spares.size() < spare) {
+            try {
+                spares.offer(create());
+            } catch (RuntimeException e) {
+                log.warn("Could not start a spare REPL session: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void evictIdle() {
+        Instant cutoff = Instant.now().minusSeconds(idleMinutes * 60);
+        sessions.forEach((userId, session) -> {
+            if (session.getLastUsed().isBefore(cutoff) && sessions.remove(userId, session)) {
+                session.close();
+                evictedIdle.incrementAndGet();
+            }
+        });
+    }
+
+    // Makes room for one more session by closing the least recently used ones
+    private void evictOverflow() {
+        while (sessions.size() >= maxSessions) {
+            Optional<Map.Entry<Integer, ReplSession>> oldest = sessions.entrySet().stream()
+                    .min(Map.Entry.comparingByValue((a, b) -> a.getLastUsed().compareTo(b.getLastUsed())));
+            if (oldest.isEmpty()) {
+                return;
+            }
+            if (sessions.remove(oldest.get().getKey(), oldest.get().getValue())) {
+                oldest.get().getValue().close();
+                evictedLru.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.javahub.app.compiler;
+
+import jdk.jshell.DeclarationSnippet;
+import jdk.jshell.EvalException;
+import jdk.jshell.JShell;
+import jdk.jshell.JShellException;
+import jdk.jshell.Snippet;
+import jdk.jshell.SnippetEvent;
+import jdk.jshell.SourceCodeAnalysis;
+import jdk.jshell.execution.StreamingExecutionControl;
+import jdk.jshell.execution.Util;
+import jdk.jshell.spi.ExecutionControl;
+import jdk.jshell.spi.ExecutionControlProvider;
+import jdk.jshell.spi.ExecutionEnv;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+// One user's JShell. Snippets are compiled here in the backend and executed in a JVM of their own
+// that keeps every declaration between snippets. That JVM is started like any other sandbox
+// process, so it is tagged for the reaper and limited and measured by the ResourceMonitor.
+public class ReplSession {
+
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final SecureRandom TOKENS = new SecureRandom();
+    // What the jshell tool imports at startup, so snippets read the same as in a terminal
+    private static final List<String> DEFAULT_IMPORTS = List.of(
+            "java.io.*", "java.math.*", "java.net.*", "java.nio.file.*", "java.util.*",
+            "java.util.concurrent.*", "java.util.function.*", "java.util.regex.*", "java.util.stream.*");
+
+    private final String id;
+    private final ProcessReaper reaper;
+    private final ResourceMonitor monitor;
+    private final CurrentOutput output = new CurrentOutput();
+    private final JShell shell;
+    private volatile ProcessReaper.Tree tree;
+    private volatile Process process;
+    private volatile ResourceMonitor.Slot slot;
+    private volatile boolean dead;
+    private volatile Instant lastUsed = Instant.now();
+    private int snippets;
+    private ResourceUsage lastUsage;
+
+    ReplSession(String id, ProcessReaper reaper, ResourceMonitor monitor) {
+        this.id = id;
+        this.reaper = reaper;
+        this.monitor = monitor;
+        PrintStream print = new PrintStream(output, true, SandboxRuntime.OUTPUT_CHARSET);
+        shell = JShell.builder()
+                .out(print)
+                .err(print)
+                .in(new ByteArrayInputStream(new byte[0]))
+                .executionEngine(new SandboxEngine(), Map.of())
+                .build();
+        for (String packageName : DEFAULT_IMPORTS) {
+            shell.eval("import " + packageName + ";");
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Instant getLastUsed() {
+        return lastUsed;
+    }
+
+    public boolean isDead() {
+        return dead || process == null || !process.isAlive();
+    }
+
+    // Evaluates every complete snippet in the input in order. A snippet that runs past the timeout
+    // or floods the output takes the session's JVM down with it; the session is dead afterwards.
+    public synchronized Map<String, Object> eval(String code, long timeoutMs, ScheduledExecutorService timer) {
+        lastUsed = Instant.now();
+        OutputCapture capture = JavaCompilerService.newOutputCapture();
+        output.capture = capture;
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> deadline = timer.schedule(() -> {
+            timedOut.set(true);
+            kill();
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+        if (slot != null) {
+            slot.begin();
+        }
+        long start = System.currentTimeMillis();
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            SourceCodeAnalysis analysis = shell.sourceCodeAnalysis();
+            String remaining = code;
+            while (!remaining.isBlank() && !dead) {
+                SourceCodeAnalysis.CompletionInfo info = analysis.analyzeCompletion(remaining);
+                if (info.completeness() == SourceCodeAnalysis.Completeness.EMPTY) {
+                    break;
+                }
+                if (!info.completeness().isComplete()) {
+                    Map<String, Object> incomplete = new HashMap<>();
+                    incomplete.put("source", remaining.trim());
+                    incomplete.put("status", "INCOMPLETE");
+                    results.add(incomplete);
+                    break;
+                }
+                for (SnippetEvent event : shell.eval(info.source())) {
+                    // Events caused by this snippet, such as dependents being updated, are noise here
+                    if (event.causeSnippet() == null) {
+                        results.add(describe(event));
+                        snippets++;
+                    }
+                }
+                remaining = info.remaining();
+            }
+        } catch (IllegalStateException e) {
+            // The execution engine went away under us: timeout, output cap or the program exited
+            dead = true;
+        } finally {
+            deadline.cancel(false);
+            output.capture = null;
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("sessionId", id);
+        response.put("results", results);
+        response.put("output", capture.decode(SandboxRuntime.OUTPUT_CHARSET));
+        response.put("truncated", capture.isTruncated());
+        response.put("timedOut", timedOut.get());
+        response.put("sessionReset", isDead());
+        long wallTimeMs = System.currentTimeMillis() - start;
+        response.put("timeMs", wallTimeMs);
+        lastUsage = slot != null ? slot.finish(wallTimeMs) : null;
+        if (lastUsage != null) {
+            response.putAll(lastUsage.toMap());
+        }
+        if (timedOut.get()) {
+            response.put("errors", "Error: Execution timeout (exceeded " + timeoutMs / 1000 + " seconds), session was reset.");
+        } else if (capture.isTruncated()) {
+            response.put("errors", "Error: Output limit exceeded (" + JavaCompilerService.MAX_OUTPUT_BYTES
+                    + " bytes), session was reset.");
+        } else if (isDead()) {
+            response.put("errors", "Error: The session ended (System.exit or a crash) and was reset.");
+        }
+        return response;
+    }
+
+    // What the last eval's snippets used in the session JVM, null without a ResourceMonitor
+    public synchronized ResourceUsage getLastUsage() {
+        return lastUsage;
+    }
+
+    public int getSnippetCount() {
+        return snippets;
+    }
+
+    public void close() {
+        dead = true;
+        try {
+            shell.close();
+        } catch (RuntimeException e) {
+            // Engine already gone
+        }
+        if (tree != null) {
+            tree.close();
+        } else if (process != null) {
+            process.destroyForcibly();
+        }
+        if (slot != null) {
+            slot.close();
+        }
+    }
+
+    private void kill() {
+        dead = true;
+        if (slot != null) {
+            slot.kill();
+        }
+        if (tree != null) {
+            tree.kill();
+        } else if (process != null) {
+            process.destroyForcibly();
+        }
+    }
+
+    private Map<String, Object> describe(SnippetEvent event) {
+        Snippet snippet = event.snippet();
+        Map<String, Object> result = new HashMap<>();
+        result.put("source", snippet.source());
+        result.put("kind", snippet.kind().name());
+        result.put("status", event.status().name());
+        if (snippet instanceof DeclarationSnippet) {
+            result.put("name", ((DeclarationSnippet) snippet).name());
+            List<String> unresolved = shell.unresolvedDependencies((DeclarationSnippet) snippet)
+                    .collect(Collectors.toList());
+            if (!unresolved.isEmpty()) {
+                result.put("unresolved", unresolved);
+            }
+        }
+        if (event.value() != null) {
+            result.put("value", event.value());
+        }
+        JShellException exception = event.exception();
+        if (exception instanceof EvalException) {
+            result.put("exception", ((EvalException) exception).getExceptionClassName()
+                    + (exception.getMessage() != null ? ": " + exception.getMessage() : ""));
+        } else if (exception != null) {
+            result.put("exception", exception.getMessage());
+        }
+        if (event.status() == Snippet.Status.REJECTED) {
+            result.put("diagnostics", shell.diagnostics(snippet)
+                    .map(diagnostic -> diagnostic.getMessage(Locale.ENGLISH))
+                    .collect(Collectors.toList()));
+        }
+        return result;
+    }
+
+    // Snippet output goes to whichever eval is running; anything printed in between is dropped
+    private class CurrentOutput extends OutputStream {
+
+        private volatile OutputCapture capture;
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            OutputCapture current = capture;
+            if (current != null && !current.write(bytes, offset, length)) {
+                kill();
+            }
+        }
+    }
+
+    // Starts SandboxReplAgent in a sandbox JVM and talks to it over a loopback socket, instead of
+    // the JDI launch jshell uses by default, which gives us no handle on the process. Any local
+    // process can connect to the port, so the agent gets a random token on its stdin (not the
+    // command line, which other users can read) and has to send it back before anything else.
+    private class SandboxEngine implements ExecutionControlProvider {
+
+        @Override
+        public String name() {
+            return "javahub-sandbox";
+        }
+
+        @Override
+        public ExecutionControl generate(ExecutionEnv env, Map<String, String> parameters) throws Throwable {
+            try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+                server.setSoTimeout(CONNECT_TIMEOUT_MS);
+                List<String> command = new ArrayList<>(SandboxRuntime.javaCommand(
+                        SandboxRuntime.launcherClasspath().toString(), SandboxRuntime.replAgentMainClass()));
+                command.add(String.valueOf(server.getLocalPort()));
+                ProcessBuilder processBuilder = new ProcessBuilder(command);
+                processBuilder.directory(SandboxRuntime.launcherDirectory().toFile());
+                processBuilder.redirectErrorStream(true);
+                processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+                tree = reaper != null ? reaper.start(processBuilder) : null;
+                process = tree != null ? tree.getProcess() : processBuilder.start();
+                slot = monitor != null ? monitor.attach(process) : null;
+
+                byte[] token = new byte[SandboxReplAgent.TOKEN_LENGTH];
+                TOKENS.nextBytes(token);
+                Socket socket;
+                try {
+                    try (OutputStream stdin = process.getOutputStream()) {
+                        stdin.write(token);
+                    }
+                    socket = acceptAgent(server, token);
+                    socket.setTcpNoDelay(true);
+                } catch (IOException e) {
+                    kill();
+                    throw new IOException("REPL engine did not start: " + e.getMessage(), e);
+                }
+                Map<String, OutputStream> outputs = Map.of("out", env.userOut(), "err", env.userErr());
+                Map<String, InputStream> inputs = Map.of("in", env.userIn());
+                return Util.remoteInputOutput(socket.getInputStream(), socket.getOutputStream(), outputs, inputs,
+                        (in, out) -> new StreamingExecutionControl(out, in));
+            }
+        }
+
+        // Connections that do not open with the token are closed and the wait goes on
+        private Socket acceptAgent(ServerSocket server, byte[] token) throws IOException {
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+            while (true) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("no connection with the session token");
+                }
+                server.setSoTimeout((int) remaining);
+                Socket socket = server.accept();
+                byte[] presented = new byte[token.length];
+                try {
+                    socket.setSoTimeout((int) remaining);
+                    new DataInputStream(socket.getInputStream()).readFully(presented);
+                    if (MessageDigest.isEqual(token, presented)) {
+                        socket.setSoTimeout(0);
+                        return socket;
+                    }
+                } catch (IOException e) {
+                    // Fall through and close it
+                }
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Limits and measures the sandbox JVMs. Where a cgroup v2 subtree with the cpu and memory
+// controllers is delegated to the backend, every sandbox process gets its own child cgroup with a
+// CPU quota and memory.max, and usage is read from the cgroup's counters. Without delegation
+// nothing is enforced beyond -Xmx and the timeout, and usage is sampled from /proc instead.
+@Component
+public class ResourceMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ResourceMonitor.class);
+
+    static final String PREFIX = "jlh_run_";
+
+    private static final Path CGROUP_MOUNT = Paths.get("/sys/fs/cgroup");
+    private static final long CPU_PERIOD_US = 100_000;
+    // USER_HZ, the unit of /proc/<pid>/stat times; 100 on every Linux ABI the JDK supports
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    private static final int REMOVE_ATTEMPTS = 20;
+
+    @Value("${compiler.cgroup.enabled:true}")
+    private boolean cgroupEnabled = true;
+
+    // Empty means the backend's own cgroup, which then needs cpu and memory in its subtree_control
+    @Value("${compiler.cgroup.root:}")
+    private String rootSetting = "";
+
+    // 100 is one full core per run
+    @Value("${compiler.cgroup.cpu-percent:100}")
+    private int cpuPercent = 100;
+
+    // Whole-process limit, so it has to leave room above -Xmx for metaspace, code cache and stacks
+    @Value("${compiler.cgroup.memory-mb:256}")
+    private long memoryMb = 256;
+
+    @Value("${compiler.cgroup.pids-max:128}")
+    private int pidsMax = 128;
+
+    @Value("${compiler.accounting.sample-ms:20}")
+    private long sampleMs = 20;
+
+    private final Set<Slot> sampling = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicInteger openSlots = new AtomicInteger();
+    private final AtomicLong cgroupsCreated = new AtomicLong();
+    private final AtomicLong cgroupsRemoved = new AtomicLong();
+    private final AtomicLong cgroupsLeaked = new AtomicLong();
+    private final AtomicLong attachFailures = new AtomicLong();
+    private final AtomicLong memoryLimitKills = new AtomicLong();
+    private final String pid = String.valueOf(ProcessHandle.current().pid());
+    private volatile Path root;
+    private volatile String fallbackReason;
+    private boolean pidsControl;
+    private ScheduledExecutorService sampler;
+
+    @PostConstruct
+    public void start() {
+        if (cgroupEnabled) {
+            try {
+                root = prepareRoot();
+            } catch (IOException e) {
+                fallbackReason = e.getMessage();
+            }
+        } else {
+            fallbackReason = "disabled by compiler.cgroup.enabled";
+        }
+        if (root == null) {
+            log.info("Sandbox runs are not placed in cgroups ({}); CPU and memory usage is sampled from /proc",
+                    fallbackReason);
+        }
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "resource-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sampleAll, sampleMs, sampleMs, TimeUnit.MILLISECONDS);
+        if (root != null) {
+            sampler.execute(this::removeOrphans);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
+    }
+
+    // Call straight after the process starts, before it is handed any user code. Never fails: when
+    // the cgroup cannot be set up the process is watched through /proc instead.
+    public Slot attach(Process process) {
+        Path cgroupRoot = root;
+        if (cgroupRoot != null) {
+            try {
+                return new CgroupSlot(process, cgroupRoot);
+            } catch (IOException e) {
+                attachFailures.incrementAndGet();
+            }
+        }
+        return new ProcSlot(process);
+    }
+
+    public boolean isEnforcing() {
+        return root != null;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("mode", root != null ? "cgroup" : "proc");
+        stats.put("root", root != null ? root.toString() : null);
+        stats.put("fallbackReason", fallbackReason);
+        stats.put("cpuPercent", cpuPercent);
+        stats.put("memoryMb", memoryMb);
+        stats.put("pidsMax", pidsControl ? pidsMax : -1);
+        stats.put("openSlots", openSlots.get());
+        stats.put("cgroupsCreated", cgroupsCreated.get());
+        stats.put("cgroupsRemoved", cgroupsRemoved.get());
+        stats.put("cgroupsLeaked", cgroupsLeaked.get());
+        stats.put("attachFailures", attachFailures.get());
+        stats.put("memoryLimitKills", memoryLimitKills.get());
+        return stats;
+    }
+
+    private Path prepareRoot() throws IOException {
+        Path cgroupRoot;
+        if (!rootSetting.isBlank()) {
+            cgroupRoot = Paths.get(rootSetting);
+        } else {
+            if (!Files.exists(CGROUP_MOUNT.resolve("cgroup.controllers"))) {
+                throw new IOException("no cgroup v2 hierarchy at " + CGROUP_MOUNT);
+            }
+            cgroupRoot = CGROUP_MOUNT.resolve(ownCgroup());
+        }
+        if (!Files.exists(cgroupRoot.resolve("cgroup.controllers"))) {
+            throw new IOException(cgroupRoot + " is not a cgroup v2 directory");
+        }
+
+        Set<String> enabled = words(cgroupRoot.resolve("cgroup.subtree_control"));
+        if (!enabled.contains("cpu") || !enabled.contains("memory")) {
+            Set<String> available = words(cgroupRoot.resolve("cgroup.controllers"));
+            if (!available.contains("cpu") || !available.contains("memory")) {
+                throw new IOException("cpu and memory controllers are not delegated to " + cgroupRoot);
+            }
+            try {
+                Files.writeString(cgroupRoot.resolve("cgroup.subtree_control"),
+                        available.contains("pids") ? "+cpu +memory +pids" : "+cpu +memory");
+            } catch (IOException e) {
+                // Typically EBUSY: the backend itself lives in this cgroup, so it cannot have children
+                // with controllers. Point compiler.cgroup.root at a delegated, process-free subtree.
+                throw new IOException("cannot enable controllers in " + cgroupRoot + ": " + e.getMessage());
+            }
+            enabled = words(cgroupRoot.resolve("cgroup.subtree_control"));
+        }
+        pidsControl = enabled.contains("pids");
+
+        Path probe = cgroupRoot.resolve(PREFIX + pid + "_probe");
+        try {
+            Files.createDirectory(probe);
+        } catch (IOException e) {
+            throw new IOException("cannot create cgroups under " + cgroupRoot + ": " + e.getMessage());
+        }
+        Files.delete(probe);
+        return cgroupRoot;
+    }
+
+    // The "0::/path" line of /proc/self/cgroup, relative to the mount
+    private static String ownCgroup() throws IOException {
+        for (String line : Files.readAllLines(Paths.get("/proc/self/cgroup"))) {
+            if (line.startsWith("0::")) {
+                return line.substring(3).replaceFirst("^/+", "");
+            }
+        }
+        throw new IOException("backend is not in a cgroup v2 hierarchy");
+    }
+
+    private void sampleAll() {
+        for (Slot slot : sampling) {
+            slot.sample();
+        }
+    }
+
+    // Cgroups named after a backend pid that is gone were left by a crash
+    private void removeOrphans() {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root, PREFIX + "*")) {
+            for (Path entry : entries) {
+                String suffix = entry.getFileName().toString().substring(PREFIX.length());
+                int separator = suffix.indexOf('_');
+                if (separator > 0 && !suffix.substring(0, separator).equals(pid)
+                        && !isAlive(suffix.substring(0, separator))) {
+                    removeCgroup(entry, REMOVE_ATTEMPTS);
+                }
+            }
+        } catch (IOException e) {
+            // Nothing to clean up, or not listable
+        }
+    }
+
+    // Kills whatever is still inside, then removes the directory; retried in the background while
+    // the kernel is still tearing the processes down
+    private void removeCgroup(Path cgroup, int attemptsLeft) {
+        killAll(cgroup);
+        try {
+            Files.deleteIfExists(cgroup);
+            cgroupsRemoved.incrementAndGet();
+        } catch (IOException e) {
+            if (attemptsLeft > 1 && !sampler.isShutdown()) {
+                sampler.schedule(() -> removeCgroup(cgroup, attemptsLeft - 1), 50, TimeUnit.MILLISECONDS);
+            } else {
+                cgroupsLeaked.incrementAndGet();
+            }
+        }
+    }
+
+    private static void killAll(Path cgroup) {
+        // cgroup.kill (5.14+) also catches processes forked while we iterate
+        Path kill = cgroup.resolve("cgroup.kill");
+        if (Files.exists(kill)) {
+            try {
+                Files.writeString(kill, "1");
+                return;
+            } catch (IOException e) {
+                // Fall through to killing one by one
+            }
+        }
+        try {
+            for (String line : Files.readAllLines(cgroup.resolve("cgroup.procs"))) {
+                if (!line.isBlank()) {
+                    ProcessHandle.of(Long.parseLong(line.trim())).ifPresent(ProcessHandle::destroyForcibly);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Already gone
+        }
+    }
+
+    private static boolean isAlive(String pid) {
+        try {
+            Optional<ProcessHandle> process = ProcessHandle.of(Long.parseLong(pid));
+            return process.map(ProcessHandle::isAlive).orElse(false);
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static Set<String> words(Path file) throws IOException {
+        String content = Files.readString(file).trim();
+        return content.isEmpty() ? new HashSet<>() : new HashSet<>(Arrays.asList(content.split("\\s+")));
+    }
+
+    // Value of a "key value" line in files such as cpu.stat, memory.events or /proc/<pid>/status
+    private static long keyedValue(Path file, String key) {
+        try {
+            for (String line : Files.readAllLines(file)) {
+                if (line.startsWith(key) && line.length() > key.length()
+                        && (line.charAt(key.length()) == ' ' || line.charAt(key.length()) == ':')) {
+                    String[] parts = line.substring(key.length() + 1).trim().split("\\s+");
+                    return Long.parseLong(parts[0]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Process or cgroup already gone
+        }
+        return -1;
+    }
+
+    private static long singleValue(Path file) {
+        try {
+            return Long.parseLong(Files.readString(file).trim());
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // One sandbox process for its whole life: a fresh JVM for a single run, or a pooled worker
+    // measured run by run. begin and finish bracket one run; close once the process is done with.
+    public abstract class Slot {
+
+        protected final Process process;
+        protected int runs;
+        private long cpuBaselineUs;
+        private long cpuLastUs;
+        private long peakKb;
+        private boolean closed;
+
+        Slot(Process process) {
+            this.process = process;
+            openSlots.incrementAndGet();
+        }
+
+        public synchronized void begin() {
+            runs++;
+            resetPeak();
+            long cpu = readCpuUs();
+            cpuBaselineUs = Math.max(cpu, 0);
+            cpuLastUs = cpuBaselineUs;
+            peakKb = -1;
+            sampling.add(this);
+        }
+
+        public synchronized ResourceUsage finish(long wallTimeMs) {
+            sampling.remove(this);
+            sample();
+            boolean memoryLimitHit = memoryLimitHit();
+            if (memoryLimitHit) {
+                memoryLimitKills.incrementAndGet();
+            }
+            return new ResourceUsage((cpuLastUs - cpuBaselineUs) / 1000, peakKb, wallTimeMs, source(),
+                    memoryLimitHit);
+        }
+
+        synchronized void sample() {
+            long cpu = readCpuUs();
+            if (cpu > cpuLastUs) {
+                cpuLastUs = cpu;
+            }
+            long rss = readPeakKb();
+            if (rss > peakKb) {
+                peakKb = rss;
+            }
+        }
+
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            sampling.remove(this);
+            openSlots.decrementAndGet();
+            release();
+        }
+
+        // Kills every process in the slot at once where the kernel allows it; a no-op otherwise
+        public void kill() {
+        }
+
+        abstract String source();
+
+        // Cumulative CPU of the process and its children, -1 when it cannot be read
+        abstract long readCpuUs();
+
+        abstract long readPeakKb();
+
+        abstract void resetPeak();
+
+        boolean memoryLimitHit() {
+            return false;
+        }
+
+        void release() {
+        }
+    }
+
+    private class CgroupSlot extends Slot {
+
+        private final Path cgroup;
+        private long oomKillsBefore;
+
+        CgroupSlot(Process process, Path cgroupRoot) throws IOException {
+            super(process);
+            cgroup = cgroupRoot.resolve(PREFIX + pid + "_" + sequence.incrementAndGet());
+            try {
+                Files.createDirectory(cgroup);
+                cgroupsCreated.incrementAndGet();
+            } catch (IOException e) {
+                openSlots.decrementAndGet();
+                throw e;
+            }
+            try {
+                Files.writeString(cgroup.resolve("cpu.max"), cpuPercent * CPU_PERIOD_US / 100 + " " + CPU_PERIOD_US);
+                Files.writeString(cgroup.resolve("memory.max"), String.valueOf(memoryMb * 1024 * 1024));
+                try {
+                    Files.writeString(cgroup.resolve("memory.swap.max"), "0");
+                } catch (IOException e) {
+                    // No swap accounting on this kernel
+                }
+                if (pidsControl) {
+                    Files.writeString(cgroup.resolve("pids.max"), String.valueOf(pidsMax));
+                }
+                Files.writeString(cgroup.resolve("cgroup.procs"), String.valueOf(process.pid()));
+            } catch (IOException e) {
+                openSlots.decrementAndGet();
+                removeCgroup(cgroup, REMOVE_ATTEMPTS);
+                throw e;
+            }
+        }
+
+        @Override
+        String source() {
+            return "cgroup";
+        }
+
+        @Override
+        long readCpuUs() {
+            return keyedValue(cgroup.resolve("cpu.stat"), "usage_usec");
+        }
+
+        @Override
+        long readPeakKb() {
+            long current = singleValue(cgroup.resolve("memory.current"));
+            // memory.peak covers the cgroup's whole life, so it is only the run's own on the first run
+            long peak = runs == 1 ? singleValue(cgroup.resolve("memory.peak")) : -1;
+            long bytes = Math.max(current, peak);
+            return bytes < 0 ? -1 : bytes / 1024;
+        }
+
+        @Override
+        void resetPeak() {
+            oomKillsBefore = Math.max(keyedValue(cgroup.resolve("memory.events"), "oom_kill"), 0);
+        }
+
+        @Override
+        boolean memoryLimitHit() {
+            return keyedValue(cgroup.resolve("memory.events"), "oom_kill") > oomKillsBefore;
+        }
+
+        @Override
+        public void kill() {
+            killAll(cgroup);
+        }
+
+        @Override
+        void release() {
+            removeCgroup(cgroup, REMOVE_ATTEMPTS);
+        }
+    }
+
+    // Lower bounds only: whatever the process uses after the last sample before it exits is missed
+    private class ProcSlot extends Slot {
+
+        private final Path proc;
+
+        ProcSlot(Process process) {
+            super(process);
+            proc = Paths.get("/proc", String.valueOf(process.pid()));
+        }
+
+        @Override
+        String source() {
+            return "proc";
+        }
+
+        @Override
+        long readCpuUs() {
+            try {
+                String stat = Files.readString(proc.resolve("stat"));
+                // Fields after the parenthesised command name start at field 3 (state)
+                String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                List<String> times = Arrays.asList(fields).subList(11, 15); // utime stime cutime cstime
+                long ticks = 0;
+                for (String time : times) {
+                    ticks += Long.parseLong(time);
+                }
+                return ticks * 1_000_000 / CLOCK_TICKS_PER_SECOND;
+            } catch (IOException | RuntimeException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        long readPeakKb() {
+            return keyedValue(proc.resolve("status"), "VmHWM");
+        }
+
+        @Override
+        void resetPeak() {
+            // Resets VmHWM so a pooled worker's peak is per run (Linux 4.0+)
+            try {
+                Files.writeString(proc.resolve("clear_refs"), "5");
+            } catch (IOException e) {
+                // Peak then covers the worker's life so far
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.javahub.app.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// What one run consumed. Figures an engine cannot measure are -1; source says where they came from:
+// "cgroup" (exact, from the run's own cgroup), "proc" (sampled from /proc) or "thread" (in-process).
+public class ResourceUsage {
+
+    private final long cpuTimeMs;
+    private final long peakRssKb;
+    private final long wallTimeMs;
+    private final String source;
+    private final boolean memoryLimitHit;
+
+    public ResourceUsage(long cpuTimeMs, long peakRssKb, long wallTimeMs, String source, boolean memoryLimitHit) {
+        this.cpuTimeMs = cpuTimeMs;
+        this.peakRssKb = peakRssKb;
+        this.wallTimeMs = wallTimeMs;
+        this.source = source;
+        this.memoryLimitHit = memoryLimitHit;
+    }
+
+    public long getCpuTimeMs() {
+        return cpuTimeMs;
+    }
+
+    public long getPeakRssKb() {
+        return peakRssKb;
+    }
+
+    public long getWallTimeMs() {
+        return wallTimeMs;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    // The kernel killed the run for going over the cgroup's memory.max
+    public boolean isMemoryLimitHit() {
+        return memoryLimitHit;
+    }
+
+    // Fields the run responses carry next to "runMs"
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("cpuTimeMs", cpuTimeMs);
+        map.put("peakRssKb", peakRssKb);
+        map.put("accounting", source);
+        return map;
+    }
+}
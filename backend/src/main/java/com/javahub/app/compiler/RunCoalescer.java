@@ -0,0 +1,37 @@
+package com.javahub.app.compiler;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+// Lets identical /compiler/run submissions that arrive together share one scheduled run. It sits in
+// front of the scheduler, so waiters take no queue slot; results of programs that read time,
+// randomness or input are not shared and those waiters run on their own.
+@Component
+public class RunCoalescer {
+
+    @Value("${compiler.coalesce.share-execution:true}")
+    private boolean shareExecution = true;
+
+    private final SingleFlight<JavaCompilerService.CompilationResult> runs = new SingleFlight<>();
+
+    public JavaCompilerService.CompilationResult run(String code, ExecutionContext.Engine engine,
+                                                     Callable<JavaCompilerService.CompilationResult> task) throws Exception {
+        if (!shareExecution) {
+            return task.call();
+        }
+        return runs.run(JavaCompilerService.runKey(code, engine), task,
+                JavaCompilerService.CompilationResult::isShareable);
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "enabled", shareExecution,
+            "runs", runs.getLeaders(),
+            "shared", runs.getShared(),
+            "notShareable", runs.getDeclined()
+        );
+    }
+}
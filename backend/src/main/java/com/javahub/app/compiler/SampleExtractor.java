@@ -0,0 +1,158 @@
+package com.javahub.app.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Finds the Java examples in lesson text. Content is prose with code pasted in between, so a block
+// starts at a line that looks like a statement or declaration and runs while braces are open or
+// the following lines still look like code. "... Example: int age = 25;" inside a sentence counts
+// as a one-line block.
+final class SampleExtractor {
+
+    enum Kind {
+        // Has a main method and runs as written
+        PROGRAM,
+        // Top-level types only; compiled next to an empty Main
+        DECLARATIONS,
+        // Statements, run as the body of Main.main
+        STATEMENTS
+    }
+
+    private static final Pattern INLINE_EXAMPLE = Pattern.compile("Example:\\s*(\\S.*)$");
+    private static final Pattern CODE_START = Pattern.compile(
+            "^(@\\w+|//|}|(public|private|protected|static|final|abstract|class|interface|enum|record|"
+            + "for|while|if|do|return|try|switch)\\b|[\\w.<>\\[\\], ]+\\s+\\w+\\s*[=;(]|[\\w.\\[\\]]+\\s*(\\(|=|\\+\\+|--|[+\\-*/]=))");
+    private static final Pattern TOP_LEVEL_TYPE = Pattern.compile(
+            "^(?:@\\w+(?:\\([^)]*\\))?\\s+)*(?:(?:public|abstract|final)\\s+)*(?:class|interface|enum|record)\\s+\\w+",
+            Pattern.MULTILINE);
+    private static final Pattern PUBLIC_TOP_LEVEL = Pattern.compile(
+            "^public\\s+((?:(?:abstract|final)\\s+)*(?:class|interface|enum|record)\\s)", Pattern.MULTILINE);
+    private static final Pattern MAIN_METHOD = Pattern.compile("static\\s+void\\s+main\\s*\\(");
+
+    private SampleExtractor() {
+    }
+
+    static List<String> extract(String text) {
+        List<String> blocks = new ArrayList<>();
+        if (text == null) {
+            return blocks;
+        }
+        String[] lines = text.replace("\r\n", "\n").split("\n", -1);
+        int index = 0;
+        while (index < lines.length) {
+            Matcher inline = INLINE_EXAMPLE.matcher(lines[index]);
+            if (inline.find() && isCode(inline.group(1))) {
+                blocks.add(inline.group(1).trim());
+                index++;
+                continue;
+            }
+            if (!isCode(lines[index])) {
+                index++;
+                continue;
+            }
+            StringBuilder block = new StringBuilder();
+            int depth = 0;
+            int end = index;
+            for (; end < lines.length; end++) {
+                String line = lines[end];
+                if (depth <= 0 && end > index) {
+                    int next = end;
+                    while (next < lines.length && lines[next].isBlank()) {
+                        next++;
+                    }
+                    if (next == lines.length || !isCode(lines[next])) {
+                        break;
+                    }
+                }
+                block.append(line).append('\n');
+                depth += braceDepth(line);
+            }
+            blocks.add(block.toString().stripTrailing());
+            index = end;
+        }
+        return blocks;
+    }
+
+    static Kind kindOf(String code) {
+        if (MAIN_METHOD.matcher(code).find()) {
+            return Kind.PROGRAM;
+        }
+        Matcher type = TOP_LEVEL_TYPE.matcher(code.stripIndent());
+        return type.find() && type.start() == 0 ? Kind.DECLARATIONS : Kind.STATEMENTS;
+    }
+
+    // Source that compiles and runs on its own, with the public class first so extractClassName finds it
+    static String program(String code) {
+        switch (kindOf(code)) {
+            case PROGRAM:
+                return code + "\n";
+            case DECLARATIONS:
+                // Only one public type per file; Main takes that place
+                return "public class Main {\n    public static void main(String[] args) {\n    }\n}\n\n"
+                        + PUBLIC_TOP_LEVEL.matcher(code.stripIndent()).replaceAll("$1") + "\n";
+            default:
+                return "public class Main {\n    public static void main(String[] args) {\n"
+                        + code.stripIndent().indent(8) + "    }\n}\n";
+        }
+    }
+
+    // Lines ending in a statement, block or annotation; list items and sentences do not
+    private static boolean isCode(String line) {
+        String trimmed = withoutComment(line).trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("-")) {
+            return line.trim().startsWith("//");
+        }
+        boolean ends = trimmed.endsWith(";") || trimmed.endsWith("{") || trimmed.endsWith("}")
+                || trimmed.startsWith("@");
+        return ends && CODE_START.matcher(trimmed).find();
+    }
+
+    private static String withoutComment(String line) {
+        int comment = indexOutsideStrings(line, "//");
+        return comment < 0 ? line : line.substring(0, comment);
+    }
+
+    private static int braceDepth(String line) {
+        String code = withoutComment(line);
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            }
+        }
+        return depth;
+    }
+
+    private static int indexOutsideStrings(String line, String token) {
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (line.startsWith(token, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,258 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Maintains a dynamic AppCDS archive for the sandbox JVM command line. A training run of the
+// launcher records the JDK classes user programs typically load; later child JVMs map that archive
+// instead of parsing and verifying the same classes again. If the archive is missing, stale or
+// rejected, child JVMs simply start without it. The archive sits next to the launcher jar, in the
+// directory SandboxRuntime keeps private to this user.
+@Component
+public class SandboxCdsArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(SandboxCdsArchive.class);
+
+    private static final long PROCESS_TIMEOUT_SECONDS = 60;
+    private static final String TRAINING_MARKER = "cds-training-ok";
+
+    // Touches what typical exercises use: collections, streams, lambdas, string concat, formatting, Scanner
+    private static final String TRAINING_SOURCE = "import java.util.*;\n"
+            + "import java.util.function.*;\n"
+            + "import java.util.stream.*;\n"
+            + "public class Main {\n"
+            + "    public static void main(String[] args) {\n"
+            + "        Scanner in = new Scanner(System.in);\n"
+            + "        List<Integer> numbers = new ArrayList<>();\n"
+            + "        for (int i = 0; i < 20; i++) numbers.add(i * 7 % 11);\n"
+            + "        Collections.sort(numbers);\n"
+            + "        Map<String, Integer> counts = new HashMap<>();\n"
+            + "        for (int n : numbers) counts.merge(n % 2 == 0 ? \"even\" : \"odd\", 1, Integer::sum);\n"
+            + "        Function<Integer, String> label = n -> \"#\" + n;\n"
+            + "        String joined = numbers.stream().filter(n -> n > 3).map(label).collect(Collectors.joining(\",\"));\n"
+            + "        StringBuilder sb = new StringBuilder();\n"
+            + "        sb.append(String.format(\"%.3f %d%n\", Math.sqrt(2), Arrays.asList(1, 2, 3).size()));\n"
+            + "        try { Integer.parseInt(\"x\"); } catch (NumberFormatException e) { sb.append(e.getMessage()); }\n"
+            + "        System.out.println(joined + \" \" + counts + \" \" + sb + \" \" + in.hasNextLine());\n"
+            + "        System.out.println(\"" + TRAINING_MARKER + "\");\n"
+            + "    }\n"
+            + "}\n";
+
+    @Value("${compiler.cds.enabled:true}")
+    private boolean enabled = true;
+
+    // Startup runs per variant for the latency report, 0 to skip it
+    @Value("${compiler.cds.report-runs:5}")
+    private int reportRuns = 5;
+
+    @Autowired
+    private JavaCompilerService compilerService;
+
+    private volatile String status = "pending";
+    private volatile String error;
+    private volatile Path archive;
+    private volatile boolean reused;
+    private volatile long buildTimeMs;
+    private volatile double startupWithArchiveMs;
+    private volatile double startupWithoutArchiveMs;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            status = "disabled";
+            return;
+        }
+        // A training run costs a couple of JVM starts; keep it off the application startup path
+        Thread builder = new Thread(this::prepare, "sandbox-cds");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    void prepare() {
+        try {
+            CompiledProgram training = compilerService.compileInMemory("Main", TRAINING_SOURCE);
+            if (!training.isSuccess()) {
+                throw new IllegalStateException("training program did not compile: " + training.getErrors());
+            }
+            byte[] stdin = SandboxRuntime.encodeProgram(training);
+            Path jar = SandboxRuntime.launcherClasspath();
+            Path target = jar.resolveSibling("sandbox-" + optionsHash() + ".jsa");
+
+            status = "building";
+            if (Files.isRegularFile(target, LinkOption.NOFOLLOW_LINKS) && validate(target, jar, stdin)) {
+                reused = true;
+            } else {
+                build(target, jar, stdin);
+                if (!validate(target, jar, stdin)) {
+                    throw new IllegalStateException("archive was rejected by the JVM after it was built");
+                }
+            }
+            removeOtherArchives(target);
+            archive = target;
+            SandboxRuntime.useSharedArchive(target);
+            status = "ready";
+
+            if (reportRuns > 0) {
+                report(jar, stdin, target);
+            }
+        } catch (Exception e) {
+            SandboxRuntime.useSharedArchive(null);
+            error = e.getMessage();
+            status = "unavailable";
+            log.warn("Sandbox CDS archive unavailable, child JVMs start without it: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("status", status);
+        stats.put("archive", archive != null ? archive.toString() : null);
+        stats.put("reused", reused);
+        stats.put("buildTimeMs", buildTimeMs);
+        stats.put("startupWithArchiveMs", startupWithArchiveMs);
+        stats.put("startupWithoutArchiveMs", startupWithoutArchiveMs);
+        stats.put("error", error);
+        return stats;
+    }
+
+    private void build(Path target, Path jar, byte[] stdin) throws IOException, InterruptedException {
+        Files.deleteIfExists(target);
+        Path partial = target.resolveSibling(target.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        Files.deleteIfExists(partial);
+
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.addAll(SandboxRuntime.baseOptions());
+        command.add("-XX:ArchiveClassesAtExit=" + partial);
+        command.add("-cp");
+        command.add(jar.toString());
+        command.add(SandboxRuntime.launcherMainClass());
+
+        long start = System.currentTimeMillis();
+        Run run = run(command, stdin);
+        buildTimeMs = System.currentTimeMillis() - start;
+        if (run.exitCode != 0 || !Files.isRegularFile(partial)) {
+            Files.deleteIfExists(partial);
+            throw new IllegalStateException("training run failed (exit " + run.exitCode + "): " + run.output.trim());
+        }
+        try {
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // -Xshare:on makes the JVM fail instead of quietly ignoring an archive it cannot map
+    private boolean validate(Path candidate, Path jar, byte[] stdin) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(
+                SandboxRuntime.javaCommand(jar.toString(), SandboxRuntime.launcherMainClass(), candidate));
+        command.set(command.indexOf("-Xshare:auto"), "-Xshare:on");
+        Run run = run(command, stdin);
+        return run.exitCode == 0 && run.output.contains(TRAINING_MARKER);
+    }
+
+    // Alternates the two variants so background load affects both alike
+    private void report(Path jar, byte[] stdin, Path target) throws IOException, InterruptedException {
+        List<String> with = SandboxRuntime.javaCommand(jar.toString(), SandboxRuntime.launcherMainClass(), target);
+        List<String> without = SandboxRuntime.javaCommand(jar.toString(), SandboxRuntime.launcherMainClass(), null);
+        long withTotal = 0;
+        long withoutTotal = 0;
+        for (int i = 0; i < reportRuns; i++) {
+            withoutTotal += run(without, stdin).wallTimeNanos;
+            withTotal += run(with, stdin).wallTimeNanos;
+        }
+        startupWithArchiveMs = withTotal / (reportRuns * 1_000_000.0);
+        startupWithoutArchiveMs = withoutTotal / (reportRuns * 1_000_000.0);
+        log.info("Sandbox CDS archive {} ({}): child JVM run {}ms with archive, {}ms without",
+                reused ? "reused" : "built", target, String.format("%.1f", startupWithArchiveMs),
+                String.format("%.1f", startupWithoutArchiveMs));
+    }
+
+    private void removeOtherArchives(Path keep) {
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(keep.getParent(), "sandbox-*.jsa")) {
+            for (Path other : archives) {
+                if (!other.equals(keep)) {
+                    Files.deleteIfExists(other);
+                }
+            }
+        } catch (IOException e) {
+            // Leftovers only cost disk space
+        }
+    }
+
+    // The archive is only valid for the JVM and options it was dumped with; the launcher jar is
+    // already covered because the archive sits in the jar's content-addressed directory
+    private static String optionsHash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(System.getProperty("java.home").getBytes(StandardCharsets.UTF_8));
+            digest.update(System.getProperty("java.vm.version").getBytes(StandardCharsets.UTF_8));
+            for (String option : SandboxRuntime.baseOptions()) {
+                digest.update(option.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Output goes to a file rather than a pipe, so a child that hangs is caught by the timeout
+    // instead of blocking a read forever
+    private static Run run(List<String> command, byte[] stdin) throws IOException, InterruptedException {
+        Path outputFile = Files.createTempFile(SandboxRuntime.launcherDirectory(), "cds-run", ".out");
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.directory(SandboxRuntime.launcherDirectory().toFile());
+            processBuilder.redirectErrorStream(true);
+            processBuilder.redirectOutput(outputFile.toFile());
+            long start = System.nanoTime();
+            Process process = processBuilder.start();
+            try (OutputStream in = process.getOutputStream()) {
+                in.write(stdin);
+            }
+            if (!process.waitFor(PROCESS_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IllegalStateException("child JVM did not exit within " + PROCESS_TIMEOUT_SECONDS + "s");
+            }
+            long wallTimeNanos = System.nanoTime() - start;
+            return new Run(process.exitValue(),
+                    new String(Files.readAllBytes(outputFile), SandboxRuntime.OUTPUT_CHARSET), wallTimeNanos);
+        } finally {
+            Files.deleteIfExists(outputFile);
+        }
+    }
+
+    private static class Run {
+        final int exitCode;
+        final String output;
+        final long wallTimeNanos;
+
+        Run(int exitCode, String output, long wallTimeNanos) {
+            this.exitCode = exitCode;
+            this.output = output;
+            this.wallTimeNanos = wallTimeNanos;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.javahub.app.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Entry point of the child JVM that runs one program against a list of test cases. The program
+// arrives on stdin as for SandboxLauncher, then one CASE frame per test with its input. Each case
+// runs main in a fresh classloader, so static fields start over, and ends with an EXIT frame
+// carrying the status and time spent in main. Expected outputs never reach this JVM; the parent
+// compares. With REUSE_CLASSES as argument all cases share one classloader instead, so code the JIT
+// compiled in one case stays compiled for the next; timing runs need that, correctness runs must
+// not have it. Must only depend on java.base.
+//
+// The program can write to file descriptor 1 itself, so as in SandboxWorker each CASE frame carries
+// a nonce that only main and the shutdown hook hold, and the EXIT frame ending the case echoes it.
+public class SandboxJudge {
+
+    static final byte CASE = 'C';
+    static final byte STDOUT = 'O';
+    static final byte STDERR = 'E';
+    static final byte EXIT = 'X';
+    // Status of a case whose program called System.exit; no frames follow it
+    static final int EXITED = Integer.MIN_VALUE;
+    static final String REUSE_CLASSES = "--reuse-classes";
+    // Longest STDOUT/STDERR frame; longer writes are split
+    static final int MAX_CHUNK = 8192;
+
+    private static DataOutputStream control;
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+        control = new DataOutputStream(new FileOutputStream(FileDescriptor.out));
+        Map<String, byte[]> classes = SandboxLauncher.readClasses(in);
+        String mainClass = in.readUTF();
+        boolean reuseClasses = args.length > 0 && REUSE_CLASSES.equals(args[0]);
+        SandboxLauncher.ProgramClassLoader shared = null;
+
+        PrintStream programOut = new PrintStream(new BufferedOutputStream(new FrameOutputStream(STDOUT), MAX_CHUNK), false);
+        PrintStream programErr = new PrintStream(new BufferedOutputStream(new FrameOutputStream(STDERR), MAX_CHUNK), false);
+        System.setOut(programOut);
+        System.setErr(programErr);
+        // Set while a case runs; locals rather than fields, so the program cannot reach them
+        AtomicLong caseNonce = new AtomicLong();
+        AtomicLong caseStartedNanos = new AtomicLong();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            long started = caseStartedNanos.get();
+            if (started != 0) {
+                programOut.flush();
+                programErr.flush();
+                sendExit(caseNonce.get(), EXITED, System.nanoTime() - started);
+            }
+        }));
+
+        while (true) {
+            long nonce;
+            byte[] input;
+            try {
+                if (in.readByte() != CASE) {
+                    return;
+                }
+                nonce = in.readLong();
+                input = new byte[in.readInt()];
+                in.readFully(input);
+            } catch (EOFException e) {
+                return;
+            }
+            System.setIn(new ByteArrayInputStream(input));
+            long started = System.nanoTime();
+            caseNonce.set(nonce);
+            caseStartedNanos.set(started);
+            SandboxLauncher.ProgramClassLoader loader = shared;
+            if (loader == null) {
+                loader = new SandboxLauncher.ProgramClassLoader(classes, SandboxJudge.class.getClassLoader());
+                shared = reuseClasses ? loader : null;
+            }
+            int status = run(loader, mainClass);
+            caseStartedNanos.set(0);
+            long elapsed = System.nanoTime() - started;
+            programOut.flush();
+            programErr.flush();
+            sendExit(nonce, status, elapsed);
+        }
+    }
+
+    private static int run(ClassLoader loader, String mainClass) {
+        try {
+            Method main = loader.loadClass(mainClass).getMethod("main", String[].class);
+            main.invoke(null, (Object) new String[0]);
+            return 0;
+        } catch (InvocationTargetException e) {
+            System.err.print("Exception in thread \"main\" ");
+            e.getCause().printStackTrace();
+            return 1;
+        } catch (Throwable e) {
+            System.err.println("Error: " + e);
+            return 1;
+        }
+    }
+
+    private static void sendExit(long nonce, int status, long elapsedNanos) {
+        synchronized (control) {
+            try {
+                control.writeByte(EXIT);
+                control.writeLong(nonce);
+                control.writeInt(status);
+                control.writeLong(elapsedNanos);
+                control.flush();
+            } catch (IOException e) {
+                // The parent stopped listening
+            }
+        }
+    }
+
+    static class FrameOutputStream extends OutputStream {
+
+        private final byte type;
+
+        FrameOutputStream(byte type) {
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int chunk = Math.min(len, MAX_CHUNK);
+                synchronized (control) {
+                    control.writeByte(type);
+                    control.writeInt(chunk);
+                    control.write(b, off, chunk);
+                    control.flush();
+                }
+                off += chunk;
+                len -= chunk;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.javahub.app.compiler;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+// Entry point of the child JVM for in-memory runs. Reads the compiled classes from stdin,
+// defines them in a fresh classloader and invokes main. Must only depend on java.base.
+public class SandboxLauncher {
+
+    public static void main(String[] args) throws Exception {
+        DataInputStream in = new DataInputStream(System.in);
+        Map<String, byte[]> classes = readClasses(in);
+        String mainClass = in.readUTF();
+
+        ProgramClassLoader loader = new ProgramClassLoader(classes, SandboxLauncher.class.getClassLoader());
+        Method main = loader.loadClass(mainClass).getMethod("main", String[].class);
+        try {
+            main.invoke(null, (Object) new String[0]);
+        } catch (InvocationTargetException e) {
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, e.getCause());
+            System.exit(1);
+        }
+    }
+
+    static Map<String, byte[]> readClasses(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        Map<String, byte[]> classes = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            classes.put(name, bytes);
+        }
+        return classes;
+    }
+
+    static class ProgramClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        ProgramClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
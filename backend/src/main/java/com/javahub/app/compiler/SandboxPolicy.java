@@ -0,0 +1,174 @@
+package com.javahub.app.compiler;
+
+import java.util.Set;
+
+// What a program may touch to be eligible for the in-process engine. Deliberately narrow: anything
+// else (files, threads, reflection, processes, System.exit...) simply runs in a separate JVM instead.
+final class SandboxPolicy {
+
+    private static final Set<String> ALLOWED_PACKAGES = Set.of(
+        "java/util/function/",
+        "java/util/stream/",
+        "java/util/regex/",
+        "java/util/concurrent/atomic/",
+        "java/math/",
+        "java/text/",
+        "java/time/",
+        "java/time/format/",
+        "java/time/temporal/"
+    );
+
+    private static final Set<String> DENIED_JAVA_LANG = Set.of(
+        "java/lang/ClassLoader",
+        "java/lang/Process",
+        "java/lang/ProcessBuilder",
+        "java/lang/ProcessHandle",
+        "java/lang/Runtime",
+        "java/lang/ThreadGroup",
+        "java/lang/InheritableThreadLocal",
+        "java/lang/SecurityManager",
+        "java/lang/Module",
+        "java/lang/ModuleLayer",
+        "java/lang/Package",
+        "java/lang/StackWalker"
+    );
+
+    // Top-level java.util classes by name; nested ones such as Map$Entry go with their outer class.
+    // Timer, ServiceLoader, Properties, prefs and the like are left out on purpose.
+    private static final Set<String> ALLOWED_JAVA_UTIL = Set.of(
+        "java/util/AbstractCollection", "java/util/AbstractList", "java/util/AbstractMap",
+        "java/util/AbstractQueue", "java/util/AbstractSequentialList", "java/util/AbstractSet",
+        "java/util/ArrayDeque", "java/util/ArrayList", "java/util/Arrays", "java/util/Base64",
+        "java/util/BitSet", "java/util/Calendar", "java/util/Collection", "java/util/Collections",
+        "java/util/Comparator", "java/util/ConcurrentModificationException", "java/util/Date",
+        "java/util/Deque", "java/util/DoubleSummaryStatistics", "java/util/EmptyStackException",
+        "java/util/EnumMap", "java/util/EnumSet", "java/util/Formatter", "java/util/GregorianCalendar",
+        "java/util/HashMap", "java/util/HashSet", "java/util/Hashtable", "java/util/HexFormat",
+        "java/util/IdentityHashMap", "java/util/IllegalFormatException", "java/util/InputMismatchException",
+        "java/util/IntSummaryStatistics", "java/util/Iterator", "java/util/LinkedHashMap",
+        "java/util/LinkedHashSet", "java/util/LinkedList", "java/util/List", "java/util/ListIterator",
+        "java/util/Locale", "java/util/LongSummaryStatistics", "java/util/Map", "java/util/NavigableMap",
+        "java/util/NavigableSet", "java/util/NoSuchElementException", "java/util/Objects",
+        "java/util/Optional", "java/util/OptionalDouble", "java/util/OptionalInt", "java/util/OptionalLong",
+        "java/util/PrimitiveIterator", "java/util/PriorityQueue", "java/util/Queue", "java/util/Random",
+        "java/util/RandomAccess", "java/util/Scanner", "java/util/Set",
+        "java/util/SortedMap", "java/util/SortedSet", "java/util/Spliterator", "java/util/Spliterators",
+        "java/util/Stack", "java/util/StringJoiner", "java/util/StringTokenizer", "java/util/TimeZone",
+        "java/util/TreeMap", "java/util/TreeSet", "java/util/UUID", "java/util/Vector"
+    );
+
+    private static final Set<String> ALLOWED_CLASSES = Set.of(
+        "java/util/concurrent/ConcurrentHashMap",
+        "java/util/concurrent/ConcurrentMap",
+        "java/util/concurrent/ConcurrentLinkedQueue",
+        "java/util/concurrent/ConcurrentLinkedDeque",
+        "java/util/concurrent/CopyOnWriteArrayList",
+        "java/util/concurrent/ThreadLocalRandom",
+        "java/util/concurrent/TimeUnit",
+        "java/io/PrintStream",
+        "java/io/PrintWriter",
+        "java/io/InputStream",
+        "java/io/OutputStream",
+        "java/io/Reader",
+        "java/io/Writer",
+        "java/io/BufferedReader",
+        "java/io/BufferedWriter",
+        "java/io/InputStreamReader",
+        "java/io/OutputStreamWriter",
+        "java/io/StringReader",
+        "java/io/StringWriter",
+        "java/io/ByteArrayInputStream",
+        "java/io/ByteArrayOutputStream",
+        "java/io/IOException",
+        "java/io/UncheckedIOException",
+        "java/io/EOFException",
+        "java/io/Serializable",
+        "java/io/Closeable",
+        "java/io/Flushable",
+        "java/nio/charset/Charset",
+        "java/nio/charset/StandardCharsets"
+    );
+
+    private static final Set<String> ALLOWED_BOOTSTRAPS = Set.of(
+        "java/lang/invoke/LambdaMetafactory",
+        "java/lang/invoke/StringConcatFactory",
+        "java/lang/runtime/ObjectMethods",
+        "java/lang/runtime/SwitchBootstraps"
+    );
+
+    private static final Set<String> SYSTEM_METHODS = Set.of(
+        "currentTimeMillis", "nanoTime", "arraycopy", "lineSeparator", "identityHashCode"
+    );
+
+    private static final Set<String> CLASS_METHODS = Set.of(
+        "getName", "getSimpleName", "getTypeName", "isInstance", "cast", "desiredAssertionStatus",
+        "isArray", "getComponentType", "isEnum", "toString", "hashCode", "equals"
+    );
+
+    private static final Set<String> THREAD_METHODS = Set.of(
+        "sleep", "currentThread", "getName", "getId", "onSpinWait", "yield", "interrupted", "isInterrupted"
+    );
+
+    private SandboxPolicy() {
+    }
+
+    // Classes program code may reference directly
+    static boolean isClassAllowed(String internalName) {
+        if (internalName.startsWith("java/lang/")) {
+            return internalName.indexOf('/', "java/lang/".length()) < 0 && !DENIED_JAVA_LANG.contains(internalName);
+        }
+        if (internalName.startsWith("java/util/") && internalName.indexOf('/', "java/util/".length()) < 0) {
+            int nested = internalName.indexOf('$');
+            return ALLOWED_JAVA_UTIL.contains(nested < 0 ? internalName : internalName.substring(0, nested));
+        }
+        if (ALLOWED_CLASSES.contains(internalName)) {
+            return true;
+        }
+        int lastSlash = internalName.lastIndexOf('/');
+        return lastSlash > 0 && ALLOWED_PACKAGES.contains(internalName.substring(0, lastSlash + 1));
+    }
+
+    // Classes the program's classloader may resolve: the above plus what invokedynamic bootstraps need
+    static boolean isLoadable(String internalName) {
+        return isClassAllowed(internalName)
+                || internalName.startsWith("java/lang/invoke/")
+                || internalName.startsWith("java/lang/runtime/");
+    }
+
+    static boolean isBootstrapAllowed(String owner) {
+        return ALLOWED_BOOTSTRAPS.contains(owner);
+    }
+
+    static boolean isMethodAllowed(String owner, String name, String descriptor) {
+        switch (owner) {
+            case "java/lang/System":
+                return SYSTEM_METHODS.contains(name);
+            case "java/lang/Class":
+                return CLASS_METHODS.contains(name);
+            case "java/lang/Thread":
+                return THREAD_METHODS.contains(name);
+            case "java/io/PrintStream":
+            case "java/io/PrintWriter":
+                // PrintStream(String fileName) and friends open files
+                return !(name.equals("<init>") && descriptor.startsWith("(Ljava/lang/String;"));
+            case "java/util/Formatter":
+                // Formatter(String fileName), Formatter(File) and Formatter(OutputStream) write wherever they are told
+                return !(name.equals("<init>") && (descriptor.startsWith("(Ljava/lang/String;")
+                        || descriptor.startsWith("(Ljava/io/File;") || descriptor.startsWith("(Ljava/io/OutputStream;")));
+            case "java/util/Locale":
+            case "java/util/TimeZone":
+                // The defaults belong to the whole backend and every later run
+                return !name.equals("setDefault");
+            default:
+                // Parallel streams and sorts run on the shared ForkJoinPool, outside the run's budget
+                return !(owner.startsWith("java/util/") && name.startsWith("parallel"));
+        }
+    }
+
+    static boolean isFieldAllowed(String owner, String name) {
+        if (owner.equals("java/lang/System")) {
+            return name.equals("out") || name.equals("err") || name.equals("in");
+        }
+        return true;
+    }
+}
@@ -0,0 +1,41 @@
+package com.javahub.app.compiler;
+
+import jdk.jshell.execution.RemoteExecutionControl;
+import jdk.jshell.execution.Util;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Execution side of a ReplSession: jshell's stock remote agent, connected back to the backend over
+// loopback. Same as RemoteExecutionControl.main except that Nagle is off; each snippet is several
+// small request/response round trips, and delayed ACKs otherwise add tens of milliseconds to each,
+// and that the connection opens with the session token the backend wrote to stdin.
+// Must only depend on java.base and jdk.jshell.
+public class SandboxReplAgent {
+
+    static final int TOKEN_LENGTH = 32;
+
+    public static void main(String[] args) throws Exception {
+        byte[] token = new byte[TOKEN_LENGTH];
+        new DataInputStream(System.in).readFully(token);
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0]));
+        socket.setTcpNoDelay(true);
+        InputStream in = socket.getInputStream();
+        OutputStream out = socket.getOutputStream();
+        out.write(token);
+        out.flush();
+        Map<String, Consumer<OutputStream>> outputs = new HashMap<>();
+        outputs.put("out", stream -> System.setOut(new PrintStream(stream, true)));
+        outputs.put("err", stream -> System.setErr(new PrintStream(stream, true)));
+        Map<String, Consumer<InputStream>> inputs = new HashMap<>();
+        inputs.put("in", System::setIn);
+        Util.forwardExecutionControlAndIO(new RemoteExecutionControl(), in, out, outputs, inputs);
+    }
+}
@@ -0,0 +1,265 @@
+package com.javahub.app.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+// Packs the launcher classes into a jar once so child JVMs can put them on their classpath (they
+// live inside the Spring Boot jar otherwise), builds the child command line and frames bytecode.
+public final class SandboxRuntime {
+
+    // Child JVMs are told to write stdout/stderr in this charset whatever the host locale is
+    public static final Charset OUTPUT_CHARSET = StandardCharsets.UTF_8;
+
+    private static final String[] LAUNCHER_CLASSES = {
+        "com.javahub.app.compiler.SandboxLauncher",
+        "com.javahub.app.compiler.SandboxLauncher$ProgramClassLoader",
+        "com.javahub.app.compiler.SandboxWorker",
+        "com.javahub.app.compiler.SandboxWorker$FrameOutputStream",
+        "com.javahub.app.compiler.SandboxReplAgent",
+        "com.javahub.app.compiler.SandboxTerminal",
+        "com.javahub.app.compiler.SandboxJudge",
+        "com.javahub.app.compiler.SandboxJudge$FrameOutputStream"
+    };
+
+    private static final String LAUNCHER_JAR = "sandbox.jar";
+
+    private static volatile Path launcherClasspath;
+    private static volatile Path sharedArchive;
+
+    private SandboxRuntime() {
+    }
+
+    // The jar lives in a private directory named after its contents, so restarts of the same build
+    // reuse the same file and a CDS archive recorded against it stays valid
+    public static Path launcherClasspath() {
+        Path classpath = launcherClasspath;
+        if (classpath == null) {
+            synchronized (SandboxRuntime.class) {
+                classpath = launcherClasspath;
+                if (classpath == null) {
+                    classpath = extractLauncher();
+                    launcherClasspath = classpath;
+                }
+            }
+        }
+        return classpath;
+    }
+
+    // Working directory for child JVMs
+    public static Path launcherDirectory() {
+        return launcherClasspath().getParent();
+    }
+
+    public static List<String> javaCommand(String classpath, String mainClass) {
+        return javaCommand(classpath, mainClass, sharedArchive);
+    }
+
+    static List<String> javaCommand(String classpath, String mainClass, Path archive) {
+        List<String> command = new ArrayList<>();
+        command.add("java");
+        command.addAll(baseOptions());
+        if (archive != null) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+            // Stale or unreadable archives are skipped; their warning would otherwise land in stdout
+            command.add("-Xshare:auto");
+            command.add("-Xlog:cds=off");
+            command.add("-Xlog:cds+dynamic=off");
+        }
+        command.add("-cp");
+        command.add(classpath);
+        command.add(mainClass);
+        return command;
+    }
+
+    // Options that must be the same when an archive is dumped and when it is used
+    static List<String> baseOptions() {
+        return List.of(
+            "-Xmx" + JavaCompilerService.MAX_MEMORY_MB + "m",
+            "-Dfile.encoding=" + OUTPUT_CHARSET.name(),
+            "-Dsun.stdout.encoding=" + OUTPUT_CHARSET.name(),
+            "-Dsun.stderr.encoding=" + OUTPUT_CHARSET.name());
+    }
+
+    static void useSharedArchive(Path archive) {
+        sharedArchive = archive;
+    }
+
+    static Path sharedArchive() {
+        return sharedArchive;
+    }
+
+    public static String launcherMainClass() {
+        return LAUNCHER_CLASSES[0];
+    }
+
+    public static String workerMainClass() {
+        return LAUNCHER_CLASSES[2];
+    }
+
+    public static String replAgentMainClass() {
+        return LAUNCHER_CLASSES[4];
+    }
+
+    public static String terminalMainClass() {
+        return LAUNCHER_CLASSES[5];
+    }
+
+    public static String judgeMainClass() {
+        return LAUNCHER_CLASSES[6];
+    }
+
+    public static byte[] encodeProgram(CompiledProgram program) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writeProgram(out, program);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    static void writeProgram(DataOutputStream out, CompiledProgram program) throws IOException {
+        Map<String, byte[]> classes = program.getClasses();
+        out.writeInt(classes.size());
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            out.write(entry.getValue());
+        }
+        out.writeUTF(program.getMainClass());
+    }
+
+    // A directory under java.io.tmpdir that only this user can read or write. The named one is kept
+    // across restarts when it belongs to this user and is closed to everyone else. Anyone can
+    // create directories in a shared tmp, so if somebody else got there first this process gets a
+    // fresh directory of its own instead.
+    static Path privateTempDirectory(String name) throws IOException {
+        Path tmp = Paths.get(System.getProperty("java.io.tmpdir"));
+        Path named = tmp.resolve(name);
+        try {
+            Files.createDirectory(named, ownerOnly());
+        } catch (FileAlreadyExistsException e) {
+            // Left by an earlier run, or by somebody else; checked below
+        }
+        if (isPrivate(named)) {
+            return named;
+        }
+        return Files.createTempDirectory(tmp, name + "-", ownerOnly());
+    }
+
+    private static boolean isPosix() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
+    static FileAttribute<?>[] ownerOnly() {
+        if (!isPosix()) {
+            return new FileAttribute<?>[0];
+        }
+        return new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(EnumSet.of(
+                PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE))};
+    }
+
+    private static boolean isPrivate(Path directory) {
+        try {
+            if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+                return false;
+            }
+            UserPrincipal self = directory.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!self.equals(Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS))) {
+                return false;
+            }
+            if (isPosix()) {
+                Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS);
+                return permissions.equals(EnumSet.of(PosixFilePermission.OWNER_READ,
+                        PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE));
+            }
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static Path extractLauncher() {
+        try {
+            Map<String, byte[]> entries = new LinkedHashMap<>();
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String className : LAUNCHER_CLASSES) {
+                String resource = className.replace('.', '/') + ".class";
+                try (InputStream in = SandboxRuntime.class.getResourceAsStream("/" + resource)) {
+                    if (in == null) {
+                        throw new IOException("Missing sandbox class /" + resource);
+                    }
+                    byte[] bytes = in.readAllBytes();
+                    entries.put(resource, bytes);
+                    digest.update(resource.getBytes(StandardCharsets.UTF_8));
+                    digest.update(bytes);
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+            byte[] contents = jarBytes(entries);
+            Path root = privateTempDirectory("jlh_sandbox_" + hash);
+            Path jar = root.resolve(LAUNCHER_JAR);
+            // Entry times are fixed, so the jar this build writes is always the same bytes
+            if (Files.isRegularFile(jar, LinkOption.NOFOLLOW_LINKS) && Arrays.equals(Files.readAllBytes(jar), contents)) {
+                return jar;
+            }
+
+            Path partial = Files.createTempFile(root, LAUNCHER_JAR, ".tmp");
+            Files.write(partial, contents);
+            try {
+                Files.move(partial, jar, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partial, jar, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return jar;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not prepare sandbox launcher", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] jarBytes(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (JarOutputStream jarOut = new JarOutputStream(buffer)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                JarEntry jarEntry = new JarEntry(entry.getKey());
+                jarEntry.setTime(0);
+                jarOut.putNextEntry(jarEntry);
+                jarOut.write(entry.getValue());
+                jarOut.closeEntry();
+            }
+        }
+        return buffer.toByteArray();
+    }
+}
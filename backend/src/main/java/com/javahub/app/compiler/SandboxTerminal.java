@@ -0,0 +1,48 @@
+package com.javahub.app.compiler;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Entry point of the child JVM for interactive runs. Reads a session token, the port of the
+// backend's terminal socket and the compiled program from stdin, connects back over loopback and
+// runs main with System.in, System.out and System.err on that socket, so what the user types
+// reaches the program while it runs. Must only depend on java.base.
+public class SandboxTerminal {
+
+    public static void main(String[] args) throws Exception {
+        DataInputStream in = new DataInputStream(System.in);
+        String token = in.readUTF();
+        int port = in.readInt();
+        Map<String, byte[]> classes = SandboxLauncher.readClasses(in);
+        String mainClass = in.readUTF();
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        OutputStream out = socket.getOutputStream();
+        out.write(token.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        PrintStream terminal = new PrintStream(out, true, StandardCharsets.UTF_8);
+        System.setIn(socket.getInputStream());
+        System.setOut(terminal);
+        System.setErr(terminal);
+
+        SandboxLauncher.ProgramClassLoader loader =
+                new SandboxLauncher.ProgramClassLoader(classes, SandboxTerminal.class.getClassLoader());
+        Method main = loader.loadClass(mainClass).getMethod("main", String[].class);
+        try {
+            main.invoke(null, (Object) new String[0]);
+        } catch (InvocationTargetException e) {
+            Thread current = Thread.currentThread();
+            current.getUncaughtExceptionHandler().uncaughtException(current, e.getCause());
+            terminal.flush();
+            System.exit(1);
+        }
+    }
+}
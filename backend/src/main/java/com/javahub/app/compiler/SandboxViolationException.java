@@ -0,0 +1,11 @@
+package com.javahub.app.compiler;
+
+// The program uses something the in-process engine does not allow; it has to run in a separate JVM
+public class SandboxViolationException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public SandboxViolationException(String message) {
+        super(message);
+    }
+}
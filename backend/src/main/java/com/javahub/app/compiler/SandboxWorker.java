@@ -0,0 +1,170 @@
+package com.javahub.app.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
+
+// Long-lived child JVM used by SandboxWorkerPool. Jobs arrive as frames on stdin, program output
+// and the exit status go back as frames on stdout. Must only depend on java.base.
+//
+// The program shares this JVM and can write to file descriptor 1 itself, so the pool trusts no
+// frame it cannot check: RUN and PING carry a nonce that only ever lives in main's locals, and the
+// EXIT or HEALTH frame answering them has to echo it. Whatever a run changes in the JVM-wide state
+// (System.out, err and in, system properties, default locale and time zone) is put back after it
+// and the EXIT frame says so, so the pool can retire the worker rather than hand it to the next user.
+public class SandboxWorker {
+
+    static final byte RUN = 'R';
+    static final byte PING = 'P';
+    static final byte STDOUT = 'O';
+    static final byte STDERR = 'E';
+    static final byte EXIT = 'X';
+    static final byte HEALTH = 'H';
+    // Longest STDOUT/STDERR frame; longer writes are split
+    static final int MAX_CHUNK = 8192;
+
+    private static DataOutputStream control;
+
+    public static void main(String[] args) throws IOException {
+        DataInputStream in = new DataInputStream(System.in);
+        control = new DataOutputStream(new FileOutputStream(FileDescriptor.out));
+
+        PrintStream programOut = new PrintStream(new BufferedOutputStream(new FrameOutputStream(STDOUT), MAX_CHUNK), false);
+        PrintStream programErr = new PrintStream(new BufferedOutputStream(new FrameOutputStream(STDERR), MAX_CHUNK), false);
+        System.setOut(programOut);
+        System.setErr(programErr);
+        Locale locale = Locale.getDefault();
+        // Looking the default time zone up sets user.timezone, so the properties are copied after it
+        TimeZone timeZone = TimeZone.getDefault();
+        Properties properties = (Properties) System.getProperties().clone();
+        // A program calling System.exit takes the worker down with it; make sure its output gets out first
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            programOut.flush();
+            programErr.flush();
+        }));
+
+        InputStream idleIn = new ByteArrayInputStream(new byte[0]);
+        System.setIn(idleIn);
+        while (true) {
+            byte type;
+            try {
+                type = in.readByte();
+            } catch (EOFException e) {
+                return;
+            }
+            long nonce = in.readLong();
+            if (type == PING) {
+                synchronized (control) {
+                    control.writeByte(HEALTH);
+                    control.writeLong(nonce);
+                    writeHealth();
+                    control.flush();
+                }
+            } else if (type == RUN) {
+                Map<String, byte[]> classes = SandboxLauncher.readClasses(in);
+                String mainClass = in.readUTF();
+                byte[] input = new byte[in.readInt()];
+                in.readFully(input);
+
+                int status = run(classes, mainClass, input);
+                programOut.flush();
+                programErr.flush();
+                // checkError is also how a closed stream shows
+                boolean clean = System.out == programOut && System.err == programErr && System.in == idleIn
+                        && !programOut.checkError() && !programErr.checkError()
+                        && System.getProperties().equals(properties)
+                        && Locale.getDefault().equals(locale) && TimeZone.getDefault().equals(timeZone);
+                if (!clean) {
+                    System.setOut(programOut);
+                    System.setErr(programErr);
+                    System.setIn(idleIn);
+                    System.setProperties((Properties) properties.clone());
+                    Locale.setDefault(locale);
+                    TimeZone.setDefault(timeZone);
+                }
+                synchronized (control) {
+                    control.writeByte(EXIT);
+                    control.writeLong(nonce);
+                    control.writeInt(status);
+                    control.writeBoolean(clean);
+                    writeHealth();
+                    control.flush();
+                }
+            }
+        }
+    }
+
+    private static int run(Map<String, byte[]> classes, String mainClass, byte[] input) {
+        InputStream idleIn = System.in;
+        InputStream runIn = new ByteArrayInputStream(input);
+        System.setIn(runIn);
+        SandboxLauncher.ProgramClassLoader loader =
+                new SandboxLauncher.ProgramClassLoader(classes, SandboxWorker.class.getClassLoader());
+        try {
+            Method main = loader.loadClass(mainClass).getMethod("main", String[].class);
+            main.invoke(null, (Object) new String[0]);
+            return 0;
+        } catch (InvocationTargetException e) {
+            System.err.print("Exception in thread \"main\" ");
+            e.getCause().printStackTrace();
+            return 1;
+        } catch (Throwable e) {
+            System.err.println("Error: " + e);
+            return 1;
+        } finally {
+            // A program that swapped it for another stream leaves that one for main to notice
+            if (System.in == runIn) {
+                System.setIn(idleIn);
+            }
+        }
+    }
+
+    private static void writeHealth() throws IOException {
+        Runtime runtime = Runtime.getRuntime();
+        control.writeLong(runtime.totalMemory() - runtime.freeMemory());
+        control.writeInt(Thread.activeCount());
+    }
+
+    static class FrameOutputStream extends OutputStream {
+
+        private final byte type;
+
+        FrameOutputStream(byte type) {
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int chunk = Math.min(len, MAX_CHUNK);
+                synchronized (control) {
+                    control.writeByte(type);
+                    control.writeInt(chunk);
+                    control.write(b, off, chunk);
+                    control.flush();
+                }
+                off += chunk;
+                len -= chunk;
+            }
+        }
+    }
+}
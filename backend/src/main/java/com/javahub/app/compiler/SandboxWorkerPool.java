@@ -0,0 +1,384 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Keeps a few SandboxWorker JVMs started ahead of time so a run does not pay JVM startup.
+@Component
+public class SandboxWorkerPool {
+
+    private static final long PING_TIMEOUT_MS = 2000;
+    private static final SecureRandom NONCES = new SecureRandom();
+
+    @Value("${compiler.pool.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${compiler.pool.size:2}")
+    private int size = 2;
+
+    @Value("${compiler.pool.max-runs:50}")
+    private int maxRunsPerWorker = 50;
+
+    @Value("${compiler.pool.max-heap-mb:96}")
+    private long maxHeapMb = 96;
+
+    @Value("${compiler.pool.acquire-timeout-ms:200}")
+    private long acquireTimeoutMs = 200;
+
+    @Value("${compiler.pool.health-check-seconds:30}")
+    private long healthCheckSeconds = 30;
+
+    @Autowired(required = false)
+    private ResourceMonitor resourceMonitor;
+
+    @Autowired(required = false)
+    private ProcessReaper processReaper;
+
+    private final BlockingQueue<WorkerProcess> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger live = new AtomicInteger();
+    private ScheduledExecutorService maintenance;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sandbox-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.execute(this::replenish);
+        maintenance.scheduleWithFixedDelay(this::checkHealth, healthCheckSeconds, healthCheckSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        WorkerProcess worker;
+        while ((worker = idle.poll()) != null) {
+            worker.destroy();
+        }
+    }
+
+    // Returns null when no warm worker is free, the caller then falls back to a fresh JVM
+    public ExecutionResult execute(CompiledProgram program, long timeoutSeconds, ExecutionContext context) {
+        if (!enabled) {
+            return null;
+        }
+        if (context.isCancelled()) {
+            return ExecutionResult.failed(JavaCompilerService.CANCELLED_MESSAGE);
+        }
+        WorkerProcess worker;
+        try {
+            worker = idle.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (worker == null) {
+            return null;
+        }
+
+        boolean reusable = false;
+        long start = System.currentTimeMillis();
+        Runnable kill = worker::kill;
+        context.onCancel(kill);
+        try {
+            worker.beginMeasuring();
+            Job job = worker.submit(program, context.getListener());
+            int status;
+            try {
+                status = job.exit.get(timeoutSeconds, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                worker.kill();
+                return worker.measured(new ExecutionResult(job.output.decode(SandboxRuntime.OUTPUT_CHARSET), -1, true,
+                        null, System.currentTimeMillis() - start, job.output.isTruncated()));
+            }
+            if (context.isCancelled()) {
+                return ExecutionResult.failed(JavaCompilerService.CANCELLED_MESSAGE);
+            }
+            // Whatever the program started must not carry on into the next run
+            worker.killDescendants();
+            reusable = worker.isReusable();
+            return worker.measured(new ExecutionResult(job.output.decode(SandboxRuntime.OUTPUT_CHARSET), status, false,
+                    null, System.currentTimeMillis() - start, job.output.isTruncated()));
+        } catch (Exception e) {
+            return ExecutionResult.failed(context.isCancelled() ? JavaCompilerService.CANCELLED_MESSAGE : e.getMessage());
+        } finally {
+            context.removeOnCancel(kill);
+            release(worker, reusable);
+        }
+    }
+
+    private void release(WorkerProcess worker, boolean reusable) {
+        if (reusable) {
+            idle.offer(worker);
+            return;
+        }
+        retire(worker);
+    }
+
+    private void retire(WorkerProcess worker) {
+        worker.destroy();
+        live.decrementAndGet();
+        if (maintenance != null && !maintenance.isShutdown()) {
+            maintenance.execute(this::replenish);
+        }
+    }
+
+    private void replenish() {
+        while (live.get() < size) {
+            live.incrementAndGet();
+            try {
+                WorkerProcess worker = new WorkerProcess();
+                if (worker.ping()) {
+                    idle.offer(worker);
+                } else {
+                    worker.destroy();
+                    live.decrementAndGet();
+                    return;
+                }
+            } catch (IOException e) {
+                live.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void checkHealth() {
+        List<WorkerProcess> checked = new ArrayList<>();
+        idle.drainTo(checked);
+        for (WorkerProcess worker : checked) {
+            if (worker.ping() && worker.isReusable()) {
+                idle.offer(worker);
+            } else {
+                worker.destroy();
+                live.decrementAndGet();
+            }
+        }
+        replenish();
+    }
+
+    private static class Job {
+        private final OutputCapture output = JavaCompilerService.newOutputCapture();
+        private final CompletableFuture<Integer> exit = new CompletableFuture<>();
+        private final OutputListener listener;
+
+        Job(OutputListener listener) {
+            this.listener = listener;
+        }
+    }
+
+    private class WorkerProcess {
+
+        private final Process process;
+        private final DataOutputStream control;
+        private final DataInputStream frames;
+        private final ResourceMonitor.Slot slot;
+        private final ProcessReaper.Tree tree;
+        private volatile Job current;
+        private volatile CompletableFuture<Boolean> pendingPing = CompletableFuture.completedFuture(false);
+        private volatile long runNonce;
+        private volatile long pingNonce;
+        // A run changed JVM-wide state, or the worker sent something it never would on its own
+        private volatile boolean tainted;
+        private volatile long usedHeap;
+        private volatile int threads;
+        private volatile int baselineThreads = -1;
+        private int runs;
+
+        WorkerProcess() throws IOException {
+            Path launcherClasspath = SandboxRuntime.launcherClasspath();
+            ProcessBuilder processBuilder = new ProcessBuilder(
+                SandboxRuntime.javaCommand(launcherClasspath.toString(), SandboxRuntime.workerMainClass()));
+            processBuilder.directory(SandboxRuntime.launcherDirectory().toFile());
+            processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+            tree = processReaper != null ? processReaper.start(processBuilder) : null;
+            process = tree != null ? tree.getProcess() : processBuilder.start();
+            slot = resourceMonitor != null ? resourceMonitor.attach(process) : null;
+            control = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            frames = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+
+            Thread reader = new Thread(this::readFrames, "sandbox-worker-" + process.pid());
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        Job submit(CompiledProgram program, OutputListener listener) throws IOException {
+            Job job = new Job(listener);
+            runNonce = NONCES.nextLong();
+            current = job;
+            runs++;
+            control.writeByte(SandboxWorker.RUN);
+            control.writeLong(runNonce);
+            SandboxRuntime.writeProgram(control, program);
+            control.writeInt(0);
+            control.flush();
+            return job;
+        }
+
+        void beginMeasuring() {
+            if (slot != null) {
+                slot.begin();
+            }
+        }
+
+        ExecutionResult measured(ExecutionResult execution) {
+            if (slot != null) {
+                execution.setUsage(slot.finish(execution.getWallTimeMs()));
+            }
+            return execution;
+        }
+
+        boolean ping() {
+            try {
+                CompletableFuture<Boolean> ping = pendingPing;
+                if (ping.isDone()) {
+                    ping = new CompletableFuture<>();
+                    pingNonce = NONCES.nextLong();
+                    pendingPing = ping;
+                    control.writeByte(SandboxWorker.PING);
+                    control.writeLong(pingNonce);
+                    control.flush();
+                }
+                return ping.get(PING_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        boolean isReusable() {
+            return process.isAlive()
+                    && !tainted
+                    && runs < maxRunsPerWorker
+                    && usedHeap < maxHeapMb * 1024 * 1024
+                    // A program that left threads behind could write into the next run's output
+                    && threads <= baselineThreads;
+        }
+
+        // Timeout or cancel in the middle of a run
+        void kill() {
+            if (slot != null) {
+                slot.kill();
+            }
+            if (tree != null) {
+                tree.kill();
+            } else {
+                destroy();
+            }
+        }
+
+        void killDescendants() {
+            if (tree != null) {
+                tree.killDescendants();
+            } else {
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+            }
+        }
+
+        void destroy() {
+            if (tree != null) {
+                tree.close();
+            } else {
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+            }
+            if (slot != null) {
+                slot.close();
+            }
+        }
+
+        // The program can write to the worker's stdout directly, so every frame is checked before
+        // anything is allocated or completed for it; the first one that is off kills the worker
+        private void readFrames() {
+            byte[] chunk = new byte[SandboxWorker.MAX_CHUNK];
+            try {
+                while (true) {
+                    byte type = frames.readByte();
+                    if (type == SandboxWorker.STDOUT || type == SandboxWorker.STDERR) {
+                        int length = frames.readInt();
+                        Job job = current;
+                        if (length <= 0 || length > chunk.length || job == null) {
+                            throw new IOException("malformed output frame");
+                        }
+                        frames.readFully(chunk, 0, length);
+                        if (job.listener != null) {
+                            job.listener.onOutput(type == SandboxWorker.STDERR, chunk, 0, length);
+                        }
+                        if (!job.output.write(chunk, 0, length)) {
+                            // Output cap reached: stop the program, the worker is replaced afterwards
+                            destroy();
+                        }
+                    } else if (type == SandboxWorker.EXIT) {
+                        Job job = current;
+                        if (job == null || frames.readLong() != runNonce) {
+                            throw new IOException("unexpected exit frame");
+                        }
+                        int status = frames.readInt();
+                        if (!frames.readBoolean()) {
+                            tainted = true;
+                        }
+                        readHealth();
+                        current = null;
+                        job.exit.complete(status);
+                    } else if (type == SandboxWorker.HEALTH) {
+                        CompletableFuture<Boolean> ping = pendingPing;
+                        if (ping.isDone() || frames.readLong() != pingNonce) {
+                            throw new IOException("unexpected health frame");
+                        }
+                        readHealth();
+                        if (baselineThreads < 0) {
+                            baselineThreads = threads;
+                        }
+                        ping.complete(true);
+                    } else {
+                        throw new IOException("unknown frame type " + type);
+                    }
+                }
+            } catch (IOException e) {
+                // Worker went away (the program called System.exit), or it sent a frame that is off
+                tainted = true;
+                killDescendants();
+                process.destroyForcibly();
+            }
+            pendingPing.complete(false);
+            Job job = current;
+            if (job != null) {
+                try {
+                    job.exit.complete(process.waitFor());
+                } catch (InterruptedException e) {
+                    job.exit.complete(-1);
+                }
+            }
+        }
+
+        private void readHealth() throws IOException {
+            usedHeap = frames.readLong();
+            threads = frames.readInt();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.javahub.app.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SchedulerRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int queuePosition;
+    private final long retryAfterSeconds;
+
+    public SchedulerRejectedException(String message, int queuePosition, long retryAfterSeconds) {
+        super(message);
+        this.queuePosition = queuePosition;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getQueuePosition() {
+        return queuePosition;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    // What every busy answer carries, whether a 429 body or an SSE exit event
+    public Map<String, Object> toBody() {
+        Map<String, Object> body = new HashMap<>();
+        body.put("output", "");
+        body.put("errors", "Error: " + getMessage());
+        body.put("queuePosition", queuePosition);
+        body.put("retryAfterSeconds", retryAfterSeconds);
+        return body;
+    }
+}
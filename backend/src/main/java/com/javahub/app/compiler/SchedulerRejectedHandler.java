@@ -0,0 +1,26 @@
+package com.javahub.app.compiler;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+// Endpoints let CompilerScheduler's rejections propagate; they all turn into the same 429 here
+@RestControllerAdvice
+public class SchedulerRejectedHandler {
+
+    @ExceptionHandler(SchedulerRejectedException.class)
+    public ResponseEntity<Map<String, Object>> rejected(SchedulerRejectedException e) {
+        return busy(e, e.toBody());
+    }
+
+    // For responses that are not a JSON body, such as an SSE stream that reports the rejection itself
+    public static <T> ResponseEntity<T> busy(SchedulerRejectedException e, T body) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(body);
+    }
+}
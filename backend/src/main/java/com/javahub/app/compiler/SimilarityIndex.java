@@ -0,0 +1,392 @@
+package com.javahub.app.compiler;
+
+import com.javahub.app.history.model.Submission;
+import com.javahub.app.history.service.SubmissionHistoryService;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.PrimitiveTypeTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreeScanner;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.tools.JavaCompiler;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Finds practice submissions that look copied from one another without comparing every pair.
+// Each submission is parsed, flattened into the kinds of its tree nodes (names and literal values
+// dropped, so renaming variables or changing constants changes nothing) and winnowed into
+// fingerprints. Per question an inverted index maps each fingerprint to the submissions that have
+// it; a query only walks the posting lists of its own fingerprints. Fingerprints most submissions
+// share, such as the class and main method every solution starts with, are left out of scores.
+// History trims and sweeps its rows in bulk, so a query first drops the entries it would look at
+// whose submission no longer exists.
+@Service
+public class SimilarityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SimilarityIndex.class);
+
+    // Node kinds that enclose others also mark where they end, so nesting is part of the stream
+    private static final Set<Tree.Kind> CLOSED = EnumSet.of(Tree.Kind.CLASS, Tree.Kind.METHOD, Tree.Kind.BLOCK,
+            Tree.Kind.FOR_LOOP, Tree.Kind.ENHANCED_FOR_LOOP, Tree.Kind.WHILE_LOOP, Tree.Kind.DO_WHILE_LOOP,
+            Tree.Kind.IF, Tree.Kind.SWITCH, Tree.Kind.TRY, Tree.Kind.LAMBDA_EXPRESSION);
+    private static final int END_TOKEN = 1000;
+    private static final int PRIMITIVE_TOKEN = 2000;
+    // Fingerprint sharing only counts as common once a question has this many submissions
+    private static final int MIN_SUBMISSIONS_FOR_COMMON = 10;
+
+    @Autowired
+    private JavaCompilerService compilerService;
+
+    @Autowired
+    private SubmissionHistoryService submissionHistoryService;
+
+    @Value("${compiler.similarity.enabled:true}")
+    private boolean enabled = true;
+
+    // Tokens per k-gram; shorter shared runs are noise
+    @Value("${compiler.similarity.k:12}")
+    private int k = 12;
+
+    // Any shared run of window + k - 1 tokens is certain to be found
+    @Value("${compiler.similarity.window:8}")
+    private int window = 8;
+
+    // Fingerprints found in more than this share of a question's submissions are template code
+    @Value("${compiler.similarity.common-fraction:0.5}")
+    private double commonFraction = 0.5;
+
+    // Oldest submissions are dropped from a question's index past this
+    @Value("${compiler.similarity.max-per-question:5000}")
+    private int maxPerQuestion = 5000;
+
+    private final Map<Integer, QuestionIndex> questions = new ConcurrentHashMap<>();
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong unparsable = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong postingsScanned = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+    private ExecutorService indexer;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        indexer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "similarity-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Submissions kept from earlier runs of the backend; new ones queue up behind these
+        indexer.execute(() -> {
+            try {
+                submissionHistoryService.forEach(Submission.Kind.PRACTICE, (submission, source) -> {
+                    if (submission.getQuestionId() != null) {
+                        index(submission.getQuestionId(), submission.getId(), submission.getUserId(), source);
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.warn("Could not index earlier practice submissions: {}", e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (indexer != null) {
+            indexer.shutdownNow();
+        }
+    }
+
+    // Parsing happens on the indexer thread, off the request that made the submission
+    public void add(int questionId, Long submissionId, int userId, String code) {
+        if (indexer != null && submissionId != null && code != null) {
+            indexer.execute(() -> index(questionId, submissionId, userId, code));
+        }
+    }
+
+    // Submissions by other users most like the given one, best first
+    public List<Map<String, Object>> similarTo(int questionId, long submissionId, int limit) {
+        queries.incrementAndGet();
+        QuestionIndex index = questions.get(questionId);
+        if (index == null) {
+            return null;
+        }
+        List<Map<String, Object>> matches = index.similarTo(submissionId);
+        if (matches != null) {
+            Set<Long> involved = new HashSet<>();
+            involved.add(submissionId);
+            matches.forEach(match -> involved.add((Long) match.get("otherSubmissionId")));
+            if (removeDeleted(index, involved)) {
+                // Scored again without them, since they also counted towards common fingerprints
+                matches = index.similarTo(submissionId);
+            }
+        }
+        if (matches == null) {
+            return null;
+        }
+        int max = Math.max(limit, 1);
+        return matches.size() > max ? new ArrayList<>(matches.subList(0, max)) : matches;
+    }
+
+    // The most alike pairs of submissions by different users for a whole question
+    public List<Map<String, Object>> topPairs(int questionId, int limit) {
+        queries.incrementAndGet();
+        QuestionIndex index = questions.get(questionId);
+        if (index == null) {
+            return List.of();
+        }
+        removeDeleted(index, index.submissionIds());
+        return index.topPairs(Math.max(limit, 1));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("questions", questions.size());
+        stats.put("indexed", indexed.get());
+        stats.put("unparsable", unparsable.get());
+        stats.put("queries", queries.get());
+        stats.put("postingsScanned", postingsScanned.get());
+        stats.put("removed", removed.get());
+        return stats;
+    }
+
+    // Asks history which of the ids still exist, outside the index lock; true when any were dropped
+    private boolean removeDeleted(QuestionIndex index, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return false;
+        }
+        try {
+            int count = index.retain(ids, submissionHistoryService.existing(ids));
+            removed.addAndGet(count);
+            return count > 0;
+        } catch (RuntimeException e) {
+            log.warn("Could not check indexed submissions against history: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void index(int questionId, long submissionId, int userId, String code) {
+        int[] tokens = tokens(code);
+        if (tokens == null) {
+            unparsable.incrementAndGet();
+            return;
+        }
+        long[] fingerprints = Winnowing.fingerprints(tokens, k, window);
+        questions.computeIfAbsent(questionId, id -> new QuestionIndex())
+                .add(new Entry(submissionId, userId, fingerprints));
+        indexed.incrementAndGet();
+    }
+
+    // The parse tree in pre-order as node kinds; null when javac is missing or gave up
+    private int[] tokens(String code) {
+        JavacService javac = compilerService.javac();
+        JavaCompiler compiler = javac.getCompiler();
+        if (compiler == null) {
+            return null;
+        }
+        JavacService.PooledFileManager pooled = javac.acquire();
+        boolean reusable = false;
+        try {
+            JavacTask task = (JavacTask) compiler.getTask(new PrintWriter(Writer.nullWriter()), pooled.get(),
+                    diagnostic -> { }, List.of("-proc:none"), null,
+                    Collections.singletonList(new MemorySourceFile("Main", code)));
+            CompilationUnitTree unit = task.parse().iterator().next();
+            reusable = true;
+            TokenScanner scanner = new TokenScanner();
+            scanner.scan(unit, null);
+            return scanner.tokens();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            javac.release(pooled, reusable);
+        }
+    }
+
+    private static final class TokenScanner extends TreeScanner<Void, Void> {
+
+        private int[] tokens = new int[256];
+        private int count;
+
+        @Override
+        public Void scan(Tree tree, Void unused) {
+            if (tree == null) {
+                return null;
+            }
+            Tree.Kind kind = tree.getKind();
+            emit(kind.ordinal() + 1);
+            if (tree instanceof PrimitiveTypeTree) {
+                // int and double loops are different programs
+                emit(PRIMITIVE_TOKEN + ((PrimitiveTypeTree) tree).getPrimitiveTypeKind().ordinal());
+            }
+            super.scan(tree, unused);
+            if (CLOSED.contains(kind)) {
+                emit(END_TOKEN + kind.ordinal());
+            }
+            return null;
+        }
+
+        private void emit(int token) {
+            if (count == tokens.length) {
+                tokens = Arrays.copyOf(tokens, count * 2);
+            }
+            tokens[count++] = token;
+        }
+
+        int[] tokens() {
+            return Arrays.copyOf(tokens, count);
+        }
+    }
+
+    private static final class Entry {
+
+        private final long submissionId;
+        private final int userId;
+        private final long[] fingerprints;
+
+        Entry(long submissionId, int userId, long[] fingerprints) {
+            this.submissionId = submissionId;
+            this.userId = userId;
+            this.fingerprints = fingerprints;
+        }
+    }
+
+    private final class QuestionIndex {
+
+        private final Map<Long, Entry> entries = new LinkedHashMap<>();
+        private final Map<Long, List<Entry>> postings = new HashMap<>();
+
+        synchronized void add(Entry entry) {
+            if (entries.put(entry.submissionId, entry) != null) {
+                return;
+            }
+            for (long fingerprint : entry.fingerprints) {
+                postings.computeIfAbsent(fingerprint, f -> new ArrayList<>(2)).add(entry);
+            }
+            if (entries.size() > maxPerQuestion) {
+                Iterator<Entry> oldest = entries.values().iterator();
+                Entry evicted = oldest.next();
+                oldest.remove();
+                unpost(evicted);
+            }
+        }
+
+        synchronized List<Long> submissionIds() {
+            return new ArrayList<>(entries.keySet());
+        }
+
+        // Drops those of the checked ids that are not in existing; returns how many were indexed
+        synchronized int retain(Collection<Long> checked, Set<Long> existing) {
+            int count = 0;
+            for (Long id : checked) {
+                if (!existing.contains(id)) {
+                    Entry entry = entries.remove(id);
+                    if (entry != null) {
+                        unpost(entry);
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private void unpost(Entry entry) {
+            for (long fingerprint : entry.fingerprints) {
+                List<Entry> list = postings.get(fingerprint);
+                list.remove(entry);
+                if (list.isEmpty()) {
+                    postings.remove(fingerprint);
+                }
+            }
+        }
+
+        // All matches, best first
+        synchronized List<Map<String, Object>> similarTo(long submissionId) {
+            Entry query = entries.get(submissionId);
+            if (query == null) {
+                return null;
+            }
+            List<Map<String, Object>> matches = new ArrayList<>();
+            int[] considered = new int[1];
+            Map<Entry, Integer> shared = sharedWith(query, considered);
+            shared.forEach((other, count) -> matches.add(match(query, other, count, considered[0])));
+            matches.sort((a, b) -> Double.compare((double) b.get("score"), (double) a.get("score")));
+            return matches;
+        }
+
+        // Every submission queried against the rest; each pair is reported once, with its higher score
+        synchronized List<Map<String, Object>> topPairs(int limit) {
+            Map<String, Map<String, Object>> pairs = new HashMap<>();
+            for (Entry query : entries.values()) {
+                int[] considered = new int[1];
+                sharedWith(query, considered).forEach((other, count) -> {
+                    Map<String, Object> pair = match(query, other, count, considered[0]);
+                    String key = Math.min(query.submissionId, other.submissionId) + ":"
+                            + Math.max(query.submissionId, other.submissionId);
+                    pairs.merge(key, pair, (a, b) -> (double) a.get("score") >= (double) b.get("score") ? a : b);
+                });
+            }
+            List<Map<String, Object>> sorted = new ArrayList<>(pairs.values());
+            sorted.sort((a, b) -> Double.compare((double) b.get("score"), (double) a.get("score")));
+            return sorted.size() > limit ? new ArrayList<>(sorted.subList(0, limit)) : sorted;
+        }
+
+        // Counts, per other user's submission, the query's distinctive fingerprints it also has
+        private Map<Entry, Integer> sharedWith(Entry query, int[] considered) {
+            int common = entries.size() >= MIN_SUBMISSIONS_FOR_COMMON
+                    ? (int) Math.ceil(entries.size() * commonFraction) : Integer.MAX_VALUE;
+            Map<Entry, Integer> shared = new HashMap<>();
+            for (long fingerprint : query.fingerprints) {
+                List<Entry> list = postings.get(fingerprint);
+                if (list == null || list.size() > common) {
+                    continue;
+                }
+                considered[0]++;
+                postingsScanned.addAndGet(list.size());
+                for (Entry other : list) {
+                    if (other.userId != query.userId) {
+                        shared.merge(other, 1, Integer::sum);
+                    }
+                }
+            }
+            return shared;
+        }
+
+        private Map<String, Object> match(Entry query, Entry other, int shared, int considered) {
+            Map<String, Object> match = new HashMap<>();
+            match.put("submissionId", query.submissionId);
+            match.put("userId", query.userId);
+            match.put("otherSubmissionId", other.submissionId);
+            match.put("otherUserId", other.userId);
+            match.put("sharedFingerprints", shared);
+            // Share of the query's distinctive fingerprints also found in the other submission
+            match.put("score", considered > 0 ? Math.round(1000.0 * shared / considered) / 1000.0 : 0.0);
+            return match;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.javahub.app.compiler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+// Collapses concurrent calls with the same key into one: the first caller does the work and
+// everyone who arrives while it is in flight waits for that result. Only overlapping calls are
+// merged; once the leader finishes the key is free again.
+public class SingleFlight<T> {
+
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+    private final AtomicLong declined = new AtomicLong();
+
+    // Waiters run the task themselves when the leader failed or its result is not shareable
+    public T run(String key, Callable<T> task, Predicate<T> shareable) throws Exception {
+        CompletableFuture<T> own = new CompletableFuture<>();
+        CompletableFuture<T> leader = inFlight.putIfAbsent(key, own);
+        if (leader == null) {
+            leaders.incrementAndGet();
+            try {
+                T result = task.call();
+                own.complete(result);
+                return result;
+            } catch (Throwable e) {
+                own.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, own);
+            }
+        }
+
+        T result;
+        try {
+            result = leader.get();
+        } catch (ExecutionException e) {
+            declined.incrementAndGet();
+            return task.call();
+        }
+        if (!shareable.test(result)) {
+            declined.incrementAndGet();
+            return task.call();
+        }
+        shared.incrementAndGet();
+        return result;
+    }
+
+    public long getLeaders() {
+        return leaders.get();
+    }
+
+    public long getShared() {
+        return shared.get();
+    }
+
+    public long getDeclined() {
+        return declined.get();
+    }
+}
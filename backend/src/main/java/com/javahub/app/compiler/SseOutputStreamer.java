@@ -0,0 +1,123 @@
+package com.javahub.app.compiler;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Forwards program output to an SSE client in batches: chunks are decoded and buffered, then sent
+// every FLUSH_INTERVAL_MS or once FLUSH_THRESHOLD characters are pending, not once per line.
+public class SseOutputStreamer implements OutputListener {
+
+    private static final long FLUSH_INTERVAL_MS = 50;
+    private static final int FLUSH_THRESHOLD = 4096;
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sse-output-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SseEmitter emitter;
+    private final OutputDecoder stdoutDecoder;
+    private final OutputDecoder stderrDecoder;
+    private final StringBuilder pendingStdout = new StringBuilder();
+    private final StringBuilder pendingStderr = new StringBuilder();
+    private final ScheduledFuture<?> flushTask;
+    private boolean closed;
+
+    public SseOutputStreamer(SseEmitter emitter, Charset charset) {
+        this.emitter = emitter;
+        this.stdoutDecoder = new OutputDecoder(charset);
+        this.stderrDecoder = new OutputDecoder(charset);
+        this.flushTask = FLUSHER.scheduleAtFixedRate(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        emitter.onCompletion(this::close);
+        emitter.onTimeout(this::close);
+        emitter.onError(e -> close());
+    }
+
+    @Override
+    public synchronized void onOutput(boolean stderr, byte[] data, int offset, int length) {
+        if (closed) {
+            return;
+        }
+        if (stderr) {
+            stderrDecoder.decode(data, offset, length, pendingStderr);
+        } else {
+            stdoutDecoder.decode(data, offset, length, pendingStdout);
+        }
+        if (pendingStdout.length() + pendingStderr.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    public synchronized void finish(JavaCompilerService.CompilationResult result) {
+        if (closed) {
+            return;
+        }
+        stdoutDecoder.finish(pendingStdout);
+        stderrDecoder.finish(pendingStderr);
+        flush();
+
+        Map<String, Object> exit = new HashMap<>();
+        ExecutionResult execution = result.getExecution();
+        exit.put("errors", result.getErrors());
+        exit.put("compileMs", result.getCompileTimeMs());
+        if (execution != null) {
+            exit.put("exitCode", execution.getExitCode());
+            exit.put("timedOut", execution.isTimedOut());
+            exit.put("runMs", execution.getWallTimeMs());
+            if (execution.getEngine() != null) {
+                exit.put("engine", execution.getEngine().label());
+            }
+            if (execution.getUsage() != null) {
+                exit.putAll(execution.getUsage().toMap());
+            }
+            if (!execution.isSuccess()) {
+                exit.put("message", execution.describe());
+            }
+        }
+        send("exit", exit);
+        emitter.complete();
+        close();
+    }
+
+    public synchronized void flush() {
+        if (closed) {
+            return;
+        }
+        sendPending("stdout", pendingStdout);
+        sendPending("stderr", pendingStderr);
+    }
+
+    private void sendPending(String stream, StringBuilder pending) {
+        if (pending.length() == 0) {
+            return;
+        }
+        Map<String, Object> event = new HashMap<>();
+        event.put("stream", stream);
+        event.put("text", pending.toString());
+        pending.setLength(0);
+        send("output", event);
+    }
+
+    private void send(String name, Map<String, Object> data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the run still finishes, there is just nobody left to tell
+            close();
+        }
+    }
+
+    private synchronized void close() {
+        closed = true;
+        flushTask.cancel(false);
+    }
+}
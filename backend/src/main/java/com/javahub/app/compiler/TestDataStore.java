@@ -0,0 +1,197 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Test case inputs and expected outputs, kept as files named by their SHA-256 instead of TEXT
+// columns; the database only holds the key and size. A payload is memory-mapped once and shared
+// by every submission: the judge writes stdin straight from the mapping and compares output
+// against it, so a multi-megabyte stress input never becomes a String or a heap array. A file is
+// only used once its content hashes to its name.
+@Component
+public class TestDataStore {
+
+    // Empty means SandboxRuntime.privateTempDirectory("javahub-testdata"), which does not survive tmp cleaners
+    @Value("${compiler.judge.data-dir:}")
+    private String dataDir = "";
+
+    private final Map<String, Blob> mapped = new ConcurrentHashMap<>();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong mappedBytes = new AtomicLong();
+    private Path root;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (dataDir.isBlank()) {
+            root = SandboxRuntime.privateTempDirectory("javahub-testdata");
+        } else {
+            root = Paths.get(dataDir);
+            Files.createDirectories(root);
+        }
+    }
+
+    public Blob put(String text) {
+        return put(new ByteArrayInputStream((text != null ? text : "").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Streams the payload to a temporary file while hashing it, then moves it into place. Identical
+    // payloads end up as one file.
+    public Blob put(InputStream data) {
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(root, "upload-", ".tmp");
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                data.transferTo(out);
+            }
+            String key = HexFormat.of().formatHex(digest.digest());
+            Path target = path(key);
+            if (Files.exists(target) && (mapped.containsKey(key) || isIntact(target, key))) {
+                deduplicated.incrementAndGet();
+                Files.delete(temp);
+            } else {
+                Files.createDirectories(target.getParent());
+                // Replaces a file under this name whose content does not match it
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                stored.incrementAndGet();
+            }
+            return get(key);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("Could not store test data: " + e.getMessage(), e);
+        } catch (NoSuchAlgorithmException e) {
+            deleteQuietly(temp);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The mapping outlives the channel, so each key is opened and checked once for the life of the backend
+    public Blob get(String key) {
+        if (key == null || !key.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Not a test data key: " + key);
+        }
+        return mapped.computeIfAbsent(key, k -> {
+            try (FileChannel channel = FileChannel.open(path(k), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (!sha256(buffer.duplicate()).equals(k)) {
+                    throw new IOException("content does not match its key");
+                }
+                mappedBytes.addAndGet(channel.size());
+                return new Blob(k, buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open test data " + k + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("root", String.valueOf(root));
+        stats.put("stored", stored.get());
+        stats.put("deduplicated", deduplicated.get());
+        stats.put("mapped", mapped.size());
+        stats.put("mappedBytes", mappedBytes.get());
+        return stats;
+    }
+
+    // Two levels so one directory never holds every payload
+    private Path path(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private static boolean isIntact(Path path, String key) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return sha256(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())).equals(key);
+        }
+    }
+
+    private static String sha256(ByteBuffer data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(data);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // Left for whoever cleans the temp directory
+            }
+        }
+    }
+
+    public static final class Blob {
+
+        private final String key;
+        private final ByteBuffer data;
+
+        Blob(String key, ByteBuffer data) {
+            this.key = key;
+            this.data = data.asReadOnlyBuffer();
+        }
+
+        // Payloads that were never stored, such as a question's sample
+        public static Blob of(String text) {
+            return new Blob(null, ByteBuffer.wrap((text != null ? text : "").getBytes(StandardCharsets.UTF_8)));
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int size() {
+            return data.capacity();
+        }
+
+        // A view of its own for each reader; the bytes are shared
+        public ByteBuffer data() {
+            return data.duplicate();
+        }
+
+        // At most maxBytes as text, for showing a visible case
+        public String preview(int maxBytes) {
+            ByteBuffer head = data().limit(Math.min(size(), maxBytes));
+            String text;
+            try {
+                text = StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                        .decode(head).toString();
+            } catch (IOException e) {
+                text = "";
+            }
+            return size() > maxBytes ? text + "\n... (" + size() + " bytes in total)" : text;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.javahub.app.compiler;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Running totals of what each user's programs consumed, since the backend started
+@Component
+public class UsageAccounting {
+
+    private static final int TOP_USERS = 5;
+
+    private final ConcurrentHashMap<Integer, Totals> users = new ConcurrentHashMap<>();
+    private final Totals all = new Totals();
+
+    public void record(int userId, ResourceUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        all.add(usage);
+        if (userId > 0) {
+            users.computeIfAbsent(userId, id -> new Totals()).add(usage);
+        }
+    }
+
+    public Map<String, Object> getUserStats(int userId) {
+        Totals totals = users.get(userId);
+        return totals != null ? totals.toMap() : new Totals().toMap();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = all.toMap();
+        stats.put("users", users.size());
+        List<Map<String, Object>> top = users.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Integer, Totals> e) -> e.getValue().cpuTimeMs()).reversed())
+                .limit(TOP_USERS)
+                .map(e -> {
+                    Map<String, Object> user = e.getValue().toMap();
+                    user.put("userId", e.getKey());
+                    return user;
+                })
+                .collect(Collectors.toList());
+        stats.put("topUsersByCpu", top);
+        return stats;
+    }
+
+    private static class Totals {
+        private long runs;
+        private long cpuTimeMs;
+        private long wallTimeMs;
+        private long maxPeakRssKb = -1;
+        private long memoryLimitHits;
+        private Instant lastRun;
+
+        synchronized void add(ResourceUsage usage) {
+            runs++;
+            cpuTimeMs += Math.max(usage.getCpuTimeMs(), 0);
+            wallTimeMs += usage.getWallTimeMs();
+            maxPeakRssKb = Math.max(maxPeakRssKb, usage.getPeakRssKb());
+            if (usage.isMemoryLimitHit()) {
+                memoryLimitHits++;
+            }
+            lastRun = Instant.now();
+        }
+
+        synchronized long cpuTimeMs() {
+            return cpuTimeMs;
+        }
+
+        synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("runs", runs);
+            map.put("cpuTimeMs", cpuTimeMs);
+            map.put("wallTimeMs", wallTimeMs);
+            map.put("maxPeakRssKb", maxPeakRssKb);
+            map.put("memoryLimitHits", memoryLimitHits);
+            map.put("lastRun", lastRun != null ? lastRun.toString() : null);
+            return map;
+        }
+    }
+}
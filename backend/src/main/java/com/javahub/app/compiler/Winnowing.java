@@ -0,0 +1,87 @@
+package com.javahub.app.compiler;
+
+import java.util.Arrays;
+
+// Document fingerprints by winnowing (Schleimer, Wilkerson and Aiken): hash every k-gram of the
+// token stream, then keep the smallest hash of each window of w consecutive k-grams. Two texts
+// sharing a run of at least w + k - 1 tokens are guaranteed to share a fingerprint, and a text of
+// n tokens keeps about 2n / (w + 1) of them.
+final class Winnowing {
+
+    private static final long BASE = 0x100000001B3L;
+
+    private Winnowing() {
+    }
+
+    // Distinct fingerprints, sorted
+    static long[] fingerprints(int[] tokens, int k, int w) {
+        if (tokens.length == 0) {
+            return new long[0];
+        }
+        if (tokens.length < k) {
+            // Too short for a single k-gram; the whole thing is its only fingerprint
+            return new long[] {mix(rollingHash(tokens, 0, tokens.length))};
+        }
+        long[] hashes = kgramHashes(tokens, k);
+        long[] selected = new long[hashes.length];
+        int count = 0;
+        int last = -1;
+        int window = Math.min(w, hashes.length);
+        for (int start = 0; start + window <= hashes.length; start++) {
+            // Rightmost minimum, so a window sliding over an unchanged minimum keeps picking it
+            int min = start;
+            for (int i = start + 1; i < start + window; i++) {
+                if (hashes[i] <= hashes[min]) {
+                    min = i;
+                }
+            }
+            if (min != last) {
+                selected[count++] = hashes[min];
+                last = min;
+            }
+        }
+        long[] distinct = Arrays.copyOf(selected, count);
+        Arrays.sort(distinct);
+        int unique = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (i == 0 || distinct[i] != distinct[i - 1]) {
+                distinct[unique++] = distinct[i];
+            }
+        }
+        return Arrays.copyOf(distinct, unique);
+    }
+
+    // Karp-Rabin over the token codes, each hash mixed so that minima are spread evenly
+    private static long[] kgramHashes(int[] tokens, int k) {
+        long[] hashes = new long[tokens.length - k + 1];
+        long power = 1;
+        for (int i = 1; i < k; i++) {
+            power *= BASE;
+        }
+        long hash = rollingHash(tokens, 0, k);
+        hashes[0] = mix(hash);
+        for (int i = 1; i < hashes.length; i++) {
+            hash = (hash - tokens[i - 1] * power) * BASE + tokens[i + k - 1];
+            hashes[i] = mix(hash);
+        }
+        return hashes;
+    }
+
+    private static long rollingHash(int[] tokens, int from, int to) {
+        long hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = hash * BASE + tokens[i];
+        }
+        return hash;
+    }
+
+    // Finaliser of MurmurHash3's 64-bit variant
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
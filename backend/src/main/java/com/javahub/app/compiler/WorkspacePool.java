@@ -0,0 +1,261 @@
+package com.javahub.app.compiler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Working directories for the on-disk compile path. Directories are created ahead of time, wiped
+// by a background janitor after each run and handed out again, so requests never create or delete
+// trees themselves. Names carry the owning backend's pid so a restarted backend can tell its own
+// directories from ones a dead process left behind, and a random part nobody can claim ahead of
+// us. Each workspace is open to this user only, since it holds the submitted sources.
+@Component
+public class WorkspacePool {
+
+    static final String PREFIX = "java_compile_";
+
+    // Empty means a javahub-workspaces directory under java.io.tmpdir that only this user can open;
+    // point it at a tmpfs such as /dev/shm to keep runs off the disk
+    @Value("${compiler.workspace.root:}")
+    private String rootSetting = "";
+
+    @Value("${compiler.workspace.pool-size:4}")
+    private int poolSize = 4;
+
+    @Value("${compiler.workspace.janitor-seconds:60}")
+    private long janitorSeconds = 60;
+
+    // Directories from the old random-suffix scheme are only touched once they are this old
+    @Value("${compiler.workspace.orphan-age-seconds:600}")
+    private long orphanAgeSeconds = 600;
+
+    private final ConcurrentLinkedDeque<Path> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong wiped = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong orphansReclaimed = new AtomicLong();
+    private final AtomicLong workspaceBytes = new AtomicLong();
+    private final String pid = String.valueOf(ProcessHandle.current().pid());
+    private Path root;
+    private ScheduledExecutorService janitor;
+
+    @PostConstruct
+    public void start() throws IOException {
+        root = rootSetting.isBlank()
+                ? SandboxRuntime.privateTempDirectory("javahub-workspaces") : Paths.get(rootSetting);
+        janitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "workspace-janitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        janitor.execute(() -> {
+            reclaimOrphans();
+            for (int i = idle.size(); i < poolSize; i++) {
+                try {
+                    idle.offer(create());
+                } catch (IOException e) {
+                    break;
+                }
+            }
+        });
+        janitor.scheduleWithFixedDelay(this::sweep, janitorSeconds, janitorSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (janitor != null) {
+            janitor.shutdownNow();
+        }
+        Path workspace;
+        while ((workspace = idle.poll()) != null) {
+            deleteTree(workspace);
+        }
+    }
+
+    // The directory is empty and belongs to the caller until release
+    public Path acquire() throws IOException {
+        Path workspace = idle.poll();
+        if (workspace != null && Files.isDirectory(workspace)) {
+            reused.incrementAndGet();
+        } else {
+            workspace = create();
+        }
+        inUse.incrementAndGet();
+        return workspace;
+    }
+
+    // Wiping happens on the janitor thread, off the request path
+    public void release(Path workspace) {
+        inUse.decrementAndGet();
+        janitor.execute(() -> recycle(workspace));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("root", root.toString());
+        stats.put("idle", idle.size());
+        stats.put("inUse", inUse.get());
+        stats.put("created", created.get());
+        stats.put("reused", reused.get());
+        stats.put("wiped", wiped.get());
+        stats.put("deleted", deleted.get());
+        stats.put("orphansReclaimed", orphansReclaimed.get());
+        stats.put("workspaceBytes", workspaceBytes.get());
+        try {
+            stats.put("rootUsableBytes", Files.getFileStore(root).getUsableSpace());
+        } catch (IOException e) {
+            stats.put("rootUsableBytes", -1L);
+        }
+        return stats;
+    }
+
+    private Path create() throws IOException {
+        Files.createDirectories(root);
+        Path workspace = Files.createTempDirectory(root, PREFIX + pid + "_", SandboxRuntime.ownerOnly());
+        created.incrementAndGet();
+        return workspace;
+    }
+
+    private void recycle(Path workspace) {
+        boolean clean = wipe(workspace);
+        if (clean && idle.size() < poolSize) {
+            wiped.incrementAndGet();
+            idle.offer(workspace);
+        } else {
+            deleteTree(workspace);
+            deleted.incrementAndGet();
+        }
+    }
+
+    // Removes everything below the workspace but keeps the directory itself
+    private boolean wipe(Path workspace) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(workspace)) {
+            for (Path entry : entries) {
+                deleteTree(entry);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        return isEmpty(workspace);
+    }
+
+    private void sweep() {
+        reclaimOrphans();
+        long bytes = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root, PREFIX + "*")) {
+            for (Path entry : entries) {
+                bytes += sizeOf(entry);
+            }
+        } catch (IOException e) {
+            // Keep the last figure
+            return;
+        }
+        workspaceBytes.set(bytes);
+    }
+
+    // Our own directories are left alone; ones named after a pid that is gone, and old
+    // random-suffix ones from before the pool existed, are deleted
+    private void reclaimOrphans() {
+        FileTime cutoff = FileTime.fromMillis(System.currentTimeMillis() - orphanAgeSeconds * 1000);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(root, PREFIX + "*")) {
+            for (Path entry : entries) {
+                String suffix = entry.getFileName().toString().substring(PREFIX.length());
+                int separator = suffix.indexOf('_');
+                boolean orphan;
+                if (separator > 0) {
+                    String owner = suffix.substring(0, separator);
+                    orphan = !owner.equals(pid) && !isAlive(owner);
+                } else {
+                    orphan = Files.getLastModifiedTime(entry).compareTo(cutoff) < 0;
+                }
+                if (orphan && Files.isDirectory(entry)) {
+                    deleteTree(entry);
+                    orphansReclaimed.incrementAndGet();
+                }
+            }
+        } catch (IOException e) {
+            // Root not there yet or not listable; the next sweep tries again
+        }
+    }
+
+    private static boolean isAlive(String pid) {
+        try {
+            Optional<ProcessHandle> process = ProcessHandle.of(Long.parseLong(pid));
+            return process.map(ProcessHandle::isAlive).orElse(false);
+        } catch (NumberFormatException e) {
+            // Not one of ours after all, leave it
+            return true;
+        }
+    }
+
+    private static boolean isEmpty(Path directory) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            return !entries.iterator().hasNext();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        long[] total = {0};
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    total[0] += attributes.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // Partial total is good enough for a gauge
+        }
+        return total[0];
+    }
+
+    private void deleteTree(Path path) {
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+                    Files.deleteIfExists(directory);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // Left for the next sweep
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.javahub.app.config;
 
+import com.javahub.app.compiler.CourseSampleService;
 import com.javahub.app.model.Course;
 import com.javahub.app.model.CourseContent;
 import com.javahub.app.model.Topic;
 import com.javahub.app.model.UserDashboard;
 import com.javahub.app.practice.model.PracticeQuestion;
+import com.javahub.app.practice.model.PracticeTestCase;
 import com.javahub.app.quiz.model.QuizQuestion;
 import com.javahub.app.repository.CourseRepository;
 import com.javahub.app.repository.CourseContentRepository;
@@ -12,6 +14,8 @@ import com.javahub.app.repository.TopicRepository;
 import com.javahub.app.repository.UserDashboardRepository;
 import com.javahub.app.repository.UserRepository;
 import com.javahub.app.practice.repository.PracticeQuestionRepository;
+import com.javahub.app.practice.repository.PracticeTestCaseRepository;
+import com.javahub.app.practice.service.PracticeQuestionService;
 import com.javahub.app.quiz.repository.QuizQuestionRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
@@ -31,6 +35,12 @@ public class DataInitializer implements CommandLineRunner {
     @Autowired
     private PracticeQuestionRepository practiceQuestionRepository;
 
+    @Autowired
+    private PracticeTestCaseRepository practiceTestCaseRepository;
+
+    @Autowired
+    private PracticeQuestionService practiceQuestionService;
+
     @Autowired
     private QuizQuestionRepository quizQuestionRepository;
 
@@ -43,6 +53,9 @@ public class DataInitializer implements CommandLineRunner {
     @Autowired
     private UserDashboardRepository userDashboardRepository;
 
+    @Autowired(required = false)
+    private CourseSampleService courseSampleService;
+
     @Override
     public void run(String... args) throws Exception {
         initializeCourses();
@@ -55,11 +68,22 @@ public class DataInitializer implements CommandLineRunner {
         // Initialize practice questions
         initializePracticeQuestions();
 
+        // Initialize judge test cases (idempotent - only for questions without them)
+        initializePracticeTestCases();
+
+        // Complexity bounds for the questions that are about efficiency (only where none is set)
+        initializeExpectedComplexities();
+
         // Initialize quiz questions (idempotent - check by question text)
         initializeQuizQuestions();
 
         // Ensure each user has a dashboard record
         initializeUserDashboards();
+
+        // Precompile and run the code examples in the content just written
+        if (courseSampleService != null) {
+            courseSampleService.refresh();
+        }
     }
 
     private void initializeCourses() {
@@ -162,6 +186,59 @@ public class DataInitializer implements CommandLineRunner {
         );
     }
 
+    private void initializePracticeTestCases() {
+        // The sample shown with each question is its first, visible test case
+        for (PracticeQuestion question : practiceQuestionRepository.findAll()) {
+            if (practiceTestCaseRepository.findByQuestionIdOrderByOrderNumberAsc(question.getId()).isEmpty()) {
+                practiceQuestionService.addTestCase(
+                        question.getId(), question.getSampleInput(), question.getSampleOutput(), false, 1);
+            }
+        }
+
+        addHiddenTestCasesIfMissing("Sum of Two Numbers", new String[][] {
+                {"-3\n3", "0"}, {"100\n250", "350"}, {"0\n0", "0"}, {"1000000\n2000000", "3000000"}});
+        addHiddenTestCasesIfMissing("Check Prime Number", new String[][] {
+                {"1", "false"}, {"2", "true"}, {"91", "false"}, {"7919", "true"}});
+        addHiddenTestCasesIfMissing("Fibonacci Sequence", new String[][] {
+                {"0", "0"}, {"1", "1"}, {"2", "1"}, {"20", "6765"}});
+        addHiddenTestCasesIfMissing("Palindrome Check", new String[][] {
+                {"\"racecar\"", "true"}, {"\"Java\"", "false"}, {"\"No lemon no melon\"", "true"}});
+        addHiddenTestCasesIfMissing("Valid Parentheses", new String[][] {
+                {"\"()[]{}\"", "true"}, {"\"(]\"", "false"}, {"\"([)]\"", "false"}, {"\"\"", "true"}});
+    }
+
+    private void initializeExpectedComplexities() {
+        setExpectedComplexityIfMissing("Find Maximum in Array", "O(n)");
+        setExpectedComplexityIfMissing("Reverse a String", "O(n)");
+        setExpectedComplexityIfMissing("Palindrome Check", "O(n)");
+        setExpectedComplexityIfMissing("Two Sum Problem", "O(n)");
+        setExpectedComplexityIfMissing("Merge Two Sorted Arrays", "O(n)");
+        setExpectedComplexityIfMissing("Valid Parentheses", "O(n)");
+        setExpectedComplexityIfMissing("Fibonacci Sequence", "O(n)");
+    }
+
+    private void setExpectedComplexityIfMissing(String title, String complexity) {
+        practiceQuestionRepository.findByTitle(title).ifPresent(question -> {
+            if (question.getExpectedComplexity() == null) {
+                question.setExpectedComplexity(complexity);
+                practiceQuestionRepository.save(question);
+            }
+        });
+    }
+
+    private void addHiddenTestCasesIfMissing(String title, String[][] cases) {
+        practiceQuestionRepository.findByTitle(title).ifPresent(question -> {
+            List<PracticeTestCase> existing = practiceTestCaseRepository.findByQuestionIdOrderByOrderNumberAsc(question.getId());
+            if (existing.stream().anyMatch(PracticeTestCase::isHidden)) {
+                return;
+            }
+            for (int i = 0; i < cases.length; i++) {
+                practiceQuestionService.addTestCase(
+                        question.getId(), cases[i][0], cases[i][1], true, existing.size() + i + 1);
+            }
+        });
+    }
+
     private void createPracticeQuestionIfNotExists(String title, String description, String difficulty, String sampleInput, String sampleOutput) {
         practiceQuestionRepository.findByTitle(title)
                 .orElseGet(() -> practiceQuestionRepository.save(
@@ -1,6 +1,8 @@
 package com.javahub.app.config;
 
+import com.javahub.app.compiler.InteractiveRunSocket;
 import com.javahub.app.filter.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -23,8 +25,13 @@ public class SecurityConfig {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
+                        // Streamed responses (SSE) finish on an async dispatch that carries no JWT
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/auth/login", "/auth/register", "/hello").permitAll()
+                        // Browsers cannot send headers with a WebSocket upgrade; the JWT comes in the first message
+                        .requestMatchers(InteractiveRunSocket.PATH).permitAll()
                         .requestMatchers("/compiler/**").authenticated()
+                        .requestMatchers("/practice/questions/*/similarity/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session
@@ -0,0 +1,81 @@
+package com.javahub.app.history.controller;
+
+import com.javahub.app.history.model.Submission;
+import com.javahub.app.history.service.SubmissionHistoryService;
+import com.javahub.app.model.User;
+import com.javahub.app.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/history")
+public class SubmissionHistoryController {
+
+    @Autowired
+    private SubmissionHistoryService submissionHistoryService;
+
+    @Autowired
+    private UserService userService;
+
+    private int getUserIdFromRequest(HttpServletRequest request) {
+        String username = (String) request.getAttribute("username");
+        if (username == null) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.getPrincipal() instanceof String) {
+                username = (String) authentication.getPrincipal();
+            }
+        }
+        if (username != null) {
+            Optional<User> userOpt = userService.findByUsername(username);
+            if (userOpt.isPresent()) {
+                return userOpt.get().getId();
+            }
+        }
+        return -1; // Return -1 if user not found (shouldn't happen with auth)
+    }
+
+    // ?kind=run|project|practice&limit=20&before=<nextBefore of the previous page>
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getHistory(@RequestParam(required = false) Long before,
+                                                          @RequestParam(required = false) String kind,
+                                                          @RequestParam(defaultValue = "20") int limit,
+                                                          HttpServletRequest request) {
+        int userId = getUserIdFromRequest(request);
+        if (userId <= 0) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("errors", "Error: Sign in to see your history."));
+        }
+        Submission.Kind filter = null;
+        if (kind != null && !kind.isBlank()) {
+            try {
+                filter = Submission.Kind.valueOf(kind.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("errors", "Error: Unknown kind: " + kind));
+            }
+        }
+        return ResponseEntity.ok(submissionHistoryService.page(userId, before, filter, limit));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> getSubmission(@PathVariable long id, HttpServletRequest request) {
+        return submissionHistoryService.get(getUserIdFromRequest(request), id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Map<String, Object>> clearHistory(HttpServletRequest request) {
+        int userId = getUserIdFromRequest(request);
+        if (userId <= 0) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("errors", "Error: Sign in to see your history."));
+        }
+        return ResponseEntity.ok(Map.of("deleted", submissionHistoryService.clear(userId)));
+    }
+}
@@ -0,0 +1,113 @@
+package com.javahub.app.history.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// One compiler run or practice submission. The texts are SubmissionBlob hashes, so running the
+// same code again only adds this row.
+@Entity
+@Table(name = "submissions", indexes = {
+        @Index(name = "idx_submissions_user", columnList = "user_id, id"),
+        @Index(name = "idx_submissions_user_kind", columnList = "user_id, kind, id")
+})
+public class Submission {
+
+    public enum Kind { RUN, PROJECT, PRACTICE }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private long id;
+
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 16)
+    private Kind kind;
+
+    // Set for practice submissions
+    @Column(name = "question_id")
+    private Integer questionId;
+
+    // "ok" or "error" for runs, the verdict for practice submissions
+    @Column(name = "status", nullable = false, length = 32)
+    private String status;
+
+    @Column(name = "source_hash", nullable = false, length = 64)
+    private String sourceHash;
+
+    @Column(name = "output_hash", length = 64)
+    private String outputHash;
+
+    @Column(name = "errors_hash", length = 64)
+    private String errorsHash;
+
+    @Column(name = "source_bytes", nullable = false)
+    private int sourceBytes;
+
+    @Column(name = "created_at", nullable = false, columnDefinition = "TIMESTAMP")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    // Default constructor (required by JPA)
+    public Submission() {
+    }
+
+    public Submission(int userId, Kind kind, Integer questionId, String status,
+                      String sourceHash, int sourceBytes, String outputHash, String errorsHash) {
+        this.userId = userId;
+        this.kind = kind;
+        this.questionId = questionId;
+        this.status = status;
+        this.sourceHash = sourceHash;
+        this.sourceBytes = sourceBytes;
+        this.outputHash = outputHash;
+        this.errorsHash = errorsHash;
+    }
+
+    // Getters
+    public long getId() {
+        return id;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Integer getQuestionId() {
+        return questionId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getSourceHash() {
+        return sourceHash;
+    }
+
+    public String getOutputHash() {
+        return outputHash;
+    }
+
+    public String getErrorsHash() {
+        return errorsHash;
+    }
+
+    public int getSourceBytes() {
+        return sourceBytes;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
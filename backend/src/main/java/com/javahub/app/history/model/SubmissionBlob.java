@@ -0,0 +1,65 @@
+package com.javahub.app.history.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Source, output or error text of one or more submissions, stored once under the SHA-256 of its
+// UTF-8 bytes
+@Entity
+@Table(name = "submission_blobs")
+public class SubmissionBlob {
+    @Id
+    @Column(name = "hash", length = 64)
+    private String hash;
+
+    // "deflate", or "none" when compressing did not make it smaller
+    @Column(name = "codec", nullable = false, length = 16)
+    private String codec;
+
+    @Column(name = "original_bytes", nullable = false)
+    private int originalBytes;
+
+    @Lob
+    @Column(name = "data", nullable = false)
+    private byte[] data;
+
+    @Column(name = "created_at", nullable = false, columnDefinition = "TIMESTAMP")
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+
+    // Default constructor (required by JPA)
+    public SubmissionBlob() {
+    }
+
+    public SubmissionBlob(String hash, String codec, int originalBytes, byte[] data) {
+        this.hash = hash;
+        this.codec = codec;
+        this.originalBytes = originalBytes;
+        this.data = data;
+    }
+
+    // Getters
+    public String getHash() {
+        return hash;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public int getOriginalBytes() {
+        return originalBytes;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
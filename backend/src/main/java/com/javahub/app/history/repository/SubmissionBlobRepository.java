@@ -0,0 +1,19 @@
+package com.javahub.app.history.repository;
+
+import com.javahub.app.history.model.SubmissionBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface SubmissionBlobRepository extends JpaRepository<SubmissionBlob, String> {
+
+    // Blobs no submission refers to any more, once retention has removed the rows that did
+    @Transactional
+    @Modifying
+    @Query("delete from SubmissionBlob b where not exists (select s.id from Submission s where s.sourceHash = b.hash"
+            + " or s.outputHash = b.hash or s.errorsHash = b.hash)")
+    int deleteUnreferenced();
+}
@@ -0,0 +1,42 @@
+package com.javahub.app.history.repository;
+
+import com.javahub.app.history.model.Submission;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SubmissionRepository extends JpaRepository<Submission, Long> {
+
+    // Keyset pages: newest first, strictly older than the last id of the previous page. Always
+    // called with page 0, so the database walks the (user_id, id) index instead of skipping rows.
+    List<Submission> findByUserIdAndIdLessThanOrderByIdDesc(int userId, long beforeId, Pageable page);
+
+    List<Submission> findByUserIdAndKindAndIdLessThanOrderByIdDesc(int userId, Submission.Kind kind, long beforeId,
+                                                                   Pageable page);
+
+    List<Submission> findByKindAndIdGreaterThanOrderByIdAsc(Submission.Kind kind, long afterId, Pageable page);
+
+    List<Submission> findByUserIdOrderByIdDesc(int userId, Pageable page);
+
+    @Query("select s.id from Submission s where s.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Submission s where s.userId = :userId and s.id <= :id")
+    int deleteOlder(@Param("userId") int userId, @Param("id") long id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Submission s where s.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,349 @@
+package com.javahub.app.history.service;
+
+import com.javahub.app.history.model.Submission;
+import com.javahub.app.history.model.SubmissionBlob;
+import com.javahub.app.history.repository.SubmissionBlobRepository;
+import com.javahub.app.history.repository.SubmissionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Past runs and practice submissions of each user. Texts are stored once per SHA-256 and deflated,
+// so submitting the same code again, or a program printing what it printed before, adds only a
+// Submission row. Each user keeps their newest max-per-user entries; a background sweep drops
+// entries older than max-age-days and then the blobs nothing refers to any more.
+@Service
+public class SubmissionHistoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(SubmissionHistoryService.class);
+
+    // Below this, deflate's header costs more than it saves
+    private static final int MIN_COMPRESS_BYTES = 64;
+    private static final int MAX_PAGE_SIZE = 100;
+    // Ids per existence query, so the IN list stays a reasonable size
+    private static final int MAX_IDS_PER_QUERY = 1000;
+
+    @Autowired
+    private SubmissionRepository submissionRepository;
+
+    @Autowired
+    private SubmissionBlobRepository blobRepository;
+
+    @Value("${compiler.history.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${compiler.history.max-per-user:200}")
+    private int maxPerUser = 200;
+
+    @Value("${compiler.history.max-age-days:90}")
+    private int maxAgeDays = 90;
+
+    @Value("${compiler.history.sweep-minutes:60}")
+    private long sweepMinutes = 60;
+
+    // Recording shares this lock; the sweep takes it alone so it never removes a blob that a
+    // submission being recorded has just found and is about to refer to
+    private final ReadWriteLock sweepLock = new ReentrantReadWriteLock();
+    private final Object[] blobLocks = new Object[64];
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong blobsStored = new AtomicLong();
+    private final AtomicLong blobsReused = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final AtomicLong trimmed = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong blobsSwept = new AtomicLong();
+    private ScheduledExecutorService sweeper;
+
+    public SubmissionHistoryService() {
+        for (int i = 0; i < blobLocks.length; i++) {
+            blobLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled || sweepMinutes <= 0) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "history-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepMinutes, sweepMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    // A compiler run: "error" when the compiler or the program reported errors
+    public void recordRun(int userId, Submission.Kind kind, String source, String output, String errors) {
+        record(userId, kind, null, errors != null && !errors.isBlank() ? "error" : "ok", source, output, errors);
+    }
+
+    // The new entry's id, or null when nothing was recorded. Never fails the request it is called
+    // from; history is a convenience, the run already happened.
+    public Long record(int userId, Submission.Kind kind, Integer questionId, String status,
+                       String source, String output, String errors) {
+        if (!enabled || userId <= 0 || source == null) {
+            return null;
+        }
+        sweepLock.readLock().lock();
+        try {
+            String sourceHash = store(source);
+            Submission saved = submissionRepository.save(new Submission(userId, kind, questionId, status,
+                    sourceHash, source.getBytes(StandardCharsets.UTF_8).length, store(output), store(errors)));
+            recorded.incrementAndGet();
+            trim(userId);
+            return saved.getId();
+        } catch (RuntimeException e) {
+            log.warn("Could not record submission for user {}: {}", userId, e.getMessage());
+            return null;
+        } finally {
+            sweepLock.readLock().unlock();
+        }
+    }
+
+    // Projects are stored as one text, files in path order each under a "// File:" line
+    public static String projectSource(Map<String, String> files, String mainClass) {
+        StringBuilder source = new StringBuilder();
+        if (mainClass != null) {
+            source.append("// Main class: ").append(mainClass).append('\n');
+        }
+        new TreeMap<>(files).forEach((path, content) ->
+                source.append("// File: ").append(path).append('\n').append(content != null ? content : "").append('\n'));
+        return source.toString();
+    }
+
+    // One page, newest first. Pass the previous page's nextBefore to get the page after it.
+    public Map<String, Object> page(int userId, Long before, Submission.Kind kind, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long beforeId = before != null ? before : Long.MAX_VALUE;
+        List<Submission> submissions = kind != null
+                ? submissionRepository.findByUserIdAndKindAndIdLessThanOrderByIdDesc(userId, kind, beforeId, PageRequest.of(0, size))
+                : submissionRepository.findByUserIdAndIdLessThanOrderByIdDesc(userId, beforeId, PageRequest.of(0, size));
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (Submission submission : submissions) {
+            items.add(summary(submission));
+        }
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", items);
+        page.put("nextBefore", submissions.size() == size ? submissions.get(size - 1).getId() : null);
+        return page;
+    }
+
+    // The full entry with its texts, or empty when it does not exist or belongs to someone else
+    public Optional<Map<String, Object>> get(int userId, long id) {
+        return submissionRepository.findById(id)
+                .filter(submission -> submission.getUserId() == userId)
+                .map(submission -> {
+                    Map<String, Object> entry = summary(submission);
+                    entry.put("source", load(submission.getSourceHash()));
+                    entry.put("output", load(submission.getOutputHash()));
+                    entry.put("errors", load(submission.getErrorsHash()));
+                    return entry;
+                });
+    }
+
+    // Every entry of one kind with its source, oldest first, a page at a time
+    public void forEach(Submission.Kind kind, BiConsumer<Submission, String> action) {
+        long after = 0;
+        while (true) {
+            List<Submission> submissions = submissionRepository.findByKindAndIdGreaterThanOrderByIdAsc(
+                    kind, after, PageRequest.of(0, MAX_PAGE_SIZE));
+            for (Submission submission : submissions) {
+                action.accept(submission, load(submission.getSourceHash()));
+                after = submission.getId();
+            }
+            if (submissions.size() < MAX_PAGE_SIZE) {
+                return;
+            }
+        }
+    }
+
+    // The given entry ids that are still stored; trimming, the sweep and clear remove rows in bulk,
+    // so whoever keeps ids elsewhere checks them here
+    public Set<Long> existing(Collection<Long> ids) {
+        List<Long> all = new ArrayList<>(ids);
+        Set<Long> found = new HashSet<>();
+        for (int from = 0; from < all.size(); from += MAX_IDS_PER_QUERY) {
+            found.addAll(submissionRepository.findExistingIds(
+                    all.subList(from, Math.min(all.size(), from + MAX_IDS_PER_QUERY))));
+        }
+        return found;
+    }
+
+    public int clear(int userId) {
+        return submissionRepository.deleteOlder(userId, Long.MAX_VALUE);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("recorded", recorded.get());
+        stats.put("blobsStored", blobsStored.get());
+        stats.put("blobsReused", blobsReused.get());
+        stats.put("rawBytes", rawBytes.get());
+        stats.put("storedBytes", storedBytes.get());
+        stats.put("trimmed", trimmed.get());
+        stats.put("expired", expired.get());
+        stats.put("blobsSwept", blobsSwept.get());
+        return stats;
+    }
+
+    private Map<String, Object> summary(Submission submission) {
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("id", submission.getId());
+        summary.put("kind", submission.getKind().name().toLowerCase());
+        summary.put("questionId", submission.getQuestionId());
+        summary.put("status", submission.getStatus());
+        summary.put("createdAt", submission.getCreatedAt());
+        summary.put("sourceBytes", submission.getSourceBytes());
+        // Equal hashes mean the same code was submitted again
+        summary.put("sourceHash", submission.getSourceHash());
+        return summary;
+    }
+
+    // Drops whatever is past the user's newest maxPerUser entries
+    private void trim(int userId) {
+        if (maxPerUser <= 0) {
+            return;
+        }
+        List<Submission> boundary = submissionRepository.findByUserIdOrderByIdDesc(userId, PageRequest.of(maxPerUser, 1));
+        if (!boundary.isEmpty()) {
+            trimmed.addAndGet(submissionRepository.deleteOlder(userId, boundary.get(0).getId()));
+        }
+    }
+
+    private void sweep() {
+        sweepLock.writeLock().lock();
+        try {
+            if (maxAgeDays > 0) {
+                expired.addAndGet(submissionRepository.deleteCreatedBefore(LocalDateTime.now().minusDays(maxAgeDays)));
+            }
+            blobsSwept.addAndGet(blobRepository.deleteUnreferenced());
+        } catch (RuntimeException e) {
+            log.warn("Could not sweep submission history: {}", e.getMessage());
+        } finally {
+            sweepLock.writeLock().unlock();
+        }
+    }
+
+    private String store(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        String hash = sha256(bytes);
+        // Two requests storing the same new text must not both insert it
+        synchronized (blobLocks[Math.floorMod(hash.hashCode(), blobLocks.length)]) {
+            if (blobRepository.existsById(hash)) {
+                blobsReused.incrementAndGet();
+                return hash;
+            }
+            byte[] compressed = bytes.length >= MIN_COMPRESS_BYTES ? deflate(bytes) : null;
+            SubmissionBlob blob = compressed != null && compressed.length < bytes.length
+                    ? new SubmissionBlob(hash, "deflate", bytes.length, compressed)
+                    : new SubmissionBlob(hash, "none", bytes.length, bytes);
+            blobRepository.save(blob);
+            blobsStored.incrementAndGet();
+            rawBytes.addAndGet(bytes.length);
+            storedBytes.addAndGet(blob.getData().length);
+        }
+        return hash;
+    }
+
+    private String load(String hash) {
+        if (hash == null) {
+            return null;
+        }
+        return blobRepository.findById(hash).map(blob -> {
+            byte[] bytes = "deflate".equals(blob.getCodec()) ? inflate(blob.getData(), blob.getOriginalBytes()) : blob.getData();
+            return new String(bytes, StandardCharsets.UTF_8);
+        }).orElse(null);
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int originalBytes) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[originalBytes];
+            int length = 0;
+            while (length < originalBytes && !inflater.finished()) {
+                int read = inflater.inflate(out, length, originalBytes - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != originalBytes) {
+                throw new IllegalStateException("Stored submission text is damaged");
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Stored submission text is damaged", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,19 +1,31 @@
 package com.javahub.app.practice.controller;
 
+import com.javahub.app.compiler.ComplexityJudge;
+import com.javahub.app.compiler.CompilerScheduler;
+import com.javahub.app.compiler.JudgeService;
+import com.javahub.app.compiler.SimilarityIndex;
+import com.javahub.app.history.model.Submission;
+import com.javahub.app.history.service.SubmissionHistoryService;
 import com.javahub.app.model.User;
 import com.javahub.app.practice.model.PracticeQuestion;
+import com.javahub.app.practice.service.ComplexityProfiles;
 import com.javahub.app.practice.service.PracticeQuestionService;
 import com.javahub.app.service.DashboardService;
 import com.javahub.app.service.UserService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.UncheckedIOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 
 @RestController
 @RequestMapping("/practice")
@@ -28,6 +40,21 @@ public class PracticeQuestionController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private JudgeService judgeService;
+
+    @Autowired
+    private CompilerScheduler compilerScheduler;
+
+    @Autowired
+    private SubmissionHistoryService submissionHistoryService;
+
+    @Autowired
+    private SimilarityIndex similarityIndex;
+
+    @Autowired
+    private ComplexityJudge complexityJudge;
+
     private int getUserIdFromRequest(HttpServletRequest request) {
         String username = (String) request.getAttribute("username");
         if (username == null) {
@@ -65,7 +92,114 @@ public class PracticeQuestionController {
             return ResponseEntity.notFound().build();
         }
     }
-}
 
+    // Body: {"code": "...", "stopOnFirstFailure": false}. Runs every test case of the question in one
+    // sandbox JVM; with stopOnFirstFailure the run ends at the first case that does not pass.
+    @PostMapping("/questions/{id}/submit")
+    public ResponseEntity<Map<String, Object>> submit(@PathVariable int id, @RequestBody Map<String, Object> request,
+                                                      HttpServletRequest httpRequest) {
+        if (practiceQuestionService.getQuestionById(id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String code = request.get("code") instanceof String ? (String) request.get("code") : null;
+        boolean stopOnFirstFailure = Boolean.TRUE.equals(request.get("stopOnFirstFailure"));
+        Map<String, Object> error = new HashMap<>();
+        List<JudgeService.TestCase> cases;
+        try {
+            cases = practiceQuestionService.getJudgeCases(id);
+        } catch (UncheckedIOException e) {
+            // A payload file is missing or damaged, e.g. removed by a temp directory cleaner
+            error.put("errors", "Error: The test data for this question is unavailable. Ask an admin to upload its test cases again.");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(error);
+        }
+        String invalid = judgeService.validate(code, cases);
+        if (invalid != null) {
+            error.put("errors", invalid);
+            return ResponseEntity.badRequest().body(error);
+        }
 
+        int userId = getUserIdFromRequest(httpRequest);
+        try {
+            Map<String, Object> result = compilerScheduler.submit(userId, CompilerScheduler.Lane.RUN,
+                    () -> judgeService.judge(userId, code, cases, stopOnFirstFailure)).get();
+            if (userId > 0) {
+                dashboardService.incrementPracticeAttempts(userId);
+            }
+            String summary = result.get("passed") != null
+                    ? result.get("passed") + "/" + result.get("total") + " test cases passed" : null;
+            Long submissionId = submissionHistoryService.record(userId, Submission.Kind.PRACTICE, id,
+                    String.valueOf(result.get("verdict")), code, summary, (String) result.get("compileErrors"));
+            similarityIndex.add(id, submissionId, userId, code);
+            return ResponseEntity.ok(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error.put("errors", "Error: Request interrupted");
+            return ResponseEntity.ok(error);
+        } catch (ExecutionException e) {
+            error.put("errors", "Error: " + e.getCause().getMessage());
+            return ResponseEntity.ok(error);
+        }
+    }
+
+    // Body: {"code": "..."}. Times the solution on generated inputs of growing size and rejects it when
+    // its running time grows faster than the question's expectedComplexity
+    @PostMapping("/questions/{id}/complexity")
+    public ResponseEntity<Map<String, Object>> checkComplexity(@PathVariable int id, @RequestBody Map<String, Object> request,
+                                                               HttpServletRequest httpRequest) {
+        PracticeQuestion question = practiceQuestionService.getQuestionById(id);
+        if (question == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String code = request.get("code") instanceof String ? (String) request.get("code") : null;
+        ComplexityJudge.Complexity bound = ComplexityJudge.Complexity.parse(question.getExpectedComplexity());
+        ComplexityProfiles.Profile profile = ComplexityProfiles.forTitle(question.getTitle());
+        Map<String, Object> error = new HashMap<>();
+        if (code == null || code.trim().isEmpty()) {
+            error.put("errors", "Error: Code cannot be empty.");
+            return ResponseEntity.badRequest().body(error);
+        }
+        if (bound == null || profile == null) {
+            error.put("errors", "Error: This question has no complexity check.");
+            return ResponseEntity.badRequest().body(error);
+        }
+
+        int userId = getUserIdFromRequest(httpRequest);
+        try {
+            return ResponseEntity.ok(compilerScheduler.submit(userId, CompilerScheduler.Lane.RUN,
+                    () -> complexityJudge.judge(userId, code, profile.getSizes(), profile.getGenerator(), bound)).get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error.put("errors", "Error: Request interrupted");
+            return ResponseEntity.ok(error);
+        } catch (ExecutionException e) {
+            error.put("errors", "Error: " + e.getCause().getMessage());
+            return ResponseEntity.ok(error);
+        }
+    }
+
+    // Instructors only (see SecurityConfig): the pairs of submissions by different students that share
+    // the most code
+    @GetMapping("/questions/{id}/similarity")
+    public ResponseEntity<Map<String, Object>> getSimilarPairs(@PathVariable int id,
+                                                               @RequestParam(defaultValue = "20") int limit) {
+        if (practiceQuestionService.getQuestionById(id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("pairs", similarityIndex.topPairs(id, limit));
+        return ResponseEntity.ok(response);
+    }
 
+    // Submissions by other students most like one submission (its id from /history)
+    @GetMapping("/questions/{id}/similarity/{submissionId}")
+    public ResponseEntity<Map<String, Object>> getSimilarSubmissions(@PathVariable int id, @PathVariable long submissionId,
+                                                                     @RequestParam(defaultValue = "10") int limit) {
+        List<Map<String, Object>> matches = similarityIndex.similarTo(id, submissionId, limit);
+        if (matches == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("matches", matches);
+        return ResponseEntity.ok(response);
+    }
+}
@@ -25,6 +25,10 @@ public class PracticeQuestion {
     @Column(name = "sample_output", columnDefinition = "TEXT")
     private String sampleOutput;
 
+    // Slowest growth a solution may have, e.g. "O(n)"; null when the question has no complexity check
+    @Column(name = "expected_complexity", length = 20)
+    private String expectedComplexity;
+
     // Default constructor (required by JPA)
     public PracticeQuestion() {
     }
@@ -63,6 +67,10 @@ public class PracticeQuestion {
         return sampleOutput;
     }
 
+    public String getExpectedComplexity() {
+        return expectedComplexity;
+    }
+
     // Setters
     public void setId(int id) {
         this.id = id;
@@ -87,6 +95,10 @@ public class PracticeQuestion {
     public void setSampleOutput(String sampleOutput) {
         this.sampleOutput = sampleOutput;
     }
+
+    public void setExpectedComplexity(String expectedComplexity) {
+        this.expectedComplexity = expectedComplexity;
+    }
 }
 
 
@@ -0,0 +1,119 @@
+package com.javahub.app.practice.model;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "practice_test_cases")
+public class PracticeTestCase {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private int id;
+
+    @Column(name = "question_id", nullable = false)
+    private int questionId;
+
+    // Payloads live in the TestDataStore; only their SHA-256 keys and sizes are kept here
+    // Fed to the program on stdin
+    @Column(name = "input_key", nullable = false, length = 64)
+    private String inputKey;
+
+    @Column(name = "input_bytes", nullable = false)
+    private long inputBytes;
+
+    // Compared with the program's output, whitespace differences ignored
+    @Column(name = "expected_key", nullable = false, length = 64)
+    private String expectedKey;
+
+    @Column(name = "expected_bytes", nullable = false)
+    private long expectedBytes;
+
+    // Hidden cases are judged but their input and expected output are never sent to students
+    @Column(name = "hidden", nullable = false)
+    private boolean hidden;
+
+    @Column(name = "order_number", nullable = false)
+    private int orderNumber;
+
+    // Default constructor (required by JPA)
+    public PracticeTestCase() {
+    }
+
+    // Constructor with all fields
+    public PracticeTestCase(int questionId, String inputKey, long inputBytes, String expectedKey, long expectedBytes,
+                            boolean hidden, int orderNumber) {
+        this.questionId = questionId;
+        this.inputKey = inputKey;
+        this.inputBytes = inputBytes;
+        this.expectedKey = expectedKey;
+        this.expectedBytes = expectedBytes;
+        this.hidden = hidden;
+        this.orderNumber = orderNumber;
+    }
+
+    // Getters
+    public int getId() {
+        return id;
+    }
+
+    public int getQuestionId() {
+        return questionId;
+    }
+
+    public String getInputKey() {
+        return inputKey;
+    }
+
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+    public String getExpectedKey() {
+        return expectedKey;
+    }
+
+    public long getExpectedBytes() {
+        return expectedBytes;
+    }
+
+    public boolean isHidden() {
+        return hidden;
+    }
+
+    public int getOrderNumber() {
+        return orderNumber;
+    }
+
+    // Setters
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public void setQuestionId(int questionId) {
+        this.questionId = questionId;
+    }
+
+    public void setInputKey(String inputKey) {
+        this.inputKey = inputKey;
+    }
+
+    public void setInputBytes(long inputBytes) {
+        this.inputBytes = inputBytes;
+    }
+
+    public void setExpectedKey(String expectedKey) {
+        this.expectedKey = expectedKey;
+    }
+
+    public void setExpectedBytes(long expectedBytes) {
+        this.expectedBytes = expectedBytes;
+    }
+
+    public void setHidden(boolean hidden) {
+        this.hidden = hidden;
+    }
+
+    public void setOrderNumber(int orderNumber) {
+        this.orderNumber = orderNumber;
+    }
+}
@@ -0,0 +1,12 @@
+package com.javahub.app.practice.repository;
+
+import com.javahub.app.practice.model.PracticeTestCase;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PracticeTestCaseRepository extends JpaRepository<PracticeTestCase, Integer> {
+    List<PracticeTestCase> findByQuestionIdOrderByOrderNumberAsc(int questionId);
+}
@@ -0,0 +1,150 @@
+package com.javahub.app.practice.service;
+
+import com.javahub.app.compiler.JudgeService;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+// Input generators for the complexity check of the seeded practice questions, keyed by title. Each
+// writes inputs in the format of the question's sample and works out the expected output itself,
+// so a fast but wrong solution cannot pass. Inputs are seeded by size, so every student gets the
+// same ones. Questions whose whole input is a single number or that read the entire array for one
+// lookup (Binary Search) are not here: reading the input already takes linear time, which hides
+// the difference the question is about.
+public final class ComplexityProfiles {
+
+    public static final class Profile {
+
+        private final int[] sizes;
+        private final IntFunction<JudgeService.TestCase> generator;
+
+        Profile(int[] sizes, IntFunction<JudgeService.TestCase> generator) {
+            this.sizes = sizes;
+            this.generator = generator;
+        }
+
+        public int[] getSizes() {
+            return sizes;
+        }
+
+        public IntFunction<JudgeService.TestCase> getGenerator() {
+            return generator;
+        }
+    }
+
+    private static final int[] ARRAY_SIZES = {1000, 2000, 4000, 8000, 16000, 32000, 64000, 128000};
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final Map<String, Profile> PROFILES = new HashMap<>();
+
+    static {
+        PROFILES.put("Find Maximum in Array", new Profile(ARRAY_SIZES, n -> {
+            int[] values = new Random(n).ints(n, -1_000_000, 1_000_000).toArray();
+            return testCase(n, Arrays.toString(values), String.valueOf(Arrays.stream(values).max().getAsInt()));
+        }));
+        PROFILES.put("Reverse a String", new Profile(ARRAY_SIZES, n -> {
+            String text = letters(new Random(n), n);
+            return testCase(n, quoted(text), quoted(new StringBuilder(text).reverse().toString()));
+        }));
+        PROFILES.put("Palindrome Check", new Profile(ARRAY_SIZES, n -> {
+            Random random = new Random(n);
+            String half = letters(random, n / 2).toLowerCase();
+            String palindrome = half + new StringBuilder(half).reverse();
+            // Mixed case and spaces, which the question says to ignore
+            StringBuilder text = new StringBuilder();
+            for (char c : palindrome.toCharArray()) {
+                text.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+                if (random.nextInt(6) == 0) {
+                    text.append(' ');
+                }
+            }
+            return testCase(n, quoted(text.toString().trim()), "true");
+        }));
+        PROFILES.put("Two Sum Problem", new Profile(ARRAY_SIZES, n -> {
+            // Distinct even numbers and one odd one at the end: the only pair with an odd sum is the
+            // answer, and a pair-by-pair search reaches it last
+            Random random = new Random(n);
+            int[] values = new int[n];
+            for (int i = 0; i < n - 1; i++) {
+                values[i] = 2 * i;
+            }
+            for (int i = n - 2; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = values[i];
+                values[i] = values[j];
+                values[j] = swap;
+            }
+            values[n - 1] = 2 * random.nextInt(n) + 1;
+            int target = values[n - 2] + values[n - 1];
+            return testCase(n, "Array: " + Arrays.toString(values) + ", Target: " + target, "[" + (n - 2) + ", " + (n - 1) + "]");
+        }));
+        PROFILES.put("Merge Two Sorted Arrays", new Profile(ARRAY_SIZES, n -> {
+            Random random = new Random(n);
+            int[] first = random.ints(n / 2, 0, 10 * n).sorted().toArray();
+            int[] second = random.ints(n - n / 2, 0, 10 * n).sorted().toArray();
+            int[] merged = new int[n];
+            System.arraycopy(first, 0, merged, 0, first.length);
+            System.arraycopy(second, 0, merged, first.length, second.length);
+            Arrays.sort(merged);
+            return testCase(n, "Array1: " + Arrays.toString(first) + ", Array2: " + Arrays.toString(second),
+                    Arrays.toString(merged));
+        }));
+        PROFILES.put("Valid Parentheses", new Profile(ARRAY_SIZES, n -> {
+            // Half one deep nest, half short groups: removing "()" pairs until nothing changes is
+            // quadratic on the first, a stack is linear on both
+            Random random = new Random(n);
+            String opening = "([{";
+            String closing = ")]}";
+            StringBuilder text = new StringBuilder();
+            StringBuilder tail = new StringBuilder();
+            for (int i = 0; i < n / 4; i++) {
+                int kind = random.nextInt(3);
+                text.append(opening.charAt(kind));
+                tail.append(closing.charAt(kind));
+            }
+            text.append(tail.reverse());
+            while (text.length() + 2 <= n) {
+                int kind = random.nextInt(3);
+                text.append(opening.charAt(kind)).append(closing.charAt(kind));
+            }
+            return testCase(n, quoted(text.toString()), "true");
+        }));
+        // Small n, but a recursive solution doubles its time with every step
+        PROFILES.put("Fibonacci Sequence", new Profile(new int[] {5, 10, 15, 20, 25, 30, 35, 40, 45}, n -> {
+            long previous = 0;
+            long current = 1;
+            for (int i = 0; i < n; i++) {
+                long next = previous + current;
+                previous = current;
+                current = next;
+            }
+            return testCase(n, String.valueOf(n), String.valueOf(previous));
+        }));
+    }
+
+    private ComplexityProfiles() {
+    }
+
+    // Null for questions without a generator
+    public static Profile forTitle(String title) {
+        return PROFILES.get(title);
+    }
+
+    private static JudgeService.TestCase testCase(int size, String input, String expectedOutput) {
+        return new JudgeService.TestCase(size, input, expectedOutput, true);
+    }
+
+    private static String letters(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return text.toString();
+    }
+
+    private static String quoted(String text) {
+        return "\"" + text + "\"";
+    }
+}
@@ -1,12 +1,18 @@
 package com.javahub.app.practice.service;
 
+import com.javahub.app.compiler.JudgeService;
+import com.javahub.app.compiler.TestDataStore;
 import com.javahub.app.practice.model.PracticeQuestion;
+import com.javahub.app.practice.model.PracticeTestCase;
 import com.javahub.app.practice.repository.PracticeQuestionRepository;
+import com.javahub.app.practice.repository.PracticeTestCaseRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class PracticeQuestionService {
@@ -14,6 +20,12 @@ public class PracticeQuestionService {
     @Autowired
     private PracticeQuestionRepository practiceQuestionRepository;
 
+    @Autowired
+    private PracticeTestCaseRepository practiceTestCaseRepository;
+
+    @Autowired
+    private TestDataStore testDataStore;
+
     public List<PracticeQuestion> getAllQuestions() {
         return practiceQuestionRepository.findAll();
     }
@@ -22,6 +34,29 @@ public class PracticeQuestionService {
         Optional<PracticeQuestion> question = practiceQuestionRepository.findById(id);
         return question.orElse(null);
     }
+
+    public List<JudgeService.TestCase> getJudgeCases(int questionId) {
+        return practiceTestCaseRepository.findByQuestionIdOrderByOrderNumberAsc(questionId).stream()
+                .map(testCase -> new JudgeService.TestCase(testCase.getId(), testDataStore.get(testCase.getInputKey()),
+                        testDataStore.get(testCase.getExpectedKey()), testCase.isHidden()))
+                .collect(Collectors.toList());
+    }
+
+    public PracticeTestCase addTestCase(int questionId, String input, String expectedOutput, boolean hidden, int orderNumber) {
+        return addTestCase(questionId, testDataStore.put(input), testDataStore.put(expectedOutput), hidden, orderNumber);
+    }
+
+    // For stress cases: the payloads are streamed to disk and never held in memory whole
+    public PracticeTestCase addTestCase(int questionId, InputStream input, InputStream expectedOutput,
+                                        boolean hidden, int orderNumber) {
+        return addTestCase(questionId, testDataStore.put(input), testDataStore.put(expectedOutput), hidden, orderNumber);
+    }
+
+    private PracticeTestCase addTestCase(int questionId, TestDataStore.Blob input, TestDataStore.Blob expectedOutput,
+                                         boolean hidden, int orderNumber) {
+        return practiceTestCaseRepository.save(new PracticeTestCase(questionId, input.getKey(), input.size(),
+                expectedOutput.getKey(), expectedOutput.size(), hidden, orderNumber));
+    }
 }
 
 
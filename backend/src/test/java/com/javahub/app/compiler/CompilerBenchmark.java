@@ -0,0 +1,71 @@
+package com.javahub.app.compiler;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+// Compares the disk, in-memory and in-process compile-and-run paths end to end, then javac alone
+// with a fresh file manager per compile against the pooled ones. It lives with the tests so it stays
+// out of the application jar; the in-process engine needs spring-core's ASM on the class path too.
+// Run from backend/ with:
+//   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/benchmark.classpath
+//   java -cp target/test-classes:target/classes:$(cat target/benchmark.classpath) \
+//       com.javahub.app.compiler.CompilerBenchmark [iterations]
+public class CompilerBenchmark {
+
+    private static final String SAMPLE = "public class Main {\n"
+            + "    public static void main(String[] args) {\n"
+            + "        System.out.println(\"Hello World\");\n"
+            + "    }\n"
+            + "}\n";
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        JavaCompilerService service = new JavaCompilerService();
+
+        report("disk", measure(iterations, service::compileAndRunOnDisk));
+        report("in-memory", measure(iterations, service::compileAndRunInMemory));
+
+        InProcessExecutor inProcess = new InProcessExecutor(true);
+        report("in-process", measure(iterations, code -> {
+            CompiledProgram program = service.compileInMemory("Main", code);
+            ExecutionResult execution = inProcess.execute(program, JavaCompilerService.MAX_EXECUTION_TIME,
+                    ExecutionContext.none());
+            return new JavaCompilerService.CompilationResult(execution, 0);
+        }));
+
+        JavaCompilerService fresh = new JavaCompilerService(new JavacService(0));
+        report("javac-new", measure(iterations, code -> compileOnly(fresh, code)));
+        report("javac-pool", measure(iterations, code -> compileOnly(service, code)));
+    }
+
+    private static JavaCompilerService.CompilationResult compileOnly(JavaCompilerService service, String code) {
+        CompiledProgram program = service.compileInMemory("Main", code);
+        return new JavaCompilerService.CompilationResult("", program.isSuccess() ? "" : program.getErrors());
+    }
+
+    private static long[] measure(int iterations, Function<String, JavaCompilerService.CompilationResult> run) {
+        // Warm up javac inside this JVM before timing
+        for (int i = 0; i < 3; i++) {
+            run.apply(SAMPLE);
+        }
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            JavaCompilerService.CompilationResult result = run.apply(SAMPLE);
+            samples[i] = System.nanoTime() - start;
+            if (!result.getErrors().isEmpty()) {
+                throw new IllegalStateException(result.getErrors());
+            }
+        }
+        return samples;
+    }
+
+    private static void report(String name, long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0) / 1_000_000.0;
+        System.out.printf("%-10s n=%d mean=%.1fms p50=%.1fms p95=%.1fms%n", name, sorted.length, mean,
+                sorted[sorted.length / 2] / 1_000_000.0,
+                sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.95) - 1)] / 1_000_000.0);
+    }
+}